@@ -0,0 +1,421 @@
+package smog.io;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * AttachmentCache keeps the Base64 encoded content of attachments, keyed by the SHA-256 hash of their binary content,
+ * so that an attachment referred to by many missives is read, hashed and encoded once.
+ *
+ * When the shared cache is set, the {@link MissiveSerializer} writes the content of attachment references through it.
+ * The hash of the content of each reference is remembered, together with the file key, size and modification time of
+ * the file it refers to, so that a reference whose content has already been encoded is written without reading its
+ * content. The content of a reference which has not been seen yet, or whose file has just been modified, is read to be
+ * hashed, and is only encoded when no attachment with the same content is cached.
+ *
+ * The cache is bounded by the number of encoded characters it holds, the least recently used content being evicted
+ * first. Content whose encoding is larger than the bound is not cached. Evicted content is read from its reference
+ * again when it is next needed, so that eviction never makes a reference unusable.
+ *
+ * Caches are safe for use by several threads. Concurrent misses on the same content may encode it more than once.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class AttachmentCache {
+
+    // Maximum number of references whose hash is remembered
+    private static final int MAX_SOURCES = 65536;
+
+    // Size of the buffer used to hash content
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Time in milliseconds since their last modification during which files are hashed each time they are written
+    private static final long RECENT_MODIFICATION = 2000;
+
+    // Cache used by the serializer
+    private static volatile AttachmentCache sharedCache;
+
+    // Class attributes
+    private final LinkedHashMap<String, String> encodedContents;
+    private final AtomicLong evictionCount;
+    private final AtomicLong hitCount;
+    private final long maximumSize;
+    private final AtomicLong missCount;
+    private long size;
+    private final LinkedHashMap<String, String> sourceHashes;
+
+    /**
+     * AttachmentCache constructor
+     *
+     * @param maximumSize Maximum number of encoded characters held by the cache
+     */
+    public AttachmentCache(long maximumSize) {
+
+        // Initialise class attributes
+        this.encodedContents = new LinkedHashMap<>(16, 0.75f, true);
+        this.evictionCount = new AtomicLong();
+        this.hitCount = new AtomicLong();
+        this.maximumSize = maximumSize;
+        this.missCount = new AtomicLong();
+        this.size = 0;
+        this.sourceHashes = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return this.size() > MAX_SOURCES;
+            }
+        };
+    }
+
+    /**
+     * Get the cache used by the serializer
+     *
+     * @return The shared cache, or null when attachments are encoded each time they are serialized
+     */
+    public static AttachmentCache getSharedCache() {
+
+        // Get the shared cache
+        return sharedCache;
+    }
+
+    /**
+     * Set the cache used by the serializer
+     *
+     * @param cache Cache shared by all the missives, or null to encode attachments each time they are serialized
+     */
+    public static void setSharedCache(AttachmentCache cache) {
+
+        // Set the shared cache
+        sharedCache = cache;
+    }
+
+    /**
+     * Remove all the content from the cache
+     *
+     * The statistics of the cache are kept.
+     */
+    public synchronized void clear() {
+
+        // Forget the content and the hash of the references
+        this.encodedContents.clear();
+        this.sourceHashes.clear();
+        this.size = 0;
+    }
+
+    /**
+     * Get the number of encoded attachments held by the cache
+     *
+     * @return Number of cached attachments
+     */
+    public synchronized int getEntryCount() {
+
+        // Count the cached attachments
+        return this.encodedContents.size();
+    }
+
+    /**
+     * Get the number of attachments that have been evicted from the cache
+     *
+     * @return Number of evictions
+     */
+    public long getEvictionCount() {
+
+        // Get the eviction count
+        return this.evictionCount.get();
+    }
+
+    /**
+     * Get the number of attachments that have been written from the cache without being encoded
+     *
+     * @return Number of cache hits
+     */
+    public long getHitCount() {
+
+        // Get the hit count
+        return this.hitCount.get();
+    }
+
+    /**
+     * Get the maximum number of encoded characters held by the cache
+     *
+     * @return Maximum size of the cache
+     */
+    public long getMaximumSize() {
+
+        // Get the maximum size
+        return this.maximumSize;
+    }
+
+    /**
+     * Get the number of attachments that had to be encoded
+     *
+     * @return Number of cache misses
+     */
+    public long getMissCount() {
+
+        // Get the miss count
+        return this.missCount.get();
+    }
+
+    /**
+     * Get the number of encoded characters held by the cache
+     *
+     * @return Size of the cache
+     */
+    public synchronized long getSize() {
+
+        // Get the size
+        return this.size;
+    }
+
+    /**
+     * Write the Base64 encoded content of an attachment reference, using the cached encoding of its content
+     *
+     * @param reference Reference to the content of the attachment
+     * @param writer Writer to which the encoded content will be written
+     * @return Number of bytes of the content
+     * @throws IOException
+     */
+    public long writeEncoded(AttachmentReference reference, Writer writer) throws IOException {
+
+        // Hash of the content of the reference if it is known, or computed from the content
+        String source = getSourceKey(reference);
+        String hash = null;
+        if (source != null) {
+            synchronized (this) {
+                hash = this.sourceHashes.get(source);
+            }
+        }
+        if (hash == null) {
+            hash = hash(reference);
+        }
+
+        // Encoded content of the same hash
+        String encoded;
+        synchronized (this) {
+            if (source != null) {
+                this.sourceHashes.put(source, hash);
+            }
+            encoded = this.encodedContents.get(hash);
+        }
+
+        if (encoded != null) {
+
+            // Write the cached encoding
+            this.hitCount.incrementAndGet();
+            writer.write(encoded);
+
+            return getDecodedLength(encoded);
+        }
+
+        // Encode the content into the writer, keeping a copy of the encoding unless it is larger than the cache
+        this.missCount.incrementAndGet();
+        CapturingWriter capturingWriter = new CapturingWriter(writer, this.maximumSize);
+        long length = reference.writeEncodedContent(capturingWriter);
+
+        // Cache the encoding
+        encoded = capturingWriter.getCapturedContent();
+        if (encoded != null) {
+            this.add(hash, encoded);
+        }
+
+        return length;
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        // Statistics of the cache
+        return "AttachmentCache[entries=" + this.encodedContents.size() + ", size=" + this.size + "/" +
+                this.maximumSize + ", hits=" + this.hitCount.get() + ", misses=" + this.missCount.get() +
+                ", evictions=" + this.evictionCount.get() + "]";
+    }
+
+    /**
+     * Get the number of bytes of the content of a Base64 encoding
+     *
+     * @param encoded Base64 encoded content
+     * @return Number of bytes of the content
+     */
+    private static long getDecodedLength(String encoded) {
+
+        // Padding characters at the end of the encoding
+        int padding = 0;
+        for (int i = encoded.length() - 1; i >= 0 && encoded.charAt(i) == '='; i--) {
+            padding++;
+        }
+
+        return encoded.length() / 4 * 3 - padding;
+    }
+
+    /**
+     * Get the key identifying the content of a reference
+     *
+     * Content of attachment stores never changes. File references are identified by the file key (the inode on most
+     * systems), size and modification time of their file as well, so that a modified or replaced file is hashed again
+     * without reading every file each time it is written. A file rewritten with the same size within the granularity of
+     * the modification time would still be taken for the same content, so files modified less than
+     * RECENT_MODIFICATION milliseconds ago are not identified and their content is hashed each time it is written.
+     *
+     * @param reference Reference to the content of an attachment
+     * @return Key of the content of the reference, or null if the content needs to be hashed
+     * @throws IOException
+     */
+    private static String getSourceKey(AttachmentReference reference) throws IOException {
+
+        // Check if the reference is a file reference
+        URI uri = reference.getUri();
+        Path path = reference.getPath();
+        if (path == null) {
+            return uri.toString();
+        }
+
+        // Attributes of the file, whose content may still be changing if it has been modified recently
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (System.currentTimeMillis() - lastModified < RECENT_MODIFICATION) {
+            return null;
+        }
+
+        return uri + "#" + attributes.fileKey() + "#" + attributes.size() + "#" + lastModified;
+    }
+
+    /**
+     * Compute the SHA-256 hash of the content of a reference
+     *
+     * @param reference Reference to the content of an attachment
+     * @return Hexadecimal hash of the content
+     * @throws IOException
+     */
+    private static String hash(AttachmentReference reference) throws IOException {
+
+        // SHA-256 digest
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        // Hash the content chunk by chunk
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream is = reference.openStream()) {
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * Add an encoding to the cache, evicting the least recently used encodings to stay within the maximum size
+     *
+     * @param hash Hash of the content
+     * @param encoded Base64 encoded content
+     */
+    private synchronized void add(String hash, String encoded) {
+
+        // Add the encoding unless another thread has already done so
+        if (this.encodedContents.containsKey(hash)) {
+            return;
+        }
+        this.encodedContents.put(hash, encoded);
+        this.size += encoded.length();
+
+        // Evict the least recently used encodings
+        Iterator<String> encodings = this.encodedContents.values().iterator();
+        while (this.size > this.maximumSize && encodings.hasNext()) {
+            this.size -= encodings.next().length();
+            encodings.remove();
+            this.evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * CapturingWriter forwards characters to a writer while keeping a copy of them, as long as they do not exceed a
+     * given number
+     */
+    private static class CapturingWriter extends FilterWriter {
+
+        // Class attributes
+        private StringBuilder capture;
+        private final long limit;
+
+        /**
+         * CapturingWriter constructor
+         *
+         * @param writer Writer to which characters are forwarded
+         * @param limit Maximum number of characters that will be captured
+         */
+        private CapturingWriter(Writer writer, long limit) {
+
+            // Initialise the parent class
+            super(writer);
+
+            // Initialise class attributes
+            this.capture = new StringBuilder();
+            this.limit = limit;
+        }
+
+        /**
+         * Get the captured characters
+         *
+         * @return Captured characters or null if they exceeded the capture limit
+         */
+        private String getCapturedContent() {
+
+            // Check if the characters have been captured
+            return this.capture == null ? null : this.capture.toString();
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+
+            // Forward the character and keep a copy of it
+            this.write(new char[] {(char) c}, 0, 1);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+
+            // Forward the characters
+            this.out.write(cbuf, off, len);
+
+            // Keep a copy of the characters, giving up once the capture limit is exceeded
+            if (this.capture != null && this.capture.length() + len > this.limit) {
+                this.capture = null;
+            } else if (this.capture != null) {
+                this.capture.append(cbuf, off, len);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+
+            // Forward the characters
+            this.out.write(str, off, len);
+
+            // Keep a copy of the characters, giving up once the capture limit is exceeded
+            if (this.capture != null && this.capture.length() + len > this.limit) {
+                this.capture = null;
+            } else if (this.capture != null) {
+                this.capture.append(str, off, off + len);
+            }
+        }
+    }
+}
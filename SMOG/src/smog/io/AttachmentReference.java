@@ -0,0 +1,264 @@
+package smog.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import org.apache.commons.io.IOUtils;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+
+/**
+ * AttachmentReference refers to the binary content of an element of a missive, held by a file or by an
+ * {@link AttachmentStore}.
+ *
+ * The reference is held in the XML Beans tree as a processing instruction in place of the Base64 encoded content of the
+ * element, so that it is kept when the tree is copied and the content is never loaded in the tree. The
+ * {@link MissiveSerializer} encodes the content chunk by chunk into its output when it meets the processing instruction
+ * in an attachment element. The content is read each time the element is serialized and needs to be available until
+ * then.
+ *
+ * The data of the processing instruction is not the URI of the content but the opaque ID of the reference. The
+ * serializer only resolves the IDs of the references it is given, which are the references held by the structure
+ * objects of the document being serialized, so that processing instructions which have not been created by SMOG cannot
+ * refer to arbitrary files and that nothing is kept once the document no longer holds the reference. Processing
+ * instructions of attachment references are removed from parsed missives by {@link #removeReferences(XmlObject)}.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public final class AttachmentReference {
+
+    // Target of the processing instruction holding the reference
+    public static final String TARGET = "smog-attachment";
+
+    // Class attributes
+    private final String id;
+    private final AttachmentStore store;
+    private final URI uri;
+
+    /**
+     * AttachmentReference constructor
+     *
+     * @param path Path of the file holding the binary content
+     */
+    public AttachmentReference(Path path) {
+
+        // Initialise class attributes
+        this.id = UUID.randomUUID().toString();
+        this.store = null;
+        this.uri = path.toAbsolutePath().toUri();
+    }
+
+    /**
+     * AttachmentReference constructor
+     *
+     * @param store Attachment store holding the binary content
+     * @param uri URI of the content of the attachment store
+     */
+    AttachmentReference(AttachmentStore store, URI uri) {
+
+        // Initialise class attributes
+        this.id = UUID.randomUUID().toString();
+        this.store = store;
+        this.uri = uri;
+    }
+
+    /**
+     * Remove the attachment references held by an XML object
+     *
+     * Parsed missives need to go through this method, so that their processing instructions are never taken for
+     * attachment references.
+     *
+     * @param xmlObject XML object from which the processing instructions of attachment references will be removed
+     */
+    public static void removeReferences(XmlObject xmlObject) {
+
+        // Cursor on the XML object
+        XmlCursor cursor = xmlObject.newCursor();
+
+        try {
+
+            // Remove every processing instruction of an attachment reference, which moves the cursor to the next token
+            XmlCursor.TokenType token = cursor.toNextToken();
+            while (!token.isNone()) {
+                if (token.isProcinst() && TARGET.equals(cursor.getName().getLocalPart())) {
+                    cursor.removeXml();
+                    token = cursor.currentTokenType();
+                } else {
+                    token = cursor.toNextToken();
+                }
+            }
+
+        } finally {
+
+            // Dispose cursor
+            cursor.dispose();
+        }
+    }
+
+    /**
+     * Get the binary content
+     *
+     * The whole content is loaded in memory.
+     *
+     * @return Binary content
+     * @throws IOException
+     */
+    public byte[] getContent() throws IOException {
+
+        // Read the content
+        try (InputStream is = this.openStream()) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    /**
+     * Get the opaque ID of the reference, which is the data of the processing instruction holding it
+     *
+     * @return ID of the reference
+     */
+    String getId() {
+
+        // Get the ID
+        return this.id;
+    }
+
+    /**
+     * Get the path of the file holding the binary content
+     *
+     * @return Absolute path of the file, or null when the content is held by an attachment store
+     */
+    public Path getPath() {
+
+        // Only file references have a path
+        return "file".equals(this.uri.getScheme()) ? Paths.get(this.uri) : null;
+    }
+
+    /**
+     * Get the URI of the binary content
+     *
+     * @return URI of the content
+     */
+    public URI getUri() {
+
+        // Get the URI
+        return this.uri;
+    }
+
+    /**
+     * Check if the reference is the content of the given XML object
+     *
+     * @param xmlObject XML object whose content may be an attachment reference
+     * @return Whether the first content token of the XML object is the processing instruction holding the reference
+     */
+    public boolean isHeldBy(XmlObject xmlObject) {
+
+        // Cursor on the content of the XML object
+        XmlCursor cursor = xmlObject.newCursor();
+
+        try {
+
+            // Check if the first content token is the processing instruction of the reference
+            return cursor.toFirstContentToken() == XmlCursor.TokenType.PROCINST && TARGET.equals(cursor.getName()
+                    .getLocalPart()) && this.id.equals(cursor.getTextValue().trim());
+
+        } finally {
+
+            // Dispose cursor
+            cursor.dispose();
+        }
+    }
+
+    /**
+     * Open the binary content
+     *
+     * @return Input stream of the content, which needs to be closed by the caller
+     * @throws IOException if the content is not available
+     */
+    public InputStream openStream() throws IOException {
+
+        // Content held by a file
+        if ("file".equals(this.uri.getScheme())) {
+            return Files.newInputStream(Paths.get(this.uri));
+        }
+
+        // Content held by an attachment store
+        if (this.store != null) {
+            return this.store.open(this.uri);
+        }
+
+        throw new IOException("Unsupported attachment reference " + this.uri);
+    }
+
+    /**
+     * Get an XML object whose content is the reference, which can be set as the content of an element
+     *
+     * @return XML object holding the reference
+     */
+    public XmlObject toXml() {
+
+        // XML fragment that will contain the reference
+        XmlObject xo = XmlObject.Factory.newInstance();
+
+        // Create cursor
+        XmlCursor c = xo.newCursor();
+
+        // Insert the processing instruction at the start of the fragment
+        c.toNextToken();
+        c.insertProcInst(TARGET, this.id);
+
+        // Dispose cursor
+        c.dispose();
+
+        return xo;
+    }
+
+    /**
+     * Encode the binary content in Base64 and write it to a writer
+     *
+     * The content is read and encoded in chunks, so that the memory used does not depend on the size of the content.
+     * When the shared {@link AttachmentCache} is set, the cached encoding of identical content is written instead.
+     * When the shared {@link ParallelBase64Encoder} is set, the chunks are encoded by the threads of its pool.
+     *
+     * @param writer Writer to which the encoded content will be written
+     * @return Number of bytes that have been encoded
+     * @throws IOException
+     */
+    public long writeEncoded(Writer writer) throws IOException {
+
+        // Use the encoding of the shared cache when it is set
+        AttachmentCache cache = AttachmentCache.getSharedCache();
+        if (cache != null) {
+            return cache.writeEncoded(this, writer);
+        }
+
+        return this.writeEncodedContent(writer);
+    }
+
+    /**
+     * Encode the binary content in Base64 and write it to a writer, without using the shared cache
+     *
+     * @param writer Writer to which the encoded content will be written
+     * @return Number of bytes that have been encoded
+     * @throws IOException
+     */
+    long writeEncodedContent(Writer writer) throws IOException {
+
+        // Stream the content through the shared parallel encoder when it is set
+        ParallelBase64Encoder encoder = ParallelBase64Encoder.getSharedEncoder();
+        try (InputStream is = this.openStream()) {
+            return encoder == null ? Base64Encoder.encode(is, writer) : encoder.encode(is, writer);
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        // URI of the content
+        return this.uri.toString();
+    }
+}
@@ -0,0 +1,182 @@
+package smog.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AttachmentStore holds the binary content of attachments out of the XML Beans tree of the missives.
+ *
+ * Content put in a store is referred to by an {@link AttachmentReference}, which is held by the missive in place of the
+ * Base64 encoded content and which is resolved by the {@link MissiveSerializer} when the missive is written. The
+ * content is kept until it is removed or until the store is closed, after which the references to it can no longer be
+ * serialized. References are resolved through the store which created them, so that a store is kept as long as
+ * references to its content are.
+ *
+ * Stores are safe for use by several threads.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public abstract class AttachmentStore implements Closeable {
+
+    // Scheme of the URI of the references to content of a store
+    static final String SCHEME = "smog-store";
+
+    // Class attributes
+    private volatile boolean closed;
+    private final String id;
+    private final AtomicLong nextKey;
+
+    /**
+     * AttachmentStore constructor
+     */
+    protected AttachmentStore() {
+
+        // Initialise class attributes
+        this.closed = false;
+        this.id = UUID.randomUUID().toString();
+        this.nextKey = new AtomicLong();
+    }
+
+    /**
+     * Close the store, releasing the content it holds
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+
+        // References to the store can no longer be resolved
+        this.closed = true;
+
+        // Release the content
+        this.clear();
+    }
+
+    /**
+     * Put binary content in the store
+     *
+     * @param content Content of the attachment
+     * @return Reference to the content
+     * @throws IOException
+     */
+    public AttachmentReference put(byte[] content) throws IOException {
+
+        // Store the content of the array
+        return this.put(new ByteArrayInputStream(content));
+    }
+
+    /**
+     * Put the content of an input stream in the store
+     *
+     * The input stream is read to its end but not closed.
+     *
+     * @param is Input stream of the content of the attachment
+     * @return Reference to the content
+     * @throws IOException
+     */
+    public AttachmentReference put(InputStream is) throws IOException {
+
+        // Check that the store is open
+        if (this.closed) {
+            throw new IllegalStateException("The attachment store has been closed");
+        }
+
+        // Store the content under a new key
+        String key = Long.toString(this.nextKey.getAndIncrement());
+        this.write(key, is);
+
+        return new AttachmentReference(this, URI.create(SCHEME + ":" + this.id + "/" + key));
+    }
+
+    /**
+     * Remove content from the store
+     *
+     * The reference can no longer be serialized once its content has been removed.
+     *
+     * @param reference Reference to content of the store
+     * @throws IOException
+     */
+    public void remove(AttachmentReference reference) throws IOException {
+
+        // Remove the content
+        this.delete(this.getKey(reference.getUri()));
+    }
+
+    /**
+     * Open the content referred to by the given URI of a reference to content of the store
+     *
+     * @param uri URI of a reference to content of the store
+     * @return Input stream of the content
+     * @throws IOException if the store has been closed or does not hold the content
+     */
+    InputStream open(URI uri) throws IOException {
+
+        // Check that the store is open
+        if (this.closed) {
+            throw new IOException("The attachment store of " + uri + " has been closed");
+        }
+
+        // Open the content
+        InputStream is = this.read(this.getKey(uri));
+        if (is == null) {
+            throw new IOException("The attachment " + uri + " has been removed from its store");
+        }
+
+        return is;
+    }
+
+    /**
+     * Get the key of the content referred to by the given URI
+     *
+     * @param uri URI of a reference to content of the store
+     * @return Key of the content
+     */
+    private String getKey(URI uri) {
+
+        // Check that the reference belongs to the store
+        String prefix = this.id + "/";
+        if (!SCHEME.equals(uri.getScheme()) || !uri.getSchemeSpecificPart().startsWith(prefix)) {
+            throw new IllegalArgumentException("The attachment " + uri + " does not belong to the store");
+        }
+
+        return uri.getSchemeSpecificPart().substring(prefix.length());
+    }
+
+    /**
+     * Release all the content of the store
+     *
+     * @throws IOException
+     */
+    protected abstract void clear() throws IOException;
+
+    /**
+     * Remove the content stored under the given key
+     *
+     * @param key Key of the content
+     * @throws IOException
+     */
+    protected abstract void delete(String key) throws IOException;
+
+    /**
+     * Open the content stored under the given key
+     *
+     * @param key Key of the content
+     * @return Input stream of the content, or null if the store does not hold content under the key
+     * @throws IOException
+     */
+    protected abstract InputStream read(String key) throws IOException;
+
+    /**
+     * Store content under the given key
+     *
+     * @param key Key of the content
+     * @param is Input stream of the content
+     * @throws IOException
+     */
+    protected abstract void write(String key, InputStream is) throws IOException;
+}
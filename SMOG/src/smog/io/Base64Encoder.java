@@ -0,0 +1,133 @@
+package smog.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+/**
+ * Base64Encoder encodes binary content in Base64 directly into a character stream.
+ *
+ * The content is read in chunks whose size is a multiple of three bytes, so that each chunk is encoded independently
+ * of the others and padding only occurs at the end of the content. The memory used is that of one chunk and of its
+ * encoded characters, whatever the size of the content. The encoded content has no line separators, like the one of
+ * Base64.encodeBase64String().
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class Base64Encoder {
+
+    // Number of bytes encoded at a time, which is a multiple of three
+    static final int CHUNK_SIZE = 48 * 1024;
+
+    // Base64 alphabet
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    /**
+     * Base64Encoder constructor
+     */
+    private Base64Encoder() {
+
+        // The encoder only has static methods
+    }
+
+    /**
+     * Encode the content of an input stream in Base64 and write it to a writer
+     *
+     * The input stream is read to its end but not closed, and the writer is neither flushed nor closed.
+     *
+     * @param is Input stream whose content needs to be encoded
+     * @param writer Writer to which the encoded content will be written
+     * @return Number of bytes that have been encoded
+     * @throws IOException
+     */
+    public static long encode(InputStream is, Writer writer) throws IOException {
+
+        // Chunk of content and its encoded characters
+        byte[] chunk = new byte[CHUNK_SIZE];
+        char[] encoded = new char[getEncodedLength(CHUNK_SIZE)];
+
+        // Encode the content chunk by chunk
+        long total = 0;
+        int length;
+        while ((length = fill(is, chunk)) > 0) {
+            writer.write(encoded, 0, encode(chunk, 0, length, encoded, 0));
+            total += length;
+        }
+
+        return total;
+    }
+
+    /**
+     * Encode bytes in Base64
+     *
+     * Padding is added when the number of bytes is not a multiple of three.
+     *
+     * @param src Bytes that need to be encoded
+     * @param offset Position of the first byte that needs to be encoded
+     * @param length Number of bytes that need to be encoded
+     * @param dst Array to which the encoded characters will be written
+     * @param dstOffset Position in the array at which the encoded characters will be written
+     * @return Number of encoded characters
+     */
+    static int encode(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+
+        // Encode the complete groups of three bytes
+        int end = offset + length - length % 3;
+        int position = dstOffset;
+        for (int i = offset; i < end; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            dst[position++] = ALPHABET[bits >>> 18];
+            dst[position++] = ALPHABET[(bits >>> 12) & 0x3f];
+            dst[position++] = ALPHABET[(bits >>> 6) & 0x3f];
+            dst[position++] = ALPHABET[bits & 0x3f];
+        }
+
+        // Encode the remaining bytes with padding
+        int remaining = length % 3;
+        if (remaining > 0) {
+            int bits = (src[end] & 0xff) << 16 | (remaining == 2 ? (src[end + 1] & 0xff) << 8 : 0);
+            dst[position++] = ALPHABET[bits >>> 18];
+            dst[position++] = ALPHABET[(bits >>> 12) & 0x3f];
+            dst[position++] = remaining == 2 ? ALPHABET[(bits >>> 6) & 0x3f] : '=';
+            dst[position++] = '=';
+        }
+
+        return position - dstOffset;
+    }
+
+    /**
+     * Get the number of characters of the Base64 encoding of the given number of bytes
+     *
+     * @param length Number of bytes
+     * @return Number of encoded characters
+     */
+    static int getEncodedLength(int length) {
+
+        // Each group of three bytes, padded or not, is encoded as four characters
+        return (length + 2) / 3 * 4;
+    }
+
+    /**
+     * Read bytes from an input stream until the buffer is full or the end of the stream is reached
+     *
+     * @param is Input stream from which bytes are read
+     * @param buffer Buffer that needs to be filled
+     * @return Number of bytes read, which is less than the size of the buffer only at the end of the stream
+     * @throws IOException
+     */
+    static int fill(InputStream is, byte[] buffer) throws IOException {
+
+        // Read until the buffer is full
+        int length = 0;
+        while (length < buffer.length) {
+            int read = is.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,319 @@
+package smog.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * CDataEscapingInputStream reads an XML document in which the CDATA sections are replaced by the equivalent escaped
+ * text, so that XML parsers which keep a whole CDATA section in memory read its content in chunks instead
+ *
+ * The document must be in an encoding in which the markup characters are single bytes, such as UTF-8 or ISO-8859-1.
+ * Documents in UTF-16 are read unchanged. Comments and processing instructions are left as they are. As the CDATA
+ * delimiters are removed and some characters are escaped, the columns of the lines holding CDATA sections differ from
+ * those of the original document.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class CDataEscapingInputStream extends FilterInputStream {
+
+    // Markup recognised in the document
+    private static final byte[] CDATA_START = "<![CDATA[".getBytes();
+    private static final byte[] CDATA_END = "]]>".getBytes();
+    private static final byte[] COMMENT_START = "<!--".getBytes();
+    private static final byte[] COMMENT_END = "-->".getBytes();
+    private static final byte[] PI_START = "<?".getBytes();
+    private static final byte[] PI_END = "?>".getBytes();
+
+    // Escaped characters of the CDATA sections
+    private static final byte[] ESCAPED_AMPERSAND = "&amp;".getBytes();
+    private static final byte[] ESCAPED_GREATER_THAN = "&gt;".getBytes();
+    private static final byte[] ESCAPED_LESS_THAN = "&lt;".getBytes();
+
+    // Size of the buffer of bytes read from the document
+    private static final int BUFFER_SIZE = 8192;
+
+    // Class attributes
+    private final byte[] buffer;
+    private int count;
+    private boolean endOfStream;
+    private byte[] escaped;
+    private int escapedPosition;
+    private byte[] markupEnd;
+    private boolean passThrough;
+    private int position;
+    private boolean started;
+
+    /**
+     * CDataEscapingInputStream constructor
+     *
+     * @param is Input stream holding the XML document
+     */
+    public CDataEscapingInputStream(InputStream is) {
+
+        // Initialise the parent class
+        super(is);
+
+        // Initialise class attributes
+        this.buffer = new byte[BUFFER_SIZE];
+        this.count = 0;
+        this.endOfStream = false;
+        this.escaped = null;
+        this.escapedPosition = 0;
+        this.markupEnd = null;
+        this.passThrough = false;
+        this.position = 0;
+        this.started = false;
+    }
+
+    @Override
+    public int available() throws IOException {
+
+        // Only the buffered bytes are known to be available
+        return this.count - this.position;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+
+        // Marks are not supported
+    }
+
+    @Override
+    public boolean markSupported() {
+
+        // Marks are not supported
+        return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        // Read a single byte
+        byte[] b = new byte[1];
+        int read = this.read(b, 0, 1);
+        return read == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        // Check the arguments
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        // Recognise UTF-16 documents before reading the document
+        if (!this.started) {
+            this.start();
+        }
+
+        int written = 0;
+
+        while (written < len) {
+
+            // Write what is left of an escaped character
+            if (this.escaped != null) {
+
+                int length = Math.min(this.escaped.length - this.escapedPosition, len - written);
+                System.arraycopy(this.escaped, this.escapedPosition, b, off + written, length);
+                written += length;
+                this.escapedPosition += length;
+
+                if (this.escapedPosition == this.escaped.length) {
+                    this.escaped = null;
+                }
+
+                continue;
+            }
+
+            // Make sure that the longest markup can be recognised at the current position
+            if (this.count - this.position < CDATA_START.length && !this.fill(CDATA_START.length)) {
+                break;
+            }
+
+            // Copy UTF-16 documents unchanged
+            if (this.passThrough) {
+                int length = Math.min(this.count - this.position, len - written);
+                System.arraycopy(this.buffer, this.position, b, off + written, length);
+                written += length;
+                this.position += length;
+                continue;
+            }
+
+            byte current = this.buffer[this.position];
+
+            if (this.markupEnd == CDATA_END) {
+
+                // Leave the CDATA section at its end
+                if (this.startsWith(CDATA_END)) {
+                    this.position += CDATA_END.length;
+                    this.markupEnd = null;
+                    continue;
+                }
+
+                // Escape the characters which cannot be written as is in text, '>' included as it may follow "]]" once
+                // adjacent CDATA sections are joined
+                if (current == '&' || current == '<' || current == '>') {
+                    this.escaped = current == '&' ? ESCAPED_AMPERSAND :
+                            current == '<' ? ESCAPED_LESS_THAN : ESCAPED_GREATER_THAN;
+                    this.escapedPosition = 0;
+                    this.position++;
+                    continue;
+                }
+
+            } else if (this.markupEnd != null) {
+
+                // Leave the comment or the processing instruction at its end
+                if (this.startsWith(this.markupEnd)) {
+                    int length = Math.min(this.markupEnd.length, len - written);
+                    System.arraycopy(this.buffer, this.position, b, off + written, length);
+                    written += length;
+                    this.position += this.markupEnd.length;
+
+                    // Write the rest of the end of the markup on the next read
+                    if (length < this.markupEnd.length) {
+                        this.escaped = this.markupEnd;
+                        this.escapedPosition = length;
+                    }
+
+                    this.markupEnd = null;
+                    continue;
+                }
+
+            } else if (current == '<') {
+
+                // Enter CDATA sections without writing their start
+                if (this.startsWith(CDATA_START)) {
+                    this.position += CDATA_START.length;
+                    this.markupEnd = CDATA_END;
+                    continue;
+                }
+
+                // Enter comments and processing instructions, which may hold markup that must not be replaced
+                if (this.startsWith(COMMENT_START)) {
+                    this.escaped = COMMENT_START;
+                    this.escapedPosition = 0;
+                    this.position += COMMENT_START.length;
+                    this.markupEnd = COMMENT_END;
+                    continue;
+                }
+
+                if (this.startsWith(PI_START)) {
+                    this.escaped = PI_START;
+                    this.escapedPosition = 0;
+                    this.position += PI_START.length;
+                    this.markupEnd = PI_END;
+                    continue;
+                }
+            }
+
+            // Copy the byte unchanged
+            b[off + written] = current;
+            written++;
+            this.position++;
+        }
+
+        return written == 0 ? -1 : written;
+    }
+
+    @Override
+    public void reset() throws IOException {
+
+        // Marks are not supported
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+
+        // Skip the bytes by reading them, so that CDATA sections are still recognised
+        byte[] skipped = new byte[(int) Math.min(n, BUFFER_SIZE)];
+        long total = 0;
+
+        while (total < n) {
+            int read = this.read(skipped, 0, (int) Math.min(n - total, skipped.length));
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+
+        return total;
+    }
+
+    /**
+     * Read bytes from the document until the given number of bytes is buffered or the end of the document is reached
+     *
+     * @param length Number of bytes needed in the buffer
+     * @return Whether bytes are left in the buffer
+     * @throws IOException
+     */
+    private boolean fill(int length) throws IOException {
+
+        // Move the remaining bytes to the beginning of the buffer
+        if (this.position > 0) {
+            System.arraycopy(this.buffer, this.position, this.buffer, 0, this.count - this.position);
+            this.count -= this.position;
+            this.position = 0;
+        }
+
+        // Read bytes until enough bytes are buffered
+        while (this.count < length && !this.endOfStream) {
+            int read = this.in.read(this.buffer, this.count, this.buffer.length - this.count);
+            if (read == -1) {
+                this.endOfStream = true;
+            } else {
+                this.count += read;
+            }
+        }
+
+        return this.count > 0;
+    }
+
+    /**
+     * Check if the document is in UTF-16, in which case it is read unchanged
+     *
+     * @throws IOException
+     */
+    private void start() throws IOException {
+
+        // Look at the first two bytes of the document
+        this.started = true;
+        this.fill(2);
+
+        if (this.count >= 2) {
+            int first = this.buffer[0] & 0xff;
+            int second = this.buffer[1] & 0xff;
+            this.passThrough = (first == 0xfe && second == 0xff) || (first == 0xff && second == 0xfe)
+                    || (first == 0 && second == '<') || (first == '<' && second == 0);
+        }
+    }
+
+    /**
+     * Check if the buffered bytes at the current position start with the given markup
+     *
+     * @param markup Markup to look for
+     * @return Whether the buffered bytes start with the markup
+     */
+    private boolean startsWith(byte[] markup) {
+
+        // Check if enough bytes are buffered
+        if (this.count - this.position < markup.length) {
+            return false;
+        }
+
+        // Compare the bytes with the markup
+        for (int i = 0; i < markup.length; i++) {
+            if (this.buffer[this.position + i] != markup[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
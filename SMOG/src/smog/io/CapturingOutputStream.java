@@ -0,0 +1,93 @@
+package smog.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * CapturingOutputStream forwards content to an output stream while keeping a copy of it, as long as the content does
+ * not exceed a given size
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class CapturingOutputStream extends FilterOutputStream {
+
+    // Class attributes
+    private ByteArrayOutputStream capture;
+    private final int limit;
+
+    /**
+     * CapturingOutputStream constructor
+     *
+     * @param os Output stream to which content is forwarded
+     * @param limit Maximum number of bytes that will be captured
+     */
+    public CapturingOutputStream(OutputStream os, int limit) {
+
+        // Initialise the parent class
+        super(os);
+
+        // Initialise class attributes
+        this.capture = new ByteArrayOutputStream();
+        this.limit = limit;
+    }
+
+    /**
+     * Get the captured content
+     *
+     * @return Captured content or null if the content exceeded the capture limit
+     */
+    public byte[] getCapturedContent() {
+
+        // Check if the content has been captured
+        if (this.capture == null) {
+            return null;
+        }
+
+        return this.capture.toByteArray();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+
+        // Forward the byte
+        this.out.write(b);
+
+        // Keep a copy of the byte
+        this.capture(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+        // Forward the bytes
+        this.out.write(b, off, len);
+
+        // Keep a copy of the bytes
+        this.capture(b, off, len);
+    }
+
+    /**
+     * Keep a copy of written bytes, giving up once the capture limit is exceeded
+     *
+     * @param b Written bytes
+     * @param off Offset of the written bytes in the array
+     * @param len Number of written bytes
+     */
+    private void capture(byte[] b, int off, int len) {
+
+        // Check if the content is still being captured
+        if (this.capture == null) {
+            return;
+        }
+
+        // Stop capturing content that is too large
+        if (this.capture.size() + len > this.limit) {
+            this.capture = null;
+            return;
+        }
+
+        this.capture.write(b, off, len);
+    }
+}
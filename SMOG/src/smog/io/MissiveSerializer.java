@@ -0,0 +1,1023 @@
+package smog.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.apache.xmlbeans.CDataBookmark;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.DefaultHandler2;
+
+/**
+ * MissiveSerializer writes the XML content of a missive document to a character or byte stream in a single pass.
+ *
+ * The XML Beans tree is streamed through its SAX saver, which assigns namespace prefixes exactly like xmlText() does,
+ * and the events are formatted on the fly. No intermediate string, byte array or JDOM document is built.
+ *
+ * The pretty layout is the one of the JDOM pretty printer (two space indentation, CRLF line separators and trimmed text
+ * content). The compact layout writes elements back to back and keeps the content of text only elements as is.
+ *
+ * Binary content held as an {@link AttachmentReference} is encoded in Base64 from its file straight into the output.
+ * References are only expanded in the elements holding the data of attachments, the data of an attachment segment and
+ * the data of a simple test request, and only when they are among the references given to the serializer. Processing
+ * instructions of attachment references found anywhere else are dropped.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveSerializer {
+
+    // XML declaration written at the beginning of each document
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    // Indentation and line separator of the pretty print layout
+    private static final String INDENT = "  ";
+    private static final String LINE_SEPARATOR = "\r\n";
+
+    // Size of the character buffer used to write content to the underlying writer
+    private static final int BUFFER_SIZE = 8192;
+
+    // Elements whose content may be an attachment reference, as local names of the parent and of the element
+    private static final Set<String> ATTACHMENT_ELEMENTS = new HashSet<>(Arrays.asList("Contents/data",
+            "SimpleTestRequest/Data"));
+
+    // Class attributes
+    private long attachmentCount;
+    private final HashMap<String, AttachmentReference> attachmentReferences;
+    private final SerializationMode mode;
+    private final HashMap<String, String> suggestedPrefixes;
+
+    /**
+     * MissiveSerializer constructor using the pretty layout
+     *
+     * @param suggestedPrefixes Map of namespace URIs to the prefixes that should be used for them
+     */
+    public MissiveSerializer(Map<String, String> suggestedPrefixes) {
+
+        // Initialise the serializer
+        this(suggestedPrefixes, SerializationMode.PRETTY);
+    }
+
+    /**
+     * MissiveSerializer constructor
+     *
+     * @param suggestedPrefixes Map of namespace URIs to the prefixes that should be used for them
+     * @param mode Layout of the serialized content
+     */
+    public MissiveSerializer(Map<String, String> suggestedPrefixes, SerializationMode mode) {
+
+        // Initialise the serializer without attachment references
+        this(suggestedPrefixes, mode, Collections.<AttachmentReference>emptyList());
+    }
+
+    /**
+     * MissiveSerializer constructor
+     *
+     * @param suggestedPrefixes Map of namespace URIs to the prefixes that should be used for them
+     * @param mode Layout of the serialized content
+     * @param attachmentReferences Attachment references whose content is written in place of their processing
+     * instruction
+     */
+    public MissiveSerializer(Map<String, String> suggestedPrefixes, SerializationMode mode,
+            Iterable<AttachmentReference> attachmentReferences) {
+
+        // Initialise class attributes
+        this.attachmentCount = 0;
+        this.attachmentReferences = new HashMap<>();
+        this.mode = mode;
+        this.suggestedPrefixes = new HashMap<>(suggestedPrefixes);
+
+        // Index the attachment references by ID
+        for (AttachmentReference attachmentReference : attachmentReferences) {
+            this.attachmentReferences.put(attachmentReference.getId(), attachmentReference);
+        }
+    }
+
+    /**
+     * Get the number of attachment references whose content has been written by the last serialization
+     *
+     * @return Number of attachments written
+     */
+    public long getAttachmentCount() {
+
+        // Get the attachment count
+        return this.attachmentCount;
+    }
+
+    /**
+     * Write the XML content of the given object to an output stream using UTF-8 encoding
+     *
+     * The output stream is flushed but not closed.
+     *
+     * @param xmlObject XML object that needs to be serialized
+     * @param os Output stream to which content will be written
+     * @throws IOException
+     */
+    public void serialize(XmlObject xmlObject, OutputStream os) throws IOException {
+
+        // Writer encoding characters directly into the output stream
+        Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+
+        // Serialize the XML object
+        this.serialize(xmlObject, writer);
+
+        // Push the encoded bytes to the output stream
+        writer.flush();
+    }
+
+    /**
+     * Write the XML content of the given object to a writer
+     *
+     * The writer is flushed but not closed.
+     *
+     * @param xmlObject XML object that needs to be serialized
+     * @param writer Writer to which content will be written
+     * @throws IOException
+     */
+    public void serialize(XmlObject xmlObject, Writer writer) throws IOException {
+
+        // Serialize the whole document
+        this.serialize(xmlObject, writer, null);
+    }
+
+    /**
+     * Write the XML content of the given object as an element of a larger document to an output stream using UTF-8
+     * encoding
+     *
+     * The XML declaration is not written and the document element is written under the given local name, with its
+     * prefix and namespace unchanged. The output stream is flushed but not closed.
+     *
+     * @param xmlObject XML object that needs to be serialized
+     * @param elementName Local name under which the document element is written
+     * @param os Output stream to which content will be written
+     * @throws IOException
+     */
+    public void serializeElement(XmlObject xmlObject, String elementName, OutputStream os) throws IOException {
+
+        // Writer encoding characters directly into the output stream
+        Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+
+        // Serialize the XML object as an element
+        this.serialize(xmlObject, writer, elementName);
+
+        // Push the encoded bytes to the output stream
+        writer.flush();
+    }
+
+    /**
+     * Write the XML content of the given object to a writer, either as a document or as an element
+     *
+     * @param xmlObject XML object that needs to be serialized
+     * @param writer Writer to which content will be written
+     * @param elementName Local name under which the document element is written without XML declaration, or null
+     * to write the whole document
+     * @throws IOException
+     */
+    private void serialize(XmlObject xmlObject, Writer writer, String elementName) throws IOException {
+
+        // XML options instance
+        XmlOptions options = new XmlOptions();
+
+        // Use the same namespace prefixes as the text saver
+        options.setSaveSuggestedPrefixes(this.suggestedPrefixes);
+
+        // Cursor walking the XML Beans store alongside the SAX saver
+        XmlCursor cursor = xmlObject.newCursor();
+
+        // Handler formatting the SAX events
+        SerializationHandler handler = new SerializationHandler(writer, cursor,
+                this.mode == SerializationMode.PRETTY, elementName, this.attachmentReferences);
+
+        try {
+
+            // Stream the XML Beans tree
+            xmlObject.save(handler, handler, options);
+
+            // Write any remaining buffered content
+            handler.flush();
+
+            // Number of attachments written
+            this.attachmentCount = handler.attachmentCount;
+
+        } catch (SAXException ex) {
+
+            // Report write errors raised from within the handler
+            if (ex.getException() instanceof IOException) {
+                throw (IOException) ex.getException();
+            }
+
+            throw new IOException(ex.getMessage(), ex);
+
+        } finally {
+
+            // Dispose cursor
+            cursor.dispose();
+        }
+    }
+
+    /**
+     * ElementFrame holds the formatting state of an element that is currently open
+     */
+    private static class ElementFrame {
+
+        // Class attributes
+        private final boolean hasChildElements;
+        private final String localName;
+        private final String qName;
+        private final boolean textOnly;
+        private boolean startTagClosed;
+
+        /**
+         * ElementFrame constructor
+         *
+         * @param qName Qualified name of the element
+         * @param hasChildElements Whether the element has child elements
+         * @param textOnly Whether the content of the element is only made of text
+         */
+        private ElementFrame(String qName, boolean hasChildElements, boolean textOnly) {
+
+            // Initialise class attributes
+            this.hasChildElements = hasChildElements;
+            this.localName = qName.substring(qName.indexOf(':') + 1);
+            this.qName = qName;
+            this.textOnly = textOnly;
+            this.startTagClosed = false;
+        }
+    }
+
+    /**
+     * SerializationHandler formats the SAX events of the XML Beans saver
+     */
+    private static class SerializationHandler extends DefaultHandler2 {
+
+        // Order namespace declarations by prefix as JDOM does
+        private static final Comparator<String[]> PREFIX_ORDER = new Comparator<String[]>() {
+
+            @Override
+            public int compare(String[] ns1, String[] ns2) {
+                return ns1[0].compareTo(ns2[0]);
+            }
+        };
+
+        // Class attributes
+        private long attachmentCount;
+        private final Map<String, AttachmentReference> attachmentReferences;
+        private final char[] buffer;
+        private final XmlCursor cursor;
+        private final String elementName;
+        private final Deque<ElementFrame> frames;
+        private final StringBuilder heldWhitespace;
+        private final ArrayList<String[]> pendingNamespaces;
+        private final boolean pretty;
+        private final Writer writer;
+        private boolean cdataOpen;
+        private boolean carriageReturn;
+        private boolean inText;
+        private int position;
+        private int remainingTokenChars;
+        private boolean textStarted;
+        private boolean tokenIsCData;
+
+        /**
+         * SerializationHandler constructor
+         *
+         * @param writer Writer to which content will be written
+         * @param cursor Cursor positioned at the start of the XML object being saved
+         * @param pretty Whether the pretty layout should be used
+         * @param elementName Local name of the document element when it is written as an element, or null
+         * @param attachmentReferences Attachment references that can be written, by ID
+         */
+        private SerializationHandler(Writer writer, XmlCursor cursor, boolean pretty, String elementName,
+                Map<String, AttachmentReference> attachmentReferences) {
+
+            // Initialise class attributes
+            this.attachmentCount = 0;
+            this.attachmentReferences = attachmentReferences;
+            this.buffer = new char[BUFFER_SIZE];
+            this.cursor = cursor;
+            this.elementName = elementName;
+            this.frames = new ArrayDeque<>();
+            this.heldWhitespace = new StringBuilder();
+            this.pendingNamespaces = new ArrayList<>();
+            this.pretty = pretty;
+            this.writer = writer;
+            this.cdataOpen = false;
+            this.carriageReturn = false;
+            this.inText = false;
+            this.position = 0;
+            this.remainingTokenChars = 0;
+            this.textStarted = false;
+            this.tokenIsCData = false;
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+
+            // Elements of a larger document have no XML declaration
+            if (this.elementName != null) {
+                return;
+            }
+
+            // Write the XML declaration
+            this.write(XML_DECLARATION);
+            this.newLine(0);
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+
+            // Terminate the line of the root element
+            this.newLine(0);
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+
+            // Namespace declared by the saver on the next element
+            this.pendingNamespaces.add(new String[] {prefix, uri});
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+
+            // Terminate the text preceding the element
+            this.endText();
+
+            // Close the start tag of the parent element
+            ElementFrame parent = this.frames.peek();
+            if (parent != null) {
+                this.closeStartTag(parent);
+                this.newLine(this.frames.size());
+            }
+
+            // Move the cursor to the element being started and check for child elements and other child nodes
+            while (!this.cursor.isStart()) {
+                this.cursor.toNextToken();
+            }
+            this.cursor.push();
+            boolean hasChildElements = false;
+            boolean textOnly = true;
+            this.cursor.toNextToken();
+            while (!this.cursor.isEnd()) {
+                if (this.cursor.isStart()) {
+                    hasChildElements = true;
+                    textOnly = false;
+                    break;
+                }
+                if (this.cursor.isComment() || (this.cursor.isProcinst() &&
+                        !AttachmentReference.TARGET.equals(this.cursor.getName().getLocalPart()))) {
+                    textOnly = false;
+                }
+                this.cursor.toNextToken();
+            }
+            this.cursor.pop();
+            this.cursor.toNextToken();
+
+            // Element name, which is replaced for the document element of an element of a larger document
+            String name = qName;
+            if (parent == null && this.elementName != null) {
+                name = qName.substring(0, qName.indexOf(':') + 1) + this.elementName;
+            }
+            this.write('<');
+            this.write(name);
+
+            // Namespace declarations
+            this.writeNamespaces(name);
+
+            // Attributes other than namespace declarations
+            for (int i = 0; i < attributes.getLength(); i++) {
+
+                // Attribute name
+                String attributeName = attributes.getQName(i);
+
+                // Skip namespace declarations which have already been written
+                if (attributeName.equals("xmlns") || attributeName.startsWith("xmlns:")) {
+                    continue;
+                }
+
+                this.write(' ');
+                this.write(attributeName);
+                this.write("=\"");
+                this.writeEscapedAttribute(attributes.getValue(i));
+                this.write('"');
+            }
+
+            // Keep track of the element
+            ElementFrame frame = new ElementFrame(name, hasChildElements, textOnly);
+            this.frames.push(frame);
+
+            // Elements with child nodes other than text are always closed on their own line
+            if (!textOnly) {
+                this.closeStartTag(frame);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+
+            // Terminate the text content of the element
+            this.endText();
+
+            // Element being ended
+            ElementFrame frame = this.frames.pop();
+
+            if (!frame.startTagClosed) {
+
+                // Element without content
+                this.write(this.pretty ? " />" : "/>");
+
+            } else {
+
+                // Elements with child elements have their end tag on a new line
+                if (!frame.textOnly) {
+                    this.newLine(this.frames.size());
+                }
+
+                this.write("</");
+                this.write(frame.qName);
+                this.write('>');
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+
+            // Text outside of the root element is not written
+            ElementFrame frame = this.frames.peek();
+
+            // Process the characters
+            for (int i = start; i < start + length; i++) {
+
+                // Move to the next text token of the store when the current one has been consumed
+                if (this.remainingTokenChars == 0) {
+                    this.nextTextToken(frame);
+                }
+                this.remainingTokenChars--;
+
+                // Skip text outside of the root element
+                if (frame == null) {
+                    continue;
+                }
+
+                // Current character
+                char c = ch[i];
+
+                // Whitespace of elements without child elements is kept in the compact layout
+                boolean significant = !isWhitespace(c) || (!this.pretty && !frame.hasChildElements);
+
+                if (!significant) {
+
+                    // Leading whitespace is trimmed and other whitespace is held until more content follows
+                    if (this.textStarted) {
+                        this.heldWhitespace.append(c);
+                    }
+
+                } else {
+
+                    // Start the text on its first significant character
+                    if (!this.textStarted) {
+                        this.startText(frame);
+                    }
+
+                    // Write whitespace that was held back
+                    for (int j = 0; j < this.heldWhitespace.length(); j++) {
+                        this.writeText(this.heldWhitespace.charAt(j));
+                    }
+                    this.heldWhitespace.setLength(0);
+
+                    // Write the character
+                    this.writeText(c);
+                }
+            }
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) throws SAXException {
+
+            // Terminate the text preceding the comment
+            this.endText();
+
+            // Comments are only written inside the root element
+            ElementFrame frame = this.frames.peek();
+            if (frame != null) {
+
+                // Write the comment on its own line
+                this.closeStartTag(frame);
+                this.newLine(this.frames.size());
+                this.write("<!--");
+                this.write(this.pretty ? trim(ch, start, length) : new String(ch, start, length));
+                this.write("-->");
+            }
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+
+            // Terminate the text preceding the processing instruction
+            this.endText();
+
+            // Attachment references are replaced by the encoded content of their file in attachment elements only,
+            // and dropped elsewhere
+            ElementFrame frame = this.frames.peek();
+            if (AttachmentReference.TARGET.equals(target)) {
+                if (frame != null && this.isAttachmentElement()) {
+                    AttachmentReference reference = data != null ? this.attachmentReferences.get(data.trim()) : null;
+                    if (reference == null) {
+                        throw new SAXException("Unknown attachment reference in element " + frame.qName);
+                    }
+                    this.writeAttachment(frame, reference);
+                }
+                return;
+            }
+
+            // Processing instructions are only written inside the root element
+            if (frame != null) {
+
+                // Write the processing instruction on its own line
+                this.closeStartTag(frame);
+                this.newLine(this.frames.size());
+                this.write("<?");
+                this.write(target);
+                if (data != null && !data.isEmpty()) {
+                    this.write(' ');
+                    this.write(data);
+                }
+                this.write("?>");
+            }
+        }
+
+        /**
+         * Write the content of the buffer to the underlying writer
+         *
+         * @throws SAXException
+         */
+        private void flush() throws SAXException {
+
+            try {
+
+                // Write the buffered characters
+                this.writer.write(this.buffer, 0, this.position);
+                this.position = 0;
+
+            } catch (IOException ex) {
+                throw new SAXException(ex);
+            }
+        }
+
+        /**
+         * Check if the given character is an XML whitespace character
+         *
+         * @param c Character that needs to be checked
+         * @return Whether the character is an XML whitespace character
+         */
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+        }
+
+        /**
+         * Check if the current element holds the data of an attachment
+         *
+         * @return Whether the content of the current element may be an attachment reference
+         */
+        private boolean isAttachmentElement() {
+
+            // Current element and its parent
+            Iterator<ElementFrame> openFrames = this.frames.iterator();
+            ElementFrame frame = openFrames.next();
+            ElementFrame parent = openFrames.hasNext() ? openFrames.next() : null;
+
+            return parent != null && ATTACHMENT_ELEMENTS.contains(parent.localName + "/" + frame.localName);
+        }
+
+        /**
+         * Remove leading and trailing XML whitespace characters from a character sequence
+         *
+         * @param ch Characters that need to be trimmed
+         * @param start Start position in the character array
+         * @param length Number of characters to use from the character array
+         * @return Trimmed string
+         */
+        private static String trim(char[] ch, int start, int length) {
+
+            // Skip leading whitespace
+            int begin = start;
+            int end = start + length;
+            while (begin < end && isWhitespace(ch[begin])) {
+                begin++;
+            }
+
+            // Skip trailing whitespace
+            while (end > begin && isWhitespace(ch[end - 1])) {
+                end--;
+            }
+
+            return new String(ch, begin, end - begin);
+        }
+
+        /**
+         * Close the start tag of an element if it is still open
+         *
+         * @param frame Element whose start tag needs to be closed
+         * @throws SAXException
+         */
+        private void closeStartTag(ElementFrame frame) throws SAXException {
+
+            // Check if the start tag is still open
+            if (!frame.startTagClosed) {
+                this.write('>');
+                frame.startTagClosed = true;
+            }
+        }
+
+        /**
+         * Terminate the text run currently being written
+         *
+         * @throws SAXException
+         */
+        private void endText() throws SAXException {
+
+            // Close CDATA section of the text
+            if (this.cdataOpen) {
+                this.write("]]>");
+                this.cdataOpen = false;
+            }
+
+            // Trailing whitespace is trimmed
+            this.heldWhitespace.setLength(0);
+            this.carriageReturn = false;
+            this.inText = false;
+            this.textStarted = false;
+        }
+
+        /**
+         * Move the cursor to the next text token of the store
+         *
+         * @param frame Element containing the text
+         * @throws SAXException
+         */
+        private void nextTextToken(ElementFrame frame) throws SAXException {
+
+            // Find the text token
+            while (!this.cursor.isText()) {
+                this.cursor.toNextToken();
+            }
+
+            // Check if the text token needs to be written as a CDATA section
+            boolean isCData = this.cursor.getBookmark(CDataBookmark.CDATA_BOOKMARK.getKey()) != null;
+
+            // Move past the text token, keeping its length
+            this.remainingTokenChars = this.cursor.toNextChar(Integer.MAX_VALUE);
+
+            // Switch between CDATA and character data within a text run
+            if (this.inText && this.textStarted && frame != null && isCData != this.tokenIsCData) {
+
+                // Whitespace held at the end of a CDATA section belongs to it
+                if (this.cdataOpen) {
+                    this.write(this.heldWhitespace.toString());
+                    this.heldWhitespace.setLength(0);
+                    this.write("]]>");
+                    this.cdataOpen = false;
+                }
+
+                // Open the CDATA section of the new token
+                if (isCData) {
+                    for (int j = 0; j < this.heldWhitespace.length(); j++) {
+                        this.writeText(this.heldWhitespace.charAt(j));
+                    }
+                    this.heldWhitespace.setLength(0);
+                    this.write("<![CDATA[");
+                    this.cdataOpen = true;
+                }
+            }
+
+            this.tokenIsCData = isCData;
+            this.inText = true;
+        }
+
+        /**
+         * Write a line separator followed by the indentation for the given depth
+         *
+         * Nothing is written in the compact layout.
+         *
+         * @param depth Depth of the content in the element tree
+         * @throws SAXException
+         */
+        private void newLine(int depth) throws SAXException {
+
+            // Line breaks are only used in the pretty layout
+            if (!this.pretty) {
+                return;
+            }
+
+            // Line separator
+            this.write(LINE_SEPARATOR);
+
+            // Indentation
+            for (int i = 0; i < depth; i++) {
+                this.write(INDENT);
+            }
+        }
+
+        /**
+         * Start writing the text content of an element on its first significant character
+         *
+         * @param frame Element containing the text
+         * @throws SAXException
+         */
+        private void startText(ElementFrame frame) throws SAXException {
+
+            // Text of elements with child elements is written on its own line
+            if (frame.textOnly) {
+                this.closeStartTag(frame);
+            } else {
+                this.newLine(this.frames.size());
+            }
+
+            // Open the CDATA section
+            if (this.tokenIsCData) {
+                this.write("<![CDATA[");
+                this.cdataOpen = true;
+            }
+
+            this.textStarted = true;
+        }
+
+        /**
+         * Write the Base64 encoded content of the file of an attachment reference as text of the current element
+         *
+         * The content is written as a CDATA section when the processing instruction holding the reference has a CDATA
+         * bookmark. The encoded content goes straight to the underlying writer chunk by chunk.
+         *
+         * @param frame Element containing the reference
+         * @param reference Reference to the file whose content needs to be written
+         * @throws SAXException
+         */
+        private void writeAttachment(ElementFrame frame, AttachmentReference reference) throws SAXException {
+
+            // Move the cursor past the processing instruction, checking if it needs to be written as a CDATA section
+            while (!this.cursor.isProcinst()) {
+                this.cursor.toNextToken();
+            }
+            boolean isCData = this.cursor.getBookmark(CDataBookmark.CDATA_BOOKMARK.getKey()) != null;
+            this.cursor.toNextToken();
+
+            // The encoded content is written like text of the element
+            if (frame.textOnly) {
+                this.closeStartTag(frame);
+            } else {
+                this.newLine(this.frames.size());
+            }
+            if (isCData) {
+                this.write("<![CDATA[");
+            }
+
+            try {
+
+                // Stream the encoded content after the buffered characters
+                this.flush();
+                reference.writeEncoded(this.writer);
+                this.attachmentCount++;
+
+            } catch (IOException ex) {
+                throw new SAXException(ex);
+            }
+
+            // Close the CDATA section
+            if (isCData) {
+                this.write("]]>");
+            }
+        }
+
+        /**
+         * Write a string to the buffer
+         *
+         * @param s String that needs to be written
+         * @throws SAXException
+         */
+        private void write(String s) throws SAXException {
+
+            // Copy the string in chunks that fit the buffer
+            int offset = 0;
+            while (offset < s.length()) {
+
+                // Flush the buffer when it is full
+                if (this.position == this.buffer.length) {
+                    this.flush();
+                }
+
+                // Number of characters that can be copied
+                int count = Math.min(s.length() - offset, this.buffer.length - this.position);
+                s.getChars(offset, offset + count, this.buffer, this.position);
+                this.position += count;
+                offset += count;
+            }
+        }
+
+        /**
+         * Write a character to the buffer
+         *
+         * @param c Character that needs to be written
+         * @throws SAXException
+         */
+        private void write(char c) throws SAXException {
+
+            // Flush the buffer when it is full
+            if (this.position == this.buffer.length) {
+                this.flush();
+            }
+
+            this.buffer[this.position++] = c;
+        }
+
+        /**
+         * Write an attribute value, escaping characters that cannot appear in it
+         *
+         * Tabs and line breaks are written as spaces, as they are read back by an XML parser after attribute value
+         * normalisation.
+         *
+         * @param value Attribute value
+         * @throws SAXException
+         */
+        private void writeEscapedAttribute(String value) throws SAXException {
+
+            // Escape the attribute value character by character
+            for (int i = 0; i < value.length(); i++) {
+
+                // Current character
+                char c = value.charAt(i);
+
+                switch (c) {
+                    case '<':
+                        this.write("&lt;");
+                        break;
+                    case '>':
+                        this.write("&gt;");
+                        break;
+                    case '&':
+                        this.write("&amp;");
+                        break;
+                    case '"':
+                        this.write("&quot;");
+                        break;
+                    case '\r':
+                        this.write(' ');
+                        if (i + 1 < value.length() && value.charAt(i + 1) == '\n') {
+                            i++;
+                        }
+                        break;
+                    case '\t':
+                    case '\n':
+                        this.write(' ');
+                        break;
+                    default:
+                        this.write(c);
+                }
+            }
+        }
+
+        /**
+         * Write the namespace declarations of an element
+         *
+         * The namespace of the element comes first and the other namespaces are ordered by prefix.
+         *
+         * @param qName Qualified name of the element
+         * @throws SAXException
+         */
+        private void writeNamespaces(String qName) throws SAXException {
+
+            // Check if we have namespaces to declare
+            if (this.pendingNamespaces.isEmpty()) {
+                return;
+            }
+
+            // Prefix of the element
+            int colon = qName.indexOf(':');
+            String elementPrefix = colon > 0 ? qName.substring(0, colon) : "";
+
+            // Move the namespace of the element to the front
+            int first = 0;
+            for (int i = 0; i < this.pendingNamespaces.size(); i++) {
+                if (this.pendingNamespaces.get(i)[0].equals(elementPrefix)) {
+                    Collections.swap(this.pendingNamespaces, 0, i);
+                    first = 1;
+                    break;
+                }
+            }
+
+            // Order the other namespaces by prefix
+            Collections.sort(this.pendingNamespaces.subList(first, this.pendingNamespaces.size()), PREFIX_ORDER);
+
+            // Write the namespace declarations
+            for (String[] namespace : this.pendingNamespaces) {
+                this.write(" xmlns");
+                if (!namespace[0].isEmpty()) {
+                    this.write(':');
+                    this.write(namespace[0]);
+                }
+                this.write("=\"");
+                this.writeEscapedAttribute(namespace[1]);
+                this.write('"');
+            }
+
+            // The namespaces have been declared
+            this.pendingNamespaces.clear();
+        }
+
+        /**
+         * Write a text character, escaping it unless it is part of a CDATA section
+         *
+         * In the pretty layout, line breaks are normalised as an XML parser would do, so that a carriage return
+         * followed by a line feed is written as a single line separator.
+         *
+         * @param c Character that needs to be written
+         * @throws SAXException
+         */
+        private void writeText(char c) throws SAXException {
+
+            // Text is written as is in the compact layout
+            if (!this.pretty) {
+                this.writeCompactText(c);
+                return;
+            }
+
+            // Line feed which completes a line break started by a carriage return
+            boolean lineBreakEnd = this.carriageReturn && c == '\n';
+            this.carriageReturn = c == '\r';
+            if (lineBreakEnd) {
+                return;
+            }
+
+            // Content of CDATA sections is written as is
+            if (this.cdataOpen) {
+                this.write(c == '\r' ? '\n' : c);
+                return;
+            }
+
+            switch (c) {
+                case '<':
+                    this.write("&lt;");
+                    break;
+                case '>':
+                    this.write("&gt;");
+                    break;
+                case '&':
+                    this.write("&amp;");
+                    break;
+                case '\r':
+                case '\n':
+                    this.write(LINE_SEPARATOR);
+                    break;
+                default:
+                    this.write(c);
+            }
+        }
+
+        /**
+         * Write a text character of the compact layout, escaping it unless it is part of a CDATA section
+         *
+         * @param c Character that needs to be written
+         * @throws SAXException
+         */
+        private void writeCompactText(char c) throws SAXException {
+
+            // Content of CDATA sections is written as is
+            if (this.cdataOpen) {
+                this.write(c);
+                return;
+            }
+
+            switch (c) {
+                case '<':
+                    this.write("&lt;");
+                    break;
+                case '>':
+                    this.write("&gt;");
+                    break;
+                case '&':
+                    this.write("&amp;");
+                    break;
+                case '\r':
+                    this.write("&#xD;");
+                    break;
+                default:
+                    this.write(c);
+            }
+        }
+    }
+}
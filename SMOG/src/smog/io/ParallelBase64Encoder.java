@@ -0,0 +1,389 @@
+package smog.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelBase64Encoder encodes large binary content in Base64 using the threads of a fork-join pool.
+ *
+ * The content is split into chunks whose size is a multiple of three bytes, so that the encoded characters of each
+ * chunk start at a known position and chunks are encoded independently of each other by the tasks of the pool. The
+ * encoding is the same as the one of {@link Base64Encoder} and of Base64.encodeBase64String().
+ *
+ * Content read from an input stream is encoded a batch of chunks at a time, one chunk per thread of the pool, and the
+ * encoded characters of each batch are written in order to the writer once all its chunks are encoded, so that the
+ * memory used only depends on the number of threads. Files can also be encoded into a memory-mapped output file, in
+ * which case each task writes the encoding of its chunks at their own position.
+ *
+ * When the shared encoder is set, attachment references are encoded through it by the {@link MissiveSerializer}.
+ * Content no larger than one chunk is encoded by the calling thread.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class ParallelBase64Encoder {
+
+    // Default number of bytes encoded by each task, which is a multiple of three
+    static final int DEFAULT_CHUNK_SIZE = 192 * 1024;
+
+    // Maximum number of bytes of a file mapped at a time, which is a multiple of three
+    private static final long MAPPED_WINDOW_SIZE = 3L * 256 * 1024 * 1024;
+
+    // Encoder used by the serializer
+    private static volatile ParallelBase64Encoder sharedEncoder;
+
+    // Class attributes
+    private final int batchSize;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * ParallelBase64Encoder constructor
+     *
+     * @param pool Fork-join pool whose threads encode the chunks of content
+     */
+    public ParallelBase64Encoder(ForkJoinPool pool) {
+
+        // Use the default chunk size
+        this(pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * ParallelBase64Encoder constructor
+     *
+     * @param pool Fork-join pool whose threads encode the chunks of content
+     * @param chunkSize Number of bytes encoded by each task, which needs to be a positive multiple of three
+     */
+    public ParallelBase64Encoder(ForkJoinPool pool, int chunkSize) {
+
+        // Check that chunks can be encoded independently
+        if (chunkSize <= 0 || chunkSize % 3 != 0) {
+            throw new IllegalArgumentException("Chunk size " + chunkSize + " is not a positive multiple of three");
+        }
+
+        // Initialise class attributes
+        this.batchSize = chunkSize * Math.max(1, Math.min(pool.getParallelism(), Integer.MAX_VALUE / 4 / chunkSize));
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Get the encoder used by the serializer
+     *
+     * @return The shared encoder, or null when attachments are encoded by the serializing thread
+     */
+    public static ParallelBase64Encoder getSharedEncoder() {
+
+        // Get the shared encoder
+        return sharedEncoder;
+    }
+
+    /**
+     * Set the encoder used by the serializer
+     *
+     * @param encoder Encoder shared by all the missives, or null to encode attachments by the serializing thread
+     */
+    public static void setSharedEncoder(ParallelBase64Encoder encoder) {
+
+        // Set the shared encoder
+        sharedEncoder = encoder;
+    }
+
+    /**
+     * Encode the content of an input stream in Base64 and write it to a writer
+     *
+     * The input stream is read to its end but not closed, and the writer is neither flushed nor closed.
+     *
+     * @param is Input stream whose content needs to be encoded
+     * @param writer Writer to which the encoded content will be written
+     * @return Number of bytes that have been encoded
+     * @throws IOException
+     */
+    public long encode(InputStream is, Writer writer) throws IOException {
+
+        // Batch of content and its encoded characters, starting with a single chunk for small content
+        byte[] batch = new byte[this.chunkSize];
+        char[] encoded = new char[Base64Encoder.getEncodedLength(batch.length)];
+
+        // Encode the content batch by batch
+        long total = 0;
+        int length;
+        while ((length = Base64Encoder.fill(is, batch)) > 0) {
+            writer.write(encoded, 0, this.encode(batch, 0, length, encoded, 0));
+            total += length;
+
+            // Read the rest of content larger than one chunk a whole batch at a time
+            if (length == batch.length && batch.length < this.batchSize) {
+                batch = new byte[this.batchSize];
+                encoded = new char[Base64Encoder.getEncodedLength(batch.length)];
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Encode a file in Base64 into another file
+     *
+     * The output file is created or replaced, and written through memory mappings of the files.
+     *
+     * @param input Path of the file whose content needs to be encoded
+     * @param output Path of the file to which the encoded content will be written
+     * @return Number of bytes that have been encoded
+     * @throws IOException
+     */
+    public long encode(Path input, Path output) throws IOException {
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            // Encode the file window by window, as a mapping cannot exceed 2 GB
+            long size = in.size();
+            for (long position = 0; position < size; position += MAPPED_WINDOW_SIZE) {
+                int length = (int) Math.min(MAPPED_WINDOW_SIZE, size - position);
+                ByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+                ByteBuffer dst = out.map(FileChannel.MapMode.READ_WRITE, position / 3 * 4,
+                        Base64Encoder.getEncodedLength(length));
+                this.pool.invoke(new MappedEncodeTask(src, dst, 0, length, this.chunkSize));
+            }
+
+            return size;
+        }
+    }
+
+    /**
+     * Encode a byte array in Base64
+     *
+     * @param content Bytes that need to be encoded
+     * @return Encoded content
+     */
+    public String encodeToString(byte[] content) {
+
+        // Encode the whole content at once, each task writing the characters of its chunks
+        char[] encoded = new char[Base64Encoder.getEncodedLength(content.length)];
+        this.encode(content, 0, content.length, encoded, 0);
+
+        return new String(encoded);
+    }
+
+    /**
+     * Get the number of bytes encoded by each task
+     *
+     * @return Size of the chunks
+     */
+    public int getChunkSize() {
+
+        // Get the chunk size
+        return this.chunkSize;
+    }
+
+    /**
+     * Get the fork-join pool whose threads encode the chunks of content
+     *
+     * @return Pool of the encoder
+     */
+    public ForkJoinPool getPool() {
+
+        // Get the pool
+        return this.pool;
+    }
+
+    /**
+     * Encode bytes in Base64, splitting them into chunks encoded by the tasks of the pool
+     *
+     * @param src Bytes that need to be encoded
+     * @param offset Position of the first byte that needs to be encoded
+     * @param length Number of bytes that need to be encoded
+     * @param dst Array to which the encoded characters will be written
+     * @param dstOffset Position in the array at which the encoded characters will be written
+     * @return Number of encoded characters
+     */
+    private int encode(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+
+        // Encode a single chunk directly
+        if (length <= this.chunkSize) {
+            return Base64Encoder.encode(src, offset, length, dst, dstOffset);
+        }
+
+        // Encode the chunks in parallel
+        this.pool.invoke(new ArrayEncodeTask(src, offset, dst, dstOffset, 0, length, this.chunkSize));
+
+        return Base64Encoder.getEncodedLength(length);
+    }
+
+    /**
+     * EncodeTask encodes a range of content, splitting it on chunk boundaries until each task has a single chunk
+     *
+     * The range is given relatively to the start of the content, so that its encoded characters start at a quarter
+     * more than its offset.
+     */
+    private abstract static class EncodeTask extends RecursiveAction {
+
+        // Class attributes
+        protected final int chunkSize;
+        protected final int length;
+        protected final int offset;
+
+        /**
+         * EncodeTask constructor
+         *
+         * @param offset Position of the range in the content, which is a multiple of three
+         * @param length Number of bytes of the range
+         * @param chunkSize Number of bytes encoded by each task
+         */
+        protected EncodeTask(int offset, int length, int chunkSize) {
+
+            // Initialise class attributes
+            this.chunkSize = chunkSize;
+            this.length = length;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+
+            // Encode a single chunk
+            if (this.length <= this.chunkSize) {
+                this.encodeRange();
+                return;
+            }
+
+            // Split the chunks of the range in two halves
+            int chunks = (this.length + this.chunkSize - 1) / this.chunkSize;
+            int half = chunks / 2 * this.chunkSize;
+            invokeAll(this.createTask(this.offset, half), this.createTask(this.offset + half, this.length - half));
+        }
+
+        /**
+         * Create a task encoding part of the range
+         *
+         * @param offset Position of the part in the content
+         * @param length Number of bytes of the part
+         * @return Task encoding the part
+         */
+        protected abstract EncodeTask createTask(int offset, int length);
+
+        /**
+         * Encode the range
+         */
+        protected abstract void encodeRange();
+    }
+
+    /**
+     * ArrayEncodeTask encodes a range of a byte array into a character array
+     */
+    private static class ArrayEncodeTask extends EncodeTask {
+
+        // Class attributes
+        private final char[] dst;
+        private final int dstOffset;
+        private final byte[] src;
+        private final int srcOffset;
+
+        /**
+         * ArrayEncodeTask constructor
+         *
+         * @param src Content that needs to be encoded
+         * @param srcOffset Position of the content in the byte array
+         * @param dst Array to which the encoded characters will be written
+         * @param dstOffset Position of the encoded content in the character array
+         * @param offset Position of the range in the content
+         * @param length Number of bytes of the range
+         * @param chunkSize Number of bytes encoded by each task
+         */
+        private ArrayEncodeTask(byte[] src, int srcOffset, char[] dst, int dstOffset, int offset, int length,
+                int chunkSize) {
+
+            // Initialise the parent class
+            super(offset, length, chunkSize);
+
+            // Initialise class attributes
+            this.dst = dst;
+            this.dstOffset = dstOffset;
+            this.src = src;
+            this.srcOffset = srcOffset;
+        }
+
+        @Override
+        protected EncodeTask createTask(int offset, int length) {
+
+            // Task on the same arrays
+            return new ArrayEncodeTask(this.src, this.srcOffset, this.dst, this.dstOffset, offset, length,
+                    this.chunkSize);
+        }
+
+        @Override
+        protected void encodeRange() {
+
+            // Encode the range at its own position
+            Base64Encoder.encode(this.src, this.srcOffset + this.offset, this.length, this.dst,
+                    this.dstOffset + this.offset / 3 * 4);
+        }
+    }
+
+    /**
+     * MappedEncodeTask encodes a range of a mapped input file into a mapped output file
+     */
+    private static class MappedEncodeTask extends EncodeTask {
+
+        // Class attributes
+        private final ByteBuffer dst;
+        private final ByteBuffer src;
+
+        /**
+         * MappedEncodeTask constructor
+         *
+         * @param src Mapping of the content that needs to be encoded
+         * @param dst Mapping to which the encoded characters will be written
+         * @param offset Position of the range in the content
+         * @param length Number of bytes of the range
+         * @param chunkSize Number of bytes encoded by each task
+         */
+        private MappedEncodeTask(ByteBuffer src, ByteBuffer dst, int offset, int length, int chunkSize) {
+
+            // Initialise the parent class
+            super(offset, length, chunkSize);
+
+            // Initialise class attributes
+            this.dst = dst;
+            this.src = src;
+        }
+
+        @Override
+        protected EncodeTask createTask(int offset, int length) {
+
+            // Task on the same mappings
+            return new MappedEncodeTask(this.src, this.dst, offset, length, this.chunkSize);
+        }
+
+        @Override
+        protected void encodeRange() {
+
+            // Read the range through a view of the input mapping, as the position of the mapping is shared
+            byte[] bytes = new byte[this.length];
+            ByteBuffer in = this.src.duplicate();
+            in.position(this.offset);
+            in.get(bytes);
+
+            // Encode the range
+            char[] encoded = new char[Base64Encoder.getEncodedLength(this.length)];
+            int count = Base64Encoder.encode(bytes, 0, this.length, encoded, 0);
+
+            // Write the encoded characters, which are ASCII, at their own position in the output mapping
+            byte[] ascii = new byte[count];
+            for (int i = 0; i < count; i++) {
+                ascii[i] = (byte) encoded[i];
+            }
+            ByteBuffer out = this.dst.duplicate();
+            out.position(this.offset / 3 * 4);
+            out.put(ascii);
+        }
+    }
+}
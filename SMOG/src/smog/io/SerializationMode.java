@@ -0,0 +1,20 @@
+package smog.io;
+
+/**
+ * SerializationMode lists the layouts in which missive documents can be written
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public enum SerializationMode {
+
+    /**
+     * Compact layout without indentation or line breaks between elements, intended for transmission and archiving.
+     * Text content is written as is.
+     */
+    COMPACT,
+
+    /**
+     * Human readable layout with two space indentation, CRLF line separators and trimmed text content
+     */
+    PRETTY
+}
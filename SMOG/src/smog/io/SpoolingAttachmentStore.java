@@ -0,0 +1,152 @@
+package smog.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
+/**
+ * SpoolingAttachmentStore holds the binary content of small attachments in memory and spools the content of larger
+ * attachments to files of a directory.
+ *
+ * Content of which the size does not exceed the threshold of the store is kept in a byte array. Larger content is
+ * written to a file of the spool directory as it is read, so that it is never held in memory as a whole. The spool
+ * files are deleted when their content is removed and when the store is closed, or at the latest when the store and
+ * the references to its content are garbage collected without the store having been closed.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class SpoolingAttachmentStore extends AttachmentStore {
+
+    // Class attributes
+    private final ConcurrentHashMap<String, byte[]> contents;
+    private final Path directory;
+    private final ConcurrentHashMap<String, Path> spoolFiles;
+    private final int threshold;
+
+    /**
+     * SpoolingAttachmentStore constructor
+     *
+     * @param directory Directory in which the spool files are created
+     * @param threshold Size in bytes above which content is spooled to a file
+     */
+    public SpoolingAttachmentStore(Path directory, int threshold) {
+
+        // Initialise class attributes
+        this.contents = new ConcurrentHashMap<>();
+        this.directory = directory;
+        this.spoolFiles = new ConcurrentHashMap<>();
+        this.threshold = threshold;
+    }
+
+    /**
+     * Get the number of bytes of content held in memory by the store
+     *
+     * @return Size of the content held in memory
+     */
+    public long getMemorySize() {
+
+        // Sum the size of the content held in memory
+        long size = 0;
+        for (byte[] content : this.contents.values()) {
+            size += content.length;
+        }
+
+        return size;
+    }
+
+    /**
+     * Get the number of attachments of which the content has been spooled to a file
+     *
+     * @return Number of spool files
+     */
+    public int getSpoolFileCount() {
+
+        // Count the spool files
+        return this.spoolFiles.size();
+    }
+
+    @Override
+    protected void clear() throws IOException {
+
+        // Release the content held in memory
+        this.contents.clear();
+
+        // Delete the spool files
+        for (String key : this.spoolFiles.keySet()) {
+            this.delete(key);
+        }
+    }
+
+    @Override
+    protected void delete(String key) throws IOException {
+
+        // Release the content held in memory
+        this.contents.remove(key);
+
+        // Delete the spool file
+        Path spoolFile = this.spoolFiles.remove(key);
+        if (spoolFile != null) {
+            Files.deleteIfExists(spoolFile);
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+
+        try {
+
+            // Delete the spool files of a store which has not been closed
+            this.clear();
+
+        } finally {
+            super.finalize();
+        }
+    }
+
+    @Override
+    protected InputStream read(String key) throws IOException {
+
+        // Content held in memory
+        byte[] content = this.contents.get(key);
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+
+        // Content spooled to a file
+        Path spoolFile = this.spoolFiles.get(key);
+
+        return spoolFile == null ? null : Files.newInputStream(spoolFile);
+    }
+
+    @Override
+    protected void write(String key, InputStream is) throws IOException {
+
+        // Read the content up to one byte more than the threshold, into a buffer which only grows with the content
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        IOUtils.copy(new BoundedInputStream(is, this.threshold + 1L), head);
+
+        // Keep content which does not exceed the threshold in memory
+        if (head.size() <= this.threshold) {
+            this.contents.put(key, head.toByteArray());
+            return;
+        }
+
+        // Spool larger content to a file, writing the content already read followed by the rest of the stream
+        Path spoolFile = Files.createTempFile(this.directory, "attachment", ".spool");
+        this.spoolFiles.put(key, spoolFile);
+        try (OutputStream os = Files.newOutputStream(spoolFile)) {
+            head.writeTo(os);
+            IOUtils.copyLarge(is, os);
+        } catch (IOException ex) {
+            this.delete(key);
+            throw ex;
+        }
+    }
+}
@@ -1,30 +1,32 @@
 package smog.missive;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.math.BigInteger;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.Iterator;
 import javax.xml.namespace.QName;
 import org.apache.xmlbeans.XmlCursor;
-import org.apache.xmlbeans.XmlError;
+import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlOptions;
-import org.jdom2.Document;
-import org.jdom2.JDOMException;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
 import smog.exception.SmogException;
+import smog.io.AttachmentReference;
+import smog.io.CapturingOutputStream;
+import smog.io.MissiveSerializer;
+import smog.io.SerializationMode;
 import smog.schema.sem.BICorIBAN;
 import smog.schema.sem.Message;
 import smog.schema.sem.MessageBody;
 import smog.schema.sem.MessageHeader;
+import smog.schema.sem.MessageType;
 import smog.schema.sem.Missive;
 import smog.schema.sem.MissiveDocument;
 import smog.schema.sem.MissiveHeader;
@@ -33,6 +35,9 @@ import smog.schema.sem.PriorityCode;
 import smog.schema.sem.ReceiverIdentifier;
 import smog.schema.sem.SepamailMessage001;
 import smog.schema.sem.SepamailMissive001;
+import smog.utils.VersionTracker;
+import smog.validation.ValidationErrorCollector;
+import smog.validation.ValidationResult;
 
 /**
  * DocumentBase is the base class for all classes that represent missive documents
@@ -41,6 +46,9 @@ import smog.schema.sem.SepamailMissive001;
  */
 public class DocumentBase implements DocumentInterface {
 
+    // Maximum size of the rendered content kept in memory for each serialization mode
+    private static final int RENDER_CACHE_LIMIT = 8 * 1024 * 1024;
+
     protected Message message;
     protected MessageBody messageBody;
     protected MessageHeader messageHeader;
@@ -49,7 +57,14 @@ public class DocumentBase implements DocumentInterface {
     protected MissiveHeader missiveHeader;
     protected SepamailMessage001 sepamailMessage001;
     protected SepamailMissive001 sepamailMissive001;
+    private boolean buildPending;
+    private int editDepth;
+    private EnumMap<SerializationMode, byte[]> renderCache;
+    private long renderedVersion;
+    private XmlCursor.ChangeStamp renderStamp;
+    private SerializationMode serializationMode;
     private HashMap<String, String> suggestedPrefixes;
+    private VersionTracker versionTracker;
 
     /**
      * DocumentBase constructor
@@ -79,7 +94,14 @@ public class DocumentBase implements DocumentInterface {
         this.missiveHeader = MissiveHeader.Factory.newInstance();
         this.sepamailMessage001 = SepamailMessage001.Factory.newInstance();
         this.sepamailMissive001 = SepamailMissive001.Factory.newInstance();
+        this.buildPending = false;
+        this.editDepth = 0;
+        this.renderCache = new EnumMap<>(SerializationMode.class);
+        this.renderedVersion = 0;
+        this.renderStamp = null;
+        this.serializationMode = SerializationMode.PRETTY;
         this.suggestedPrefixes = new HashMap<>();
+        this.versionTracker = new VersionTracker();
 
         // Set the message version
         this.message.setVersion(messageVersion);
@@ -105,19 +127,135 @@ public class DocumentBase implements DocumentInterface {
         }
 
         // Initialise the suggested prefixes map
-        this.suggestedPrefixes.put("http://www.w3.org/2000/09/xmldsig#", "ds");
-        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:acmt.023.001.01", "acmt023");
-        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:acmt.024.001.01", "acmt024");
-        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.009.001.01", "pain009");
-        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.012.001.01", "pain012");
-        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.013.001.01", "pain013");
-        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.014.001.01", "pain014");
-        this.suggestedPrefixes.put("http://xsd.sepamail.eu/1206/", "sem");
+        this.initialiseSuggestedPrefixes();
 
         // Create the missive
         this.createMissive();
     }
 
+    /**
+     * DocumentBase constructor
+     *
+     * The segments of the document are bound to those of the given missive document, which is used as it is and not
+     * copied. The given missive document needs to hold the missive and message headers and bodies.
+     *
+     * @param missiveDocument Missive document, usually parsed from an inbound missive
+     */
+    protected DocumentBase(MissiveDocument missiveDocument) {
+
+        // Bind the envelope segments to those of the missive document so that they are modified in place
+        this.missiveDocument = missiveDocument;
+        this.missive = this.missiveDocument.getMissive();
+        this.sepamailMissive001 = this.missive.getSepamailMissive001();
+        this.message = this.sepamailMissive001.getMsvBdy();
+        this.missiveHeader = this.sepamailMissive001.getMsvHdr();
+        this.sepamailMessage001 = this.message.getSepamailMessage001();
+        this.messageBody = this.sepamailMessage001.getMsgBdy();
+        this.messageHeader = this.sepamailMessage001.getMsgHdr();
+
+        // Initialise class attributes
+        this.buildPending = false;
+        this.editDepth = 0;
+        this.renderCache = new EnumMap<>(SerializationMode.class);
+        this.renderedVersion = 0;
+        this.renderStamp = null;
+        this.serializationMode = SerializationMode.PRETTY;
+        this.suggestedPrefixes = new HashMap<>();
+        this.versionTracker = new VersionTracker();
+
+        // Initialise the suggested prefixes map
+        this.initialiseSuggestedPrefixes();
+    }
+
+    /**
+     * Parse an inbound missive into the document class of its message type
+     *
+     * The message type of the message header selects the document class: simple.request@test missives holding a
+     * simple test request give a SepamailTestRequestDocument, activation.request@payment.activation missives holding a
+     * payment activation request give a SepamailPaymentActivationRequestDocument, and all other missives give a
+     * SepamailGenericDocument. The document and its structure objects are bound to the parsed XML tree, which is not
+     * copied. The missive is not validated, and the processing instructions of attachment references found in it are
+     * removed.
+     *
+     * @param is Input stream from which the missive is read
+     * @return Document holding the parsed missive
+     * @throws IOException
+     * @throws SmogException when the content of the input stream is not a SEPAmail missive
+     */
+    public static DocumentBase parse(InputStream is) throws IOException, SmogException {
+
+        // Parse the missive, keeping its CDATA sections as they are written by the document
+        MissiveDocument missiveDocument;
+        try {
+            missiveDocument = MissiveDocument.Factory.parse(is, new XmlOptions().setUseCDataBookmarks());
+        } catch (XmlException ex) {
+            throw new SmogException("The missive could not be parsed: " + ex.getMessage());
+        }
+
+        return fromParsedMissive(missiveDocument);
+    }
+
+    /**
+     * Bind the document class of its message type to a parsed missive
+     *
+     * @param missiveDocument Parsed missive, which is not copied and from which the processing instructions of
+     * attachment references are removed
+     * @return Document holding the parsed missive
+     * @throws SmogException when the parsed missive does not hold the envelope segments of a SEPAmail missive
+     */
+    static DocumentBase fromParsedMissive(MissiveDocument missiveDocument) throws SmogException {
+
+        // Attachment references only come from SMOG, never from parsed content
+        AttachmentReference.removeReferences(missiveDocument);
+
+        // Check that the missive holds the envelope segments to which the document is bound
+        Missive parsedMissive = missiveDocument.getMissive();
+        SepamailMissive001 parsedSepamailMissive001 = parsedMissive != null ? parsedMissive.getSepamailMissive001() :
+                null;
+        if (parsedSepamailMissive001 == null || parsedSepamailMissive001.getMsvHdr() == null ||
+                parsedSepamailMissive001.getMsvBdy() == null ||
+                parsedSepamailMissive001.getMsvBdy().getSepamailMessage001() == null) {
+            throw new SmogException("The missive does not hold a missive header and body");
+        }
+        SepamailMessage001 parsedSepamailMessage001 = parsedSepamailMissive001.getMsvBdy().getSepamailMessage001();
+        if (parsedSepamailMessage001.getMsgHdr() == null || parsedSepamailMessage001.getMsgBdy() == null) {
+            throw new SmogException("The missive does not hold a message header and body");
+        }
+
+        // Resolve the message type, which is read as text since it may not be one of the predefined message types
+        String messageTypeName = null;
+        if (parsedSepamailMessage001.getMsgHdr().xgetMsgTyp() != null) {
+            XmlCursor msgTypCursor = parsedSepamailMessage001.getMsgHdr().xgetMsgTyp().newCursor();
+            messageTypeName = msgTypCursor.getTextValue();
+            msgTypCursor.dispose();
+        }
+        MessageTypeDefinition messageType = MessageTypeRegistry.resolve(messageTypeName);
+
+        // Create the document of the message type when the message body holds the expected message
+        MessageBody parsedMessageBody = parsedSepamailMessage001.getMsgBdy();
+        if (messageType.getSchemaMessageType() != null) {
+            switch (messageType.getSchemaMessageType().intValue()) {
+
+                // simple.request@test missive
+                case MessageType.INT_SIMPLE_REQUEST_TEST:
+                    if (parsedMessageBody.isSetSimpleTestRequest()) {
+                        return new SepamailTestRequestDocument(missiveDocument);
+                    }
+                    break;
+
+                // activation.request@payment.activation missive
+                case MessageType.INT_ACTIVATION_REQUEST_PAYMENT_ACTIVATION:
+                    if (parsedMessageBody.isSetPaymentActivationRequest() && parsedMessageBody
+                            .getPaymentActivationRequest().getSepamailMessagePaymentActivationRequest001() != null) {
+                        return new SepamailPaymentActivationRequestDocument(missiveDocument);
+                    }
+                    break;
+            }
+        }
+
+        return new SepamailGenericDocument(missiveDocument, messageType);
+    }
+
     /**
      * Add a schema location attribute to the root node of the XML fragment
      *
@@ -128,6 +266,9 @@ public class DocumentBase implements DocumentInterface {
      */
     public void addSchemaLocation(String namespaceUri, String localPart, String prefix, String value) {
 
+        // Record the modification of the document
+        this.markModified();
+
         // Cursor to traverse the XML fragment document
         XmlCursor cursor = this.missiveDocument.newCursor();
 
@@ -157,6 +298,21 @@ public class DocumentBase implements DocumentInterface {
         cursor.dispose();
     }
 
+    /**
+     * Start a batch of modifications of the missive document
+     *
+     * Until the matching call to commit(), the missive document is not assembled: values which are held in place by
+     * the document, such as those of the envelope, are visible in its XML content as soon as they are set, while the
+     * message segments that need to be linked into the document are only linked when the batch is committed, and the
+     * version of the document only changes then. Batches can be nested, in which case the document is assembled when
+     * the outermost batch is committed.
+     */
+    public void beginEdit() {
+
+        // Enter the batch of modifications
+        this.editDepth++;
+    }
+
     /**
      * Build the missive envelope
      */
@@ -167,6 +323,28 @@ public class DocumentBase implements DocumentInterface {
         this.createMissive();
     }
 
+    /**
+     * End a batch of modifications started by beginEdit()
+     *
+     * The missive document is assembled once if it has been modified during the outermost batch.
+     */
+    public void commit() {
+
+        // Check that a batch of modifications has been started
+        if (this.editDepth == 0) {
+            throw new IllegalStateException("No batch of modifications has been started");
+        }
+
+        // Leave the batch of modifications
+        this.editDepth--;
+
+        // Assemble the missive document at the end of the outermost batch
+        if (this.editDepth == 0 && this.buildPending) {
+            this.buildPending = false;
+            this.update();
+        }
+    }
+
     /**
      * Get the expiry of the message of the missive document
      *
@@ -262,12 +440,16 @@ public class DocumentBase implements DocumentInterface {
     /**
      * Get the recipient of the missive document
      *
-     * @return The recipient of the missive document
+     * The recipient is a copy of the one held by the missive header, which is modified through setRecipient().
+     *
+     * @return Copy of the recipient of the missive document
      */
     public ReceiverIdentifier getRecipient() {
 
-        // Get the recipient of the missive document
-        return this.missiveHeader.getRcv();
+        // Get a copy of the recipient of the missive document
+        ReceiverIdentifier recipient = this.missiveHeader.getRcv();
+
+        return recipient != null ? (ReceiverIdentifier) recipient.copy() : null;
     }
 
     /**
@@ -325,25 +507,110 @@ public class DocumentBase implements DocumentInterface {
     /**
      * Get the sender of the missive document
      *
-     * @return The sender of the missive document
+     * The sender is a copy of the one held by the missive header, which is modified through setSender().
+     *
+     * @return Copy of the sender of the missive document
      */
     public BICorIBAN getSender() {
 
-        // Get the sender of the missive document
-        return this.missiveHeader.getSnd();
+        // Get a copy of the sender of the missive document
+        BICorIBAN sender = this.missiveHeader.getSnd();
+
+        return sender != null ? (BICorIBAN) sender.copy() : null;
     }
 
     /**
      * Get the XML object which represents the missive document
      *
+     * The XML object is the missive document itself. Content rendered before it is modified through the XML object is
+     * not used once the modification has been made, whenever it happens.
+     *
+     * Attachment data held through an AttachmentReference is not in the XML object: its data element only holds a
+     * smog-attachment processing instruction, whose data is the opaque ID of the reference. Saving the XML object with
+     * xmlText() or save() therefore writes an empty data element, which still passes validation. The content of the
+     * references is only written by the serialization methods of the document, such as writeTo() and toString().
+     *
      * @return XML object which represents the missive document
      */
     public XmlObject getMissiveXmlObject() {
 
+        // Bring the derived values up to date
+        this.updateDerivedValues();
+
+        // The XML object may be modified by the caller
+        this.markModified();
+
         // Get the XML object which represents the missive document
         return this.missiveDocument;
     }
 
+    /**
+     * Get the layout used when the missive document is written without an explicit serialization mode
+     *
+     * @return Serialization mode of the missive document
+     */
+    public SerializationMode getSerializationMode() {
+
+        // Get the serialization mode
+        return this.serializationMode;
+    }
+
+    /**
+     * Validate the missive document and get the errors found
+     *
+     * @return Result of the validation of the missive document
+     */
+    public ValidationResult getValidationResult() {
+
+        // Report all the errors
+        return this.getValidationResult(false);
+    }
+
+    /**
+     * Validate the missive document and get the errors found
+     *
+     * @param failFast Whether the validation stops at the first error
+     * @return Result of the validation of the missive document
+     */
+    public ValidationResult getValidationResult(boolean failFast) {
+
+        // Bring the derived values up to date
+        this.updateDerivedValues();
+
+        // Collector for the validation errors
+        ValidationErrorCollector errors = new ValidationErrorCollector(failFast);
+
+        // Validate the missive document
+        errors.validate(this.missiveDocument);
+
+        return errors.getResult();
+    }
+
+    /**
+     * Get the version tracker of the missive document
+     *
+     * The version of the missive document changes whenever the document or one of the structure objects bound to it
+     * is modified.
+     *
+     * @return Version tracker of the missive document
+     */
+    public VersionTracker getVersionTracker() {
+
+        // Get the version tracker
+        return this.versionTracker;
+    }
+
+    /**
+     * Check if a batch of modifications of the missive document is in progress
+     *
+     * @return Whether a batch of modifications is in progress
+     */
+    public boolean isEditing() {
+
+        // Check the depth of the batch of modifications
+        return this.editDepth > 0;
+    }
+
     /**
      * Remove the message expiry date and time from the message header
      */
@@ -351,6 +618,9 @@ public class DocumentBase implements DocumentInterface {
 
         // Remove the message expiry date and time
         this.messageHeader.unsetMsgExpiry();
+
+        // Update the missive document
+        this.update();
     }
 
     /**
@@ -361,8 +631,21 @@ public class DocumentBase implements DocumentInterface {
      */
     public void save(OutputStream os) throws IOException {
 
-        // Write string content to output stream
-        os.write(this.toString().getBytes());
+        // Save content using the serialization mode of the document
+        this.save(os, this.serializationMode);
+    }
+
+    /**
+     * Save content to output stream using the given layout
+     *
+     * @param os Output stream to which content will be written
+     * @param mode Layout of the written content
+     * @throws IOException
+     */
+    public void save(OutputStream os, SerializationMode mode) throws IOException {
+
+        // Write XML content to output stream
+        this.writeTo(os, mode);
         os.flush();
         os.close();
     }
@@ -386,8 +669,8 @@ public class DocumentBase implements DocumentInterface {
             this.messageHeader.unsetMsgExpiry();
         }
 
-        // Build the missive document
-        this.build();
+        // Update the missive document
+        this.update();
     }
 
     /**
@@ -400,8 +683,8 @@ public class DocumentBase implements DocumentInterface {
         // Set the ID of the message
         this.messageHeader.setMsgId(messageId);
 
-        // Build the missive document
-        this.build();
+        // Update the missive document
+        this.update();
     }
 
     /**
@@ -414,8 +697,8 @@ public class DocumentBase implements DocumentInterface {
         // Set the message version
         this.message.setVersion(version);
 
-        // Build the missive document
-        this.build();
+        // Update the missive document
+        this.update();
     }
 
     /**
@@ -428,8 +711,8 @@ public class DocumentBase implements DocumentInterface {
         // Set the ID of the missive document
         this.sepamailMissive001.setMsvId(missiveId);
 
-        // Build the missive document
-        this.build();
+        // Update the missive document
+        this.update();
     }
 
     /**
@@ -442,8 +725,8 @@ public class DocumentBase implements DocumentInterface {
         // Set the order of the missive
         this.sepamailMissive001.setMsvOrd(missiveOrder);
 
-        // Build the missive document
-        this.build();
+        // Update the missive document
+        this.update();
     }
 
     /**
@@ -456,8 +739,8 @@ public class DocumentBase implements DocumentInterface {
         // Set the priority of the missive document
         this.sepamailMissive001.setMsvPri(priority);
 
-        // Build the missive document
-        this.build();
+        // Update the missive document
+        this.update();
     }
 
     /**
@@ -470,8 +753,8 @@ public class DocumentBase implements DocumentInterface {
         // Set the type of the missive document
         this.sepamailMissive001.setMsvTyp(type);
 
-        // Build the missive document
-        this.build();
+        // Update the missive document
+        this.update();
     }
 
     /**
@@ -484,8 +767,8 @@ public class DocumentBase implements DocumentInterface {
         // Set the missive document version
         this.missive.setVersion(version);
 
-        // Build the missive document
-        this.build();
+        // Update the missive document
+        this.update();
     }
 
     /**
@@ -498,8 +781,8 @@ public class DocumentBase implements DocumentInterface {
         // Set the recipient of the missive document
         this.missiveHeader.setRcv(recipient);
 
-        // Build the missive document
-        this.build();
+        // Update the missive document
+        this.update();
     }
 
     /**
@@ -512,8 +795,8 @@ public class DocumentBase implements DocumentInterface {
         // Set the date and time at which the missive document was sent
         this.missiveHeader.setSndDtTm(sendDateTime);
 
-        // Build the missive document
-        this.build();
+        // Update the missive document
+        this.update();
     }
 
     /**
@@ -526,8 +809,47 @@ public class DocumentBase implements DocumentInterface {
         // Set the sender of the missive document
         this.missiveHeader.setSnd(sender);
 
-        // Build the missive
-        this.build();
+        // Update the missive
+        this.update();
+    }
+
+    /**
+     * Set the layout used when the missive document is written without an explicit serialization mode
+     *
+     * @param mode Serialization mode of the missive document
+     */
+    public void setSerializationMode(SerializationMode mode) {
+
+        // Set the serialization mode
+        this.serializationMode = mode;
+    }
+
+    /**
+     * Get the XML content of the missive document encoded in UTF-8
+     *
+     * @param mode Layout of the content
+     * @return Copy of the XML content of the missive document
+     * @throws IOException
+     */
+    public byte[] toByteArray(SerializationMode mode) throws IOException {
+
+        // Copy of the rendered content
+        return this.getRenderedContent(mode).clone();
+    }
+
+    /**
+     * Get a read-only view of the XML content of the missive document encoded in UTF-8
+     *
+     * The view shares the content rendered for the document and no copy is made.
+     *
+     * @param mode Layout of the content
+     * @return Read-only view of the XML content of the missive document
+     * @throws IOException
+     */
+    public ByteBuffer toByteBuffer(SerializationMode mode) throws IOException {
+
+        // View of the rendered content
+        return ByteBuffer.wrap(this.getRenderedContent(mode)).asReadOnlyBuffer();
     }
 
     /**
@@ -538,41 +860,28 @@ public class DocumentBase implements DocumentInterface {
     @Override
     public String toString() {
 
-        // Add schema location attribute
-        this.addSchemaLocation("http://www.w3.org/2001/XMLSchema-instance", "schemaLocation", "xsi",
-                "http://xsd.sepamail.eu/1206/ xsd/sepamail_missive.xsd ");
-
-        // XML options instance
-        XmlOptions options = new XmlOptions();
+        // String representation using the serialization mode of the document
+        return this.toString(this.serializationMode);
+    }
 
-        // Set the properties of the XML options
-        options.setSavePrettyPrint();
-        options.setSaveSuggestedPrefixes(this.suggestedPrefixes);
-        options.setUseCDataBookmarks();
+    /**
+     * String representation of the XML document using the given layout
+     *
+     * @param mode Layout of the string representation
+     * @return String representation of the XML document
+     * @throws IllegalStateException If the content of the document cannot be rendered, such as when the file of an
+     * attachment reference cannot be read
+     */
+    public String toString(SerializationMode mode) {
 
         try {
 
-            // Build XML document using the constructed XML object
-            SAXBuilder sxb = new SAXBuilder();
-            Document xmlDocument =
-                    sxb.build(new InputStreamReader(new ByteArrayInputStream(missiveDocument.xmlText(options).getBytes()),
-                        "UTF-8"));
-
-            // Pretty print the XML document
-            XMLOutputter xmlOutputter = new XMLOutputter(Format.getPrettyFormat());
-            ByteArrayOutputStream output = new ByteArrayOutputStream();
-            xmlOutputter.output(xmlDocument, output);
-
             // String with XML content
-            return new String(output.toByteArray());
-
-        } catch ( JDOMException | IOException ex) {
+            return new String(this.getRenderedContent(mode), StandardCharsets.UTF_8);
 
-            // TODO: error logging
-            System.out.println(ex.getMessage());
+        } catch (IOException ex) {
+            throw new IllegalStateException("The missive document could not be rendered: " + ex.getMessage(), ex);
         }
-
-        return null;
     }
 
     /**
@@ -584,39 +893,233 @@ public class DocumentBase implements DocumentInterface {
     @Override
     public boolean validate() throws SmogException {
 
-        // List of validation messages
-        ArrayList<XmlError> validationMessages = new ArrayList<>();
-
         // Validate the missive document
-        boolean isValid = this.missiveDocument.validate(new XmlOptions().setErrorListener(validationMessages));
+        ValidationResult validationResult = this.getValidationResult(false);
 
         // Check if the missive document is valid
-        if (isValid) {
-            return true;
-        } else {
+        if (!validationResult.isValid()) {
+            throw new SmogException(validationResult.getMessage("\n"));
+        }
+
+        return true;
+    }
+
+    /**
+     * Write the XML content of the missive document to an output stream using UTF-8 encoding
+     *
+     * The content is streamed directly from the missive document with the same layout as toString(). The output
+     * stream is flushed but not closed.
+     *
+     * @param os Output stream to which content will be written
+     * @throws IOException
+     */
+    public void writeTo(OutputStream os) throws IOException {
 
-            // Validation message
-            String validationMessage = "";
+        // Write content using the serialization mode of the document
+        this.writeTo(os, this.serializationMode);
+    }
 
-            // Iterator for validation messages
-            Iterator<XmlError> iterator = validationMessages.iterator();
+    /**
+     * Write the XML content of the missive document to an output stream using UTF-8 encoding and the given layout
+     *
+     * The output stream is flushed but not closed.
+     *
+     * @param os Output stream to which content will be written
+     * @param mode Layout of the written content
+     * @throws IOException
+     */
+    public void writeTo(OutputStream os, SerializationMode mode) throws IOException {
 
-            // Build the complete error message
-            while(iterator.hasNext()) {
+        // Bring the derived values up to date
+        this.updateDerivedValues();
 
-                // Add validation message separtor
-                if (!validationMessage.equals("")) {
-                    validationMessage += "\n";
-                }
+        // Content rendered since the last change of the document
+        byte[] renderedContent = this.getCachedContent(mode);
 
-                // Concatenate validation messages
-                validationMessage += iterator.next().getMessage();
-            }
+        // Write the rendered content when available
+        if (renderedContent != null) {
+            os.write(renderedContent);
+            return;
+        }
 
-            throw new SmogException(validationMessage);
+        // Add schema location attribute
+        this.addDefaultSchemaLocation();
+
+        // Stream the missive document while keeping a copy of the content
+        XmlCursor.ChangeStamp changeStamp = this.getChangeStamp();
+        CapturingOutputStream cos = new CapturingOutputStream(os, RENDER_CACHE_LIMIT);
+        MissiveSerializer serializer = new MissiveSerializer(this.suggestedPrefixes, mode,
+                this.getAttachmentReferences());
+        serializer.serialize(this.missiveDocument, cos);
+
+        // Keep the rendered content for subsequent calls unless it holds the content of attachments
+        renderedContent = cos.getCapturedContent();
+        if (renderedContent != null && serializer.getAttachmentCount() == 0) {
+            this.cacheRenderedContent(mode, renderedContent, changeStamp);
         }
     }
 
+    /**
+     * Write the XML content of the missive document as an element of a larger document to an output stream
+     *
+     * The content is streamed from the missive document without XML declaration and with its root element written
+     * under the given local name. The output stream is flushed but not closed.
+     *
+     * @param os Output stream to which content will be written
+     * @param mode Layout of the content
+     * @param elementName Local name under which the root element of the missive is written
+     * @throws IOException
+     */
+    void writeElementTo(OutputStream os, SerializationMode mode, String elementName) throws IOException {
+
+        // Bring the derived values up to date
+        this.updateDerivedValues();
+
+        // Add schema location attribute
+        this.addDefaultSchemaLocation();
+
+        // Stream the missive document as an element
+        new MissiveSerializer(this.suggestedPrefixes, mode, this.getAttachmentReferences()).serializeElement(
+                this.missiveDocument, elementName, os);
+    }
+
+    /**
+     * Write the XML content of the missive document to a writer
+     *
+     * The content is streamed directly from the missive document with the same layout as toString(). The writer is
+     * flushed but not closed.
+     *
+     * @param writer Writer to which content will be written
+     * @throws IOException
+     */
+    public void writeTo(Writer writer) throws IOException {
+
+        // Write content using the serialization mode of the document
+        this.writeTo(writer, this.serializationMode);
+    }
+
+    /**
+     * Write the XML content of the missive document to a writer using the given layout
+     *
+     * The writer is flushed but not closed.
+     *
+     * @param writer Writer to which content will be written
+     * @param mode Layout of the written content
+     * @throws IOException
+     */
+    public void writeTo(Writer writer, SerializationMode mode) throws IOException {
+
+        // Bring the derived values up to date
+        this.updateDerivedValues();
+
+        // Content rendered since the last change of the document
+        byte[] renderedContent = this.getCachedContent(mode);
+
+        // Write the rendered content when available
+        if (renderedContent != null) {
+            writer.write(new String(renderedContent, StandardCharsets.UTF_8));
+            return;
+        }
+
+        // Add schema location attribute
+        this.addDefaultSchemaLocation();
+
+        // Stream the missive document
+        new MissiveSerializer(this.suggestedPrefixes, mode, this.getAttachmentReferences()).serialize(
+                this.missiveDocument, writer);
+    }
+
+    /**
+     * Check if the assembly of the missive document needs to be deferred to the end of a batch of modifications
+     *
+     * The assembly is recorded as pending when it is deferred.
+     *
+     * @return Whether the assembly of the missive document is deferred
+     */
+    protected boolean deferBuild() {
+
+        // Check if a batch of modifications is in progress
+        if (this.editDepth > 0) {
+            this.buildPending = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Record a modification of the missive document
+     *
+     * This needs to be called whenever the XML content of the missive document is modified, so that content derived
+     * from an earlier version of the document, such as its rendered content, is no longer used.
+     */
+    protected void markModified() {
+
+        // Move the document to a new version
+        this.versionTracker.increment();
+    }
+
+    /**
+     * Check if the given message segment is part of the missive document
+     *
+     * @param node Message segment
+     * @return Whether the message segment is part of the missive document
+     */
+    protected boolean isInMissive(XmlObject node) {
+
+        // Cursors on the missive document and on the message segment
+        XmlCursor missiveCursor = this.missiveDocument.newCursor();
+        XmlCursor nodeCursor = node.newCursor();
+
+        // Check if both cursors are in the same document
+        boolean inMissive = missiveCursor.isInSameDocument(nodeCursor);
+
+        // Dispose cursors
+        nodeCursor.dispose();
+        missiveCursor.dispose();
+
+        return inMissive;
+    }
+
+    /**
+     * Update the missive document after some of its segments have been modified
+     *
+     * The whole missive document is built again by default. Subclasses may override this method to only re-link the
+     * segments that have been modified since the last update, while build() keeps rebuilding the whole document.
+     */
+    protected void update() {
+
+        // Build the missive document
+        this.build();
+    }
+
+    /**
+     * Get the attachment references held by the structure objects of the missive document
+     *
+     * The content of these references is written in place of their processing instruction when the missive document
+     * is serialized. No reference is held by default; subclasses whose structure objects can hold attachment data by
+     * reference override this method.
+     *
+     * @return Attachment references of the missive document
+     */
+    protected Iterable<AttachmentReference> getAttachmentReferences() {
+
+        // No attachment is held by reference
+        return Collections.emptyList();
+    }
+
+    /**
+     * Bring the values derived from the structure objects of the missive document up to date
+     *
+     * This is called before the missive document is written, validated or handed out. Nothing is derived by default;
+     * subclasses override this method for values, such as totals, which depend on structure objects that may have
+     * been modified after they were added to the document.
+     */
+    protected void updateDerivedValues() {
+
+        // No value is derived from the structure objects
+    }
+
     /**
      * Assemble the missive document using its components
      */
@@ -626,26 +1129,207 @@ public class DocumentBase implements DocumentInterface {
         this.createMissive();
     }
 
+    /**
+     * Add the SEPAmail missive schema location attribute to the root node of the document
+     */
+    private void addDefaultSchemaLocation() {
+
+        // Default schema location of the missive document
+        String schemaLocation = "http://xsd.sepamail.eu/1206/ xsd/sepamail_missive.xsd ";
+
+        // Add schema location attribute unless the missive document already holds it, so that rendering the document
+        // does not change its version
+        if (!schemaLocation.equals(this.getSchemaLocation("http://www.w3.org/2001/XMLSchema-instance",
+                "schemaLocation"))) {
+            this.addSchemaLocation("http://www.w3.org/2001/XMLSchema-instance", "schemaLocation", "xsi",
+                    schemaLocation);
+        }
+    }
+
+    /**
+     * Initialise the prefixes suggested for the namespaces of the missive document
+     */
+    private void initialiseSuggestedPrefixes() {
+
+        // Prefixes of the namespaces used by the SEPAmail messages
+        this.suggestedPrefixes.put("http://www.w3.org/2000/09/xmldsig#", "ds");
+        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:acmt.023.001.01", "acmt023");
+        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:acmt.024.001.01", "acmt024");
+        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.009.001.01", "pain009");
+        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.012.001.01", "pain012");
+        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.013.001.01", "pain013");
+        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.014.001.01", "pain014");
+        this.suggestedPrefixes.put("http://xsd.sepamail.eu/1206/", "sem");
+    }
+
+    /**
+     * Keep the content rendered for the current version of the missive document
+     *
+     * @param mode Layout of the content
+     * @param renderedContent Rendered content
+     * @param changeStamp Change stamp of the XML content taken before the content was rendered
+     */
+    private void cacheRenderedContent(SerializationMode mode, byte[] renderedContent,
+            XmlCursor.ChangeStamp changeStamp) {
+
+        // Discard the content rendered for an earlier version of the document
+        if (!this.isRenderCacheCurrent()) {
+            this.renderCache.clear();
+            this.renderedVersion = this.versionTracker.getVersion();
+            this.renderStamp = changeStamp;
+        }
+
+        // Keep the rendered content unless the document has been modified while it was rendered
+        if (!changeStamp.hasChanged()) {
+            this.renderCache.put(mode, renderedContent);
+        }
+    }
+
+    /**
+     * Get the content rendered for the current version of the missive document
+     *
+     * @param mode Layout of the content
+     * @return Rendered content which must not be modified, or null when the content has not been rendered
+     */
+    private byte[] getCachedContent(SerializationMode mode) {
+
+        // Content rendered for an earlier version of the document is not used
+        if (!this.isRenderCacheCurrent()) {
+            return null;
+        }
+
+        return this.renderCache.get(mode);
+    }
+
+    /**
+     * Get a change stamp of the XML content of the missive document
+     *
+     * The change stamp reports any modification of the XML content, including those made directly on the XML Beans
+     * objects without going through the document or its structure objects.
+     *
+     * @return Change stamp of the XML content in its current state
+     */
+    private XmlCursor.ChangeStamp getChangeStamp() {
+
+        // Cursor on the missive document
+        XmlCursor cursor = this.missiveDocument.newCursor();
+
+        try {
+
+            // Change stamp of the XML Beans store holding the document
+            return cursor.getDocChangeStamp();
+
+        } finally {
+
+            // Dispose cursor
+            cursor.dispose();
+        }
+    }
+
+    /**
+     * Check if the rendered content kept for the missive document matches its current content
+     *
+     * @return Whether neither the version of the document nor its XML content have changed since it was rendered
+     */
+    private boolean isRenderCacheCurrent() {
+
+        // Check both the version and the XML content, which may have been modified outside of the document
+        return this.renderStamp != null && this.renderedVersion == this.versionTracker.getVersion() &&
+                !this.renderStamp.hasChanged();
+    }
+
+    /**
+     * Get the XML content of the missive document, rendering it if needed
+     *
+     * @param mode Layout of the content
+     * @return Rendered content which must not be modified
+     * @throws IOException
+     */
+    private byte[] getRenderedContent(SerializationMode mode) throws IOException {
+
+        // Bring the derived values up to date
+        this.updateDerivedValues();
+
+        // Content rendered since the last change of the document
+        byte[] renderedContent = this.getCachedContent(mode);
+
+        // Render the document
+        if (renderedContent == null) {
+
+            // Add schema location attribute
+            this.addDefaultSchemaLocation();
+
+            // Write the document to memory
+            XmlCursor.ChangeStamp changeStamp = this.getChangeStamp();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            MissiveSerializer serializer = new MissiveSerializer(this.suggestedPrefixes, mode,
+                    this.getAttachmentReferences());
+            serializer.serialize(this.missiveDocument, output);
+            renderedContent = output.toByteArray();
+
+            // Keep the rendered content for subsequent calls unless it holds the content of attachments, which is
+            // read from its files or stores each time so that it is not retained by the document
+            if (renderedContent.length <= RENDER_CACHE_LIMIT && serializer.getAttachmentCount() == 0) {
+                this.cacheRenderedContent(mode, renderedContent, changeStamp);
+            }
+        }
+
+        return renderedContent;
+    }
+
     /**
      * Create the missive
      */
     private void createMissive() {
 
+        // Defer the assembly while the document is being edited
+        if (this.deferBuild()) {
+            return;
+        }
+
+        // Record the modification of the document
+        this.markModified();
+
+        // Segments that are already bound to their place in the document are not copied again
+
         // Add the message header and body to its container
-        this.sepamailMessage001.setMsgBdy(this.messageBody);
-        this.sepamailMessage001.setMsgHdr(this.messageHeader);
+        if (this.sepamailMessage001.getMsgBdy() != this.messageBody) {
+            this.sepamailMessage001.setMsgBdy(this.messageBody);
+        }
+        if (this.sepamailMessage001.getMsgHdr() != this.messageHeader) {
+            this.sepamailMessage001.setMsgHdr(this.messageHeader);
+        }
 
         // Add the message container to the missive body
-        this.message.setSepamailMessage001(this.sepamailMessage001);
+        if (this.message.getSepamailMessage001() != this.sepamailMessage001) {
+            this.message.setSepamailMessage001(this.sepamailMessage001);
+        }
 
         // Add the missive body and header to their respective container
-        this.sepamailMissive001.setMsvBdy(this.message);
-        this.sepamailMissive001.setMsvHdr(this.missiveHeader);
+        if (this.sepamailMissive001.getMsvBdy() != this.message) {
+            this.sepamailMissive001.setMsvBdy(this.message);
+        }
+        if (this.sepamailMissive001.getMsvHdr() != this.missiveHeader) {
+            this.sepamailMissive001.setMsvHdr(this.missiveHeader);
+        }
 
         // Add the missive container to its root element
-        this.missive.setSepamailMissive001(this.sepamailMissive001);
+        if (this.missive.getSepamailMissive001() != this.sepamailMissive001) {
+            this.missive.setSepamailMissive001(this.sepamailMissive001);
+        }
 
         // Add the root element to the document element
-        this.missiveDocument.setMissive(this.missive);
+        if (this.missiveDocument.getMissive() != this.missive) {
+            this.missiveDocument.setMissive(this.missive);
+        }
+
+        // Bind the envelope segments to the copies held by the document so that they are modified in place
+        this.missive = this.missiveDocument.getMissive();
+        this.sepamailMissive001 = this.missive.getSepamailMissive001();
+        this.message = this.sepamailMissive001.getMsvBdy();
+        this.missiveHeader = this.sepamailMissive001.getMsvHdr();
+        this.sepamailMessage001 = this.message.getSepamailMessage001();
+        this.messageBody = this.sepamailMessage001.getMsgBdy();
+        this.messageHeader = this.sepamailMessage001.getMsgHdr();
     }
 }
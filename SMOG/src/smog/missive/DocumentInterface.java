@@ -1,6 +1,7 @@
 package smog.missive;
 
 import smog.exception.SmogException;
+import smog.validation.ValidationResult;
 
 /**
  * DocumentInterface provides the interface for all missive document classes.
@@ -12,6 +13,9 @@ public interface DocumentInterface {
     // Build the missive document using its fragments
     public void build();
 
+    // Validate a missive document and get the errors found
+    public ValidationResult getValidationResult(boolean failFast);
+
     // Validate a missive document
     public boolean validate() throws SmogException;
 }
@@ -0,0 +1,101 @@
+package smog.missive;
+
+import smog.schema.sem.MessageType;
+
+/**
+ * MessageTypeDefinition describes the type of the message of a missive, which is either one of the message types of
+ * the SEPAmail schemas or a custom message type.
+ *
+ * Message type definitions are immutable. The definitions of the registered message types are shared, see
+ * {@link MessageTypeRegistry}.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public final class MessageTypeDefinition {
+
+    // Class attributes
+    private final String name;
+    private final boolean registered;
+    private final MessageType.Enum schemaMessageType;
+    private final boolean wellFormed;
+
+    /**
+     * MessageTypeDefinition constructor
+     *
+     * @param name Name of the message type, as written in the message header
+     * @param schemaMessageType Message type of the SEPAmail schemas, or null for a custom message type
+     * @param wellFormed Whether the name may be used as a message type
+     * @param registered Whether the message type is registered
+     */
+    MessageTypeDefinition(String name, MessageType.Enum schemaMessageType, boolean wellFormed, boolean registered) {
+
+        // Initialise class attributes
+        this.name = name;
+        this.registered = registered;
+        this.schemaMessageType = schemaMessageType;
+        this.wellFormed = wellFormed;
+    }
+
+    /**
+     * Get the name of the message type, as written in the message header
+     *
+     * @return Name of the message type
+     */
+    public String getName() {
+
+        // Get the name
+        return this.name;
+    }
+
+    /**
+     * Get the message type of the SEPAmail schemas
+     *
+     * @return Message type of the SEPAmail schemas, or null for a custom message type
+     */
+    public MessageType.Enum getSchemaMessageType() {
+
+        // Get the schema message type
+        return this.schemaMessageType;
+    }
+
+    /**
+     * Check if the message type is a well formed custom message type, which is not one of the message types of the
+     * SEPAmail schemas
+     *
+     * @return Whether the message type is a custom message type
+     */
+    public boolean isCustom() {
+
+        // Custom message types are well formed message types unknown to the schemas
+        return this.schemaMessageType == null && this.wellFormed;
+    }
+
+    /**
+     * Check if the message type is registered
+     *
+     * @return Whether the message type is registered
+     */
+    public boolean isRegistered() {
+
+        // Get the registered status
+        return this.registered;
+    }
+
+    /**
+     * Check if the name of the message type may be used as a message type
+     *
+     * @return Whether the message type is well formed
+     */
+    public boolean isWellFormed() {
+
+        // Get the well formed status
+        return this.wellFormed;
+    }
+
+    @Override
+    public String toString() {
+
+        // Name of the message type
+        return this.name;
+    }
+}
@@ -0,0 +1,150 @@
+package smog.missive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.xmlbeans.XmlAnySimpleType;
+import smog.exception.SmogException;
+import smog.schema.sem.MessageType;
+
+/**
+ * MessageTypeRegistry holds the message types known to the generic missive documents.
+ *
+ * The message types of the SEPAmail schemas are registered from the start and custom message types may be registered
+ * by the application. Resolving a registered message type gives the same shared definition every time. Message types
+ * which have not been registered are still resolved, to a definition of their own, so that the generic missive
+ * documents accept any well formed message type.
+ *
+ * A message type is well formed when it is not blank and holds no whitespace.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MessageTypeRegistry {
+
+    // Registered message types by name
+    private static final ConcurrentHashMap<String, MessageTypeDefinition> definitions = createDefinitions();
+
+    /**
+     * MessageTypeRegistry constructor
+     */
+    private MessageTypeRegistry() {
+
+        // The registry only has static methods
+    }
+
+    /**
+     * Get the registered message types
+     *
+     * @return Definitions of the registered message types, sorted by name
+     */
+    public static List<MessageTypeDefinition> getRegisteredMessageTypes() {
+
+        // Sort the registered message types by name
+        ArrayList<String> names = new ArrayList<>(definitions.keySet());
+        Collections.sort(names);
+
+        ArrayList<MessageTypeDefinition> registered = new ArrayList<>(names.size());
+        for (String name : names) {
+            registered.add(definitions.get(name));
+        }
+
+        return registered;
+    }
+
+    /**
+     * Check if a message type is registered
+     *
+     * @param messageType Name of the message type
+     * @return Whether the message type is registered
+     */
+    public static boolean isRegistered(String messageType) {
+
+        // Look for the message type
+        return messageType != null && definitions.containsKey(messageType);
+    }
+
+    /**
+     * Register a custom message type
+     *
+     * Registering a message type which is already registered has no effect.
+     *
+     * @param messageType Name of the custom message type
+     * @return Shared definition of the message type
+     * @throws SmogException when the message type is not well formed
+     */
+    public static MessageTypeDefinition register(String messageType) throws SmogException {
+
+        // Check the name of the message type
+        if (!isWellFormed(messageType)) {
+            throw new SmogException("The message type '" + messageType + "' is not well formed");
+        }
+
+        // Register the message type unless it has already been registered
+        MessageTypeDefinition definition = new MessageTypeDefinition(messageType, null, true, true);
+        MessageTypeDefinition existing = definitions.putIfAbsent(messageType, definition);
+
+        return existing != null ? existing : definition;
+    }
+
+    /**
+     * Get the definition of a message type
+     *
+     * @param messageType Name of the message type, null being taken as a blank message type
+     * @return Shared definition of a registered message type, or a new definition of a message type which has not
+     * been registered
+     */
+    public static MessageTypeDefinition resolve(String messageType) {
+
+        // Registered message types
+        String name = messageType != null ? messageType : "";
+        MessageTypeDefinition definition = definitions.get(name);
+        if (definition != null) {
+            return definition;
+        }
+
+        // Message types which have not been registered
+        return new MessageTypeDefinition(name, null, isWellFormed(name), false);
+    }
+
+    /**
+     * Register the message types of the SEPAmail schemas
+     *
+     * @return Definitions of the message types of the SEPAmail schemas by name
+     */
+    private static ConcurrentHashMap<String, MessageTypeDefinition> createDefinitions() {
+
+        // Message types enumerated by the schemas
+        ConcurrentHashMap<String, MessageTypeDefinition> schemaDefinitions = new ConcurrentHashMap<>();
+        for (XmlAnySimpleType value : MessageType.type.getEnumerationValues()) {
+            MessageType.Enum schemaMessageType = MessageType.Enum.forString(value.getStringValue());
+            schemaDefinitions.put(schemaMessageType.toString(), new MessageTypeDefinition(
+                    schemaMessageType.toString(), schemaMessageType, true, true));
+        }
+
+        return schemaDefinitions;
+    }
+
+    /**
+     * Check if the given name may be used as a message type
+     *
+     * @param messageType Name of the message type
+     * @return Whether the message type is well formed
+     */
+    private static boolean isWellFormed(String messageType) {
+
+        // Blank message types are not well formed
+        if (messageType == null || messageType.isEmpty()) {
+            return false;
+        }
+
+        // Message types hold no whitespace
+        for (int i = 0; i < messageType.length(); i++) {
+            if (Character.isWhitespace(messageType.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,418 @@
+package smog.missive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import smog.exception.SmogException;
+import smog.utils.Utils;
+
+/**
+ * MissiveFileIndex gives random access to the missives of a missive file through a sidecar index file.
+ *
+ * The index is created by scanning the bytes of the missive file once, and records the offset and length of each
+ * missive along with the ID of the missive, the ID of its message and the first identifier of its recipient. The index
+ * file is a compact binary file which is loaded into memory when the index is opened, and which records the length and
+ * the modification time of the missive file so that an index which no longer matches its missive file is rejected.
+ *
+ * A missive found in the index is read by mapping its bytes, and only those, into memory, so that reading a missive
+ * takes a single seek whatever its position in the file. As the missives of a file may use the namespace prefixes
+ * declared by the root element of the file, these declarations are recorded in the index and given to the parser of
+ * each missive. Indexes are immutable once created or opened and may be used concurrently.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveFileIndex {
+
+    // Start of the index files and version of their format
+    private static final int MAGIC = 0x534d4958;
+    private static final int VERSION = 2;
+
+    // End of the element holding a missive when it is parsed on its own
+    private static final byte[] MISSIVE_SUFFIX = "</Index>".getBytes(StandardCharsets.UTF_8);
+
+    // Class attributes
+    private final List<MissiveIndexEntry> entries;
+    private final HashMap<String, MissiveIndexEntry> messageIds;
+    private final Path missiveFile;
+    private final byte[] missivePrefix;
+    private final HashMap<String, MissiveIndexEntry> missiveIds;
+    private final HashMap<String, List<MissiveIndexEntry>> recipients;
+
+    /**
+     * MissiveFileIndex constructor
+     *
+     * @param missiveFile Path of the missive file
+     * @param namespaceDeclarations Namespace declarations of the root element of the missive file
+     * @param entries Index entries of the missives of the file
+     */
+    private MissiveFileIndex(Path missiveFile, String namespaceDeclarations, List<MissiveIndexEntry> entries) {
+
+        // Initialise class attributes
+        this.entries = Collections.unmodifiableList(entries);
+        this.messageIds = new HashMap<>();
+        this.missiveFile = missiveFile;
+        this.missivePrefix = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Index" + namespaceDeclarations + ">")
+                .getBytes(StandardCharsets.UTF_8);
+        this.missiveIds = new HashMap<>();
+        this.recipients = new HashMap<>();
+
+        // Index the entries by key, keeping the first missive for duplicate IDs
+        for (MissiveIndexEntry entry : entries) {
+            if (!this.missiveIds.containsKey(entry.getMissiveId())) {
+                this.missiveIds.put(entry.getMissiveId(), entry);
+            }
+            if (entry.getMessageId() != null && !this.messageIds.containsKey(entry.getMessageId())) {
+                this.messageIds.put(entry.getMessageId(), entry);
+            }
+            if (entry.getRecipient() != null) {
+                List<MissiveIndexEntry> recipientEntries = this.recipients.get(entry.getRecipient());
+                if (recipientEntries == null) {
+                    recipientEntries = new ArrayList<>();
+                    this.recipients.put(entry.getRecipient(), recipientEntries);
+                }
+                recipientEntries.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Create the index of a missive file and write it to an index file
+     *
+     * @param missiveFile Path of the missive file
+     * @param indexFile Path of the index file, which is replaced when it exists
+     * @return Index of the missive file
+     * @throws SmogException when the missive file cannot be read or is not a missive file, or when the index file
+     * cannot be written
+     */
+    public static MissiveFileIndex create(Path missiveFile, Path indexFile) throws SmogException {
+
+        // Scan the missive file, taking its modification time first so that changes made during the scan are detected
+        List<MissiveIndexEntry> entries;
+        String namespaceDeclarations;
+        long fileLength;
+        long lastModified;
+        try (FileChannel fileChannel = FileChannel.open(missiveFile, StandardOpenOption.READ)) {
+            lastModified = Files.getLastModifiedTime(missiveFile).toMillis();
+            MissiveFileScanner scanner = new MissiveFileScanner(fileChannel);
+            entries = scanner.scan();
+            namespaceDeclarations = scanner.getNamespaceDeclarations();
+            fileLength = fileChannel.size();
+        } catch (IOException ex) {
+            throw new SmogException("The missive file " + missiveFile + " could not be read: " + ex.getMessage());
+        }
+
+        // Write the index file
+        try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+
+            // Header of the index
+            os.writeInt(MAGIC);
+            os.writeInt(VERSION);
+            os.writeLong(fileLength);
+            os.writeLong(lastModified);
+            os.writeUTF(namespaceDeclarations);
+            os.writeInt(entries.size());
+
+            // Entries of the index
+            for (MissiveIndexEntry entry : entries) {
+                os.writeLong(entry.getOffset());
+                os.writeInt(entry.getLength());
+                os.writeUTF(entry.getMissiveId());
+                writeOptional(os, entry.getMessageId());
+                writeOptional(os, entry.getRecipient());
+            }
+
+        } catch (IOException ex) {
+            throw new SmogException("The index file " + indexFile + " could not be written: " + ex.getMessage());
+        }
+
+        return new MissiveFileIndex(missiveFile, namespaceDeclarations, entries);
+    }
+
+    /**
+     * Open the index of a missive file from its index file
+     *
+     * @param missiveFile Path of the missive file
+     * @param indexFile Path of the index file
+     * @return Index of the missive file
+     * @throws SmogException when the index file cannot be read or does not match the missive file
+     */
+    public static MissiveFileIndex open(Path missiveFile, Path indexFile) throws SmogException {
+
+        try (DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+
+            // Header of the index
+            if (is.readInt() != MAGIC || is.readInt() != VERSION) {
+                throw new SmogException("The file " + indexFile + " is not a missive file index");
+            }
+            if (is.readLong() != Files.size(missiveFile) ||
+                    is.readLong() != Files.getLastModifiedTime(missiveFile).toMillis()) {
+                throw new SmogException("The index file " + indexFile + " does not match the missive file " +
+                        missiveFile);
+            }
+            String namespaceDeclarations = is.readUTF();
+
+            // Entries of the index
+            int count = is.readInt();
+            List<MissiveIndexEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long offset = is.readLong();
+                int length = is.readInt();
+                String missiveId = is.readUTF();
+                String messageId = readOptional(is);
+                String recipient = readOptional(is);
+                entries.add(new MissiveIndexEntry(missiveId, messageId, recipient, offset, length));
+            }
+
+            return new MissiveFileIndex(missiveFile, namespaceDeclarations, entries);
+
+        } catch (IOException ex) {
+            throw new SmogException("The index file " + indexFile + " could not be read: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Find a missive by the ID of its message
+     *
+     * @param messageId The ID of the message
+     * @return Index entry of the first missive holding the message, or null when no missive holds it
+     */
+    public MissiveIndexEntry findByMessageId(String messageId) {
+
+        // Look up the message ID
+        return this.messageIds.get(messageId);
+    }
+
+    /**
+     * Find a missive by its ID
+     *
+     * @param missiveId The ID of the missive
+     * @return Index entry of the first missive with the ID, or null when no missive has it
+     */
+    public MissiveIndexEntry findByMissiveId(String missiveId) {
+
+        // Look up the missive ID
+        return this.missiveIds.get(missiveId);
+    }
+
+    /**
+     * Find the missives sent to a recipient
+     *
+     * @param recipient Identifier of the recipient
+     * @return Read-only list of the index entries of the missives sent to the recipient, in the order of the file
+     */
+    public List<MissiveIndexEntry> findByRecipient(String recipient) {
+
+        // Look up the recipient
+        List<MissiveIndexEntry> recipientEntries = this.recipients.get(recipient);
+        return recipientEntries != null ? Collections.unmodifiableList(recipientEntries) :
+                Collections.<MissiveIndexEntry>emptyList();
+    }
+
+    /**
+     * Get the index entries of all the missives of the file
+     *
+     * @return Read-only list of the index entries, in the order of the file
+     */
+    public List<MissiveIndexEntry> getEntries() {
+
+        // Get the entries
+        return this.entries;
+    }
+
+    /**
+     * Read a missive of the file as a document
+     *
+     * @param entry Index entry of the missive
+     * @return Document holding the missive
+     * @throws SmogException when the missive cannot be read or is not a SEPAmail missive
+     */
+    public DocumentBase read(MissiveIndexEntry entry) throws SmogException {
+
+        try (FileChannel fileChannel = FileChannel.open(this.missiveFile, StandardOpenOption.READ)) {
+
+            // Parse the missive from its bytes
+            XMLStreamReader reader = this.openMissive(fileChannel, entry);
+            try {
+                return MissiveFileReader.parseMissive(reader);
+            } finally {
+                reader.close();
+            }
+
+        } catch (IOException | XMLStreamException ex) {
+            throw new SmogException("The missive " + entry.getMissiveId() + " could not be read: " +
+                    ex.getMessage());
+        }
+    }
+
+    /**
+     * Read the routing header of a missive of the file, without parsing its message body
+     *
+     * @param entry Index entry of the missive
+     * @return Routing header of the missive
+     * @throws SmogException when the missive cannot be read or does not hold the routing fields
+     */
+    public MissiveRoutingHeader readHeader(MissiveIndexEntry entry) throws SmogException {
+
+        try (FileChannel fileChannel = FileChannel.open(this.missiveFile, StandardOpenOption.READ)) {
+
+            // Read the routing fields from the bytes of the missive
+            XMLStreamReader reader = this.openMissive(fileChannel, entry);
+            try {
+                return new MissiveHeaderReader().read(reader);
+            } finally {
+                reader.close();
+            }
+
+        } catch (IOException | XMLStreamException ex) {
+            throw new SmogException("The missive " + entry.getMissiveId() + " could not be read: " +
+                    ex.getMessage());
+        }
+    }
+
+    /**
+     * Open a StAX reader on the start of a missive of the file
+     *
+     * The bytes of the missive are mapped into memory and are read within an element declaring the namespaces of the
+     * root element of the file.
+     *
+     * @param fileChannel File channel holding the missive file
+     * @param entry Index entry of the missive
+     * @return StAX reader on the start of the missive
+     * @throws IOException
+     * @throws XMLStreamException
+     * @throws SmogException when the index entry does not locate a missive
+     */
+    private XMLStreamReader openMissive(FileChannel fileChannel, MissiveIndexEntry entry)
+            throws IOException, XMLStreamException, SmogException {
+
+        // Map the bytes of the missive
+        if (entry.getOffset() + entry.getLength() > fileChannel.size()) {
+            throw new SmogException("The missive " + entry.getMissiveId() + " is beyond the end of the missive file");
+        }
+        MappedByteBuffer mappedMissive = fileChannel.map(FileChannel.MapMode.READ_ONLY, entry.getOffset(),
+                entry.getLength());
+
+        // Read the missive within an element declaring the namespaces of the file
+        InputStream missive = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(this.missivePrefix), new ByteBufferInputStream(mappedMissive),
+                new ByteArrayInputStream(MISSIVE_SUFFIX))));
+        XMLStreamReader reader = Utils.getXmlInputFactory().createXMLStreamReader(missive);
+
+        // Move to the start of the missive
+        try {
+            reader.nextTag();
+            reader.nextTag();
+        } catch (XMLStreamException ex) {
+            reader.close();
+            throw new SmogException("The index entry of the missive " + entry.getMissiveId() +
+                    " does not locate a missive: " + ex.getMessage());
+        }
+        if (!"Msv".equals(reader.getLocalName())) {
+            reader.close();
+            throw new SmogException("The index entry of the missive " + entry.getMissiveId() +
+                    " does not locate a missive");
+        }
+
+        return reader;
+    }
+
+    /**
+     * Read a string which may be absent from an index file
+     *
+     * @param is Input stream of the index file
+     * @return String, or null when it is absent
+     * @throws IOException
+     */
+    private static String readOptional(DataInputStream is) throws IOException {
+
+        // Presence flag followed by the string
+        return is.readBoolean() ? is.readUTF() : null;
+    }
+
+    /**
+     * Write a string which may be absent to an index file
+     *
+     * @param os Output stream of the index file
+     * @param value String, or null when it is absent
+     * @throws IOException
+     */
+    private static void writeOptional(DataOutputStream os, String value) throws IOException {
+
+        // Presence flag followed by the string
+        os.writeBoolean(value != null);
+        if (value != null) {
+            os.writeUTF(value);
+        }
+    }
+
+    /**
+     * ByteBufferInputStream reads the bytes of a buffer
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        // Class attributes
+        private final ByteBuffer buffer;
+
+        /**
+         * ByteBufferInputStream constructor
+         *
+         * @param buffer Buffer of which the remaining bytes are read
+         */
+        private ByteBufferInputStream(ByteBuffer buffer) {
+
+            // Initialise class attributes
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int available() {
+
+            // Remaining bytes of the buffer
+            return this.buffer.remaining();
+        }
+
+        @Override
+        public int read() {
+
+            // Next byte of the buffer
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+
+            // Check for the end of the buffer
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+
+            // Copy the next bytes of the buffer
+            int count = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, count);
+            return count;
+        }
+    }
+}
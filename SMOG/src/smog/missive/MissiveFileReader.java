@@ -0,0 +1,434 @@
+package smog.missive;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.xmlbeans.GDate;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlOptions;
+import smog.exception.SmogException;
+import smog.io.CDataEscapingInputStream;
+import smog.schema.sem.MissiveDocument;
+import smog.schema.sem.SenderOrReceiver;
+import smog.utils.Utils;
+
+/**
+ * MissiveFileReader reads the missives of a missive file, defined by sepamail_missive_file.xsd, one at a time.
+ *
+ * The file is read with StAX and only the missive being read is loaded into XmlBeans, so that memory does not grow with
+ * the number of missives in the file. The missives may be read as documents, which are parsed as by
+ * DocumentBase.parse(), or as routing headers, in which case their message body is skipped without being loaded. Both
+ * may be mixed while reading a file. CDATA sections, in which attachments are usually written, are read as escaped
+ * text since the StAX reader would otherwise keep each of them in memory, and are written as escaped text by the
+ * documents read from the file.
+ *
+ * The date and time, partner and number of missives of the file are read when the reader is created. The number of
+ * missives is the one declared by the file and is not checked against the missives which are read. File readers are
+ * not thread safe.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveFileReader implements Closeable {
+
+    // Namespace of the SEPAmail missives
+    private static final String NAMESPACE = "http://xsd.sepamail.eu/1206/";
+
+    // Name given to the missives of the file when they are loaded as missive documents
+    private static final QName MISSIVE_NAME = new QName(NAMESPACE, "Missive");
+
+    // Size of the buffer of bytes read from file channels
+    private static final int CHANNEL_BUFFER_SIZE = 65536;
+
+    // Class attributes
+    private final GDate fileDateTime;
+    private final InputStream inputStream;
+    private final MissiveHeaderReader missiveHeaderReader;
+    private final BigInteger missiveCount;
+    private final SenderOrReceiver partner;
+    private boolean positioned;
+    private final XMLStreamReader reader;
+
+    /**
+     * MissiveFileReader constructor
+     *
+     * The input stream is closed when the reader is closed, or when the file header cannot be read.
+     *
+     * @param inputStream Input stream holding the missive file
+     * @throws SmogException when the content of the input stream is not a missive file
+     */
+    public MissiveFileReader(InputStream inputStream) throws SmogException {
+
+        // Initialise class attributes
+        this.inputStream = inputStream;
+        this.missiveHeaderReader = new MissiveHeaderReader();
+        this.positioned = false;
+
+        // File header
+        GDate headerDateTime = null;
+        BigInteger headerMissiveCount = null;
+        SenderOrReceiver headerPartner = null;
+
+        XMLStreamReader streamReader = null;
+        try {
+
+            // Move to the root element of the file
+            streamReader = Utils.getXmlInputFactory().createXMLStreamReader(new CDataEscapingInputStream(inputStream));
+            streamReader.nextTag();
+            if (!isElement(streamReader, "Fichier")) {
+                throw new SmogException("The content is not a SEPAmail missive file: " + streamReader.getName());
+            }
+
+            // Date and time at which the file was created
+            streamReader.nextTag();
+            if (isElement(streamReader, "DatTim")) {
+                headerDateTime = new GDate(streamReader.getElementText().trim());
+                streamReader.nextTag();
+            }
+
+            // Partner of the file, which is its sender or its receiver
+            if (isElement(streamReader, "Partner")) {
+                streamReader.nextTag();
+                headerPartner = SenderOrReceiver.Factory.newInstance();
+                if (isElement(streamReader, "Sender")) {
+                    headerPartner.setSender(streamReader.getElementText().trim());
+                } else if (isElement(streamReader, "Receiver")) {
+                    headerPartner.setReceiver(streamReader.getElementText().trim());
+                } else {
+                    throw new SmogException("The partner of the missive file is neither a sender nor a receiver");
+                }
+                streamReader.nextTag();
+                streamReader.nextTag();
+            }
+
+            // Number of missives declared by the file
+            if (isElement(streamReader, "NbMsv")) {
+                headerMissiveCount = new BigInteger(streamReader.getElementText().trim());
+            }
+
+        } catch (XMLStreamException | IllegalArgumentException ex) {
+            this.closeQuietly(streamReader);
+            throw new SmogException("The missive file header could not be read: " + ex.getMessage());
+        } catch (SmogException ex) {
+            this.closeQuietly(streamReader);
+            throw ex;
+        }
+
+        // Check that the file header has been read
+        if (headerDateTime == null || headerPartner == null || headerMissiveCount == null) {
+            this.closeQuietly(streamReader);
+            throw new SmogException("The missive file does not hold its date and time, partner and number of missives");
+        }
+
+        // Initialise the file header
+        this.fileDateTime = headerDateTime;
+        this.missiveCount = headerMissiveCount;
+        this.partner = headerPartner;
+        this.reader = streamReader;
+    }
+
+    /**
+     * MissiveFileReader constructor
+     *
+     * The file channel is read from its current position, and is closed when the reader is closed, or when the file
+     * header cannot be read.
+     *
+     * @param fileChannel File channel holding the missive file
+     * @throws SmogException when the content of the file channel is not a missive file
+     */
+    public MissiveFileReader(FileChannel fileChannel) throws SmogException {
+
+        // Read the channel through a buffer, since the StAX reader makes small reads
+        this(new BufferedInputStream(Channels.newInputStream(fileChannel), CHANNEL_BUFFER_SIZE));
+    }
+
+    /**
+     * Close the reader along with the input stream or file channel holding the missive file
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+
+        // Close the StAX reader, which does not close the input stream
+        try {
+            this.reader.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            this.inputStream.close();
+        }
+    }
+
+    /**
+     * Get an iterator over the remaining missives of the file, read as documents
+     *
+     * Errors met while reading the missives are thrown as IllegalStateException holding the SmogException.
+     *
+     * @return Iterator over the remaining missives
+     */
+    public Iterator<DocumentBase> documents() {
+
+        // Read the missives through the reader
+        return new Iterator<DocumentBase>() {
+
+            @Override
+            public boolean hasNext() {
+
+                try {
+                    return MissiveFileReader.this.hasNext();
+                } catch (SmogException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+            @Override
+            public DocumentBase next() {
+
+                try {
+                    return MissiveFileReader.this.next();
+                } catch (SmogException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+            @Override
+            public void remove() {
+
+                // Missives cannot be removed from the file
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Get the date and time at which the missive file was created
+     *
+     * @return New calendar holding the date and time of the file
+     */
+    public Calendar getFileDateTime() {
+
+        // Calendars are mutable and a new one is given to each caller
+        return this.fileDateTime.getCalendar();
+    }
+
+    /**
+     * Get the number of missives declared by the missive file
+     *
+     * @return Number of missives declared by the file
+     */
+    public BigInteger getMissiveCount() {
+
+        // Get the declared number of missives
+        return this.missiveCount;
+    }
+
+    /**
+     * Get the partner of the missive file
+     *
+     * @return Copy of the sender or receiver of the file
+     */
+    public SenderOrReceiver getPartner() {
+
+        // Copy of the partner
+        return (SenderOrReceiver) this.partner.copy();
+    }
+
+    /**
+     * Check whether the missive file holds another missive
+     *
+     * @return true when another missive can be read
+     * @throws SmogException when the missive file cannot be read
+     */
+    public boolean hasNext() throws SmogException {
+
+        try {
+
+            // Move to the start of the next missive or to the end of the file
+            if (!this.positioned) {
+                this.reader.nextTag();
+                this.positioned = true;
+            }
+
+        } catch (XMLStreamException ex) {
+            throw new SmogException("The missive file could not be read: " + ex.getMessage());
+        }
+
+        // A start element can only be a missive
+        if (this.reader.isStartElement()) {
+            if (!isElement(this.reader, "Msv")) {
+                throw new SmogException("The missive file holds an unexpected element: " + this.reader.getName());
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Get an iterator over the routing headers of the remaining missives of the file
+     *
+     * The message bodies of the missives are skipped. Errors met while reading the missives are thrown as
+     * IllegalStateException holding the SmogException.
+     *
+     * @return Iterator over the routing headers of the remaining missives
+     */
+    public Iterator<MissiveRoutingHeader> headers() {
+
+        // Read the routing headers through the reader
+        return new Iterator<MissiveRoutingHeader>() {
+
+            @Override
+            public boolean hasNext() {
+
+                try {
+                    return MissiveFileReader.this.hasNext();
+                } catch (SmogException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+            @Override
+            public MissiveRoutingHeader next() {
+
+                try {
+                    return MissiveFileReader.this.nextHeader();
+                } catch (SmogException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+            @Override
+            public void remove() {
+
+                // Missives cannot be removed from the file
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Read the next missive of the file as a document
+     *
+     * @return Document holding the missive
+     * @throws SmogException when the missive cannot be read or is not a SEPAmail missive
+     * @throws NoSuchElementException when the file holds no more missives
+     */
+    public DocumentBase next() throws SmogException {
+
+        // Check that the file holds another missive
+        if (!this.hasNext()) {
+            throw new NoSuchElementException("The missive file holds no more missives");
+        }
+        this.positioned = false;
+
+        // Load the missive, which leaves the reader on the end of the missive
+        return parseMissive(this.reader);
+    }
+
+    /**
+     * Read the routing header of the next missive of the file, skipping its message body
+     *
+     * @return Routing header of the missive
+     * @throws SmogException when the missive cannot be read or does not hold the routing fields
+     * @throws NoSuchElementException when the file holds no more missives
+     */
+    public MissiveRoutingHeader nextHeader() throws SmogException {
+
+        // Check that the file holds another missive
+        if (!this.hasNext()) {
+            throw new NoSuchElementException("The missive file holds no more missives");
+        }
+        this.positioned = false;
+
+        // Read the routing fields, which leaves the reader on the start of the message body or on the end of the
+        // missive
+        MissiveRoutingHeader header = this.missiveHeaderReader.read(this.reader);
+
+        try {
+
+            // Skip the rest of the missive, the elements ending outside of those entered while skipping being the
+            // elements holding the message body, of which the one named after the missives of the file is the missive
+            int depth = 0;
+            int event = this.reader.getEventType();
+            while (event != XMLStreamConstants.END_ELEMENT || depth > 0 || !isElement(this.reader, "Msv")) {
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT && depth > 0) {
+                    depth--;
+                }
+                event = this.reader.next();
+            }
+
+        } catch (XMLStreamException ex) {
+            throw new SmogException("The missive could not be read: " + ex.getMessage());
+        }
+
+        return header;
+    }
+
+    /**
+     * Parse the missive of a missive file at the current position of a StAX reader
+     *
+     * @param streamReader StAX reader on the start of the missive, which is left on the end of the missive
+     * @return Document holding the missive
+     * @throws SmogException when the missive cannot be parsed or is not a SEPAmail missive
+     */
+    static DocumentBase parseMissive(XMLStreamReader streamReader) throws SmogException {
+
+        // Load the missive under the name of the root element of missive documents
+        MissiveDocument missiveDocument;
+        try {
+            missiveDocument = MissiveDocument.Factory.parse(streamReader,
+                    new XmlOptions().setLoadReplaceDocumentElement(MISSIVE_NAME)
+                    .setLoadAdditionalNamespaces(Collections.singletonMap("sem", NAMESPACE)));
+        } catch (XmlException ex) {
+            throw new SmogException("The missive could not be parsed: " + ex.getMessage());
+        }
+
+        return DocumentBase.fromParsedMissive(missiveDocument);
+    }
+
+    /**
+     * Close a StAX reader along with the input stream, ignoring errors
+     *
+     * @param streamReader StAX reader, or null when it has not been created
+     */
+    private void closeQuietly(XMLStreamReader streamReader) {
+
+        // The reader could not be created and the original error is the one to report
+        try {
+            if (streamReader != null) {
+                streamReader.close();
+            }
+            this.inputStream.close();
+        } catch (XMLStreamException | IOException ex) {
+            // Ignored
+        }
+    }
+
+    /**
+     * Check whether the StAX reader is on an element of the SEPAmail namespace with the given name
+     *
+     * @param streamReader StAX reader
+     * @param localName Local name of the element
+     * @return true when the reader is on the start or end of the element
+     */
+    private static boolean isElement(XMLStreamReader streamReader, String localName) {
+
+        // Compare the name of the element
+        return (streamReader.isStartElement() || streamReader.isEndElement()) &&
+                localName.equals(streamReader.getLocalName()) && NAMESPACE.equals(streamReader.getNamespaceURI());
+    }
+}
@@ -0,0 +1,555 @@
+package smog.missive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import smog.exception.SmogException;
+
+/**
+ * MissiveFileScanner locates the missives of a missive file by scanning its bytes, without parsing it.
+ *
+ * The scanner recognises the markup of the file (tags, comments, processing instructions and CDATA sections) and keeps
+ * track of the depth of the elements, so that it finds the offset and length of each missive of the file. The names of
+ * the elements are only decoded up to the start of the message body of each missive, from which the ID of the missive,
+ * the ID of the message and the first identifier of the recipient are read. Elements are recognised by their local
+ * names, as the namespace prefixes are not resolved. The namespace declarations of the root element are kept so that
+ * the missives can later be parsed on their own.
+ *
+ * The file must be encoded in UTF-8, and may not hold a document type declaration with an internal subset.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+class MissiveFileScanner {
+
+    // Markup recognised in the file
+    private static final byte[] CDATA_END = "]]>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CDATA_START = "CDATA[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COMMENT_END = "-->".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DECLARATION_END = ">".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PI_END = "?>".getBytes(StandardCharsets.UTF_8);
+
+    // Namespace declaration among the attributes of the root element
+    private static final Pattern NAMESPACE_DECLARATION =
+            Pattern.compile("\\sxmlns(:[^\\s=]+)?\\s*=\\s*(\"[^\"]*\"|'[^']*')");
+
+    // Size of the buffer of bytes read from the file channel
+    private static final int BUFFER_SIZE = 65536;
+
+    // Class attributes
+    private final ByteBuffer buffer;
+    private final FileChannel fileChannel;
+    private int lastByte;
+    private byte[] name;
+    private String namespaceDeclarations;
+    private long position;
+
+    /**
+     * MissiveFileScanner constructor
+     *
+     * @param fileChannel File channel holding the missive file, read from its start
+     * @throws IOException
+     */
+    MissiveFileScanner(FileChannel fileChannel) throws IOException {
+
+        // Initialise class attributes
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.flip();
+        this.fileChannel = fileChannel;
+        this.lastByte = -1;
+        this.name = new byte[64];
+        this.namespaceDeclarations = "";
+        this.position = 0;
+
+        // Read the file from its start
+        fileChannel.position(0);
+    }
+
+    /**
+     * Get the namespace declarations of the root element of the file
+     *
+     * @return Namespace declarations, each preceded by a space, as written in the root element
+     */
+    String getNamespaceDeclarations() {
+
+        // Get the namespace declarations
+        return this.namespaceDeclarations;
+    }
+
+    /**
+     * Scan the file
+     *
+     * @return Index entries of the missives of the file, in the order of the file
+     * @throws IOException
+     * @throws SmogException when the file is not a missive file or one of its missives does not hold its ID
+     */
+    List<MissiveIndexEntry> scan() throws IOException, SmogException {
+
+        // Entries of the missives
+        List<MissiveIndexEntry> entries = new ArrayList<>();
+
+        // Missive being scanned and names of the elements holding the current position below the missive
+        long missiveStart = -1;
+        String messageId = null;
+        String missiveId = null;
+        String recipient = null;
+        boolean inBody = false;
+        ArrayList<String> path = new ArrayList<>();
+
+        // Field of which the text is being read
+        String field = null;
+        int fieldDepth = 0;
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+
+        int depth = 0;
+        int b;
+        while ((b = this.read()) != -1) {
+
+            // Text content, which is only kept for the fields being read
+            if (b != '<') {
+                if (field != null) {
+                    if (b == '&') {
+                        this.readReference(text);
+                    } else {
+                        text.write(b);
+                    }
+                }
+                continue;
+            }
+            long tagStart = this.position - 1;
+            b = this.read();
+
+            // Processing instructions
+            if (b == '?') {
+                this.skipTo(PI_END, null);
+                continue;
+            }
+
+            // Comments, CDATA sections and document type declarations
+            if (b == '!') {
+                b = this.read();
+                if (b == '-') {
+                    this.skipTo(COMMENT_END, null);
+                } else if (b == '[') {
+                    for (byte expected : CDATA_START) {
+                        if (this.read() != expected) {
+                            throw new SmogException("The missive file holds invalid markup at offset " + tagStart);
+                        }
+                    }
+                    this.skipTo(CDATA_END, field != null ? text : null);
+                } else {
+                    this.skipTo(DECLARATION_END, null);
+                }
+                continue;
+            }
+
+            // Name of the element, which is only needed up to the start of the message body
+            boolean endTag = b == '/';
+            if (endTag) {
+                b = this.read();
+            }
+            String localName = this.readName(b, !inBody);
+
+            if (endTag) {
+
+                // Skip to the end of the tag
+                while (this.lastByte != '>') {
+                    this.lastByte = this.readRequired();
+                }
+
+                // Field of which the text has been read
+                if (field != null && depth == fieldDepth) {
+                    String value = new String(text.toByteArray(), StandardCharsets.UTF_8).trim();
+                    switch (field) {
+                        case "MsvId":
+                            missiveId = value;
+                            break;
+                        case "MsgId":
+                            messageId = value;
+                            break;
+                        case "Rcv":
+                            recipient = value;
+                            break;
+                    }
+                    field = null;
+                }
+
+                // End of a missive
+                depth--;
+                if (depth == 1 && missiveStart >= 0) {
+                    entries.add(this.createEntry(missiveStart, missiveId, messageId, recipient));
+                    missiveStart = -1;
+                    inBody = false;
+                }
+                continue;
+            }
+
+            // Attributes of the element, of which those of the root element are kept
+            ByteArrayOutputStream attributes = depth == 0 ? new ByteArrayOutputStream() : null;
+            boolean empty = this.skipAttributes(attributes);
+            depth++;
+
+            if (depth == 1) {
+
+                // Root element of the file
+                if (!"Fichier".equals(localName)) {
+                    throw new SmogException("The content is not a SEPAmail missive file: " + localName);
+                }
+                this.readNamespaceDeclarations(attributes);
+
+            } else if (depth == 2) {
+
+                // Start of a missive
+                if ("Msv".equals(localName)) {
+                    missiveStart = tagStart;
+                    messageId = null;
+                    missiveId = null;
+                    recipient = null;
+                    path.clear();
+                }
+
+            } else if (missiveStart >= 0 && !inBody) {
+
+                // Keep track of the elements holding the current position below the missive
+                while (path.size() > depth - 3) {
+                    path.remove(path.size() - 1);
+                }
+                path.add(localName);
+
+                // Read the text of the fields and stop decoding names at the start of the message body
+                String pathField = getField(path, recipient == null);
+                if ("MsgBdy".equals(pathField)) {
+                    inBody = true;
+                } else if (pathField != null) {
+                    field = pathField;
+                    fieldDepth = depth;
+                    text.reset();
+                }
+            }
+
+            // Elements without content end with their start tag
+            if (empty) {
+                if (field != null && depth == fieldDepth) {
+                    field = null;
+                }
+                depth--;
+                if (depth == 1 && missiveStart >= 0) {
+                    entries.add(this.createEntry(missiveStart, missiveId, messageId, recipient));
+                    missiveStart = -1;
+                    inBody = false;
+                }
+            }
+        }
+
+        // Check that the whole file has been read
+        if (depth != 0) {
+            throw new SmogException("The missive file ends before its root element");
+        }
+
+        return entries;
+    }
+
+    /**
+     * Create the index entry of a missive which ends at the current position
+     *
+     * @param missiveStart Offset of the start tag of the missive
+     * @param missiveId The ID of the missive
+     * @param messageId The ID of the message
+     * @param recipient Identifier of the recipient
+     * @return Index entry of the missive
+     * @throws SmogException when the missive does not hold its ID or is too large to be mapped
+     */
+    private MissiveIndexEntry createEntry(long missiveStart, String missiveId, String messageId, String recipient)
+            throws SmogException {
+
+        // Check the missive
+        long length = this.position - missiveStart;
+        if (missiveId == null) {
+            throw new SmogException("The missive at offset " + missiveStart + " does not hold its ID");
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new SmogException("The missive at offset " + missiveStart + " is too large to be indexed");
+        }
+
+        return new MissiveIndexEntry(missiveId, messageId, recipient, missiveStart, (int) length);
+    }
+
+    /**
+     * Get the field held by the element at the given path below a missive
+     *
+     * @param path Local names of the elements holding the element, starting below the missive
+     * @param readRecipient Whether the recipient still needs to be read
+     * @return MsvId, MsgId, Rcv, MsgBdy for the start of the message body, or null for other elements
+     */
+    private static String getField(List<String> path, boolean readRecipient) {
+
+        // All the fields are held by the missive element
+        if (!"sepamail_missive_001".equals(path.get(0))) {
+            return null;
+        }
+
+        switch (path.size()) {
+
+            // ID of the missive
+            case 2:
+                return "MsvId".equals(path.get(1)) ? "MsvId" : null;
+
+            // First identifier of the recipient and start of the message body
+            case 4:
+                if (readRecipient && "MsvHdr".equals(path.get(1)) && "Rcv".equals(path.get(2))) {
+                    return "Rcv";
+                }
+                if ("MsvBdy".equals(path.get(1)) && "sepamail_message_001".equals(path.get(2)) &&
+                        "MsgBdy".equals(path.get(3))) {
+                    return "MsgBdy";
+                }
+                return null;
+
+            // ID of the message
+            case 5:
+                return "MsvBdy".equals(path.get(1)) && "sepamail_message_001".equals(path.get(2)) &&
+                        "MsgHdr".equals(path.get(3)) && "MsgId".equals(path.get(4)) ? "MsgId" : null;
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Check if the given byte is an XML whitespace character
+     *
+     * @param b Byte that needs to be checked
+     * @return Whether the byte is an XML whitespace character
+     */
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    /**
+     * Read the next byte of the file
+     *
+     * @return Next byte, or -1 at the end of the file
+     * @throws IOException
+     */
+    private int read() throws IOException {
+
+        // Refill the buffer
+        if (!this.buffer.hasRemaining()) {
+            this.buffer.clear();
+            int count;
+            do {
+                count = this.fileChannel.read(this.buffer);
+            } while (count == 0);
+            this.buffer.flip();
+            if (count < 0) {
+                return -1;
+            }
+        }
+
+        this.position++;
+        return this.buffer.get() & 0xff;
+    }
+
+    /**
+     * Read the name of an element, leaving the byte which follows it in lastByte
+     *
+     * @param first First byte of the name
+     * @param decode Whether the name needs to be decoded
+     * @return Local name of the element, or null when it is not decoded
+     * @throws IOException
+     * @throws SmogException when the file ends within the name
+     */
+    private String readName(int first, boolean decode) throws IOException, SmogException {
+
+        // Read up to the end of the name
+        int b = first;
+        int length = 0;
+        int colon = -1;
+        while (b != '>' && b != '/' && !isWhitespace(b)) {
+            if (b == -1) {
+                throw new SmogException("The missive file ends within a tag");
+            }
+            if (decode) {
+                if (b == ':') {
+                    colon = length;
+                }
+                if (length == this.name.length) {
+                    byte[] grown = new byte[length * 2];
+                    System.arraycopy(this.name, 0, grown, 0, length);
+                    this.name = grown;
+                }
+                this.name[length++] = (byte) b;
+            }
+            b = this.read();
+        }
+        this.lastByte = b;
+
+        return decode ? new String(this.name, colon + 1, length - colon - 1, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Keep the namespace declarations among the attributes of the root element
+     *
+     * @param attributes Attributes of the root element
+     */
+    private void readNamespaceDeclarations(ByteArrayOutputStream attributes) {
+
+        // Namespace declarations, each preceded by a space
+        StringBuilder declarations = new StringBuilder();
+        Matcher matcher = NAMESPACE_DECLARATION.matcher(" " + new String(attributes.toByteArray(),
+                StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            declarations.append(' ').append(matcher.group().trim());
+        }
+        this.namespaceDeclarations = declarations.toString();
+    }
+
+    /**
+     * Read the next byte of the file, which must be present
+     *
+     * @return Next byte
+     * @throws IOException
+     * @throws SmogException at the end of the file
+     */
+    private int readRequired() throws IOException, SmogException {
+
+        // Report the unexpected end of the file
+        int b = this.read();
+        if (b == -1) {
+            throw new SmogException("The missive file ends within its markup");
+        }
+
+        return b;
+    }
+
+    /**
+     * Read an entity or character reference of the text of a field, the ampersand having been read
+     *
+     * @param text Text of the field to which the referenced character is added
+     * @throws IOException
+     * @throws SmogException when the reference is not supported
+     */
+    private void readReference(ByteArrayOutputStream text) throws IOException, SmogException {
+
+        // Name of the reference
+        StringBuilder reference = new StringBuilder();
+        int b;
+        while ((b = this.readRequired()) != ';') {
+            reference.append((char) b);
+            if (reference.length() > 10) {
+                throw new SmogException("The missive file holds an invalid reference: &" + reference);
+            }
+        }
+
+        // Referenced character
+        String value;
+        switch (reference.toString()) {
+            case "lt":
+                value = "<";
+                break;
+            case "gt":
+                value = ">";
+                break;
+            case "amp":
+                value = "&";
+                break;
+            case "quot":
+                value = "\"";
+                break;
+            case "apos":
+                value = "'";
+                break;
+            default:
+                try {
+                    if (reference.length() > 2 && reference.charAt(0) == '#' && reference.charAt(1) == 'x') {
+                        value = new String(Character.toChars(Integer.parseInt(reference.substring(2), 16)));
+                    } else if (reference.length() > 1 && reference.charAt(0) == '#') {
+                        value = new String(Character.toChars(Integer.parseInt(reference.substring(1))));
+                    } else {
+                        throw new SmogException("The missive file holds an unknown entity: &" + reference + ";");
+                    }
+                } catch (IllegalArgumentException ex) {
+                    throw new SmogException("The missive file holds an invalid reference: &" + reference + ";");
+                }
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        text.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Skip the attributes of a start tag, from the byte held in lastByte to the end of the tag
+     *
+     * @param attributes Stream to which the attributes are copied, or null
+     * @return Whether the tag is the tag of an element without content
+     * @throws IOException
+     * @throws SmogException when the file ends within the tag
+     */
+    private boolean skipAttributes(ByteArrayOutputStream attributes) throws IOException, SmogException {
+
+        // Read up to the end of the tag, skipping the attribute values which may hold markup characters
+        int previous = -1;
+        int b = this.lastByte;
+        while (b != '>') {
+            if (attributes != null) {
+                attributes.write(b);
+            }
+            if (b == '"' || b == '\'') {
+                int quote = b;
+                do {
+                    b = this.readRequired();
+                    if (attributes != null) {
+                        attributes.write(b);
+                    }
+                } while (b != quote);
+            }
+            previous = b;
+            b = this.readRequired();
+        }
+
+        return previous == '/';
+    }
+
+    /**
+     * Skip the bytes of the file up to the end of a markup
+     *
+     * The end markups are made of a repeated byte followed by a final byte, for which a partial match only needs to
+     * be shifted by one byte when the repeated byte occurs once more.
+     *
+     * @param end End of the markup
+     * @param content Stream to which the skipped content is copied without the end of the markup, or null
+     * @throws IOException
+     * @throws SmogException when the file ends within the markup
+     */
+    private void skipTo(byte[] end, ByteArrayOutputStream content) throws IOException, SmogException {
+
+        // Number of bytes of the end of the markup which have been matched
+        int matched = 0;
+        while (matched < end.length) {
+            int b = this.readRequired();
+            if (b == end[matched]) {
+                matched++;
+            } else if (matched > 0 && b == end[0] && end[matched - 1] == end[0]) {
+
+                // The repeated byte occurs once more, and the oldest matched byte is part of the content
+                if (content != null) {
+                    content.write(end[0]);
+                }
+
+            } else {
+
+                // The matched bytes and the current byte are part of the content
+                if (content != null) {
+                    content.write(end, 0, matched);
+                    content.write(b);
+                }
+                matched = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package smog.missive;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Collections;
+import javax.xml.namespace.QName;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import smog.io.SerializationMode;
+import smog.schema.sem.ISODateTime;
+import smog.schema.sem.SenderOrReceiver;
+
+/**
+ * MissiveFileWriter writes missive files, defined by sepamail_missive_file.xsd, one missive at a time.
+ *
+ * Each missive is streamed from its document straight into a buffer over the file channel, so that the missives of the
+ * file never need to be held in memory together. The number of missives of the file is written in a single pass: the
+ * file header is written with a fixed width number of missives made of zeros, which is overwritten with the number of
+ * missives appended when the writer is closed. As a consequence, the content of the file is only complete once the
+ * writer has been closed. File writers are not thread safe.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveFileWriter implements Closeable {
+
+    // Namespace of the SEPAmail missives
+    private static final String NAMESPACE = "http://xsd.sepamail.eu/1206/";
+
+    // Prefix of the SEPAmail namespace in the file
+    private static final String PREFIX = "sem";
+
+    // Width of the number of missives, which holds any number of missives a file may hold
+    private static final int MISSIVE_COUNT_WIDTH = 19;
+
+    // Size of the buffer of bytes written to the file channel
+    private static final int CHANNEL_BUFFER_SIZE = 65536;
+
+    // Class attributes
+    private boolean closed;
+    private final FileChannel fileChannel;
+    private long missiveCount;
+    private final long missiveCountPosition;
+    private final SerializationMode mode;
+    private final OutputStream outputStream;
+
+    /**
+     * MissiveFileWriter constructor using the compact layout
+     *
+     * @param fileChannel File channel to which the missive file is written from its current position
+     * @param fileDateTime Date and time at which the file is created
+     * @param partner Sender or receiver of the file
+     * @throws IOException
+     */
+    public MissiveFileWriter(FileChannel fileChannel, Calendar fileDateTime, SenderOrReceiver partner)
+            throws IOException {
+
+        // Initialise the writer
+        this(fileChannel, fileDateTime, partner, SerializationMode.COMPACT);
+    }
+
+    /**
+     * MissiveFileWriter constructor
+     *
+     * The file channel is closed when the writer is closed.
+     *
+     * @param fileChannel File channel to which the missive file is written from its current position
+     * @param fileDateTime Date and time at which the file is created
+     * @param partner Sender or receiver of the file
+     * @param mode Layout of the missives of the file
+     * @throws IOException
+     */
+    public MissiveFileWriter(FileChannel fileChannel, Calendar fileDateTime, SenderOrReceiver partner,
+            SerializationMode mode) throws IOException {
+
+        // Date and time of the file
+        ISODateTime dateTime = ISODateTime.Factory.newInstance();
+        dateTime.setCalendarValue(fileDateTime);
+
+        // File header, up to the number of missives
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?><" + PREFIX + ":Fichier xmlns:" + PREFIX + "=\"" +
+                NAMESPACE + "\">").getBytes(StandardCharsets.UTF_8));
+        header.write(toElement(dateTime, "DatTim"));
+        header.write(toElement(partner, "Partner"));
+        header.write(("<" + PREFIX + ":NbMsv>").getBytes(StandardCharsets.UTF_8));
+
+        // Initialise class attributes
+        this.closed = false;
+        this.fileChannel = fileChannel;
+        this.missiveCount = 0;
+        this.missiveCountPosition = fileChannel.position() + header.size();
+        this.mode = mode;
+        this.outputStream = new BufferedOutputStream(Channels.newOutputStream(fileChannel), CHANNEL_BUFFER_SIZE);
+
+        // Write the file header with a number of missives to be overwritten when the writer is closed
+        header.write(formatMissiveCount(0));
+        header.write(("</" + PREFIX + ":NbMsv>").getBytes(StandardCharsets.UTF_8));
+        header.writeTo(this.outputStream);
+    }
+
+    /**
+     * Append a missive to the file
+     *
+     * @param document Missive that needs to be appended
+     * @throws IOException
+     * @throws IllegalStateException when the writer has been closed
+     */
+    public void append(DocumentBase document) throws IOException {
+
+        // Check that the file is still being written
+        if (this.closed) {
+            throw new IllegalStateException("The missive file writer has been closed");
+        }
+
+        // Stream the missive as a missive of the file
+        document.writeElementTo(this.outputStream, this.mode, "Msv");
+        this.missiveCount++;
+    }
+
+    /**
+     * Complete the missive file with the number of missives appended and close the file channel
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+
+        // The file is only completed once
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        try {
+
+            // End of the file
+            this.outputStream.write(("</" + PREFIX + ":Fichier>").getBytes(StandardCharsets.UTF_8));
+            this.outputStream.flush();
+
+            // Overwrite the number of missives of the file header
+            ByteBuffer count = ByteBuffer.wrap(formatMissiveCount(this.missiveCount));
+            while (count.hasRemaining()) {
+                this.fileChannel.write(count, this.missiveCountPosition + count.position());
+            }
+
+        } finally {
+            this.fileChannel.close();
+        }
+    }
+
+    /**
+     * Get the number of missives appended to the file
+     *
+     * @return Number of missives appended
+     */
+    public long getMissiveCount() {
+
+        // Get the number of missives
+        return this.missiveCount;
+    }
+
+    /**
+     * Format a number of missives with the fixed width of the file header
+     *
+     * @param count Number of missives
+     * @return Number of missives padded with leading zeros, encoded in UTF-8
+     */
+    private static byte[] formatMissiveCount(long count) {
+
+        // Leading zeros are allowed by the integer type of the number of missives
+        return String.format("%0" + MISSIVE_COUNT_WIDTH + "d", count).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Serialize an element of the file header
+     *
+     * @param xmlObject Content of the element
+     * @param elementName Local name of the element
+     * @return Element encoded in UTF-8, using the prefix declared by the root element of the file
+     */
+    private static byte[] toElement(XmlObject xmlObject, String elementName) {
+
+        // XML options instance
+        XmlOptions options = new XmlOptions();
+        options.setSaveSyntheticDocumentElement(new QName(NAMESPACE, elementName, PREFIX));
+        options.setSaveImplicitNamespaces(Collections.singletonMap(PREFIX, NAMESPACE));
+
+        return xmlObject.xmlText(options).getBytes(StandardCharsets.UTF_8);
+    }
+}
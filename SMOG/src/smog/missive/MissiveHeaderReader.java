@@ -0,0 +1,239 @@
+package smog.missive;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.xmlbeans.GDate;
+import smog.exception.SmogException;
+import smog.schema.sem.MissiveType;
+import smog.schema.sem.PriorityCode;
+import smog.utils.Utils;
+
+/**
+ * MissiveHeaderReader reads the routing fields of a missive without parsing its body.
+ *
+ * The missive is read with StAX up to the start of its message body, so that the time taken to read the routing fields
+ * does not depend on the size of the message and of its attachments. Only the routing fields are checked: the missive
+ * ID, type and order, the sender, the date and time at which the missive was sent and the recipient need to be present,
+ * while the message ID and type are null for missives which do not hold a message.
+ *
+ * Header readers hold no state and may be used concurrently.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveHeaderReader {
+
+    // Namespace of the SEPAmail missives
+    private static final String NAMESPACE = "http://xsd.sepamail.eu/1206/";
+
+    /**
+     * Read the routing fields of the missive held by the given input stream
+     *
+     * The input stream is read up to the start of the message body of the missive, or to the end of the missive when
+     * it holds no message, and is not closed.
+     *
+     * @param inputStream Input stream holding the missive
+     * @return Routing fields of the missive
+     * @throws SmogException when the content of the input stream is not a missive or does not hold the routing fields
+     */
+    public MissiveRoutingHeader read(InputStream inputStream) throws SmogException {
+
+        try {
+
+            // Move to the root element of the missive
+            XMLStreamReader reader = Utils.getXmlInputFactory().createXMLStreamReader(inputStream);
+            try {
+                reader.nextTag();
+                if (!"Missive".equals(reader.getLocalName()) || !NAMESPACE.equals(reader.getNamespaceURI())) {
+                    throw new SmogException("The content is not a SEPAmail missive: " + reader.getName());
+                }
+
+                return this.read(reader);
+
+            } finally {
+                reader.close();
+            }
+
+        } catch (XMLStreamException ex) {
+            throw new SmogException("The missive header could not be read: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Read the routing fields of the missive at the current position of the given StAX reader
+     *
+     * The StAX reader needs to be on the start of the element holding the missive, which is the root element of a
+     * missive or a missive of a missive file. It is left on the start of the message body of the missive, or on the
+     * end of the element holding the missive when the missive holds no message.
+     *
+     * @param reader StAX reader on the start of the element holding the missive
+     * @return Routing fields of the missive
+     * @throws SmogException when the missive cannot be read or does not hold the routing fields
+     */
+    public MissiveRoutingHeader read(XMLStreamReader reader) throws SmogException {
+
+        // Routing fields
+        String messageId = null;
+        String messageType = null;
+        String missiveId = null;
+        String missiveOrder = null;
+        String missivePriority = null;
+        String missiveType = null;
+        String recipient = null;
+        String recipientScheme = null;
+        String sendDateTime = null;
+        String sender = null;
+        String senderScheme = null;
+
+        try {
+
+            // Check that the reader is on the start of an element
+            if (!reader.isStartElement()) {
+                throw new SmogException("The missive header could not be read: the reader is not on an element");
+            }
+
+            // Names of the elements holding the current position, the sender and recipient being recorded with the
+            // missive header holding them
+            ArrayDeque<String> path = new ArrayDeque<>();
+            path.push(reader.getLocalName());
+
+            // Read the elements up to the start of the message body or the end of the missive
+            while (!path.isEmpty()) {
+
+                // Keep track of the elements holding the current position
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    path.pop();
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+
+                // Elements of other namespaces are not read
+                String name = NAMESPACE.equals(reader.getNamespaceURI()) ? reader.getLocalName() : "";
+                String parent = path.peek();
+
+                // Fields of the missive
+                if ("sepamail_missive_001".equals(parent)) {
+                    switch (name) {
+                        case "MsvId":
+                            missiveId = reader.getElementText().trim();
+                            continue;
+                        case "MsvTyp":
+                            missiveType = reader.getElementText().trim();
+                            continue;
+                        case "MsvOrd":
+                            missiveOrder = reader.getElementText().trim();
+                            continue;
+                        case "MsvPri":
+                            missivePriority = reader.getElementText().trim();
+                            continue;
+                    }
+                }
+
+                // Fields of the missive header
+                if ("MsvHdr".equals(parent)) {
+                    switch (name) {
+                        case "SndDtTm":
+                            sendDateTime = reader.getElementText().trim();
+                            continue;
+                        case "Snd":
+                        case "Rcv":
+                            path.push("MsvHdr/" + name);
+                            continue;
+                    }
+                }
+
+                // First identifier of the sender and of the recipient
+                if ("MsvHdr/Snd".equals(parent)) {
+                    if (sender == null) {
+                        senderScheme = name;
+                        sender = reader.getElementText().trim();
+                    } else {
+                        reader.getElementText();
+                    }
+                    continue;
+                }
+                if ("MsvHdr/Rcv".equals(parent)) {
+                    if (recipient == null) {
+                        recipientScheme = name;
+                        recipient = reader.getElementText().trim();
+                    } else {
+                        reader.getElementText();
+                    }
+                    continue;
+                }
+
+                // Fields of the message header
+                if ("MsgHdr".equals(parent)) {
+                    switch (name) {
+                        case "MsgId":
+                            messageId = reader.getElementText().trim();
+                            continue;
+                        case "MsgTyp":
+                            messageType = reader.getElementText().trim();
+                            continue;
+                    }
+                }
+
+                // Stop at the start of the message body
+                if ("sepamail_message_001".equals(parent) && "MsgBdy".equals(name)) {
+                    break;
+                }
+
+                // Enter the element
+                path.push(name);
+            }
+
+        } catch (XMLStreamException ex) {
+            throw new SmogException("The missive header could not be read: " + ex.getMessage());
+        }
+
+        // Check that the routing fields have been read
+        checkField("MsvId", missiveId);
+        checkField("MsvTyp", missiveType);
+        checkField("MsvOrd", missiveOrder);
+        checkField("Snd", sender);
+        checkField("SndDtTm", sendDateTime);
+        checkField("Rcv", recipient);
+
+        // Convert the values of the routing fields
+        MissiveType.Enum missiveTypeValue = MissiveType.Enum.forString(missiveType);
+        if (missiveTypeValue == null) {
+            throw new SmogException("The missive type '" + missiveType + "' is not a SEPAmail missive type");
+        }
+        PriorityCode.Enum missivePriorityValue = null;
+        if (missivePriority != null) {
+            missivePriorityValue = PriorityCode.Enum.forString(missivePriority);
+            if (missivePriorityValue == null) {
+                throw new SmogException("The missive priority '" + missivePriority + "' is not a SEPAmail priority");
+            }
+        }
+        try {
+            return new MissiveRoutingHeader(missiveId, missiveTypeValue, new BigInteger(missiveOrder),
+                    missivePriorityValue, senderScheme, sender, new GDate(sendDateTime), recipientScheme, recipient,
+                    messageId, messageType);
+        } catch (IllegalArgumentException ex) {
+            throw new SmogException("The missive header holds an invalid order or date and time: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Check that a routing field has been read
+     *
+     * @param name Name of the element holding the routing field
+     * @param value Value of the routing field
+     * @throws SmogException when the routing field has not been read
+     */
+    private static void checkField(String name, String value) throws SmogException {
+
+        // Report the missing routing field
+        if (value == null) {
+            throw new SmogException("The missive header does not hold " + name);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package smog.missive;
+
+/**
+ * MissiveIndexEntry locates a missive in a missive file, as recorded by {@link MissiveFileIndex}.
+ *
+ * Index entries are immutable. The offset and length are those of the bytes of the missive element in the file, from
+ * the start of its start tag to the end of its end tag.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public final class MissiveIndexEntry {
+
+    // Class attributes
+    private final int length;
+    private final String messageId;
+    private final String missiveId;
+    private final long offset;
+    private final String recipient;
+
+    /**
+     * MissiveIndexEntry constructor
+     *
+     * @param missiveId The ID of the missive
+     * @param messageId The ID of the message, or null when the missive does not hold a message
+     * @param recipient Identifier of the recipient, or null when the missive does not hold its recipient
+     * @param offset Offset of the missive in the file
+     * @param length Length of the missive in bytes
+     */
+    MissiveIndexEntry(String missiveId, String messageId, String recipient, long offset, int length) {
+
+        // Initialise class attributes
+        this.length = length;
+        this.messageId = messageId;
+        this.missiveId = missiveId;
+        this.offset = offset;
+        this.recipient = recipient;
+    }
+
+    /**
+     * Get the length of the missive in bytes
+     *
+     * @return Length of the missive
+     */
+    public int getLength() {
+
+        // Get the length
+        return this.length;
+    }
+
+    /**
+     * Get the ID of the message
+     *
+     * @return The ID of the message, or null when the missive does not hold a message
+     */
+    public String getMessageId() {
+
+        // Get the message ID
+        return this.messageId;
+    }
+
+    /**
+     * Get the ID of the missive
+     *
+     * @return The ID of the missive
+     */
+    public String getMissiveId() {
+
+        // Get the missive ID
+        return this.missiveId;
+    }
+
+    /**
+     * Get the offset of the missive in the file
+     *
+     * @return Offset of the start tag of the missive
+     */
+    public long getOffset() {
+
+        // Get the offset
+        return this.offset;
+    }
+
+    /**
+     * Get the identifier of the recipient of the missive
+     *
+     * @return Identifier of the recipient, or null when the missive does not hold its recipient
+     */
+    public String getRecipient() {
+
+        // Get the recipient
+        return this.recipient;
+    }
+
+    @Override
+    public String toString() {
+
+        // Location of the missive
+        return this.missiveId + " " + this.messageId + " -> " + this.recipient + " @" + this.offset + "+" +
+                this.length;
+    }
+}
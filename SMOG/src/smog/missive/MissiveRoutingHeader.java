@@ -0,0 +1,205 @@
+package smog.missive;
+
+import java.math.BigInteger;
+import java.util.Calendar;
+import org.apache.xmlbeans.GDate;
+import smog.schema.sem.MissiveType;
+import smog.schema.sem.PriorityCode;
+
+/**
+ * MissiveRoutingHeader holds the fields of the missive and message headers which are needed to route a missive.
+ *
+ * Routing headers are immutable and are read by {@link MissiveHeaderReader} without parsing the body of the missive.
+ * The sender and the recipient are given by the first of their identifiers, along with the name of the element holding
+ * that identifier (BIC, IBAN, PAN, BBAN or RIS2D).
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public final class MissiveRoutingHeader {
+
+    // Class attributes
+    private final String messageId;
+    private final String messageType;
+    private final String missiveId;
+    private final BigInteger missiveOrder;
+    private final PriorityCode.Enum missivePriority;
+    private final MissiveType.Enum missiveType;
+    private final String recipient;
+    private final String recipientScheme;
+    private final GDate sendDateTime;
+    private final String sender;
+    private final String senderScheme;
+
+    /**
+     * MissiveRoutingHeader constructor
+     *
+     * @param missiveId The ID of the missive
+     * @param missiveType The type of the missive
+     * @param missiveOrder The order of the missive
+     * @param missivePriority The priority of the missive, or null when the missive does not hold its priority
+     * @param senderScheme Name of the element holding the identifier of the sender
+     * @param sender Identifier of the sender
+     * @param sendDateTime The date and time at which the missive was sent
+     * @param recipientScheme Name of the element holding the identifier of the recipient
+     * @param recipient Identifier of the recipient
+     * @param messageId The ID of the message, or null when the missive does not hold a message
+     * @param messageType The type of the message, or null when the missive does not hold a message
+     */
+    MissiveRoutingHeader(String missiveId, MissiveType.Enum missiveType, BigInteger missiveOrder,
+            PriorityCode.Enum missivePriority, String senderScheme, String sender, GDate sendDateTime,
+            String recipientScheme, String recipient, String messageId, String messageType) {
+
+        // Initialise class attributes
+        this.messageId = messageId;
+        this.messageType = messageType;
+        this.missiveId = missiveId;
+        this.missiveOrder = missiveOrder;
+        this.missivePriority = missivePriority;
+        this.missiveType = missiveType;
+        this.recipient = recipient;
+        this.recipientScheme = recipientScheme;
+        this.sendDateTime = sendDateTime;
+        this.sender = sender;
+        this.senderScheme = senderScheme;
+    }
+
+    /**
+     * Get the ID of the message
+     *
+     * @return The ID of the message, or null when the missive does not hold a message
+     */
+    public String getMessageId() {
+
+        // Get the message ID
+        return this.messageId;
+    }
+
+    /**
+     * Get the type of the message, as written in the message header
+     *
+     * @return The type of the message, or null when the missive does not hold a message
+     */
+    public String getMessageType() {
+
+        // Get the message type
+        return this.messageType;
+    }
+
+    /**
+     * Get the definition of the type of the message
+     *
+     * @return Definition of the message type, or null when the missive does not hold a message
+     */
+    public MessageTypeDefinition getMessageTypeDefinition() {
+
+        // Resolve the message type
+        return this.messageType != null ? MessageTypeRegistry.resolve(this.messageType) : null;
+    }
+
+    /**
+     * Get the ID of the missive
+     *
+     * @return The ID of the missive
+     */
+    public String getMissiveId() {
+
+        // Get the missive ID
+        return this.missiveId;
+    }
+
+    /**
+     * Get the order of the missive
+     *
+     * @return The order of the missive
+     */
+    public BigInteger getMissiveOrder() {
+
+        // Get the missive order
+        return this.missiveOrder;
+    }
+
+    /**
+     * Get the priority of the missive
+     *
+     * @return The priority of the missive, or null when the missive does not hold its priority
+     */
+    public PriorityCode.Enum getMissivePriority() {
+
+        // Get the missive priority
+        return this.missivePriority;
+    }
+
+    /**
+     * Get the type of the missive
+     *
+     * @return The type of the missive
+     */
+    public MissiveType.Enum getMissiveType() {
+
+        // Get the missive type
+        return this.missiveType;
+    }
+
+    /**
+     * Get the identifier of the recipient of the missive
+     *
+     * @return Identifier of the recipient
+     */
+    public String getRecipient() {
+
+        // Get the recipient
+        return this.recipient;
+    }
+
+    /**
+     * Get the name of the element holding the identifier of the recipient of the missive
+     *
+     * @return BIC, IBAN, PAN, BBAN or RIS2D
+     */
+    public String getRecipientScheme() {
+
+        // Get the recipient identifier scheme
+        return this.recipientScheme;
+    }
+
+    /**
+     * Get the date and time at which the missive was sent
+     *
+     * @return New calendar holding the date and time at which the missive was sent
+     */
+    public Calendar getSendDateTime() {
+
+        // Calendars are mutable and a new one is given to each caller
+        return this.sendDateTime.getCalendar();
+    }
+
+    /**
+     * Get the identifier of the sender of the missive
+     *
+     * @return Identifier of the sender
+     */
+    public String getSender() {
+
+        // Get the sender
+        return this.sender;
+    }
+
+    /**
+     * Get the name of the element holding the identifier of the sender of the missive
+     *
+     * @return BIC or IBAN
+     */
+    public String getSenderScheme() {
+
+        // Get the sender identifier scheme
+        return this.senderScheme;
+    }
+
+    @Override
+    public String toString() {
+
+        // Routing fields of the missive
+        return this.missiveId + " " + this.messageType + " " + this.senderScheme + ":" + this.sender + " -> " +
+                this.recipientScheme + ":" + this.recipient;
+    }
+}
@@ -1,21 +1,22 @@
 package smog.missive;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Iterator;
 import org.apache.xmlbeans.XmlCursor;
-import org.apache.xmlbeans.XmlError;
 import org.apache.xmlbeans.XmlObject;
-import org.apache.xmlbeans.XmlOptions;
 import smog.exception.SmogException;
 import smog.schema.sem.BICorIBAN;
 import smog.schema.sem.MessageBody;
+import smog.schema.sem.MessageHeader;
 import smog.schema.sem.MessageType;
+import smog.schema.sem.MissiveDocument;
 import smog.schema.sem.MissiveType;
 import smog.schema.sem.PriorityCode;
 import smog.schema.sem.ReceiverIdentifier;
 import smog.utils.Utils;
+import smog.validation.DetachedValidation;
+import smog.validation.ValidationErrorCollector;
+import smog.validation.ValidationResult;
 
 /**
  * SepamailGenericDocument creates a generic SEPAmail document.
@@ -24,6 +25,7 @@ import smog.utils.Utils;
  */
 public class SepamailGenericDocument extends DocumentBase implements DocumentInterface {
 
+    private MessageTypeDefinition messageType;
     private XmlObject sepamailGenericMessage;
 
     /**
@@ -95,6 +97,32 @@ public class SepamailGenericDocument extends DocumentBase implements DocumentInt
         this.createMissive();
     }
 
+    /**
+     * SepamailGenericDocument constructor
+     *
+     * The document is bound to the given missive document, which is not copied. The generic message is the element
+     * held by the message body of the missive document.
+     *
+     * @param missiveDocument Parsed missive document
+     * @param messageType Definition of the message type read from the message header of the missive document
+     */
+    SepamailGenericDocument(MissiveDocument missiveDocument, MessageTypeDefinition messageType) {
+
+        // Initialise the parent class
+        super(missiveDocument);
+
+        // Initialise class attributes
+        this.messageType = messageType;
+        this.sepamailGenericMessage = null;
+
+        // Bind the message to the element held by the message body
+        XmlCursor messageCursor = this.messageBody.newCursor();
+        if (messageCursor.toFirstChild()) {
+            this.sepamailGenericMessage = messageCursor.getObject();
+        }
+        messageCursor.dispose();
+    }
+
     /**
      * Build the missive document
      */
@@ -108,6 +136,8 @@ public class SepamailGenericDocument extends DocumentBase implements DocumentInt
     /**
      * Get the generic message of the SEPAmail missive document
      *
+     * The generic message of a parsed missive document is the element held by its message body.
+     *
      * @return The generic message of the SEPAmail missive document
      */
     public XmlObject getGenericSepamailMessage() {
@@ -116,6 +146,17 @@ public class SepamailGenericDocument extends DocumentBase implements DocumentInt
         return this.sepamailGenericMessage;
     }
 
+    /**
+     * Get the definition of the type of the SEPAmail message of the generic missive document
+     *
+     * @return Definition of the message type of the generic missive document
+     */
+    public MessageTypeDefinition getMessageTypeDefinition() {
+
+        // Message type resolved when it was assigned
+        return this.messageType;
+    }
+
     /**
      * Get the type of the SEPAmail message of the generic missive document
      *
@@ -123,33 +164,8 @@ public class SepamailGenericDocument extends DocumentBase implements DocumentInt
      */
     public String getMessageType() {
 
-        // Cursor for message header
-        XmlCursor msgHdrCursor = this.messageHeader.newCursor();
-
-        // Position the cursor on the message type element
-        msgHdrCursor.toStartDoc();
-        msgHdrCursor.toNextToken();
-
-        // Check if we are at the required element
-        if (!msgHdrCursor.getName().getLocalPart().equals("MsgTyp")) {
-
-            // Move the cursor to the required element
-            while (msgHdrCursor.toNextSibling()) {
-
-                // Check if we are at the required element
-                if (msgHdrCursor.getName().getLocalPart().equals("MsgTyp")) {
-                    break;
-                }
-            }
-        }
-
-        // Get the message type
-        String messageType = msgHdrCursor.getTextValue();
-
-        // Dispose the message header cursor
-        msgHdrCursor.dispose();
-
-        return messageType;
+        // Message type resolved when it was assigned
+        return this.messageType.getName();
     }
 
     /**
@@ -181,82 +197,63 @@ public class SepamailGenericDocument extends DocumentBase implements DocumentInt
     }
 
     /**
-     * Check if the generic missive document is valid
+     * Validate the missive and message headers of the generic missive document and get the errors found
      *
-     * @return Whether the missive document is valid
-     * @throws SmogException
+     * XML Beans validation looks for typed message types and reports an error when the message type cannot be mapped
+     * onto one of the predefined message types. A message header holding a custom message type is therefore validated
+     * on a copy in which the message type is replaced by a predefined message type, and its errors are located in the
+     * message header of the missive document.
+     *
+     * @param failFast Whether the validation stops at the first error
+     * @return Result of the validation of the missive and message headers
      */
     @Override
-    public boolean validate() throws SmogException {
-
-        // Listener for missive header validation
-        ArrayList<XmlError> missiveHeaderValidationMessages = new ArrayList<>();
-
-        // Listener for message header validation
-        ArrayList<XmlError> messageHeaderValidationMessages = new ArrayList<>();
-
-        // Validate missive header
-        boolean isMissiveHeaderValid =
-                this.missiveHeader.validate(new XmlOptions().setErrorListener(missiveHeaderValidationMessages));
+    public ValidationResult getValidationResult(boolean failFast) {
 
-        // Validate message header
-        boolean isMessageHeaderValid =
-                this.messageHeader.validate(new XmlOptions().setErrorListener(messageHeaderValidationMessages));
+        // Collector for the validation errors
+        ValidationErrorCollector errors = new ValidationErrorCollector(failFast);
 
-        // Verify validation for message header - XML Beans validation looks for typed message type and the message
-        // header is considered invalid if the specified message type cannot be mapped onto one of the predefied message
-        // types. We need to make sure that the validatio did not fail because of an unknown message type and allow for
-        // the user defined message type.
-        if (!isMessageHeaderValid) {
-
-            // Check for unknown message type error message
-            messageHeaderValidationMessages =
-                    this.sanitizeMessageHeaderValidationMessages(messageHeaderValidationMessages);
-
-            // Set the valid status of the message header
-            isMessageHeaderValid = messageHeaderValidationMessages.isEmpty();
+        // Validate the missive header
+        if (!errors.validate(this.missiveHeader)) {
+            return errors.getResult();
         }
 
-        // Check if missive and message headers are valid
-        if (isMissiveHeaderValid && isMessageHeaderValid) {
-            return true;
-        } else {
-
-            // Validation error message
-            String validationMessage = "";
+        // Validate the message header, with a predefined message type in place of a custom message type
+        if (this.messageType.isCustom()) {
+            errors.merge(new DetachedValidation(this.messageHeader) {
 
-            // Iterator for validation missive header messages
-            Iterator<XmlError> missiveHeaderValidationMessagesIterator = missiveHeaderValidationMessages.iterator();
+                @Override
+                protected void prepare(XmlObject copy) {
 
-            // Build the complete error message
-            while(missiveHeaderValidationMessagesIterator.hasNext()) {
-
-                // Add validation message separtor
-                if (!validationMessage.equals("")) {
-                    validationMessage += ";";
+                    // Replace the custom message type
+                    ((MessageHeader) copy).setMsgTyp(MessageType.SIMPLE_REQUEST_TEST);
                 }
+            }.call());
+        } else {
+            errors.validate(this.messageHeader);
+        }
 
-                // Concatenate validation messages
-                validationMessage += missiveHeaderValidationMessagesIterator.next().getMessage();
-            }
-
-            // Iterator for validation message header messages
-            Iterator<XmlError> messageHeaderValidationMessagesIterator = messageHeaderValidationMessages.iterator();
-
-            // Build the complete error message
-            while(messageHeaderValidationMessagesIterator.hasNext()) {
+        return errors.getResult();
+    }
 
-                // Add validation message separtor
-                if (!validationMessage.equals("")) {
-                    validationMessage += ";";
-                }
+    /**
+     * Check if the generic missive document is valid
+     *
+     * @return Whether the missive document is valid
+     * @throws SmogException
+     */
+    @Override
+    public boolean validate() throws SmogException {
 
-                // Concatenate validation messages
-                validationMessage += messageHeaderValidationMessagesIterator.next().getMessage();
-            }
+        // Validate the missive and message headers
+        ValidationResult validationResult = this.getValidationResult(false);
 
-            throw new SmogException(validationMessage);
+        // Check if missive and message headers are valid
+        if (!validationResult.isValid()) {
+            throw new SmogException(validationResult.getMessage(";"));
         }
+
+        return true;
     }
 
     /**
@@ -264,6 +261,17 @@ public class SepamailGenericDocument extends DocumentBase implements DocumentInt
      */
     private void createMissive() {
 
+        // Defer the assembly while the document is being edited
+        if (this.deferBuild()) {
+            return;
+        }
+
+        // The message body is kept when the message is already held by the missive document
+        if (this.sepamailGenericMessage != null && this.isInMissive(this.sepamailGenericMessage)) {
+            this.assembleDocument();
+            return;
+        }
+
         // New instance of message body wrapper
         this.messageBody = MessageBody.Factory.newInstance();
 
@@ -307,63 +315,16 @@ public class SepamailGenericDocument extends DocumentBase implements DocumentInt
      */
     private void assignMessageType(String messageType) {
 
-        // Cursor for message header
-        XmlCursor msgHdrCursor = this.messageHeader.newCursor();
+        // Resolve the message type once
+        this.messageType = MessageTypeRegistry.resolve(messageType);
 
-        // Position the cursor on the message type element
-        msgHdrCursor.toStartDoc();
-        msgHdrCursor.toNextToken();
-
-        // Check if we are at the required element
-        if (!msgHdrCursor.getName().getLocalPart().equals("MsgTyp")) {
-
-            // Move the cursor to the required element
-            while (msgHdrCursor.toNextSibling()) {
-
-                // Check if we are at the required element
-                if (msgHdrCursor.getName().getLocalPart().equals("MsgTyp")) {
-                    break;
-                }
-            }
-        }
-
-        // Set the value of the message type
-        msgHdrCursor.setTextValue(messageType);
-
-        // Dispose the cursor
-        msgHdrCursor.dispose();
-    }
-
-    /**
-     * Remove messages concerning unknown message type from the list of validation error messages for a message header
-     *
-     * @param validationMessages List of validation error messages for a message header
-     * @return List of validation error messages for a message header without the error message for unknown message type
-     */
-    private ArrayList<XmlError> sanitizeMessageHeaderValidationMessages(ArrayList<XmlError> validationMessages) {
-
-        // Unknown message type error message
-        XmlError unknownMessageTypeError = null;
-
-        // Scan the list of error messages
-        for (int i = 0; i < validationMessages.size(); i++) {
-
-            // Check the error message
-            if (validationMessages.get(i).getMessage().matches(".+ '[\\S]+' .+ MessageType .+ http://xsd.sepamail.eu/[\\d]{4}/")) {
-
-                // Unknown message type error message
-                unknownMessageTypeError = validationMessages.get(i);
-
-                // Exit the loop
-                break;
-            }
-        }
-
-        // Remove the unknown message type error message from the list of validation messages
-        if (unknownMessageTypeError != null) {
-            validationMessages.remove(unknownMessageTypeError);
+        // Set the value of the message type, which can only be set as text when it is not a predefined message type
+        if (this.messageType.getSchemaMessageType() != null) {
+            this.messageHeader.setMsgTyp(this.messageType.getSchemaMessageType());
+        } else {
+            XmlCursor msgTypCursor = this.messageHeader.xgetMsgTyp().newCursor();
+            msgTypCursor.setTextValue(this.messageType.getName());
+            msgTypCursor.dispose();
         }
-
-        return validationMessages;
     }
 }
@@ -3,11 +3,18 @@ package smog.missive;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ExecutorService;
+import org.apache.xmlbeans.XmlCursor;
+import smog.exception.SmogException;
+import smog.io.AttachmentReference;
 import smog.missive.structure.SemHURADocument;
 import smog.missive.structure.SemRequestAndComplements;
 import smog.schema.sem.BICorIBAN;
 import smog.schema.sem.Document;
 import smog.schema.sem.MessageType;
+import smog.schema.sem.MissiveDocument;
 import smog.schema.sem.MissiveType;
 import smog.schema.sem.PaymentActivationRequest;
 import smog.schema.sem.PriorityCode;
@@ -16,6 +23,10 @@ import smog.schema.sem.RequestAndComplements;
 import smog.schema.sem.RequestHeader;
 import smog.schema.sem.SepamailMessagePaymentActivationRequest001;
 import smog.utils.Utils;
+import smog.validation.Pain013BusinessRuleValidator;
+import smog.validation.SegmentedValidator;
+import smog.validation.ValidationErrorCollector;
+import smog.validation.ValidationResult;
 
 /**
  * SepamailPaymentActivationRequestDocument creates an payment activation request document.
@@ -25,7 +36,9 @@ import smog.utils.Utils;
 public class SepamailPaymentActivationRequestDocument extends DocumentBase implements DocumentInterface {
 
     // Class attributes
+    private boolean huraDocumentsModified;
     private PaymentActivationRequest paymentActivationRequest;
+    private boolean requestAndComplementsModified;
     private RequestHeader requestHeader;
     private ArrayList<SemHURADocument> semHuraDocuments;
     private ArrayList<SemRequestAndComplements> semRequestAndComplements;
@@ -48,7 +61,9 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
                 receiverIdentifier, sender, sendDateTime, Utils.generateMessageId(), messageExpiry);
 
         // Initialise class attributes
+        this.huraDocumentsModified = false;
         this.paymentActivationRequest = PaymentActivationRequest.Factory.newInstance();
+        this.requestAndComplementsModified = false;
         this.requestHeader = RequestHeader.Factory.newInstance();
         this.semHuraDocuments = new ArrayList<>();
         this.semRequestAndComplements = new ArrayList<>();
@@ -89,7 +104,9 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
                 sendDateTime, messageId, messageExpiry);
 
         // Initialise class attributes
+        this.huraDocumentsModified = false;
         this.paymentActivationRequest = PaymentActivationRequest.Factory.newInstance();
+        this.requestAndComplementsModified = false;
         this.requestHeader = RequestHeader.Factory.newInstance();
         this.semHuraDocuments = new ArrayList<>();
         this.semRequestAndComplements = new ArrayList<>();
@@ -106,6 +123,188 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
         this.createMissive();
     }
 
+    /**
+     * SepamailPaymentActivationRequestDocument constructor
+     *
+     * The message is built in a single pass over the given request and complements elements and HURA documents.
+     *
+     * @param receiverIdentifier The activation.request@payment.activation recipient
+     * @param sender The activation.request@payment.activation sender
+     * @param sendDateTime The date and time at which the activation.request@payment.activation is being sent
+     * @param messageExpiry The date and time at which the message expires
+     * @param creditDateTime The credit date and time
+     * @param requestAndComplements Request and complements elements of the message
+     * @param semHuraDocuments HURA documents of the message
+     */
+    public SepamailPaymentActivationRequestDocument(ReceiverIdentifier receiverIdentifier, BICorIBAN sender,
+            Calendar sendDateTime, Calendar messageExpiry, Calendar creditDateTime,
+            Iterable<SemRequestAndComplements> requestAndComplements, Iterable<SemHURADocument> semHuraDocuments) {
+
+        // Initialise the activation.request@payment.activation missive
+        this(receiverIdentifier, sender, sendDateTime, messageExpiry, creditDateTime);
+
+        // Add the HURA documents and the request and complements elements
+        this.addAllHURADocuments(semHuraDocuments);
+        this.addAllRequestAndComplements(requestAndComplements);
+    }
+
+    /**
+     * SepamailPaymentActivationRequestDocument constructor
+     *
+     * The message is built in a single pass over the given request and complements elements and HURA documents.
+     *
+     * @param missiveId The ID of the missive
+     * @param missiveOrder The order of the missive
+     * @param priorityCode The priority of the missive
+     * @param missiveType The type of the missive
+     * @param receiverIdentifier The activation.request@payment.activation recipient
+     * @param sender The activation.request@payment.activation sender
+     * @param sendDateTime The date and time at which the activation.request@payment.activation is being sent
+     * @param messageId ID of the message
+     * @param messageExpiry The date and time at which the message expires
+     * @param creditDateTime The credit date and time
+     * @param requestAndComplements Request and complements elements of the message
+     * @param semHuraDocuments HURA documents of the message
+     */
+    public SepamailPaymentActivationRequestDocument(String missiveId, BigInteger missiveOrder,
+            PriorityCode.Enum priorityCode, MissiveType.Enum missiveType, ReceiverIdentifier receiverIdentifier,
+            BICorIBAN sender, Calendar sendDateTime, String messageId, Calendar messageExpiry,
+            Calendar creditDateTime, Iterable<SemRequestAndComplements> requestAndComplements,
+            Iterable<SemHURADocument> semHuraDocuments) {
+
+        // Initialise the activation.request@payment.activation missive
+        this(missiveId, missiveOrder, priorityCode, missiveType, receiverIdentifier, sender, sendDateTime, messageId,
+                messageExpiry, creditDateTime);
+
+        // Add the HURA documents and the request and complements elements
+        this.addAllHURADocuments(semHuraDocuments);
+        this.addAllRequestAndComplements(requestAndComplements);
+    }
+
+    /**
+     * SepamailPaymentActivationRequestDocument constructor
+     *
+     * The document is bound to the given activation.request@payment.activation missive document, which is not copied.
+     * The HURA documents and the request and complements elements are bound to the segments of the message, and their
+     * payment information and credit transfer transaction information are read from the message as they are.
+     *
+     * @param missiveDocument Parsed activation.request@payment.activation missive document
+     * @throws SmogException when the message does not hold its request header or the request and complements
+     * segments of the message are incomplete
+     */
+    SepamailPaymentActivationRequestDocument(MissiveDocument missiveDocument) throws SmogException {
+
+        // Initialise the parent class
+        super(missiveDocument);
+
+        // Bind the message segments to those of the missive document
+        this.huraDocumentsModified = false;
+        this.paymentActivationRequest = this.messageBody.getPaymentActivationRequest();
+        this.requestAndComplementsModified = false;
+        this.sepamailMessagePaymentActivationRequest001 =
+                this.paymentActivationRequest.getSepamailMessagePaymentActivationRequest001();
+        this.requestHeader = this.sepamailMessagePaymentActivationRequest001.getHeader();
+
+        // Check that the message holds its request header
+        if (this.requestHeader == null) {
+            throw new SmogException("The payment activation request does not hold a request header");
+        }
+
+        // Bind the HURA documents to the segments of the message header
+        Document[] documents = this.requestHeader.getDocumentsArray();
+        this.semHuraDocuments = new ArrayList<>(documents.length);
+        for (Document document : documents) {
+            SemHURADocument semHuraDocument = new SemHURADocument(document);
+            semHuraDocument.bind(document, this.getVersionTracker());
+            this.semHuraDocuments.add(semHuraDocument);
+        }
+
+        // Bind the request and complements elements to the segments of the message
+        RequestAndComplements[] requestAndComplements =
+                this.sepamailMessagePaymentActivationRequest001.getReqComplArray();
+        this.semRequestAndComplements = new ArrayList<>(requestAndComplements.length);
+        for (RequestAndComplements requestAndComplement : requestAndComplements) {
+            SemRequestAndComplements semRequestAndComplement = new SemRequestAndComplements(requestAndComplement);
+            semRequestAndComplement.bind(requestAndComplement, this.getVersionTracker());
+            this.semRequestAndComplements.add(semRequestAndComplement);
+        }
+    }
+
+    /**
+     * Add the given HURA documents to the list of HURA documents
+     *
+     * The HURA documents are appended to the message header in a single pass.
+     *
+     * @param semHuraDocuments HURA documents
+     */
+    public void addAllHURADocuments(Iterable<SemHURADocument> semHuraDocuments) {
+
+        // Make room for the HURA documents in the list
+        if (semHuraDocuments instanceof Collection) {
+            this.semHuraDocuments.ensureCapacity(this.semHuraDocuments.size() +
+                    ((Collection<?>) semHuraDocuments).size());
+        }
+
+        // Check if the message header is updated with the list
+        boolean deferred = this.deferBuild();
+
+        // Add each HURA document to the list and bind it to a new segment at the end of the message header
+        for (SemHURADocument semHuraDocument : semHuraDocuments) {
+            this.semHuraDocuments.add(semHuraDocument);
+            if (!deferred) {
+                semHuraDocument.bind(this.requestHeader.addNewDocuments(), this.getVersionTracker());
+            }
+        }
+
+        // Record the modification of the document once
+        if (deferred) {
+            this.huraDocumentsModified = true;
+        } else {
+            this.markModified();
+        }
+    }
+
+    /**
+     * Add the given request and complements elements to the list of request and complements elements
+     *
+     * The request and complements elements are appended to the payment activation request message in a single pass
+     * and the number of requests is updated once.
+     *
+     * @param requestAndComplements Request and complements elements
+     */
+    public void addAllRequestAndComplements(Iterable<SemRequestAndComplements> requestAndComplements) {
+
+        // Make room for the request and complements elements in the list
+        if (requestAndComplements instanceof Collection) {
+            this.semRequestAndComplements.ensureCapacity(this.semRequestAndComplements.size() +
+                    ((Collection<?>) requestAndComplements).size());
+        }
+
+        // Check if the message is updated with the list
+        boolean deferred = this.deferBuild();
+
+        // Add each request and complements element to the list and bind it to a new segment at the end of the message
+        for (SemRequestAndComplements semRequestAndComplement : requestAndComplements) {
+            this.semRequestAndComplements.add(semRequestAndComplement);
+            if (!deferred) {
+                semRequestAndComplement.bind(this.sepamailMessagePaymentActivationRequest001.addNewReqCompl(),
+                        this.getVersionTracker());
+            }
+        }
+
+        // Check if the message is updated with the list
+        if (deferred) {
+            this.requestAndComplementsModified = true;
+            return;
+        }
+
+        // Update the number of requests once
+        this.requestHeader.setNbOfRequests(BigInteger.valueOf(this.semRequestAndComplements.size()));
+
+        // Record the modification of the document once
+        this.markModified();
+    }
+
     /**
      * Add the given HURA document to the list of HURA documents
      *
@@ -116,8 +315,17 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
         // Add the document to the list of HURA documents
         this.semHuraDocuments.add(semHuraDocument);
 
-        // Build the activation.request@payment.activation missive
-        this.createMissive();
+        // Defer the update while the document is being edited
+        if (this.deferBuild()) {
+            this.huraDocumentsModified = true;
+            return;
+        }
+
+        // Bind the HURA document to a new segment at the end of the message header
+        semHuraDocument.bind(this.requestHeader.addNewDocuments(), this.getVersionTracker());
+
+        // Record the modification of the document
+        this.markModified();
     }
 
     /**
@@ -130,8 +338,21 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
         // Add the given request and complements element to the list of request and complements elements
         this.semRequestAndComplements.add(requestAndComplements);
 
-        // Build the activation.request@payment.activation missive
-        this.createMissive();
+        // Defer the update while the document is being edited
+        if (this.deferBuild()) {
+            this.requestAndComplementsModified = true;
+            return;
+        }
+
+        // Bind the request and complements element to a new segment at the end of the payment activation request
+        requestAndComplements.bind(this.sepamailMessagePaymentActivationRequest001.addNewReqCompl(),
+                this.getVersionTracker());
+
+        // Update the number of requests
+        this.requestHeader.setNbOfRequests(BigInteger.valueOf(this.semRequestAndComplements.size()));
+
+        // Record the modification of the document
+        this.markModified();
     }
 
     /**
@@ -139,8 +360,16 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
      */
     public void clearHuraDocuments() {
 
+        // Keep the content of the HURA documents bound to the missive document
+        for (SemHURADocument semHuraDocument : this.semHuraDocuments) {
+            if (this.isInMissive(semHuraDocument.getDocument())) {
+                semHuraDocument.unbind();
+            }
+        }
+
         // Clear the list of HURA documents
         this.semHuraDocuments.clear();
+        this.huraDocumentsModified = true;
 
         // Build the activation.request@payment.activation missive
         this.createMissive();
@@ -151,8 +380,16 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
      */
     public void clearRequestAndComplements() {
 
+        // Keep the content of the request and complements elements bound to the missive document
+        for (SemRequestAndComplements requestAndComplements : this.semRequestAndComplements) {
+            if (this.isInMissive(requestAndComplements.getRequestAndComplements())) {
+                requestAndComplements.unbind();
+            }
+        }
+
         // Clear the list of request and complements elements
         this.semRequestAndComplements.clear();
+        this.requestAndComplementsModified = true;
 
         // Build the activation.request@payment.activation missive
         this.createMissive();
@@ -164,10 +401,42 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
     @Override
     public void build() {
 
+        // Check all the HURA documents and request and complements elements against the message
+        this.huraDocumentsModified = true;
+        this.requestAndComplementsModified = true;
+
         // Build the missive using fragments
         this.createMissive();
     }
 
+    /**
+     * Check the SEPA business rules of the creditor payment activation requests which the XML schema cannot check
+     *
+     * The control sum, number of transactions and requested execution dates of each request are checked by
+     * Pain013BusinessRuleValidator. The violations are reported in document order as BusinessRuleViolation errors.
+     *
+     * @param failFast Whether the check stops at the first violation
+     * @return Result of the check of the business rules
+     */
+    public ValidationResult getBusinessRuleResult(boolean failFast) {
+
+        // Bring the totals of the requests up to date
+        this.updateDerivedValues();
+
+        // Validator of the business rules and collector for the violations
+        Pain013BusinessRuleValidator validator = new Pain013BusinessRuleValidator();
+        ValidationErrorCollector errors = new ValidationErrorCollector(failFast);
+
+        // Check each creditor payment activation request
+        for (RequestAndComplements reqCompl : this.sepamailMessagePaymentActivationRequest001.getReqComplArray()) {
+            if (reqCompl.getRequest() != null && !validator.validate(reqCompl.getRequest(), errors)) {
+                break;
+            }
+        }
+
+        return errors.getResult();
+    }
+
     /**
      * Get the list of HURA documents
      *
@@ -228,6 +497,57 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
         return null;
     }
 
+    /**
+     * Validate the missive document and get the errors found
+     *
+     * The HURA documents and request and complements elements are only validated again when they have been modified
+     * since their last validation, while the rest of the missive document is validated every time. The errors are
+     * reported in document order, as for a validation of the whole missive document.
+     *
+     * @param failFast Whether the validation stops at the first error
+     * @return Result of the validation of the missive document
+     */
+    @Override
+    public ValidationResult getValidationResult(boolean failFast) {
+
+        // Bring the totals of the requests up to date
+        this.updateDerivedValues();
+
+        // Validate the missive document
+        return this.createSegmentedValidator().validate(new ValidationErrorCollector(failFast));
+    }
+
+    /**
+     * Validate the missive document, validating its HURA documents and request and complements elements concurrently
+     * on the given executor, and get the errors found
+     *
+     * The result is the same as the one of getValidationResult(boolean). The calling thread validates the rest of the
+     * missive document while the HURA documents and request and complements elements modified since their last
+     * validation are validated on the executor, and it then merges the errors in document order.
+     *
+     * @param failFast Whether the validation stops at the first error
+     * @param executor Executor on which the HURA documents and request and complements elements are validated
+     * @return Result of the validation of the missive document
+     * @throws SmogException
+     */
+    public ValidationResult getValidationResult(boolean failFast, ExecutorService executor) throws SmogException {
+
+        // Bring the totals of the requests up to date
+        this.updateDerivedValues();
+
+        try {
+
+            // Validate the missive document
+            return this.createSegmentedValidator().validate(new ValidationErrorCollector(failFast), executor);
+
+        } catch (InterruptedException ex) {
+
+            // Keep the interrupted status of the calling thread
+            Thread.currentThread().interrupt();
+            throw new SmogException("The validation of the missive document has been interrupted");
+        }
+    }
+
     /**
      * Remove the HURA document at the specified index
      *
@@ -240,7 +560,20 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
         if (index > -1 && index < this.semHuraDocuments.size()) {
 
             // Remove the HURA document from the list
-            this.semHuraDocuments.remove(index);
+            SemHURADocument semHuraDocument = this.semHuraDocuments.remove(index);
+
+            // Keep the content of the HURA document if it is bound to the missive document
+            if (this.isInMissive(semHuraDocument.getDocument())) {
+                semHuraDocument.unbind();
+            }
+
+            // Remove the HURA document from the message header unless the document is being edited
+            if (this.deferBuild()) {
+                this.huraDocumentsModified = true;
+            } else {
+                this.requestHeader.removeDocuments(index);
+                this.markModified();
+            }
 
             return true;
         }
@@ -252,6 +585,9 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
     /**
      * Remove the request and complements element at the given index
      *
+     * The message segment to which the element is bound is removed, wherever it is in the message, so that the list
+     * may have been modified directly since the message was last built.
+     *
      * @param index Index of request and complements element
      * @return Whether the request and complements element could be removed
      */
@@ -261,7 +597,31 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
         if (index > -1 && index < this.semRequestAndComplements.size()) {
 
             // Remove the request and complements element from the list
-            this.semRequestAndComplements.remove(index);
+            SemRequestAndComplements requestAndComplements = this.semRequestAndComplements.remove(index);
+
+            // Message segment to which the request and complements element is bound, if any
+            RequestAndComplements reqCompl = requestAndComplements.getRequestAndComplements();
+            if (!this.isInMissive(reqCompl)) {
+                reqCompl = null;
+            }
+
+            // Keep the content of the request and complements element if it is bound to the missive document
+            if (reqCompl != null) {
+                requestAndComplements.unbind();
+            }
+
+            // Remove the request and complements message segment unless the document is being edited, checking the
+            // whole list against the message when the element was not bound to a segment
+            if (this.deferBuild()) {
+                this.requestAndComplementsModified = true;
+            } else if (reqCompl != null) {
+                this.removeReqCompl(reqCompl);
+                this.requestHeader.setNbOfRequests(BigInteger.valueOf(this.semRequestAndComplements.size()));
+                this.markModified();
+            } else {
+                this.requestAndComplementsModified = true;
+                this.createMissive();
+            }
 
             return true;
         }
@@ -270,57 +630,238 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
         return false;
     }
 
+    /**
+     * Get the attachment references held by the HURA documents of the missive
+     *
+     * @return References held by the attachments of the HURA documents
+     */
+    @Override
+    protected Iterable<AttachmentReference> getAttachmentReferences() {
+
+        // References of the HURA documents which hold their attachment by reference
+        ArrayList<AttachmentReference> attachmentReferences = new ArrayList<>();
+        for (SemHURADocument semHuraDocument : this.semHuraDocuments) {
+            AttachmentReference attachmentReference = semHuraDocument.getAttachmentReference();
+            if (attachmentReference != null) {
+                attachmentReferences.add(attachmentReference);
+            }
+        }
+
+        return attachmentReferences;
+    }
+
+    /**
+     * Update the missive document after some of its segments have been modified
+     *
+     * Only the lists of HURA documents and of request and complements elements that have been modified since the last
+     * update are checked against the message, so that changing the header of a large document does not depend on its
+     * number of requests.
+     */
+    @Override
+    protected void update() {
+
+        // Build the missive using fragments
+        this.createMissive();
+    }
+
+    /**
+     * Set the number of transactions and the control sum of the requests whose payment information have been modified
+     * since they were added to the document
+     */
+    @Override
+    protected void updateDerivedValues() {
+
+        // Bring the totals of each request up to date
+        for (SemRequestAndComplements requestAndComplements : this.semRequestAndComplements) {
+            requestAndComplements.updateTransactionTotals();
+        }
+    }
+
+    /**
+     * Check if the missive document is valid, validating its HURA documents and request and complements elements
+     * concurrently on the given executor
+     *
+     * @param executor Executor on which the HURA documents and request and complements elements are validated
+     * @return Whether the missive document is valid
+     * @throws SmogException
+     */
+    public boolean validate(ExecutorService executor) throws SmogException {
+
+        // Validate the missive document
+        ValidationResult validationResult = this.getValidationResult(false, executor);
+
+        // Check if the missive document is valid
+        if (!validationResult.isValid()) {
+            throw new SmogException(validationResult.getMessage("\n"));
+        }
+
+        return true;
+    }
+
+    /**
+     * Remove the given request and complements message segment from the payment activation request message
+     *
+     * The segment is removed through a cursor placed on it, so that removing a segment of a large message does not
+     * depend on its position.
+     *
+     * @param reqCompl Request and complements message segment
+     */
+    private void removeReqCompl(RequestAndComplements reqCompl) {
+
+        // Cursor on the request and complements message segment
+        XmlCursor cursor = reqCompl.newCursor();
+
+        // Remove the segment
+        cursor.removeXml();
+
+        // Dispose cursor
+        cursor.dispose();
+    }
+
     /**
      * Build the HURA document message segment in the message header
+     *
+     * The message header is left untouched when its segments are already those to which the HURA documents are bound.
      */
     private void buildHuraDocuments() {
 
+        // HURA document message segments of the message header
+        Document[] documents = this.requestHeader.getDocumentsArray();
+
+        // Check if the HURA documents are bound to the message segments
+        boolean bound = documents.length == this.semHuraDocuments.size();
+        for (int i = 0; bound && i < documents.length; i++) {
+            bound = documents[i] == this.semHuraDocuments.get(i).getDocument();
+        }
+        if (bound) {
+            return;
+        }
+
+        // Keep the content of the HURA documents bound to the message segments being removed
+        for (SemHURADocument semHuraDocument : this.semHuraDocuments) {
+            if (this.isInMissive(semHuraDocument.getDocument())) {
+                semHuraDocument.unbind();
+            }
+        }
+
         // Remove the HURA documents from the message header
-        for (int i = this.requestHeader.sizeOfDocumentsArray() - 1; i > -1; i--) {
+        for (int i = documents.length - 1; i > -1; i--) {
             this.requestHeader.removeDocuments(i);
         }
 
-        // Check if the list of HURA documents is not empty
-        if (!this.semHuraDocuments.isEmpty()) {
+        // Bind the HURA documents to new segments of the message header
+        for (SemHURADocument semHuraDocument : this.semHuraDocuments) {
+            semHuraDocument.bind(this.requestHeader.addNewDocuments(), this.getVersionTracker());
+        }
+    }
 
-            // Array of HURA document
-            Document[] documents = new Document[this.semHuraDocuments.size()];
+    /**
+     * Build the request and complements message segment of the message
+     *
+     * Only the difference between the list and the message is applied: the segments of request and complements
+     * elements which are no longer in the list are removed, the segments following the first element which is not
+     * bound to the segment at its position are replaced, and the elements left are bound to new segments at the end of
+     * the message. The message is therefore left untouched when its segments are already those to which the request
+     * and complements elements are bound, and elements appended to the list only add their own segments.
+     */
+    private void buildRequestAndComplements() {
+
+        // Request and complements message segments of the message
+        RequestAndComplements[] requestAndComplements =
+                this.sepamailMessagePaymentActivationRequest001.getReqComplArray();
 
-            // Build the array of documents
-            for (int i = 0; i < this.semHuraDocuments.size(); i++) {
-                documents[i] = this.semHuraDocuments.get(i).getDocument();
+        // Message segments to which the request and complements elements of the list are bound
+        IdentityHashMap<RequestAndComplements, Boolean> boundSegments =
+                new IdentityHashMap<>(this.semRequestAndComplements.size());
+        for (SemRequestAndComplements semRequestAndComplement : this.semRequestAndComplements) {
+            boundSegments.put(semRequestAndComplement.getRequestAndComplements(), Boolean.TRUE);
+        }
+
+        // Remove the message segments which are not bound to an element of the list, keeping the others in order
+        ArrayList<RequestAndComplements> segments = new ArrayList<>(requestAndComplements.length);
+        for (RequestAndComplements reqCompl : requestAndComplements) {
+            if (boundSegments.containsKey(reqCompl)) {
+                segments.add(reqCompl);
+            } else {
+                this.removeReqCompl(reqCompl);
             }
+        }
 
-            // Set the HURA document segment of the message
-            this.requestHeader.setDocumentsArray(documents);
+        // Number of request and complements elements bound to the message segment at their position
+        int bound = 0;
+        while (bound < segments.size() && bound < this.semRequestAndComplements.size() &&
+                segments.get(bound) == this.semRequestAndComplements.get(bound).getRequestAndComplements()) {
+            bound++;
+        }
+
+        // Keep the content of the following request and complements elements which are bound to the message
+        for (int i = bound; i < this.semRequestAndComplements.size(); i++) {
+            SemRequestAndComplements semRequestAndComplement = this.semRequestAndComplements.get(i);
+            if (this.isInMissive(semRequestAndComplement.getRequestAndComplements())) {
+                semRequestAndComplement.unbind();
+            }
+        }
+
+        // Remove the message segments following those bound at their position
+        for (int i = bound; i < segments.size(); i++) {
+            this.removeReqCompl(segments.get(i));
+        }
+
+        // Bind the following request and complements elements to new segments at the end of the message
+        for (int i = bound; i < this.semRequestAndComplements.size(); i++) {
+            this.semRequestAndComplements.get(i).bind(
+                    this.sepamailMessagePaymentActivationRequest001.addNewReqCompl(), this.getVersionTracker());
         }
     }
 
     /**
-     * Build the request and complements message segment of the message
+     * Create a validator for the missive document with its HURA documents and request and complements elements as
+     * message segments
+     *
+     * The results kept by the HURA documents and request and complements elements bound to their message segments are
+     * used for the message segments which have not been modified since their last validation.
+     *
+     * @return Validator for the missive document
      */
-    private void buildRequestAndComplements() {
+    private SegmentedValidator createSegmentedValidator() {
 
-        // Remove existing request and complements
-        for (int i = this.sepamailMessagePaymentActivationRequest001.sizeOfReqComplArray() - 1; i > -1; i--) {
-            this.sepamailMessagePaymentActivationRequest001.removeReqCompl(i);
-        }
+        // Validator for the missive document and its message segments
+        SegmentedValidator validator = new SegmentedValidator(this.missiveDocument);
 
-        // Check if the list of request of complements is not empty
-        if (!this.semRequestAndComplements.isEmpty()) {
+        // Add the HURA documents, using the caches of the HURA documents bound to them
+        Document[] documents = this.requestHeader.getDocumentsArray();
+        for (int i = 0; i < documents.length; i++) {
 
-            // Array of request and complements message segments
-            RequestAndComplements[] requestAndComplements =
-                    new RequestAndComplements[this.semRequestAndComplements.size()];
+            // HURA document expected at this position
+            SemHURADocument semHuraDocument = i < this.semHuraDocuments.size() ? this.semHuraDocuments.get(i) : null;
 
-            // Build the list of request and complements message segments
-            for (int i = 0; i < this.semRequestAndComplements.size(); i++) {
-                requestAndComplements[i] = this.semRequestAndComplements.get(i).getRequestAndComplements();
+            // Check if the message segment is bound to its HURA document
+            if (semHuraDocument != null && semHuraDocument.getDocument() == documents[i]) {
+                validator.addSegment(documents[i], semHuraDocument.getValidationCache(),
+                        semHuraDocument.getVersionTracker());
+            } else {
+                validator.addSegment(documents[i], (ValidationResult) null);
             }
+        }
+
+        // Add the request and complements elements, using the caches of the elements bound to them
+        RequestAndComplements[] reqCompls = this.sepamailMessagePaymentActivationRequest001.getReqComplArray();
+        for (int i = 0; i < reqCompls.length; i++) {
+
+            // Request and complements element expected at this position
+            SemRequestAndComplements requestAndComplements = i < this.semRequestAndComplements.size() ?
+                    this.semRequestAndComplements.get(i) : null;
 
-            // Add the array of request and complements message segments to the payment activation request message
-            this.sepamailMessagePaymentActivationRequest001.setReqComplArray(requestAndComplements);
+            // Check if the message segment is bound to its request and complements element
+            if (requestAndComplements != null && requestAndComplements.getRequestAndComplements() == reqCompls[i]) {
+                validator.addSegment(reqCompls[i], requestAndComplements.getValidationCache(),
+                        requestAndComplements.getVersionTracker());
+            } else {
+                validator.addSegment(reqCompls[i], (ValidationResult) null);
+            }
         }
+
+        return validator;
     }
 
     /**
@@ -328,25 +869,51 @@ public class SepamailPaymentActivationRequestDocument extends DocumentBase imple
      */
     private void createMissive() {
 
+        // Defer the assembly while the document is being edited
+        if (this.deferBuild()) {
+            return;
+        }
+
         // Set the number of requests
         this.requestHeader.setNbOfRequests(BigInteger.valueOf(this.semRequestAndComplements.size()));
 
-        // Add HURA documents to the message header
-        this.buildHuraDocuments();
-
         // Add request and request complements to the payment activation request message
-        this.sepamailMessagePaymentActivationRequest001.setHeader(this.requestHeader);
-
-        // Add request and complements to the payment activation request message
-        this.buildRequestAndComplements();
+        if (this.sepamailMessagePaymentActivationRequest001.getHeader() != this.requestHeader) {
+            this.sepamailMessagePaymentActivationRequest001.setHeader(this.requestHeader);
+        }
 
         // Add the payment activation request message to the wrapper
-        this.paymentActivationRequest.setSepamailMessagePaymentActivationRequest001(this.sepamailMessagePaymentActivationRequest001);
+        if (this.paymentActivationRequest.getSepamailMessagePaymentActivationRequest001() !=
+                this.sepamailMessagePaymentActivationRequest001) {
+            this.paymentActivationRequest.setSepamailMessagePaymentActivationRequest001(this.sepamailMessagePaymentActivationRequest001);
+        }
 
         // Add the activation.request@payment.activation to the message body
-        this.messageBody.setPaymentActivationRequest(this.paymentActivationRequest);
+        if (this.messageBody.getPaymentActivationRequest() != this.paymentActivationRequest) {
+            this.messageBody.setPaymentActivationRequest(this.paymentActivationRequest);
+        }
 
         // Build the rest of the missive document
         this.assembleDocument();
+
+        // Bind the message segments to the copies held by the document so that they are modified in place
+        this.paymentActivationRequest = this.messageBody.getPaymentActivationRequest();
+        this.sepamailMessagePaymentActivationRequest001 =
+                this.paymentActivationRequest.getSepamailMessagePaymentActivationRequest001();
+        this.requestHeader = this.sepamailMessagePaymentActivationRequest001.getHeader();
+
+        // Add HURA documents to the message header when the list of HURA documents has been modified since the last
+        // update of the message header
+        if (this.huraDocumentsModified) {
+            this.huraDocumentsModified = false;
+            this.buildHuraDocuments();
+        }
+
+        // Add request and complements to the payment activation request message when the list of request and
+        // complements elements has been modified since the last update of the message
+        if (this.requestAndComplementsModified) {
+            this.requestAndComplementsModified = false;
+            this.buildRequestAndComplements();
+        }
     }
 }
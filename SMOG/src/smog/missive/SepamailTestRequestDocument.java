@@ -5,8 +5,11 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.Calendar;
+import java.util.Collections;
+import smog.io.AttachmentReference;
 import smog.schema.sem.BICorIBAN;
 import smog.schema.sem.MessageType;
+import smog.schema.sem.MissiveDocument;
 import smog.schema.sem.MissiveType;
 import smog.schema.sem.PriorityCode;
 import smog.schema.sem.ReceiverIdentifier;
@@ -21,6 +24,7 @@ import smog.utils.Utils;
 public class SepamailTestRequestDocument extends DocumentBase implements DocumentInterface {
 
     // Class attributes
+    private AttachmentReference dataReference;
     private SimpleTestRequest simpleTestRequest;
 
     /**
@@ -45,6 +49,7 @@ public class SepamailTestRequestDocument extends DocumentBase implements Documen
                 receiverIdentifier, sender, sendDateTime, Utils.generateMessageId(), messageExpiry);
 
         // Initialise class attributes
+        this.dataReference = null;
         this.simpleTestRequest = SimpleTestRequest.Factory.newInstance();
 
         // Set the message type
@@ -90,6 +95,7 @@ public class SepamailTestRequestDocument extends DocumentBase implements Documen
                 sendDateTime, messageId, messageExpiry);
 
         // Initialise class attributes
+        this.dataReference = null;
         this.simpleTestRequest = SimpleTestRequest.Factory.newInstance();
 
         // Set the message type
@@ -107,6 +113,24 @@ public class SepamailTestRequestDocument extends DocumentBase implements Documen
         this.createMissive();
     }
 
+    /**
+     * SepamailTestRequestDocument constructor
+     *
+     * The document is bound to the given simple.request@test missive document, which is not copied.
+     *
+     * @param missiveDocument Parsed simple.request@test missive document
+     */
+    SepamailTestRequestDocument(MissiveDocument missiveDocument) {
+
+        // Initialise the parent class
+        super(missiveDocument);
+
+        // Bind the message to the simple.request@test message of the missive document, whose data is never held by
+        // reference
+        this.dataReference = null;
+        this.simpleTestRequest = this.messageBody.getSimpleTestRequest();
+    }
+
     /**
      * Build the missive document
      */
@@ -117,19 +141,62 @@ public class SepamailTestRequestDocument extends DocumentBase implements Documen
         this.createMissive();
     }
 
+    /**
+     * Get the attachment references held by the simple.request@test message
+     *
+     * @return The reference held by the data element, if any
+     */
+    @Override
+    protected Iterable<AttachmentReference> getAttachmentReferences() {
+
+        // Reference held by the data element
+        AttachmentReference reference = this.getDataReference();
+
+        return reference != null ? Collections.singletonList(reference) : Collections.<AttachmentReference>emptyList();
+    }
+
     /**
      * Get the data of the simple.request@test message
      *
+     * Data that has been set through a reference is read from the content it refers to.
+     *
      * @return The data of the simple.request@test message
+     * @throws IllegalStateException if the content referred to cannot be read
      */
     public byte[] getData() {
 
         // Check if data has been set
-        if (this.simpleTestRequest.isSetData()) {
-            return this.simpleTestRequest.getData();
+        if (!this.simpleTestRequest.isSetData()) {
+            return null;
         }
 
-        return null;
+        // Data held by reference
+        AttachmentReference reference = this.getDataReference();
+        if (reference != null) {
+            try {
+                return reference.getContent();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Unable to read the data " + reference, ex);
+            }
+        }
+
+        return this.simpleTestRequest.getData();
+    }
+
+    /**
+     * Get the reference held by the data element of the simple.request@test message
+     *
+     * @return Reference set through setDataReference(), or null when the data element no longer holds it
+     */
+    private AttachmentReference getDataReference() {
+
+        // Check that the data element still holds the reference
+        if (this.dataReference == null || !this.simpleTestRequest.isSetData() ||
+                !this.dataReference.isHeldBy(this.simpleTestRequest.xgetData())) {
+            return null;
+        }
+
+        return this.dataReference;
     }
 
     /**
@@ -165,6 +232,7 @@ public class SepamailTestRequestDocument extends DocumentBase implements Documen
 
         // Remove the data content from the message
         this.simpleTestRequest.unsetData();
+        this.dataReference = null;
 
         // Build the simple.request@test missive
         this.createMissive();
@@ -191,6 +259,9 @@ public class SepamailTestRequestDocument extends DocumentBase implements Documen
      */
     public void setData(File dataFile) throws FileNotFoundException, IOException {
 
+        // Data is no longer held by reference
+        this.dataReference = null;
+
         // Check if the data file has been specified
         if (dataFile == null) {
             this.simpleTestRequest.unsetData();
@@ -202,6 +273,25 @@ public class SepamailTestRequestDocument extends DocumentBase implements Documen
         this.createMissive();
     }
 
+    /**
+     * Set the data content of the simple.request@test message to content held by a reference
+     *
+     * The content is not loaded in memory. It is encoded in Base64 when the missive is serialized and needs to be
+     * available until then, for instance in a file referenced through new AttachmentReference(path).
+     *
+     * @param reference Reference to the content of the data element of the simple.request@test message
+     */
+    public void setDataReference(AttachmentReference reference) {
+
+        // Data element holding the reference
+        this.simpleTestRequest.setData(new byte[0]);
+        this.simpleTestRequest.xgetData().set(reference.toXml());
+        this.dataReference = reference;
+
+        // Build the simple.request@test missive
+        this.createMissive();
+    }
+
     /**
      * Set the test ID of the simple.request@test message
      *
@@ -239,10 +329,20 @@ public class SepamailTestRequestDocument extends DocumentBase implements Documen
      */
     private void createMissive() {
 
+        // Defer the assembly while the document is being edited
+        if (this.deferBuild()) {
+            return;
+        }
+
         // Add the simple.request@test message to the message body
-        this.messageBody.setSimpleTestRequest(this.simpleTestRequest);
+        if (this.messageBody.getSimpleTestRequest() != this.simpleTestRequest) {
+            this.messageBody.setSimpleTestRequest(this.simpleTestRequest);
+        }
 
         // Build the rest of the missive document
         this.assembleDocument();
+
+        // Bind the message to the copy held by the document so that it is modified in place
+        this.simpleTestRequest = this.messageBody.getSimpleTestRequest();
     }
 }
@@ -15,12 +15,19 @@ import smog.schema.p13.Purpose2Choice;
 import smog.schema.p13.RegulatoryReporting3;
 import smog.schema.p13.RemittanceInformation6;
 import smog.schema.p13.RemittanceLocation2;
+import smog.schema.p13.StructuredRegulatoryReporting3;
 import smog.schema.p13.TaxInformation3;
+import smog.utils.VersionTracker;
+import smog.validation.ValidationCache;
+import smog.validation.ValidationResult;
 
 /**
  * Pain013CreditTransferTransactionInformation class represents a pain.013.001.01 credit transfer transaction
  * information.
  *
+ * The getters of the XML elements of the transaction return copies of the elements held by its segment, which are
+ * only modified through the setters so that the modifications are recorded by its version tracker.
+ *
  * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
  */
 public class Pain013CreditTransferTransactionInformation {
@@ -46,6 +53,8 @@ public class Pain013CreditTransferTransactionInformation {
     private TaxInformation3 tax;
     private PartyIdentification43 ultimateCreditor;
     private PartyIdentification43 ultimateDebtor;
+    private ValidationCache validationCache;
+    private VersionTracker versionTracker;
 
     /**
      * Pain013CreditTransferTransactionInformation constructor
@@ -98,6 +107,8 @@ public class Pain013CreditTransferTransactionInformation {
         this.tax = tax;
         this.ultimateCreditor = ultimateCreditor;
         this.ultimateDebtor = ultimateDebtor;
+        this.validationCache = new ValidationCache();
+        this.versionTracker = new VersionTracker();
 
         // Set the payment identification of the credit transfer transaction information message segment
         this.setCttiPaymentIdentification();
@@ -153,6 +164,74 @@ public class Pain013CreditTransferTransactionInformation {
         this.setCttiRemittanceInformation();
     }
 
+    /**
+     * Pain013CreditTransferTransactionInformation constructor
+     *
+     * The credit transfer transaction information uses the given message segment, usually read from a parsed missive,
+     * without copying it. The instructions for creditor agent, regulatory reporting elements and related remittance
+     * information, which are replaced as a whole in the message segment whenever their lists are modified, are read
+     * into structure objects of their own.
+     *
+     * @param creditTransferTransactionInformation Credit transfer transaction information message segment
+     */
+    public Pain013CreditTransferTransactionInformation(
+            CreditTransferTransactionInformation14 creditTransferTransactionInformation) {
+
+        // Initialise class attributes from the message segment
+        this.amount = creditTransferTransactionInformation.getAmt();
+        this.chargeBearer = creditTransferTransactionInformation.getChrgBr();
+        this.chequeInstruction = creditTransferTransactionInformation.getChqInstr();
+        this.creditTransferTransactionInformation = creditTransferTransactionInformation;
+        this.creditor = creditTransferTransactionInformation.getCdtr();
+        this.creditorAccount = creditTransferTransactionInformation.getCdtrAcct();
+        this.creditorAgent = creditTransferTransactionInformation.getCdtrAgt();
+        this.instructionsForCreditorAgent = new ArrayList<>();
+        this.intermediaryAgent1 = creditTransferTransactionInformation.getIntrmyAgt1();
+        this.intermediaryAgent2 = creditTransferTransactionInformation.getIntrmyAgt2();
+        this.intermediaryAgent3 = creditTransferTransactionInformation.getIntrmyAgt3();
+        this.paymentIdenfitication = creditTransferTransactionInformation.getPmtId();
+        this.paymentTypeInformation = creditTransferTransactionInformation.getPmtTpInf();
+        this.purpose = creditTransferTransactionInformation.getPurp();
+        this.regulatoryReportings = new ArrayList<>();
+        this.relatedRemittanceInformation = new ArrayList<>();
+        this.remittanceInformation = creditTransferTransactionInformation.getRmtInf();
+        this.tax = creditTransferTransactionInformation.getTax();
+        this.ultimateCreditor = creditTransferTransactionInformation.getUltmtCdtr();
+        this.ultimateDebtor = creditTransferTransactionInformation.getUltmtDbtr();
+        this.validationCache = new ValidationCache();
+        this.versionTracker = new VersionTracker();
+
+        // Read the instructions for creditor agent
+        for (InstructionForCreditorAgent1 instruction :
+                creditTransferTransactionInformation.getInstrForCdtrAgtArray()) {
+            this.instructionsForCreditorAgent.add(new Pain013InstructionForCreditorAgent(instruction.getCd(),
+                    instruction.getInstrInf()));
+        }
+
+        // Read the regulatory reporting elements
+        for (RegulatoryReporting3 reporting : creditTransferTransactionInformation.getRgltryRptgArray()) {
+            Pain013RegulatoryReporting regulatoryReporting = new Pain013RegulatoryReporting(reporting.getAuthrty(),
+                    reporting.getDbtCdtRptgInd());
+            for (StructuredRegulatoryReporting3 detail : reporting.getDtlsArray()) {
+                Pain013StructuredRegulatoryReporting structuredRegulatoryReporting =
+                        new Pain013StructuredRegulatoryReporting(detail.getAmt(), detail.getCd(), detail.getCtry(),
+                        detail.getDt(), detail.getTp());
+                for (String information : detail.getInfArray()) {
+                    structuredRegulatoryReporting.addAdditionalInformation(information);
+                }
+                regulatoryReporting.addDetail(structuredRegulatoryReporting);
+            }
+            this.regulatoryReportings.add(regulatoryReporting);
+        }
+
+        // Read the related remittance information
+        for (RemittanceLocation2 remittanceLocation : creditTransferTransactionInformation.getRltdRmtInfArray()) {
+            this.relatedRemittanceInformation.add(new Pain013RemittanceLocation(remittanceLocation.getRmtId(),
+                    remittanceLocation.getRmtLctnMtd(), remittanceLocation.getRmtLctnElctrncAdr(),
+                    remittanceLocation.getRmtLctnPstlAdr()));
+        }
+    }
+
     /**
      * Add the given instruction for creditor agent to the list of instructions for creditor agent
      *
@@ -165,6 +244,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the instructions for creditor agent in the message segment
         this.setCttiInstructionForCreditorAgent();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -179,6 +261,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the regulatory reporting elements of the message segment
         this.setCttiRegulatoryReporting();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -193,6 +278,35 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the related remittance information of the message segment
         this.setCttiRelatedRemittanceInformation();
+
+        // Record the modification
+        this.versionTracker.increment();
+    }
+
+    /**
+     * Bind the credit transfer transaction information to the given message segment
+     *
+     * The content of the credit transfer transaction information is copied once into the given message segment, which
+     * is usually created with addNewCdtTrfTx() inside the payment instruction holding the transaction. Subsequent
+     * modifications of the credit transfer transaction information are made directly in that message segment.
+     *
+     * @param node Message segment to which the credit transfer transaction information is bound
+     * @param parent Version tracker of the segment holding the message segment
+     */
+    public void bind(CreditTransferTransactionInformation14 node, VersionTracker parent) {
+
+        // Propagate the modifications to the segment holding the message segment
+        this.versionTracker.setParent(parent);
+
+        // Check if the credit transfer transaction information is not already bound to the message segment
+        if (node != this.creditTransferTransactionInformation) {
+
+            // Copy the content of the credit transfer transaction information into the message segment
+            node.set(this.creditTransferTransactionInformation);
+
+            // Modify the message segment from now on
+            this.attach(node);
+        }
     }
 
     /**
@@ -205,6 +319,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the instructions for creditor agent in the message segment
         this.setCttiInstructionForCreditorAgent();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -217,6 +334,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the regulatory reporting elements of the message segment
         this.setCttiRegulatoryReporting();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -229,17 +349,20 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the related remittance information of the message segment
         this.setCttiRelatedRemittanceInformation();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
      * Get the amount of money to be moved between the debtor and creditor
      *
-     * @return Amount of money to be moved between the debtor and creditor
+     * @return Copy of the amount of money to be moved between the debtor and creditor, or null when it has not been set
      */
     public AmountType3Choice getAmount() {
 
-        // Get the amount of money to be moved between the debtor and creditor
-        return this.amount;
+        // Get a copy of the amount of money to be moved between the debtor and creditor
+        return this.amount != null ? (AmountType3Choice) this.amount.copy() : null;
     }
 
     /**
@@ -256,50 +379,54 @@ public class Pain013CreditTransferTransactionInformation {
     /**
      * Get the cheque instruction
      *
-     * @return Cheque instruction
+     * @return Copy of the cheque instruction, or null when it has not been set
      */
     public Cheque6 getChequeInstruction() {
 
-        // Get the cheque instruction
-        return this.chequeInstruction;
+        // Get a copy of the cheque instruction
+        return this.chequeInstruction != null ? (Cheque6) this.chequeInstruction.copy() : null;
     }
 
     /**
      * Get the creditor
      *
-     * @return Creditor
+     * @return Copy of the creditor, or null when it has not been set
      */
     public PartyIdentification43 getCreditor() {
 
-        // Get the creditor
-        return this.creditor;
+        // Get a copy of the creditor
+        return this.creditor != null ? (PartyIdentification43) this.creditor.copy() : null;
     }
 
     /**
      * Get the creditor account
      *
-     * @return Creditor account
+     * @return Copy of the creditor account, or null when it has not been set
      */
     public CashAccount16 getCreditorAccount() {
 
-        // Get the creditor account
-        return this.creditorAccount;
+        // Get a copy of the creditor account
+        return this.creditorAccount != null ? (CashAccount16) this.creditorAccount.copy() : null;
     }
 
     /**
      * Get the creditor agent
      *
-     * @return Creditor agent
+     * @return Copy of the creditor agent, or null when it has not been set
      */
     public BranchAndFinancialInstitutionIdentification5 getCreditorAgent() {
 
-        // Get the creditor agent
-        return this.creditorAgent;
+        // Get a copy of the creditor agent
+        return this.creditorAgent != null ?
+                (BranchAndFinancialInstitutionIdentification5) this.creditorAgent.copy() : null;
     }
 
     /**
      * Get the creditor transfer transaction information message segment
      *
+     * The segment is part of the payment information to which the transaction has been added; it is not copied, so
+     * it should only be modified through the setters of the transaction.
+     *
      * @return Creditor transfer transaction information message segment
      */
     public CreditTransferTransactionInformation14 getCreditTransferTransactionInformation() {
@@ -341,67 +468,72 @@ public class Pain013CreditTransferTransactionInformation {
     /**
      * Get the first intermediary agent
      *
-     * @return First intermediary agent
+     * @return Copy of the first intermediary agent, or null when it has not been set
      */
     public BranchAndFinancialInstitutionIdentification5 getIntermediaryAgent1() {
 
-        // Get the intermediary agent 1
-        return this.intermediaryAgent1;
+        // Get a copy of the intermediary agent 1
+        return this.intermediaryAgent1 != null ?
+                (BranchAndFinancialInstitutionIdentification5) this.intermediaryAgent1.copy() : null;
     }
 
     /**
      * Get the second intermediary agent
      *
-     * @return Second intermediary agent
+     * @return Copy of the second intermediary agent, or null when it has not been set
      */
     public BranchAndFinancialInstitutionIdentification5 getIntermediaryAgent2() {
 
-        // Get the intermediary agent 2
-        return this.intermediaryAgent2;
+        // Get a copy of the intermediary agent 2
+        return this.intermediaryAgent2 != null ?
+                (BranchAndFinancialInstitutionIdentification5) this.intermediaryAgent2.copy() : null;
     }
 
     /**
      * Get the third intermediary agent
      *
-     * @return Third intermediary agent
+     * @return Copy of the third intermediary agent, or null when it has not been set
      */
     public BranchAndFinancialInstitutionIdentification5 getIntermediaryAgent3() {
 
-        // Get the intermediary agent 3
-        return this.intermediaryAgent3;
+        // Get a copy of the intermediary agent 3
+        return this.intermediaryAgent3 != null ?
+                (BranchAndFinancialInstitutionIdentification5) this.intermediaryAgent3.copy() : null;
     }
 
     /**
      * Get the payment identification of the credit transfer transaction information
      *
-     * @return Payment identification of the credit transfer transaction information
+     * @return Copy of the payment identification of the credit transfer transaction information, or null when it has
+     * not been set
      */
     public PaymentIdentification1 getPaymentIdentification() {
 
-        // Get the payment identification
-        return this.paymentIdenfitication;
+        // Get a copy of the payment identification
+        return this.paymentIdenfitication != null ? (PaymentIdentification1) this.paymentIdenfitication.copy() : null;
     }
 
     /**
      * Get the payment type information
      *
-     * @return Payment type information
+     * @return Copy of the payment type information, or null when it has not been set
      */
     public PaymentTypeInformation19 getPaymentTypeInformation() {
 
-        // Get the payment type information
-        return this.paymentTypeInformation;
+        // Get a copy of the payment type information
+        return this.paymentTypeInformation != null ?
+                (PaymentTypeInformation19) this.paymentTypeInformation.copy() : null;
     }
 
     /**
      * Get the purpose of the payment transaction
      *
-     * @return Purpose of the payment transaction
+     * @return Copy of the purpose of the payment transaction, or null when it has not been set
      */
     public Purpose2Choice getPurpose() {
 
-        // Get the purpose of the payment transaction
-        return this.purpose;
+        // Get a copy of the purpose of the payment transaction
+        return this.purpose != null ? (Purpose2Choice) this.purpose.copy() : null;
     }
 
     /**
@@ -429,45 +561,73 @@ public class Pain013CreditTransferTransactionInformation {
     /**
      * Get the remittance information
      *
-     * @return Remittance information
+     * @return Copy of the remittance information, or null when it has not been set
      */
     public RemittanceInformation6 getRemittanceInformation() {
 
-        // Get the remittance information
-        return this.remittanceInformation;
+        // Get a copy of the remittance information
+        return this.remittanceInformation != null ? (RemittanceInformation6) this.remittanceInformation.copy() : null;
     }
 
     /**
      * Get the tax details
      *
-     * @return Tax details
+     * @return Copy of the tax details, or null when it has not been set
      */
     public TaxInformation3 getTax() {
 
-        // Get the tax details
-        return this.tax;
+        // Get a copy of the tax details
+        return this.tax != null ? (TaxInformation3) this.tax.copy() : null;
     }
 
     /**
      * Get the ultimate party to which an amount of money is due
      *
-     * @return Ultimate party to which an amount of money is due
+     * @return Copy of the ultimate party to which an amount of money is due, or null when it has not been set
      */
     public PartyIdentification43 getUltimateCreditor() {
 
-        // Get the ultimate party to which an amount of money is due
-        return this.ultimateCreditor;
+        // Get a copy of the ultimate party to which an amount of money is due
+        return this.ultimateCreditor != null ? (PartyIdentification43) this.ultimateCreditor.copy() : null;
     }
 
     /**
      * Get the ultimate party that owes an amount of money to the creditor
      *
-     * @return Ultimate party that owes an amount of money to the creditor
+     * @return Copy of the ultimate party that owes an amount of money to the creditor, or null when it has not been set
      */
     public PartyIdentification43 getUltimateDebtor() {
 
-        // Get the ultimate party that owes an amount of money to the creditor
-        return this.ultimateDebtor;
+        // Get a copy of the ultimate party that owes an amount of money to the creditor
+        return this.ultimateDebtor != null ? (PartyIdentification43) this.ultimateDebtor.copy() : null;
+    }
+
+    /**
+     * Validate the credit transfer transaction information message segment and get the errors found
+     *
+     * The result is kept until the credit transfer transaction information is modified, so that an unchanged message
+     * segment is not validated again.
+     *
+     * @return Result of the validation of the credit transfer transaction information message segment
+     */
+    public ValidationResult getValidationResult() {
+
+        // Validate the message segment unless it has been validated in its current version
+        return this.validationCache.getValidationResult(this.creditTransferTransactionInformation,
+                this.versionTracker);
+    }
+
+    /**
+     * Get the version tracker of the credit transfer transaction information
+     *
+     * The version changes whenever the credit transfer transaction information is modified.
+     *
+     * @return Version tracker of the credit transfer transaction information
+     */
+    public VersionTracker getVersionTracker() {
+
+        // Get the version tracker
+        return this.versionTracker;
     }
 
     /**
@@ -484,6 +644,9 @@ public class Pain013CreditTransferTransactionInformation {
             // Set the instructions for creditor agent in the message segment
             this.setCttiInstructionForCreditorAgent();
 
+            // Record the modification
+            this.versionTracker.increment();
+
             return true;
         }
 
@@ -508,6 +671,9 @@ public class Pain013CreditTransferTransactionInformation {
             // Set the regulatory reporting elements of the message segment
             this.setCttiRegulatoryReporting();
 
+            // Record the modification
+            this.versionTracker.increment();
+
             return true;
         }
 
@@ -532,6 +698,9 @@ public class Pain013CreditTransferTransactionInformation {
             // Set the related remittance information of the message segment
             this.setCttiRelatedRemittanceInformation();
 
+            // Record the modification
+            this.versionTracker.increment();
+
             return true;
         }
 
@@ -551,6 +720,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the amount of money to be moved between the debtor and creditor in the message segment
         this.setCttiAmount();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -565,6 +737,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the charge bearer in the message segment
         this.setCttiChargeBearer();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -579,6 +754,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the creditor of the message segment
         this.setCttiCreditor();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -593,6 +771,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the creditor account of the message segment
         this.setCttiCreditorAccount();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -607,6 +788,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the creditor agent of the message segment
         this.setCttiCreditorAgent();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -621,6 +805,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the first intermediary agent of the message segment
         this.setCttiIntermediaryAgent(1);
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -635,6 +822,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the second intermediary agent of the message segment
         this.setCttiIntermediaryAgent(2);
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -649,6 +839,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the third intermediary agent of the message segment
         this.setCttiIntermediaryAgent(3);
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -663,6 +856,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the payment identification of the credit transfer transaction information message segment
         this.setCttiPaymentIdentification();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -677,6 +873,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the payment type information of the message segment
         this.setCttiPaymentTypeInformation();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -691,6 +890,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the purpose of the payment transaction in the message segment
         this.setCttiPurpose();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -705,6 +907,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the remittance information of the message segment
         this.setCttiRemittanceInformation();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -719,6 +924,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the tax details of the message segment
         this.setCttiTax();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -733,6 +941,9 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the ultimate party to which an amount of money is due in the message segment
         this.setCttiUltimateCreditor();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -747,6 +958,85 @@ public class Pain013CreditTransferTransactionInformation {
 
         // Set the ultimate debtor that owes an amount of money to the creditor in the message segment
         this.setCttiUltimateDebtor();
+
+        // Record the modification
+        this.versionTracker.increment();
+    }
+
+    /**
+     * Unbind the credit transfer transaction information from the message segment it is bound to
+     *
+     * The credit transfer transaction information keeps a copy of its content, so that it remains usable once its
+     * message segment has been removed from the payment instruction.
+     */
+    public void unbind() {
+
+        // Modifications are no longer propagated to the segment which held the message segment
+        this.versionTracker.setParent(null);
+
+        // Modify a copy of the message segment from now on
+        this.attach((CreditTransferTransactionInformation14) this.creditTransferTransactionInformation.copy());
+    }
+
+    /**
+     * Attach the credit transfer transaction information to a message segment that already holds its content
+     *
+     * The elements of the credit transfer transaction information then refer to their copies inside the message
+     * segment, so that the objects from which they were set are no longer retained.
+     *
+     * @param node Message segment holding the content of the credit transfer transaction information
+     */
+    void attach(CreditTransferTransactionInformation14 node) {
+
+        // Modify the message segment from now on
+        this.creditTransferTransactionInformation = node;
+
+        // Refer to the copies of the elements that have been defined
+        if (this.amount != null) {
+            this.amount = node.getAmt();
+        }
+        if (this.chequeInstruction != null) {
+            this.chequeInstruction = node.getChqInstr();
+        }
+        if (this.creditor != null) {
+            this.creditor = node.getCdtr();
+        }
+        if (this.creditorAccount != null) {
+            this.creditorAccount = node.getCdtrAcct();
+        }
+        if (this.creditorAgent != null) {
+            this.creditorAgent = node.getCdtrAgt();
+        }
+        if (this.intermediaryAgent1 != null) {
+            this.intermediaryAgent1 = node.getIntrmyAgt1();
+        }
+        if (this.intermediaryAgent2 != null) {
+            this.intermediaryAgent2 = node.getIntrmyAgt2();
+        }
+        if (this.intermediaryAgent3 != null) {
+            this.intermediaryAgent3 = node.getIntrmyAgt3();
+        }
+        if (this.paymentIdenfitication != null) {
+            this.paymentIdenfitication = node.getPmtId();
+        }
+        if (this.paymentTypeInformation != null) {
+            this.paymentTypeInformation = node.getPmtTpInf();
+        }
+        if (this.purpose != null) {
+            this.purpose = node.getPurp();
+        }
+        if (this.remittanceInformation != null) {
+            this.remittanceInformation = node.getRmtInf();
+        }
+        if (this.tax != null) {
+            this.tax = node.getTax();
+        }
+        if (this.ultimateCreditor != null) {
+            this.ultimateCreditor = node.getUltmtCdtr();
+        }
+        if (this.ultimateDebtor != null) {
+            this.ultimateDebtor = node.getUltmtDbtr();
+        }
     }
 
     /**
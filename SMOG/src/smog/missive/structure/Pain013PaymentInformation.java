@@ -2,6 +2,8 @@ package smog.missive.structure;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import org.apache.xmlbeans.XmlCursor;
 import smog.schema.p13.BranchAndFinancialInstitutionIdentification5;
 import smog.schema.p13.CashAccount7;
 import smog.schema.p13.ChargeBearerType1Code;
@@ -10,10 +12,16 @@ import smog.schema.p13.PartyIdentification43;
 import smog.schema.p13.PaymentInstruction5;
 import smog.schema.p13.PaymentMethod7Code;
 import smog.schema.p13.PaymentTypeInformation19;
+import smog.utils.VersionTracker;
+import smog.validation.ValidationCache;
+import smog.validation.ValidationResult;
 
 /**
  * Pain013PaymentInformation class represents a pain.013.001.01 payment information.
  *
+ * Its values are held by its payment instruction segment, of which the XML elements returned by the getters are
+ * copies: modifications of the payment information go through its setters.
+ *
  * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
  */
 public class Pain013PaymentInformation {
@@ -30,6 +38,8 @@ public class Pain013PaymentInformation {
     private PaymentTypeInformation19 paymentTypeInformation;
     private Calendar requestedExecutionDate;
     private PartyIdentification43 ultimateDebtor;
+    private ValidationCache validationCache;
+    private VersionTracker versionTracker;
 
     /**
      * Pain013PaymentInformation constructor
@@ -62,6 +72,8 @@ public class Pain013PaymentInformation {
         this.paymentTypeInformation = paymentTypeInformation;
         this.requestedExecutionDate = requestedExecutionDate;
         this.ultimateDebtor = ultimateDebtor;
+        this.validationCache = new ValidationCache();
+        this.versionTracker = new VersionTracker();
 
         // Set the payment information identification of the message segment
         this.setPiPaymentInformationIdentification();
@@ -94,6 +106,40 @@ public class Pain013PaymentInformation {
         this.setPiCreditTransferTransactionInformation();
     }
 
+    /**
+     * Pain013PaymentInformation constructor
+     *
+     * The payment information uses the given message segment, usually read from a parsed missive, without copying it.
+     * Its credit transfer transaction information use the segments of the given message segment as well.
+     *
+     * @param paymentInstruction Payment information message segment
+     */
+    public Pain013PaymentInformation(PaymentInstruction5 paymentInstruction) {
+
+        // Initialise class attributes from the message segment
+        this.chargeBearer = paymentInstruction.getChrgBr();
+        this.debtor = paymentInstruction.getDbtr();
+        this.debtorAccount = paymentInstruction.getDbtrAcct();
+        this.debtorAgent = paymentInstruction.getDbtrAgt();
+        this.id = paymentInstruction.getPmtInfId();
+        this.paymentInstruction = paymentInstruction;
+        this.paymentMethod = paymentInstruction.getPmtMtd();
+        this.paymentTypeInformation = paymentInstruction.getPmtTpInf();
+        this.requestedExecutionDate = paymentInstruction.getReqdExctnDt();
+        this.ultimateDebtor = paymentInstruction.getUltmtDbtr();
+        this.validationCache = new ValidationCache();
+        this.versionTracker = new VersionTracker();
+
+        // Bind the credit transfer transaction information to the segments of the message segment
+        CreditTransferTransactionInformation14[] cttis = paymentInstruction.getCdtTrfTxArray();
+        this.creditTransferTransactionInformation = new ArrayList<>(cttis.length);
+        for (CreditTransferTransactionInformation14 ctti : cttis) {
+            Pain013CreditTransferTransactionInformation p013ctti = new Pain013CreditTransferTransactionInformation(ctti);
+            p013ctti.bind(ctti, this.versionTracker);
+            this.creditTransferTransactionInformation.add(p013ctti);
+        }
+    }
+
     /**
      * Add the given credit transfer transaction information to the payment information
      *
@@ -104,8 +150,59 @@ public class Pain013PaymentInformation {
         // Add the given credit transfer transaction information to the list
         this.creditTransferTransactionInformation.add(p013ctti);
 
-        // Set the credit transfer transaction information of the message segment
-        this.setPiCreditTransferTransactionInformation();
+        // Bind the credit transfer transaction information to a new segment at the end of the message segment
+        p013ctti.bind(this.paymentInstruction.addNewCdtTrfTx(), this.versionTracker);
+
+        // Record the modification
+        this.versionTracker.increment();
+    }
+
+    /**
+     * Add the given credit transfer transaction information to the payment information
+     *
+     * @param p013cttis Credit transfer transaction information
+     */
+    public void addAllCreditTransferTransactionInformation(
+            Collection<Pain013CreditTransferTransactionInformation> p013cttis) {
+
+        // Make room for the credit transfer transaction information in the list
+        this.creditTransferTransactionInformation.ensureCapacity(this.creditTransferTransactionInformation.size() +
+                p013cttis.size());
+
+        // Add each credit transfer transaction information to the list and to the message segment
+        for (Pain013CreditTransferTransactionInformation p013ctti : p013cttis) {
+            this.creditTransferTransactionInformation.add(p013ctti);
+            p013ctti.bind(this.paymentInstruction.addNewCdtTrfTx(), this.versionTracker);
+        }
+
+        // Record the modification
+        this.versionTracker.increment();
+    }
+
+    /**
+     * Bind the payment information to the given message segment
+     *
+     * The content of the payment information is copied once into the given message segment, which is usually created
+     * with addNewPmtInf() inside the creditor payment activation request holding the payment information. The payment
+     * information and its credit transfer transaction information are then modified directly in that message segment.
+     *
+     * @param node Message segment to which the payment information is bound
+     * @param parent Version tracker of the segment holding the message segment
+     */
+    public void bind(PaymentInstruction5 node, VersionTracker parent) {
+
+        // Propagate the modifications to the segment holding the message segment
+        this.versionTracker.setParent(parent);
+
+        // Check if the payment information is not already bound to the message segment
+        if (node != this.paymentInstruction) {
+
+            // Copy the content of the payment information into the message segment
+            node.set(this.paymentInstruction);
+
+            // Modify the message segment from now on
+            this.attach(node);
+        }
     }
 
     /**
@@ -113,11 +210,16 @@ public class Pain013PaymentInformation {
      */
     public void clearCreditTransferTransactionInformation() {
 
+        // Remove the credit transfer transaction information from the end of the message segment
+        for (int i = this.creditTransferTransactionInformation.size() - 1; i > -1; i--) {
+            this.removePiCreditTransferTransactionInformation(i, i + 1);
+        }
+
         // Clear the list of credit transfer transaction information
         this.creditTransferTransactionInformation.clear();
 
-        // Set the credit transfer transaction information of the message segment
-        this.setPiCreditTransferTransactionInformation();
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -164,34 +266,34 @@ public class Pain013PaymentInformation {
     /**
      * Get the debtor
      *
-     * @return Debtor
+     * @return Copy of the debtor, or null when it has not been set
      */
     public PartyIdentification43 getDebtor() {
 
-        // Get the debtor
-        return this.debtor;
+        // Get a copy of the debtor
+        return this.debtor != null ? (PartyIdentification43) this.debtor.copy() : null;
     }
 
     /**
      * Get the debtor account
      *
-     * @return Debtor account
+     * @return Copy of the debtor account, or null when it has not been set
      */
     public CashAccount7 getDebtorAccount() {
 
-        // Get the debtor account
-        return this.debtorAccount;
+        // Get a copy of the debtor account
+        return this.debtorAccount != null ? (CashAccount7) this.debtorAccount.copy() : null;
     }
 
     /**
      * Get the debtor agent
      *
-     * @return Debtor agent
+     * @return Copy of the debtor agent, or null when it has not been set
      */
     public BranchAndFinancialInstitutionIdentification5 getDebtorAgent() {
 
-        // Get the debtor agent
-        return this.debtorAgent;
+        // Get a copy of the debtor agent
+        return this.debtorAgent != null ? (BranchAndFinancialInstitutionIdentification5) this.debtorAgent.copy() : null;
     }
 
     /**
@@ -219,6 +321,9 @@ public class Pain013PaymentInformation {
     /**
      * Get the payment instruction message segment
      *
+     * The segment is the one held by the request to which the payment information has been added, and its direct
+     * modifications are not recorded by the version tracker.
+     *
      * @return Payment instruction message segment
      */
     public PaymentInstruction5 getPaymentInstruction() {
@@ -230,12 +335,13 @@ public class Pain013PaymentInformation {
     /**
      * Get the payment type information
      *
-     * @return Payment type information
+     * @return Copy of the payment type information, or null when it has not been set
      */
     public PaymentTypeInformation19 getPaymentTypeInformation() {
 
-        // Get the payment type information
-        return this.paymentTypeInformation;
+        // Get a copy of the payment type information
+        return this.paymentTypeInformation != null ?
+                (PaymentTypeInformation19) this.paymentTypeInformation.copy() : null;
     }
 
     /**
@@ -252,12 +358,40 @@ public class Pain013PaymentInformation {
     /**
      * Get the ultimate debtor
      *
-     * @return Ultimate debtor
+     * @return Copy of the ultimate debtor, or null when it has not been set
      */
     public PartyIdentification43 getUltimateDebtor() {
 
-        // Get the ultimate debtor
-        return this.ultimateDebtor;
+        // Get a copy of the ultimate debtor
+        return this.ultimateDebtor != null ? (PartyIdentification43) this.ultimateDebtor.copy() : null;
+    }
+
+    /**
+     * Validate the payment information message segment and get the errors found
+     *
+     * The result is kept until the payment information is modified, so that an unchanged message segment is not
+     * validated again.
+     *
+     * @return Result of the validation of the payment information message segment
+     */
+    public ValidationResult getValidationResult() {
+
+        // Validate the message segment unless it has been validated in its current version
+        return this.validationCache.getValidationResult(this.paymentInstruction, this.versionTracker);
+    }
+
+    /**
+     * Get the version tracker of the payment information
+     *
+     * The version changes whenever the payment information is modified, including through the credit transfer
+     * transaction information it holds.
+     *
+     * @return Version tracker of the payment information
+     */
+    public VersionTracker getVersionTracker() {
+
+        // Get the version tracker
+        return this.versionTracker;
     }
 
     /**
@@ -271,11 +405,14 @@ public class Pain013PaymentInformation {
         // Check if the index is valid
         if (index > -1 && index < this.creditTransferTransactionInformation.size()) {
 
+            // Remove the credit transfer transaction information from the message segment
+            this.removePiCreditTransferTransactionInformation(index, this.creditTransferTransactionInformation.size());
+
             // Remove the credit transfer transaction information
             this.creditTransferTransactionInformation.remove(index);
 
-            // Set the credit transfer transaction information of the message segment
-            this.setPiCreditTransferTransactionInformation();
+            // Record the modification
+            this.versionTracker.increment();
 
             return true;
         }
@@ -284,6 +421,45 @@ public class Pain013PaymentInformation {
         return false;
     }
 
+    /**
+     * Replace the credit transfer transaction information at the given index
+     *
+     * @param index Index of credit transfer transaction information
+     * @param p013ctti Credit transfer transaction information
+     * @return Whether the credit transfer transaction information could be replaced
+     */
+    public boolean replaceCreditTransferTransactionInformationAtIndex(int index,
+            Pain013CreditTransferTransactionInformation p013ctti) {
+
+        // Check if the index is valid
+        if (index > -1 && index < this.creditTransferTransactionInformation.size()) {
+
+            // Segment of the credit transfer transaction information being replaced
+            CreditTransferTransactionInformation14 node = this.getPiCreditTransferTransactionInformation(index,
+                    this.creditTransferTransactionInformation.size());
+
+            // Replace the credit transfer transaction information
+            Pain013CreditTransferTransactionInformation replaced =
+                    this.creditTransferTransactionInformation.set(index, p013ctti);
+
+            // Keep the content of the replaced credit transfer transaction information if it is bound to the segment
+            if (replaced.getCreditTransferTransactionInformation() == node) {
+                replaced.unbind();
+            }
+
+            // Bind the credit transfer transaction information to the segment
+            p013ctti.bind(node, this.versionTracker);
+
+            // Record the modification
+            this.versionTracker.increment();
+
+            return true;
+        }
+
+        // Credit transfer transaction could not be replaced
+        return false;
+    }
+
     /**
      * Set the charge bearer
      *
@@ -296,6 +472,9 @@ public class Pain013PaymentInformation {
 
         // Set the charge bearer of the message segment
         this.setPiChargeBearer();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -310,6 +489,9 @@ public class Pain013PaymentInformation {
 
         // Set the debtor of the message segment
         this.setPiDebtor();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -324,6 +506,9 @@ public class Pain013PaymentInformation {
 
         // Set the debtor account of the message segment
         this.setPiDebtorAccount();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -338,6 +523,9 @@ public class Pain013PaymentInformation {
 
         // Set the debtor agent of the message segment
         this.setPiDebtorAgent();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -352,6 +540,9 @@ public class Pain013PaymentInformation {
 
         // Set the payment information identification of the message segment
         this.setPiPaymentInformationIdentification();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -366,6 +557,9 @@ public class Pain013PaymentInformation {
 
         // Set the payment method of the message segment
         this.setPiPaymentMethod();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -380,6 +574,9 @@ public class Pain013PaymentInformation {
 
         // Set the payment type information of the message segment
         this.setPiPaymentTypeInformation();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -394,6 +591,9 @@ public class Pain013PaymentInformation {
 
         // Set the requested execution date of the message segment
         this.setPiRequestedExecutionDate();
+
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -408,6 +608,131 @@ public class Pain013PaymentInformation {
 
         // Set the ultimate debtor in the message segment
         this.setPiUltimateDebtor();
+
+        // Record the modification
+        this.versionTracker.increment();
+    }
+
+    /**
+     * Unbind the payment information from the message segment it is bound to
+     *
+     * The payment information keeps a copy of its content, so that it remains usable once its message segment has been
+     * removed from the creditor payment activation request.
+     */
+    public void unbind() {
+
+        // Modifications are no longer propagated to the segment which held the message segment
+        this.versionTracker.setParent(null);
+
+        // Modify a copy of the message segment from now on
+        this.attach((PaymentInstruction5) this.paymentInstruction.copy());
+    }
+
+    /**
+     * Attach the payment information to a message segment that already holds its content
+     *
+     * The elements of the payment information then refer to their copies inside the message segment and its credit
+     * transfer transaction information are attached to the corresponding segments of the message segment.
+     *
+     * @param node Message segment holding the content of the payment information
+     */
+    void attach(PaymentInstruction5 node) {
+
+        // Modify the message segment from now on
+        this.paymentInstruction = node;
+
+        // Refer to the copies of the elements that have been defined
+        if (this.debtor != null) {
+            this.debtor = node.getDbtr();
+        }
+        if (this.debtorAccount != null) {
+            this.debtorAccount = node.getDbtrAcct();
+        }
+        if (this.debtorAgent != null) {
+            this.debtorAgent = node.getDbtrAgt();
+        }
+        if (this.paymentTypeInformation != null) {
+            this.paymentTypeInformation = node.getPmtTpInf();
+        }
+        if (this.ultimateDebtor != null) {
+            this.ultimateDebtor = node.getUltmtDbtr();
+        }
+
+        // Credit transfer transaction information message segments
+        CreditTransferTransactionInformation14[] cttis = node.getCdtTrfTxArray();
+
+        // Attach the credit transfer transaction information to their segments
+        for (int i = 0; i < cttis.length && i < this.creditTransferTransactionInformation.size(); i++) {
+            this.creditTransferTransactionInformation.get(i).attach(cttis[i]);
+        }
+    }
+
+    /**
+     * Get the credit transfer transaction information message segment at the given index
+     *
+     * Credit transfer transaction information message segments are the last elements of the payment instruction.
+     * Segments in the second half of the list are therefore reached by walking back from the last element, so that
+     * updates at the end of a large payment instruction do not scan all the segments before them.
+     *
+     * @param index Index of the credit transfer transaction information message segment
+     * @param count Number of credit transfer transaction information message segments in the payment instruction
+     * @return Credit transfer transaction information message segment
+     */
+    private CreditTransferTransactionInformation14 getPiCreditTransferTransactionInformation(int index, int count) {
+
+        // Position of the segment counted from the end of the payment instruction
+        int indexFromEnd = count - 1 - index;
+
+        // Segments in the first half of the list are found by index
+        if (index <= indexFromEnd) {
+            return this.paymentInstruction.getCdtTrfTxArray(index);
+        }
+
+        // Cursor to traverse the payment instruction
+        XmlCursor cursor = this.paymentInstruction.newCursor();
+
+        // Walk back from the last segment
+        cursor.toLastChild();
+        for (int i = 0; i < indexFromEnd; i++) {
+            cursor.toPrevSibling();
+        }
+
+        // Segment at the position of the cursor
+        CreditTransferTransactionInformation14 ctti = (CreditTransferTransactionInformation14) cursor.getObject();
+
+        // Dispose cursor
+        cursor.dispose();
+
+        return ctti;
+    }
+
+    /**
+     * Remove the credit transfer transaction information message segment at the given index
+     *
+     * @param index Index of the credit transfer transaction information message segment
+     * @param count Number of credit transfer transaction information message segments in the payment instruction
+     */
+    private void removePiCreditTransferTransactionInformation(int index, int count) {
+
+        // Segment being removed
+        CreditTransferTransactionInformation14 node = this.getPiCreditTransferTransactionInformation(index, count);
+
+        // Credit transfer transaction information at the given index
+        Pain013CreditTransferTransactionInformation p013ctti = this.creditTransferTransactionInformation.get(index);
+
+        // Keep the content of the credit transfer transaction information if it is bound to the segment
+        if (p013ctti.getCreditTransferTransactionInformation() == node) {
+            p013ctti.unbind();
+        }
+
+        // Cursor positioned on the segment
+        XmlCursor cursor = node.newCursor();
+
+        // Remove the segment
+        cursor.removeXml();
+
+        // Dispose cursor
+        cursor.dispose();
     }
 
     /**
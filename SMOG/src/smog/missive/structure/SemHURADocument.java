@@ -3,14 +3,19 @@ package smog.missive.structure;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.util.Calendar;
 import org.apache.xmlbeans.CDataBookmark;
 import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import smog.io.AttachmentReference;
 import smog.schema.sem.Attachment;
 import smog.schema.sem.Document;
 import smog.schema.sem.DocumentType;
+import smog.utils.MimeTypeDetector;
 import smog.utils.Utils;
+import smog.utils.VersionTracker;
+import smog.validation.ValidationCache;
+import smog.validation.ValidationResult;
 
 /**
  * SemHURADocument class represents a HURA document that can be attached to a SEPAmail missive.
@@ -19,16 +24,23 @@ import smog.utils.Utils;
  */
 public class SemHURADocument {
 
+    private AttachmentReference attachmentReference;
     private Calendar date;
     private Document document;
     private String language;
     private String reference;
     private String title;
     private DocumentType.Enum type;
+    private ValidationCache validationCache;
+    private VersionTracker versionTracker;
 
     /**
      * SemHURADocument constructor
      *
+     * The content of the file is read and encoded when the HURA document is created. The MIME type of the attachment
+     * is detected from the leading bytes of the file. A file which should not be loaded in memory can be attached
+     * through a reference created with new AttachmentReference(path) instead.
+     *
      * @param file File which contains missive attached document content
      * @param date Date and time at which file was created
      * @param language Language of the document
@@ -42,41 +54,22 @@ public class SemHURADocument {
             DocumentType.Enum type) throws FileNotFoundException, IOException {
 
         // Initialise class attributes
+        this.attachmentReference = null;
         this.date = date;
         this.document = Document.Factory.newInstance();
         this.language = language;
         this.reference = reference;
         this.title = title;
         this.type = type;
+        this.validationCache = new ValidationCache();
+        this.versionTracker = new VersionTracker();
 
         // Check if file has been given
         if (file != null) {
 
-            // Document attachment instance
-            Attachment attachment = Attachment.Factory.newInstance();
-
-            // Attachment properties
-            attachment.setData(Utils.getFileContentAsXml(file));
-            attachment.setMimeType(Files.probeContentType(file.toPath()));
-            attachment.setName(file.getName());
-
-            // Attachment cursor
-            XmlCursor attachmentCursor = attachment.newCursor();
-
-            // Move to attachment data element
-            attachmentCursor.toFirstChild();
-            attachmentCursor.toNextSibling();
-            attachmentCursor.toNextSibling();
-            attachmentCursor.toNextToken();
-
-            // Set CDATA bookmark
-            attachmentCursor.setBookmark(CDataBookmark.CDATA_BOOKMARK);
-
-            // Dispose cursor
-            attachmentCursor.dispose();
-
             // Append attachment to missive attachment document
-            this.document.setContents(attachment);
+            this.setAttachment(Utils.getFileContentAsXml(file), MimeTypeDetector.detect(file.toPath()),
+                    file.getName());
         }
 
         // Set date and time of document if provided
@@ -109,41 +102,71 @@ public class SemHURADocument {
             String reference, String title, DocumentType.Enum type) throws FileNotFoundException, IOException {
 
         // Initialise class attributes
+        this.attachmentReference = null;
         this.date = date;
         this.document = Document.Factory.newInstance();
         this.language = language;
         this.reference = reference;
         this.title = title;
         this.type = type;
+        this.validationCache = new ValidationCache();
+        this.versionTracker = new VersionTracker();
 
         // Check if content has been given
         if (content != null) {
 
-            // Document attachment instance
-            Attachment attachment = Attachment.Factory.newInstance();
+            // Append attachment to missive attachment document
+            this.setAttachment(Utils.getByteContentAsXml(content), mimeType, filename);
+        }
 
-            // Attachment properties
-            attachment.setData(Utils.getByteContentAsXml(content));
-            attachment.setMimeType(mimeType);
-            attachment.setName(filename);
+        // Set date and time of document if provided
+        if (this.date != null) {
+            this.document.setDate(this.date);
+        }
 
-            // Attachment cursor
-            XmlCursor attachmentCursor = attachment.newCursor();
+        // Set the other properties of the HURA document
+        this.document.setLang(this.language);
+        this.document.setReference(this.reference);
+        this.document.setTitle(this.title);
+        this.document.setType(this.type);
+    }
 
-            // Move to attachment data element
-            attachmentCursor.toFirstChild();
-            attachmentCursor.toNextSibling();
-            attachmentCursor.toNextSibling();
-            attachmentCursor.toNextToken();
+    /**
+     * SemHURADocument constructor
+     *
+     * The HURA document only holds the given reference, either to a file or to content put in an
+     * {@link smog.io.AttachmentStore}. The content is encoded in Base64 when the missive is serialized and needs to be
+     * available until then.
+     *
+     * @param content Reference to the document attachment data
+     * @param date Date and time at which file was created
+     * @param filename Name of file from which document attachment data was obtained
+     * @param language Language of the document
+     * @param mimeType MIME type of the document attachment data
+     * @param reference Reference of the document
+     * @param title Title of the document
+     * @param type Missive attached document type
+     */
+    public SemHURADocument(AttachmentReference content, Calendar date, String filename, String language,
+            String mimeType, String reference, String title, DocumentType.Enum type) {
 
-            // Set CDATA bookmark
-            attachmentCursor.setBookmark(CDataBookmark.CDATA_BOOKMARK);
+        // Initialise class attributes
+        this.attachmentReference = null;
+        this.date = date;
+        this.document = Document.Factory.newInstance();
+        this.language = language;
+        this.reference = reference;
+        this.title = title;
+        this.type = type;
+        this.validationCache = new ValidationCache();
+        this.versionTracker = new VersionTracker();
 
-            // Dispose cursor
-            attachmentCursor.dispose();
+        // Check if content has been given
+        if (content != null) {
 
-            // Append attachment to missive attachment document
-            this.document.setContents(attachment);
+            // Append attachment holding the reference to missive attachment document
+            this.setAttachment(content.toXml(), mimeType, filename);
+            this.attachmentReference = content;
         }
 
         // Set date and time of document if provided
@@ -158,6 +181,70 @@ public class SemHURADocument {
         this.document.setType(this.type);
     }
 
+    /**
+     * SemHURADocument constructor
+     *
+     * The HURA document uses the given message segment, usually read from a parsed missive, without copying it.
+     *
+     * @param document HURA document message segment
+     */
+    public SemHURADocument(Document document) {
+
+        // Initialise class attributes from the message segment, whose attachment is never held by reference
+        this.attachmentReference = null;
+        this.date = document.isSetDate() ? document.getDate() : null;
+        this.document = document;
+        this.language = document.getLang();
+        this.reference = document.getReference();
+        this.title = document.getTitle();
+        this.type = document.getType();
+        this.validationCache = new ValidationCache();
+        this.versionTracker = new VersionTracker();
+    }
+
+    /**
+     * Bind the HURA document to the given message segment
+     *
+     * The content of the HURA document is copied once into the given message segment, which is usually created with
+     * addNewDocuments() inside the request header holding the document, so that the attachment data is only held by
+     * that message segment.
+     *
+     * @param node Message segment to which the HURA document is bound
+     * @param parent Version tracker of the segment holding the message segment
+     */
+    public void bind(Document node, VersionTracker parent) {
+
+        // Propagate the modifications to the segment holding the message segment
+        this.versionTracker.setParent(parent);
+
+        // Check if the HURA document is not already bound to the message segment
+        if (node != this.document) {
+
+            // Copy the content of the HURA document into the message segment
+            node.set(this.document);
+
+            // Use the message segment from now on
+            this.document = node;
+        }
+    }
+
+    /**
+     * Get the reference held by the attachment of the HURA document in place of its content
+     *
+     * @return Reference to the attachment data, or null when the HURA document has no attachment or holds the
+     * attachment data itself
+     */
+    public AttachmentReference getAttachmentReference() {
+
+        // Check if the attachment of the HURA document still holds the reference
+        if (this.attachmentReference == null || !this.document.isSetContents() ||
+                !this.attachmentReference.isHeldBy(this.document.getContents().getData())) {
+            return null;
+        }
+
+        return this.attachmentReference;
+    }
+
     /**
      * Get the HURA document
      *
@@ -168,4 +255,95 @@ public class SemHURADocument {
         // Get the HURA document
         return this.document;
     }
+
+    /**
+     * Get the cache of the validation result of the HURA document message segment
+     *
+     * @return Validation cache of the HURA document
+     */
+    public ValidationCache getValidationCache() {
+
+        // Get the validation cache
+        return this.validationCache;
+    }
+
+    /**
+     * Validate the HURA document message segment and get the errors found
+     *
+     * The result is kept until the HURA document is modified, so that an unchanged message segment is not validated
+     * again.
+     *
+     * @return Result of the validation of the HURA document message segment
+     */
+    public ValidationResult getValidationResult() {
+
+        // Validate the message segment unless it has been validated in its current version
+        return this.validationCache.getValidationResult(this.document, this.versionTracker);
+    }
+
+    /**
+     * Get the version tracker of the HURA document
+     *
+     * The version changes whenever the HURA document is modified.
+     *
+     * @return Version tracker of the HURA document
+     */
+    public VersionTracker getVersionTracker() {
+
+        // Get the version tracker
+        return this.versionTracker;
+    }
+
+    /**
+     * Set the attachment of the HURA document
+     *
+     * The attachment data is written as a CDATA section.
+     *
+     * @param data XML object holding the encoded attachment data or a reference to it
+     * @param mimeType MIME type of the attachment data
+     * @param filename Name of file from which attachment data was obtained
+     */
+    private void setAttachment(XmlObject data, String mimeType, String filename) {
+
+        // Document attachment instance
+        Attachment attachment = Attachment.Factory.newInstance();
+
+        // Attachment properties
+        attachment.setData(data);
+        attachment.setMimeType(mimeType);
+        attachment.setName(filename);
+
+        // Attachment cursor
+        XmlCursor attachmentCursor = attachment.newCursor();
+
+        // Move to attachment data element
+        attachmentCursor.toFirstChild();
+        attachmentCursor.toNextSibling();
+        attachmentCursor.toNextSibling();
+        attachmentCursor.toNextToken();
+
+        // Set CDATA bookmark
+        attachmentCursor.setBookmark(CDataBookmark.CDATA_BOOKMARK);
+
+        // Dispose cursor
+        attachmentCursor.dispose();
+
+        // Append attachment to missive attachment document
+        this.document.setContents(attachment);
+    }
+
+    /**
+     * Unbind the HURA document from the message segment it is bound to
+     *
+     * The HURA document keeps a copy of its content, so that it remains usable once its message segment has been
+     * removed from the request header.
+     */
+    public void unbind() {
+
+        // Modifications are no longer propagated to the segment which held the message segment
+        this.versionTracker.setParent(null);
+
+        // Use a copy of the message segment from now on
+        this.document = (Document) this.document.copy();
+    }
 }
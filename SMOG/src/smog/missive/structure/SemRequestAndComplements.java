@@ -2,8 +2,10 @@ package smog.missive.structure;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Objects;
+import smog.exception.SmogException;
 import smog.schema.p13.CreditorPaymentActivationRequestV01;
 import smog.schema.p13.GroupHeader45;
 import smog.schema.p13.PartyIdentification43;
@@ -15,10 +17,16 @@ import smog.schema.sem.RelationType;
 import smog.schema.sem.RequestAndComplements;
 import smog.schema.sem.RequestComplements;
 import smog.schema.sem.TransferNature;
+import smog.utils.VersionTracker;
+import smog.validation.ValidationCache;
+import smog.validation.ValidationResult;
 
 /**
  * SemRequestAndComplements represents a SEPAmail request and elements element.
  *
+ * Once the request is added to a document, its values are held by the request and complements segment of the
+ * document. The getters of its XML elements return copies of them, so they need to be set again to be modified.
+ *
  * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
  */
 public class SemRequestAndComplements {
@@ -39,7 +47,10 @@ public class SemRequestAndComplements {
     private RequestAndComplements requestAndComplements;
     private RequestComplements requestComplements;
     private String title;
+    private long totalsVersion;
     private TransferNature.Enum transferNature;
+    private ValidationCache validationCache;
+    private VersionTracker versionTracker;
 
     /**
      * SemRequestAndComplements constructor
@@ -77,6 +88,8 @@ public class SemRequestAndComplements {
         this.requestComplements = RequestComplements.Factory.newInstance();
         this.title = title;
         this.transferNature = transferNature;
+        this.validationCache = new ValidationCache();
+        this.versionTracker = new VersionTracker();
 
         // Build the group header message segment
         this.buildGroupHeader();
@@ -92,6 +105,67 @@ public class SemRequestAndComplements {
 
         // Set the request of the request and complements message segment
         this.setRacRequest();
+
+        // Bind the message segments to the copies held by the request and complements message segment
+        this.attach(this.requestAndComplements);
+
+        // The totals of the transactions have been set by the group header
+        this.totalsVersion = this.versionTracker.getVersion();
+    }
+
+    /**
+     * SemRequestAndComplements constructor
+     *
+     * The request and complements uses the given message segment, usually read from a parsed missive, without copying
+     * it. Its payment information and their credit transfer transaction information use the segments of the given
+     * message segment as well.
+     *
+     * @param requestAndComplements Request and complements message segment
+     * @throws SmogException when the message segment does not hold its request, group header or complements
+     */
+    public SemRequestAndComplements(RequestAndComplements requestAndComplements) throws SmogException {
+
+        // Check that the message segment holds the segments to which the request and complements is bound
+        if (requestAndComplements.getRequest() == null || requestAndComplements.getRequest().getGrpHdr() == null ||
+                requestAndComplements.getComplements() == null) {
+            throw new SmogException("The request and complements does not hold its request, group header or "
+                    + "complements");
+        }
+
+        // Use the message segment and its segments
+        this.requestAndComplements = requestAndComplements;
+        this.creditorPaymentActivationRequest = requestAndComplements.getRequest();
+        this.groupHeader = this.creditorPaymentActivationRequest.getGrpHdr();
+        this.requestComplements = requestAndComplements.getComplements();
+        this.validationCache = new ValidationCache();
+        this.versionTracker = new VersionTracker();
+
+        // Initialise the properties of the group header
+        this.controlSum = this.groupHeader.getCtrlSum();
+        this.creationDateTime = this.groupHeader.getCreDtTm();
+        this.initiatingParty = this.groupHeader.getInitgPty();
+        this.messageId = this.groupHeader.getMsgId();
+
+        // Initialise the properties of the request complements
+        this.customReferences = new ArrayList<>(Arrays.asList(this.requestComplements.getCustRefArray()));
+        this.otherPaymentMethod = this.requestComplements.getOtherPmtMtd();
+        this.paymentConditions = this.requestComplements.getPmtCond();
+        this.paymentGuarantee = this.requestComplements.getPmtGuarantee();
+        this.relationType = this.requestComplements.getRltnType();
+        this.title = this.requestComplements.getTitle();
+        this.transferNature = this.requestComplements.getTrfNature();
+
+        // Bind the payment information to the segments of the creditor payment activation request
+        PaymentInstruction5[] paymentInstructions = this.creditorPaymentActivationRequest.getPmtInfArray();
+        this.paymentInformation = new ArrayList<>(paymentInstructions.length);
+        for (PaymentInstruction5 paymentInstruction : paymentInstructions) {
+            Pain013PaymentInformation pain013PaymentInformation = new Pain013PaymentInformation(paymentInstruction);
+            pain013PaymentInformation.bind(paymentInstruction, this.versionTracker);
+            this.paymentInformation.add(pain013PaymentInformation);
+        }
+
+        // The totals of the transactions are those of the message segment until the request is modified
+        this.totalsVersion = this.versionTracker.getVersion();
     }
 
     /**
@@ -111,8 +185,8 @@ public class SemRequestAndComplements {
             // Build the request complements message segment
             this.buildRequestComplements();
 
-            // Set the complements of the request and complements message segment
-            this.setRacComplements();
+            // Record the modification
+            this.versionTracker.increment();
 
             return true;
         }
@@ -134,11 +208,38 @@ public class SemRequestAndComplements {
         // Build the group header message segment
         this.buildGroupHeader();
 
-        // Build the creditor payment activation request message segment
-        this.buildCreditorPaymentActivationRequest();
+        // Bind the payment information to a new segment at the end of the creditor payment activation request
+        paymentInformation.bind(this.creditorPaymentActivationRequest.addNewPmtInf(), this.versionTracker);
 
-        // Set the request of the request and complements message segment
-        this.setRacRequest();
+        // Record the modification
+        this.versionTracker.increment();
+    }
+
+    /**
+     * Bind the request and complements to the given message segment
+     *
+     * The content of the request and complements is copied once into the given message segment, which is usually
+     * created with addNewReqCompl() inside the payment activation request message holding the request. The request and
+     * complements, its payment information and their credit transfer transaction information are then modified
+     * directly in that message segment.
+     *
+     * @param node Message segment to which the request and complements is bound
+     * @param parent Version tracker of the segment holding the message segment
+     */
+    public void bind(RequestAndComplements node, VersionTracker parent) {
+
+        // Propagate the modifications to the segment holding the message segment
+        this.versionTracker.setParent(parent);
+
+        // Check if the request and complements is not already bound to the message segment
+        if (node != this.requestAndComplements) {
+
+            // Copy the content of the request and complements into the message segment
+            node.set(this.requestAndComplements);
+
+            // Modify the message segment from now on
+            this.attach(node);
+        }
     }
 
     /**
@@ -152,8 +253,8 @@ public class SemRequestAndComplements {
         // Build the request complements message segment
         this.buildRequestComplements();
 
-        // Set the complements of the request and complements message segment
-        this.setRacComplements();
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -161,17 +262,19 @@ public class SemRequestAndComplements {
      */
     public void clearPaymentInformation() {
 
+        // Remove the payment information from the end of the creditor payment activation request
+        for (int i = this.paymentInformation.size() - 1; i > -1; i--) {
+            this.removeRequestPaymentInformation(i);
+        }
+
         // Clear the list of payment information
         this.paymentInformation.clear();
 
         // Build the group header message segment
         this.buildGroupHeader();
 
-        // Build the creditor payment activation request message segment
-        this.buildCreditorPaymentActivationRequest();
-
-        // Set the request of the request and complements message segment
-        this.setRacRequest();
+        // Record the modification
+        this.versionTracker.increment();
     }
 
    /**
@@ -215,7 +318,8 @@ public class SemRequestAndComplements {
     /**
      * Get the control sum
      *
-     * @return Control sum
+     * @return Control sum, which is the sum of the amounts of the credit transfer transactions once the group header
+     * has been built
      */
     public BigDecimal getControlSum() {
 
@@ -248,12 +352,12 @@ public class SemRequestAndComplements {
     /**
      * Get the initiating party
      *
-     * @return Initiating party
+     * @return Copy of the initiating party, or null when it has not been set
      */
     public PartyIdentification43 getInitiatingPary() {
 
-        // Get the initiating party
-        return this.initiatingParty;
+        // Get a copy of the initiating party
+        return this.initiatingParty != null ? (PartyIdentification43) this.initiatingParty.copy() : null;
     }
 
     /**
@@ -322,6 +426,9 @@ public class SemRequestAndComplements {
     /**
      * Get the request and complements message segment
      *
+     * The segment is the one linked into the document to which the request has been added. Modifications made to it
+     * directly are not recorded by the version tracker of the request.
+     *
      * @return Request and complements message segment
      */
     public RequestAndComplements getRequestAndComplements() {
@@ -352,6 +459,45 @@ public class SemRequestAndComplements {
         return this.transferNature;
     }
 
+    /**
+     * Get the cache of the validation result of the request and complements message segment
+     *
+     * @return Validation cache of the request and complements element
+     */
+    public ValidationCache getValidationCache() {
+
+        // Get the validation cache
+        return this.validationCache;
+    }
+
+    /**
+     * Validate the request and complements element message segment and get the errors found
+     *
+     * The result is kept until the request and complements element is modified, so that an unchanged message segment is
+     * not validated again.
+     *
+     * @return Result of the validation of the request and complements element message segment
+     */
+    public ValidationResult getValidationResult() {
+
+        // Validate the message segment unless it has been validated in its current version
+        return this.validationCache.getValidationResult(this.requestAndComplements, this.versionTracker);
+    }
+
+    /**
+     * Get the version tracker of the request and complements
+     *
+     * The version changes whenever the request and complements is modified, including through the payment information
+     * it holds.
+     *
+     * @return Version tracker of the request and complements
+     */
+    public VersionTracker getVersionTracker() {
+
+        // Get the version tracker
+        return this.versionTracker;
+    }
+
     /**
      * Remove the given custom reference from the request complements
      *
@@ -366,8 +512,8 @@ public class SemRequestAndComplements {
             // Build the request complements message segment
             this.buildRequestComplements();
 
-            // Set the complements of the request and complements message segment
-            this.setRacComplements();
+            // Record the modification
+            this.versionTracker.increment();
 
             return true;
         }
@@ -387,17 +533,17 @@ public class SemRequestAndComplements {
         // Check if index is valid
         if (index > -1 && index < this.paymentInformation.size()) {
 
+            // Remove the payment information from the creditor payment activation request
+            this.removeRequestPaymentInformation(index);
+
             // Remove payment information at specified index
             this.paymentInformation.remove(index);
 
             // Build the group header message segment
             this.buildGroupHeader();
 
-            // Build the creditor payment activation request message segment
-            this.buildCreditorPaymentActivationRequest();
-
-            // Set the request of the request and complements message segment
-            this.setRacRequest();
+            // Record the modification
+            this.versionTracker.increment();
 
             return true;
         }
@@ -409,7 +555,10 @@ public class SemRequestAndComplements {
     /**
      * Set the control sum
      *
-     * @param controlSum Control sum
+     * The control sum written to the group header is the sum of the amounts of the credit transfer transactions of
+     * the request. The given value is only written when some of those amounts cannot be read.
+     *
+     * @param controlSum Control sum, or null to leave the control sum out of the group header
      */
     public void setControlSum(BigDecimal controlSum) {
 
@@ -419,11 +568,8 @@ public class SemRequestAndComplements {
         // Build the group header message segment
         this.buildGroupHeader();
 
-        // Build the creditor payment activation request message segment
-        this.buildCreditorPaymentActivationRequest();
-
-        // Set the request of the request and complements message segment
-        this.setRacRequest();
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -439,11 +585,8 @@ public class SemRequestAndComplements {
         // Build the group header message segment
         this.buildGroupHeader();
 
-        // Build the creditor payment activation request message segment
-        this.buildCreditorPaymentActivationRequest();
-
-        // Set the request of the request and complements message segment
-        this.setRacRequest();
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -459,11 +602,8 @@ public class SemRequestAndComplements {
         // Build the group header message segment
         this.buildGroupHeader();
 
-        // Build the creditor payment activation request message segment
-        this.buildCreditorPaymentActivationRequest();
-
-        // Set the request of the request and complements message segment
-        this.setRacRequest();
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -479,11 +619,8 @@ public class SemRequestAndComplements {
         // Build the group header message segment
         this.buildGroupHeader();
 
-        // Build the creditor payment activation request message segment
-        this.buildCreditorPaymentActivationRequest();
-
-        // Set the request of the request and complements message segment
-        this.setRacRequest();
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -499,8 +636,8 @@ public class SemRequestAndComplements {
         // Build the request complements message segment
         this.buildRequestComplements();
 
-        // Set the complements of the request and complements message segment
-        this.setRacComplements();
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -516,8 +653,8 @@ public class SemRequestAndComplements {
         // Build the request complements message segment
         this.buildRequestComplements();
 
-        // Set the complements of the request and complements message segment
-        this.setRacComplements();
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -533,8 +670,8 @@ public class SemRequestAndComplements {
         // Build the request complements message segment
         this.buildRequestComplements();
 
-        // Set the complements of the request and complements message segment
-        this.setRacComplements();
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -550,8 +687,8 @@ public class SemRequestAndComplements {
         // Build the request complements message segment
         this.buildRequestComplements();
 
-        // Set the complements of the request and complements message segment
-        this.setRacComplements();
+        // Record the modification
+        this.versionTracker.increment();
     }
 
     /**
@@ -567,8 +704,82 @@ public class SemRequestAndComplements {
         // Build the request complements message segment
         this.buildRequestComplements();
 
-        // Set the complements of the request and complements message segment
-        this.setRacComplements();
+        // Record the modification
+        this.versionTracker.increment();
+    }
+
+    /**
+     * Unbind the request and complements from the message segment it is bound to
+     *
+     * The request and complements keeps a copy of its content, so that it remains usable once its message segment has
+     * been removed from the payment activation request message.
+     */
+    public void unbind() {
+
+        // Modifications are no longer propagated to the segment which held the message segment
+        this.versionTracker.setParent(null);
+
+        // Modify a copy of the message segment from now on
+        this.attach((RequestAndComplements) this.requestAndComplements.copy());
+    }
+
+    /**
+     * Set the number of transactions and the control sum of the group header if the request has been modified since
+     * they were last set
+     *
+     * The number of transactions is counted from the credit transfer transactions, while the control sum is the one
+     * declared with setControlSum(), a mismatch being reported by the business rule validation.
+     *
+     * Credit transfer transactions may be added to or removed from a payment information once it is part of the
+     * request, which is only recorded by the version tracker of the request. The document holding the request calls
+     * this method before its content is written or validated.
+     */
+    public void updateTransactionTotals() {
+
+        // Check if the request has been modified since the totals were set
+        if (this.totalsVersion == this.versionTracker.getVersion()) {
+            return;
+        }
+
+        // Set the totals, recording a modification when they have changed
+        if (this.setTransactionTotals()) {
+            this.versionTracker.increment();
+        }
+        this.totalsVersion = this.versionTracker.getVersion();
+    }
+
+    /**
+     * Attach the request and complements to a message segment that already holds its content
+     *
+     * The group header, the creditor payment activation request, the request complements and the payment information
+     * are attached to the corresponding segments of the message segment, and the initiating party and the payment
+     * conditions refer to their copies inside the message segment.
+     *
+     * @param node Message segment holding the content of the request and complements
+     */
+    void attach(RequestAndComplements node) {
+
+        // Modify the message segment from now on
+        this.requestAndComplements = node;
+        this.creditorPaymentActivationRequest = node.getRequest();
+        this.groupHeader = this.creditorPaymentActivationRequest.getGrpHdr();
+        this.requestComplements = node.getComplements();
+
+        // Refer to the copies of the elements that have been defined
+        if (this.initiatingParty != null) {
+            this.initiatingParty = this.groupHeader.getInitgPty();
+        }
+        if (this.paymentConditions != null) {
+            this.paymentConditions = this.requestComplements.getPmtCond();
+        }
+
+        // Payment information message segments
+        PaymentInstruction5[] paymentInstructions = this.creditorPaymentActivationRequest.getPmtInfArray();
+
+        // Attach the payment information to their segments
+        for (int i = 0; i < paymentInstructions.length && i < this.paymentInformation.size(); i++) {
+            this.paymentInformation.get(i).attach(paymentInstructions[i]);
+        }
     }
 
     /**
@@ -611,25 +822,13 @@ public class SemRequestAndComplements {
         // Set the message creation date and time
         this.groupHeader.setCreDtTm(this.creationDateTime);
 
-        // Set the number of transactions
-        this.groupHeader.setNbOfTxs(Integer.valueOf(this.paymentInformation.size()).toString());
-
-        // Check if the control sum has been specified
-        if (this.controlSum != null) {
-
-            // Set the control sum
-            this.groupHeader.setCtrlSum(this.controlSum);
-
-        } else {
+        // Set the number of transactions and the control sum
+        this.setTransactionTotals();
 
-            // Remove the control sum from the group header message segment
-            if (this.groupHeader.isSetCtrlSum()) {
-                this.groupHeader.unsetCtrlSum();
-            }
+        // Set the initiating party unless the group header already holds it
+        if (this.initiatingParty == null || this.initiatingParty != this.groupHeader.getInitgPty()) {
+            this.groupHeader.setInitgPty(this.initiatingParty);
         }
-
-        // Set the initiating party
-        this.groupHeader.setInitgPty(this.initiatingParty);
     }
 
     /**
@@ -671,8 +870,10 @@ public class SemRequestAndComplements {
             }
         }
 
-        // Set the payment conditions of the request complements message segment
-        this.requestComplements.setPmtCond(this.paymentConditions);
+        // Set the payment conditions of the request complements message segment unless it already holds them
+        if (this.paymentConditions == null || this.paymentConditions != this.requestComplements.getPmtCond()) {
+            this.requestComplements.setPmtCond(this.paymentConditions);
+        }
 
         // Check if the payment guarantee has been defined
         if (this.paymentGuarantee != null) {
@@ -709,6 +910,28 @@ public class SemRequestAndComplements {
         }
     }
 
+    /**
+     * Remove the payment information message segment at the given index from the creditor payment activation request
+     *
+     * @param index Index of the payment information message segment
+     */
+    private void removeRequestPaymentInformation(int index) {
+
+        // Segment being removed
+        PaymentInstruction5 node = this.creditorPaymentActivationRequest.getPmtInfArray(index);
+
+        // Payment information at the given index
+        Pain013PaymentInformation pain013PaymentInformation = this.paymentInformation.get(index);
+
+        // Keep the content of the payment information if it is bound to the segment
+        if (pain013PaymentInformation.getPaymentInstruction() == node) {
+            pain013PaymentInformation.unbind();
+        }
+
+        // Remove the segment
+        this.creditorPaymentActivationRequest.removePmtInf(index);
+    }
+
     /**
      * Set the complements of the request and complements message segment
      */
@@ -726,4 +949,40 @@ public class SemRequestAndComplements {
         // Set the request of the request and complements message segment
         this.requestAndComplements.setRequest(this.creditorPaymentActivationRequest);
     }
+
+    /**
+     * Set the number of transactions of the group header from the credit transfer transactions of the payment
+     * information, and its control sum from the declared one
+     *
+     * @return Whether the group header has been modified
+     */
+    private boolean setTransactionTotals() {
+
+        // Count the credit transfer transactions
+        long transactionCount = 0;
+        for (Pain013PaymentInformation pain013PaymentInformation : this.paymentInformation) {
+            transactionCount += pain013PaymentInformation.getPaymentInstruction().sizeOfCdtTrfTxArray();
+        }
+
+        // Set the number of transactions
+        boolean modified = false;
+        String numberOfTransactions = Long.toString(transactionCount);
+        if (!numberOfTransactions.equals(this.groupHeader.getNbOfTxs())) {
+            this.groupHeader.setNbOfTxs(numberOfTransactions);
+            modified = true;
+        }
+
+        // Set the control sum, or remove it from the group header message segment
+        if (this.controlSum != null) {
+            if (!this.groupHeader.isSetCtrlSum() || !this.controlSum.equals(this.groupHeader.getCtrlSum())) {
+                this.groupHeader.setCtrlSum(this.controlSum);
+                modified = true;
+            }
+        } else if (this.groupHeader.isSetCtrlSum()) {
+            this.groupHeader.unsetCtrlSum();
+            modified = true;
+        }
+
+        return modified;
+    }
 }
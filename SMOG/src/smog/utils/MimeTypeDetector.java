@@ -0,0 +1,302 @@
+package smog.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MimeTypeDetector determines the MIME type of attachment content from its leading bytes.
+ *
+ * The detection only relies on the magic bytes of the document types used as HURA attachments, so that it gives the
+ * same result on every host, unlike Files.probeContentType() which depends on the platform and on the installed file
+ * type detectors and which may return null. Other content is reported as text when it is UTF-8 or 8-bit text, such as
+ * ISO-8859-1, without control characters other than whitespace, and as application/octet-stream otherwise.
+ *
+ * The MIME type of files is remembered together with their size and modification time, so that a file attached to many
+ * missives is only read once.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MimeTypeDetector {
+
+    // MIME types that can be detected
+    public static final String APPLICATION_OCTET_STREAM = "application/octet-stream";
+    public static final String APPLICATION_PDF = "application/pdf";
+    public static final String APPLICATION_XML = "application/xml";
+    public static final String IMAGE_GIF = "image/gif";
+    public static final String IMAGE_JPEG = "image/jpeg";
+    public static final String IMAGE_PNG = "image/png";
+    public static final String IMAGE_TIFF = "image/tiff";
+    public static final String TEXT_HTML = "text/html";
+    public static final String TEXT_PLAIN = "text/plain";
+
+    // Number of leading bytes used to detect the MIME type
+    static final int HEAD_SIZE = 512;
+
+    // Maximum number of files whose MIME type is remembered
+    private static final int MAX_MEMO_SIZE = 10000;
+
+    // MIME types of files, by path, size and modification time
+    private static final ConcurrentHashMap<String, String> memo = new ConcurrentHashMap<>();
+
+    /**
+     * MimeTypeDetector constructor
+     */
+    private MimeTypeDetector() {
+
+        // The detector only has static methods
+    }
+
+    /**
+     * Detect the MIME type of a file
+     *
+     * @param path Path of the file
+     * @return MIME type of the content of the file
+     * @throws IOException
+     */
+    public static String detect(Path path) throws IOException {
+
+        // Key identifying the current content of the file
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String key = path.toAbsolutePath() + "#" + attributes.size() + "#" + attributes.lastModifiedTime().toMillis();
+
+        // MIME type detected for the same content
+        String mimeType = memo.get(key);
+        if (mimeType != null) {
+            return mimeType;
+        }
+
+        // Read the leading bytes of the file
+        byte[] head = new byte[HEAD_SIZE];
+        int length = 0;
+        try (InputStream is = Files.newInputStream(path)) {
+            int read;
+            while (length < head.length && (read = is.read(head, length, head.length - length)) >= 0) {
+                length += read;
+            }
+        }
+        mimeType = detect(head, length);
+
+        // Remember the MIME type, starting afresh when too many files have been seen
+        if (memo.size() >= MAX_MEMO_SIZE) {
+            memo.clear();
+        }
+        memo.put(key, mimeType);
+
+        return mimeType;
+    }
+
+    /**
+     * Detect the MIME type of content
+     *
+     * @param content Content whose MIME type needs to be detected
+     * @return MIME type of the content
+     */
+    public static String detect(byte[] content) {
+
+        // Only the leading bytes are used
+        return detect(content, Math.min(content.length, HEAD_SIZE));
+    }
+
+    /**
+     * Detect the MIME type of content from its leading bytes
+     *
+     * @param head Leading bytes of the content
+     * @param length Number of leading bytes available
+     * @return MIME type of the content
+     */
+    private static String detect(byte[] head, int length) {
+
+        // Binary formats identified by their signature
+        if (startsWith(head, length, 0, '%', 'P', 'D', 'F', '-')) {
+            return APPLICATION_PDF;
+        }
+        if (startsWith(head, length, 0, 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n')) {
+            return IMAGE_PNG;
+        }
+        if (startsWith(head, length, 0, 0xff, 0xd8, 0xff)) {
+            return IMAGE_JPEG;
+        }
+        if (startsWith(head, length, 0, 'G', 'I', 'F', '8', '7', 'a') ||
+                startsWith(head, length, 0, 'G', 'I', 'F', '8', '9', 'a')) {
+            return IMAGE_GIF;
+        }
+        if (startsWith(head, length, 0, 'I', 'I', '*', 0) || startsWith(head, length, 0, 'M', 'M', 0, '*')) {
+            return IMAGE_TIFF;
+        }
+
+        // Everything else is text or unknown binary content
+        if (!isText(head, length)) {
+            return APPLICATION_OCTET_STREAM;
+        }
+
+        // Skip the byte order mark and leading whitespace of text
+        int start = startsWith(head, length, 0, 0xef, 0xbb, 0xbf) ? 3 : 0;
+        while (start < length && (head[start] == ' ' || head[start] == '\t' || head[start] == '\r' ||
+                head[start] == '\n')) {
+            start++;
+        }
+
+        // Markup languages
+        if (startsWith(head, length, start, '<', '?', 'x', 'm', 'l')) {
+            return APPLICATION_XML;
+        }
+        if (startsWithIgnoreCase(head, length, start, "<!doctype html") || startsWithIgnoreCase(head, length, start,
+                "<html")) {
+            return TEXT_HTML;
+        }
+
+        return TEXT_PLAIN;
+    }
+
+    /**
+     * Check if a byte is an ASCII control character other than whitespace
+     *
+     * @param b Value of the byte
+     * @return Whether the byte is a control character
+     */
+    private static boolean isControlCharacter(int b) {
+        return b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f' || b == 0x7f;
+    }
+
+    /**
+     * Check if bytes are 8-bit text, such as ISO-8859-1 encoded text, without control characters other than whitespace
+     *
+     * The bytes of the C1 control characters, from 0x80 to 0x9f, are not accepted.
+     *
+     * @param head Bytes that need to be checked
+     * @param length Number of bytes
+     * @return Whether the bytes are 8-bit text
+     */
+    private static boolean isEightBitText(byte[] head, int length) {
+
+        // Check the bytes one by one
+        for (int i = 0; i < length; i++) {
+            int b = head[i] & 0xff;
+            if (isControlCharacter(b) || (b >= 0x80 && b < 0xa0)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if bytes are UTF-8 or 8-bit text without control characters other than whitespace
+     *
+     * @param head Bytes that need to be checked
+     * @param length Number of bytes
+     * @return Whether the bytes are text
+     */
+    private static boolean isText(byte[] head, int length) {
+
+        // Text in UTF-8 or in an 8-bit encoding
+        return isUtf8Text(head, length) || isEightBitText(head, length);
+    }
+
+    /**
+     * Check if bytes are UTF-8 encoded text without control characters other than whitespace
+     *
+     * A multi-byte sequence cut by the end of the bytes is accepted, as the bytes are usually the head of the content.
+     *
+     * @param head Bytes that need to be checked
+     * @param length Number of bytes
+     * @return Whether the bytes are UTF-8 text
+     */
+    private static boolean isUtf8Text(byte[] head, int length) {
+
+        // Check the bytes sequence by sequence
+        int i = 0;
+        while (i < length) {
+
+            // Current byte
+            int b = head[i] & 0xff;
+
+            // ASCII characters other than control characters
+            if (b < 0x80) {
+                if (isControlCharacter(b)) {
+                    return false;
+                }
+                i++;
+                continue;
+            }
+
+            // Length of the multi-byte sequence started by the byte
+            int sequenceLength;
+            if (b >= 0xc2 && b <= 0xdf) {
+                sequenceLength = 2;
+            } else if (b >= 0xe0 && b <= 0xef) {
+                sequenceLength = 3;
+            } else if (b >= 0xf0 && b <= 0xf4) {
+                sequenceLength = 4;
+            } else {
+                return false;
+            }
+
+            // Continuation bytes
+            for (int j = 1; j < sequenceLength && i + j < length; j++) {
+                if ((head[i + j] & 0xc0) != 0x80) {
+                    return false;
+                }
+            }
+            i += sequenceLength;
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if bytes start with the given signature at the given position
+     *
+     * @param head Bytes that need to be checked
+     * @param length Number of bytes
+     * @param offset Position at which the signature is expected
+     * @param signature Values of the bytes of the signature
+     * @return Whether the bytes hold the signature
+     */
+    private static boolean startsWith(byte[] head, int length, int offset, int... signature) {
+
+        // Check that the bytes are long enough
+        if (offset + signature.length > length) {
+            return false;
+        }
+
+        // Compare the bytes with the signature
+        for (int i = 0; i < signature.length; i++) {
+            if ((head[offset + i] & 0xff) != signature[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if bytes start with the given ASCII text at the given position, ignoring case
+     *
+     * @param head Bytes that need to be checked
+     * @param length Number of bytes
+     * @param offset Position at which the text is expected
+     * @param text Lower case ASCII text
+     * @return Whether the bytes hold the text
+     */
+    private static boolean startsWithIgnoreCase(byte[] head, int length, int offset, String text) {
+
+        // Check that the bytes are long enough
+        if (offset + text.length() > length) {
+            return false;
+        }
+
+        // Compare the bytes with the text
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.toLowerCase((char) head[offset + i]) != text.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -5,10 +5,12 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.UUID;
+import javax.xml.stream.XMLInputFactory;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
 import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
+import smog.io.ParallelBase64Encoder;
 
 /**
  *
@@ -16,6 +18,9 @@ import org.apache.xmlbeans.XmlObject;
  */
 public class Utils {
 
+    // StAX factory shared by all the readers of missives
+    private static XMLInputFactory inputFactory;
+
     /**
      * Generate a unique Missive ID which has a length of 16 characters
      *
@@ -64,11 +69,12 @@ public class Utils {
      */
     public static byte[] getFileContent(File file) throws FileNotFoundException, IOException {
 
-        // File input stream
-        FileInputStream fis = new FileInputStream(file);
+        // File input stream, which is closed once the content has been read
+        try (FileInputStream fis = new FileInputStream(file)) {
 
-        // File content
-        return IOUtils.toByteArray(fis);
+            // File content
+            return IOUtils.toByteArray(fis);
+        }
     }
 
     /**
@@ -85,7 +91,7 @@ public class Utils {
         XmlObject xo = XmlObject.Factory.newInstance();
 
         // Read and encode file content
-        String encodedContent = Base64.encodeBase64String(getFileContent(file));
+        String encodedContent = encodeBase64(getFileContent(file));
 
         // Create cursor
         XmlCursor c = xo.newCursor();
@@ -114,7 +120,7 @@ public class Utils {
         XmlObject xo = XmlObject.Factory.newInstance();
 
         // Read and encode file content
-        String encodedContent = Base64.encodeBase64String(content);
+        String encodedContent = encodeBase64(content);
 
         // Create cursor
         XmlCursor c = xo.newCursor();
@@ -130,4 +136,41 @@ public class Utils {
 
         return xo;
     }
+
+    /**
+     * Get the StAX factory shared by all the readers of missives
+     *
+     * The factory does not read document type declarations, so that a missive cannot make its reader load external
+     * entities.
+     *
+     * @return StAX input factory
+     */
+    public static synchronized XMLInputFactory getXmlInputFactory() {
+
+        // Create the factory on first use
+        if (inputFactory == null) {
+            inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        }
+
+        return inputFactory;
+    }
+
+    /**
+     * Encode content in Base64, using the shared parallel encoder when it is set
+     *
+     * @param content Byte array content to be encoded
+     * @return Encoded content
+     */
+    private static String encodeBase64(byte[] content) {
+
+        // Encode content in parallel when the shared encoder is set
+        ParallelBase64Encoder encoder = ParallelBase64Encoder.getSharedEncoder();
+        if (encoder != null) {
+            return encoder.encodeToString(content);
+        }
+
+        return Base64.encodeBase64String(content);
+    }
 }
@@ -0,0 +1,73 @@
+package smog.utils;
+
+/**
+ * VersionTracker counts the modifications made to a message segment and to the segments it holds.
+ *
+ * A version tracker may be linked to the version tracker of the segment holding it, so that modifications are
+ * propagated up to the missive document. Content derived from a segment, such as its rendered XML or the result of its
+ * validation, remains valid as long as the version of the segment is unchanged.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class VersionTracker {
+
+    // Class attributes
+    private VersionTracker parent;
+    private long version;
+
+    /**
+     * VersionTracker constructor
+     */
+    public VersionTracker() {
+
+        // Initialise class attributes
+        this.parent = null;
+        this.version = 0;
+    }
+
+    /**
+     * Get the version tracker of the segment holding the tracked segment
+     *
+     * @return Version tracker of the segment holding the tracked segment, or null when the segment is not held
+     */
+    public VersionTracker getParent() {
+
+        // Get the parent version tracker
+        return this.parent;
+    }
+
+    /**
+     * Get the version of the tracked segment
+     *
+     * @return Number of modifications made to the segment and to the segments it holds
+     */
+    public long getVersion() {
+
+        // Get the version
+        return this.version;
+    }
+
+    /**
+     * Record a modification of the tracked segment
+     *
+     * The modification is also recorded by the version trackers of the segments holding the tracked segment.
+     */
+    public void increment() {
+
+        // Record the modification of the segment and of the segments holding it
+        for (VersionTracker tracker = this; tracker != null; tracker = tracker.parent) {
+            tracker.version++;
+        }
+    }
+
+    /**
+     * Set the version tracker of the segment holding the tracked segment
+     *
+     * @param parent Version tracker of the segment holding the tracked segment, or null when the segment is not held
+     */
+    public void setParent(VersionTracker parent) {
+
+        // Set the parent version tracker
+        this.parent = parent;
+    }
+}
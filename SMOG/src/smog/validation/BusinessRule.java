@@ -0,0 +1,50 @@
+package smog.validation;
+
+/**
+ * BusinessRule lists the SEPA business rules of pain.013 creditor payment activation requests which cannot be checked
+ * by the XML schema
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public enum BusinessRule {
+
+    /**
+     * The control sum of the group header equals the sum of the amounts of all the credit transfer transactions
+     */
+    CONTROL_SUM("pain.013.ctrl-sum"),
+
+    /**
+     * The number of transactions of the group header equals the number of credit transfer transactions
+     */
+    NUMBER_OF_TRANSACTIONS("pain.013.nb-of-txs"),
+
+    /**
+     * The requested execution date of each payment information block is not before the creation date of the message
+     */
+    REQUESTED_EXECUTION_DATE("pain.013.reqd-exctn-dt");
+
+    // Class attributes
+    private final String errorCode;
+
+    /**
+     * BusinessRule constructor
+     *
+     * @param errorCode Error code of the violations of the rule
+     */
+    private BusinessRule(String errorCode) {
+
+        // Initialise class attributes
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * Get the error code of the violations of the rule
+     *
+     * @return Error code
+     */
+    public String getErrorCode() {
+
+        // Get the error code
+        return this.errorCode;
+    }
+}
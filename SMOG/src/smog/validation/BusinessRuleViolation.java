@@ -0,0 +1,45 @@
+package smog.validation;
+
+import org.apache.xmlbeans.XmlError;
+import org.apache.xmlbeans.XmlObject;
+
+/**
+ * BusinessRuleViolation is an error reported when a message breaks one of the SEPA business rules.
+ *
+ * Violations are reported as XmlBeans errors, located at the element holding the wrong value, so that they can be
+ * handled like schema validation errors. The broken rule is available without parsing the error message.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class BusinessRuleViolation extends XmlError {
+
+    // Class attributes
+    private final BusinessRule rule;
+
+    /**
+     * BusinessRuleViolation constructor
+     *
+     * @param rule Broken business rule
+     * @param message Error message
+     * @param location Element holding the wrong value
+     */
+    public BusinessRuleViolation(BusinessRule rule, String message, XmlObject location) {
+
+        // Initialise the parent class
+        super(message, rule.getErrorCode(), XmlError.SEVERITY_ERROR, location.newCursor());
+
+        // Initialise class attributes
+        this.rule = rule;
+    }
+
+    /**
+     * Get the broken business rule
+     *
+     * @return Business rule
+     */
+    public BusinessRule getRule() {
+
+        // Get the business rule
+        return this.rule;
+    }
+}
@@ -0,0 +1,93 @@
+package smog.validation;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import org.apache.xmlbeans.SchemaField;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlError;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.apache.xmlbeans.impl.validator.Validator;
+import org.apache.xmlbeans.impl.values.TypeStore;
+import org.apache.xmlbeans.impl.values.XmlObjectBase;
+
+/**
+ * DetachedValidation validates a copy of a message segment which does not share the lock of the missive document.
+ *
+ * The copy is validated as XmlObject.validate() would validate the message segment in the missive document, and its
+ * errors are located in the message segment. Subclasses may change the copy before it is validated by overriding
+ * prepare(), as long as its elements stay the same.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class DetachedValidation implements Callable<ValidationResult> {
+
+    // Class attributes
+    private final XmlObject segment;
+
+    /**
+     * DetachedValidation constructor
+     *
+     * @param segment Message segment to validate
+     */
+    public DetachedValidation(XmlObject segment) {
+
+        // Initialise class attributes
+        this.segment = segment;
+    }
+
+    /**
+     * Validate the message segment
+     *
+     * @return Result of the validation of the message segment, reporting all its errors
+     */
+    @Override
+    public ValidationResult call() {
+
+        // Copy the message segment into a document of its own, keeping the declaration of the message segment in the
+        // missive document which is lost by the copy
+        XmlObject copy;
+        SchemaField field;
+        synchronized (this.segment.monitor()) {
+            copy = this.segment.copy(new XmlOptions().setCopyUseNewSynchronizationDomain(true));
+            field = ((XmlObjectBase) this.segment).get_store().get_schema_field();
+        }
+
+        // Validate the copy as XmlObject.validate() would validate the message segment
+        ArrayList<XmlError> copyErrors = new ArrayList<>();
+        synchronized (copy.monitor()) {
+            this.prepare(copy);
+            TypeStore store = ((XmlObjectBase) copy).get_store();
+            store.validate(new Validator(this.segment.schemaType(), field, store.get_schematypeloader(),
+                    new XmlOptions().setErrorListener(copyErrors), null));
+        }
+
+        // Locate the errors in the missive document
+        ArrayList<XmlError> errors = new ArrayList<>(copyErrors.size());
+        for (XmlError error : copyErrors) {
+
+            // Errors without location are kept as they are
+            XmlCursor location = error.getCursorLocation();
+            if (location == null) {
+                errors.add(error);
+                continue;
+            }
+
+            // Locate the error in the message segment
+            errors.add(new SegmentedValidator.LocatedError(error, SegmentedValidator.locate(location, this.segment)));
+            location.dispose();
+        }
+
+        return new ValidationResult(errors, false);
+    }
+
+    /**
+     * Change the copy of the message segment before it is validated
+     *
+     * @param copy Copy of the message segment
+     */
+    protected void prepare(XmlObject copy) {
+
+        // The copy is validated as it is by default
+    }
+}
@@ -0,0 +1,210 @@
+package smog.validation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import org.apache.xmlbeans.GDate;
+import org.apache.xmlbeans.XmlDecimal;
+import org.apache.xmlbeans.XmlError;
+import smog.schema.p13.AmountType3Choice;
+import smog.schema.p13.CreditTransferTransactionInformation14;
+import smog.schema.p13.CreditorPaymentActivationRequestV01;
+import smog.schema.p13.GroupHeader45;
+import smog.schema.p13.ISODate;
+import smog.schema.p13.PaymentInstruction5;
+
+/**
+ * Pain013BusinessRuleValidator checks the SEPA business rules of pain.013 creditor payment activation requests.
+ *
+ * All the rules are checked in a single traversal of the payment information blocks and of their credit transfer
+ * transactions. Amounts are added as BigDecimal values, so that the control sum is compared exactly. Values which
+ * cannot be read, such as a missing amount, are left to the schema validation and the rules depending on them are not
+ * checked. The validator holds no state and may be shared between threads.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class Pain013BusinessRuleValidator {
+
+    /**
+     * Check the business rules of a creditor payment activation request
+     *
+     * @param request Creditor payment activation request
+     * @return Result reporting all the business rules broken by the request as BusinessRuleViolation errors
+     */
+    public ValidationResult validate(CreditorPaymentActivationRequestV01 request) {
+
+        // Check the business rules
+        ValidationErrorCollector errors = new ValidationErrorCollector(false);
+        this.validate(request, errors);
+
+        return errors.getResult();
+    }
+
+    /**
+     * Check the business rules of a creditor payment activation request and record the violations found
+     *
+     * The violations are recorded in document order.
+     *
+     * @param request Creditor payment activation request
+     * @param errors Collector for the violations
+     * @return Whether the validation may go on with other messages
+     */
+    public boolean validate(CreditorPaymentActivationRequestV01 request, ValidationErrorCollector errors) {
+
+        // Creation date of the message
+        GroupHeader45 groupHeader = request.getGrpHdr();
+        GDate creationDate = null;
+        if (groupHeader != null && groupHeader.xgetCreDtTm() != null) {
+            creationDate = getDate(groupHeader.xgetCreDtTm().getStringValue());
+        }
+
+        // Totals of the credit transfer transactions
+        BigDecimal sum = BigDecimal.ZERO;
+        boolean sumKnown = true;
+        long transactionCount = 0;
+
+        // Violations found in the payment information blocks
+        ArrayList<XmlError> paymentInformationViolations = new ArrayList<>();
+
+        // Go through the payment information blocks
+        for (PaymentInstruction5 paymentInstruction : request.getPmtInfArray()) {
+
+            // Check the requested execution date against the creation date of the message
+            ISODate executionDate = paymentInstruction.xgetReqdExctnDt();
+            GDate executionGDate = executionDate != null ? getDate(executionDate.getStringValue()) : null;
+            if (creationDate != null && executionGDate != null && compareDays(executionGDate, creationDate) < 0) {
+                paymentInformationViolations.add(new BusinessRuleViolation(BusinessRule.REQUESTED_EXECUTION_DATE,
+                        "ReqdExctnDt " + executionDate.getStringValue() + " is before the creation date " +
+                        groupHeader.xgetCreDtTm().getStringValue() + " of the message", executionDate));
+            }
+
+            // Count and add up the credit transfer transactions
+            for (CreditTransferTransactionInformation14 transaction : paymentInstruction.getCdtTrfTxArray()) {
+
+                // Count the transaction
+                transactionCount++;
+
+                // Add its amount
+                BigDecimal amount = sumKnown ? getAmount(transaction.getAmt()) : null;
+                if (amount != null) {
+                    sum = sum.add(amount);
+                } else {
+                    sumKnown = false;
+                }
+            }
+        }
+
+        // Violations found in the group header
+        ArrayList<XmlError> violations = new ArrayList<>();
+        if (groupHeader != null) {
+
+            // Check the number of transactions
+            String numberOfTransactions = groupHeader.getNbOfTxs();
+            if (numberOfTransactions != null && numberOfTransactions.matches("[0-9]+") &&
+                    !new BigInteger(numberOfTransactions).equals(BigInteger.valueOf(transactionCount))) {
+                violations.add(new BusinessRuleViolation(BusinessRule.NUMBER_OF_TRANSACTIONS,
+                        "NbOfTxs " + numberOfTransactions + " does not match the " + transactionCount +
+                        " credit transfer transaction(s) of the message", groupHeader.xgetNbOfTxs()));
+            }
+
+            // Check the control sum
+            BigDecimal controlSum = groupHeader.isSetCtrlSum() ? getDecimal(groupHeader.xgetCtrlSum()) : null;
+            if (controlSum != null && sumKnown && controlSum.compareTo(sum) != 0) {
+                violations.add(new BusinessRuleViolation(BusinessRule.CONTROL_SUM,
+                        "CtrlSum " + controlSum.toPlainString() + " does not match the sum " + sum.toPlainString() +
+                        " of the amounts of the credit transfer transactions of the message",
+                        groupHeader.xgetCtrlSum()));
+            }
+        }
+
+        // Record the violations in document order
+        violations.addAll(paymentInformationViolations);
+        return errors.merge(violations);
+    }
+
+    /**
+     * Compare the days of two dates, ignoring their times and time zones
+     *
+     * @param first First date
+     * @param second Second date
+     * @return Negative, zero or positive when the first day is before, the same as or after the second day
+     */
+    private static int compareDays(GDate first, GDate second) {
+
+        // Compare the years, then the months, then the days
+        if (first.getYear() != second.getYear()) {
+            return first.getYear() < second.getYear() ? -1 : 1;
+        }
+        if (first.getMonth() != second.getMonth()) {
+            return first.getMonth() < second.getMonth() ? -1 : 1;
+        }
+        return Integer.compare(first.getDay(), second.getDay());
+    }
+
+    /**
+     * Get the amount of a credit transfer transaction
+     *
+     * @param amount Amount of the credit transfer transaction
+     * @return Instructed amount or equivalent amount, or null when the amount cannot be read
+     */
+    private static BigDecimal getAmount(AmountType3Choice amount) {
+
+        // Check if the amount has been specified
+        if (amount == null) {
+            return null;
+        }
+
+        // Instructed amount
+        if (amount.isSetInstdAmt()) {
+            return getDecimal(amount.getInstdAmt());
+        }
+
+        // Equivalent amount
+        if (amount.isSetEqvtAmt() && amount.getEqvtAmt().getAmt() != null) {
+            return getDecimal(amount.getEqvtAmt().getAmt());
+        }
+
+        return null;
+    }
+
+    /**
+     * Read a date from its lexical value
+     *
+     * @param value Lexical value of an ISO date or date and time
+     * @return Date, or null when the value is not a valid date
+     */
+    private static GDate getDate(String value) {
+
+        try {
+
+            // Parse the date
+            GDate date = new GDate(value);
+            return date.hasDate() ? date : null;
+
+        } catch (IllegalArgumentException ex) {
+
+            // The value is reported by the schema validation
+            return null;
+        }
+    }
+
+    /**
+     * Read a decimal value
+     *
+     * @param value Decimal element
+     * @return Decimal value, or null when the value is not a valid decimal
+     */
+    private static BigDecimal getDecimal(XmlDecimal value) {
+
+        try {
+
+            // Read the decimal value
+            return value.getBigDecimalValue();
+
+        } catch (IllegalArgumentException ex) {
+
+            // The value is reported by the schema validation
+            return null;
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package smog.validation;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlError;
+import org.apache.xmlbeans.XmlLineNumber;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import smog.utils.VersionTracker;
+
+/**
+ * SegmentedValidator validates a missive document as its envelope and a set of independent message segments.
+ *
+ * The envelope is validated on a skeleton copy of the document in which every message segment is replaced by an empty
+ * element of the same name, so that the content model of the elements holding the segments is checked without
+ * validating the segments again. The message segments are validated on their own, or their results are taken from an
+ * earlier validation. The errors are then merged in document order, which gives the same result as a validation of the
+ * whole missive document. Errors found in the envelope are located in the missive document at the element on which
+ * they were found.
+ *
+ * The message segments may also be validated concurrently on an executor. XmlBeans serialises every operation on a
+ * document, so each message segment is then copied into a document of its own and validated there, and its errors are
+ * located back in the missive document.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class SegmentedValidator {
+
+    // Class attributes
+    private final XmlObject document;
+    private final ArrayList<ValidationCache> segmentCaches;
+    private final IdentityHashMap<XmlObject, Integer> segmentIndexes;
+    private final ArrayList<ValidationResult> segmentResults;
+    private final ArrayList<VersionTracker> segmentVersionTrackers;
+    private final ArrayList<XmlObject> segments;
+
+    /**
+     * SegmentedValidator constructor
+     *
+     * @param document Missive document to validate
+     */
+    public SegmentedValidator(XmlObject document) {
+
+        // Initialise class attributes
+        this.document = document;
+        this.segmentCaches = new ArrayList<>();
+        this.segmentIndexes = new IdentityHashMap<>();
+        this.segmentResults = new ArrayList<>();
+        this.segmentVersionTrackers = new ArrayList<>();
+        this.segments = new ArrayList<>();
+    }
+
+    /**
+     * Add a message segment of the missive document which is validated on its own
+     *
+     * @param segment Message segment of the missive document
+     * @param result Result of an earlier validation of the message segment reporting all its errors, or null when the
+     * message segment is validated with the missive document
+     */
+    public void addSegment(XmlObject segment, ValidationResult result) {
+
+        // Keep the message segment and the position at which it has been added
+        this.segmentCaches.add(null);
+        this.segmentIndexes.put(segment, this.segments.size());
+        this.segmentResults.add(result);
+        this.segmentVersionTrackers.add(null);
+        this.segments.add(segment);
+    }
+
+    /**
+     * Add a message segment of the missive document whose validation result is kept in a cache
+     *
+     * The result kept in the cache is used while the message segment is unchanged, and the cache is updated when the
+     * message segment is validated.
+     *
+     * @param segment Message segment of the missive document
+     * @param cache Cache of the validation result of the message segment
+     * @param versionTracker Version tracker of the message segment
+     */
+    public void addSegment(XmlObject segment, ValidationCache cache, VersionTracker versionTracker) {
+
+        // Keep the message segment with its cache
+        this.addSegment(segment, (ValidationResult) null);
+        this.segmentCaches.set(this.segments.size() - 1, cache);
+        this.segmentVersionTrackers.set(this.segments.size() - 1, versionTracker);
+    }
+
+    /**
+     * Validate the missive document
+     *
+     * @param errors Collector for the validation errors
+     * @return Result of the validation of the missive document
+     */
+    public ValidationResult validate(ValidationErrorCollector errors) {
+
+        // Validate the message segments one after the other
+        try {
+            return this.validate(errors, (List<Future<ValidationResult>>) null);
+        } catch (InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Validate the missive document, validating the message segments concurrently on the given executor
+     *
+     * The result is the same as the one of a validation made by validate(ValidationErrorCollector). The message
+     * segments whose results are unknown are all submitted to the executor before the envelope is validated by the
+     * calling thread, which then merges the errors in document order.
+     *
+     * @param errors Collector for the validation errors
+     * @param executor Executor on which the message segments are validated
+     * @return Result of the validation of the missive document
+     * @throws InterruptedException
+     */
+    public ValidationResult validate(ValidationErrorCollector errors, ExecutorService executor)
+            throws InterruptedException {
+
+        // Submit the validation of the message segments whose results are unknown
+        ArrayList<Future<ValidationResult>> futures = new ArrayList<>(this.segments.size());
+        for (int i = 0; i < this.segments.size(); i++) {
+            futures.add(this.getKnownResult(i) == null ?
+                    executor.submit(new DetachedValidation(this.segments.get(i))) : null);
+        }
+
+        try {
+
+            // Validate the missive document with the results of the message segments
+            return this.validate(errors, futures);
+
+        } finally {
+
+            // Cancel the validation of the message segments whose results are no longer needed
+            for (Future<ValidationResult> future : futures) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Validate the missive document
+     *
+     * @param errors Collector for the validation errors
+     * @param futures Results of the message segments being validated concurrently, or null when the message segments
+     * are validated by the calling thread
+     * @return Result of the validation of the missive document
+     * @throws InterruptedException
+     */
+    private ValidationResult validate(ValidationErrorCollector errors, List<Future<ValidationResult>> futures)
+            throws InterruptedException {
+
+        // Elements holding the message segments
+        IdentityHashMap<XmlObject, Boolean> holders = new IdentityHashMap<>();
+        for (XmlObject segment : this.segments) {
+
+            // Walk up to the document, stopping at elements already known to hold a message segment
+            XmlCursor cursor = segment.newCursor();
+            while (cursor.toParent()) {
+                if (holders.put(cursor.getObject(), Boolean.TRUE) != null) {
+                    break;
+                }
+            }
+            cursor.dispose();
+        }
+
+        // Skeleton of the missive document and the message segments in document order
+        XmlObject skeleton = XmlBeans.getContextTypeLoader().newInstance(this.document.schemaType(), null);
+        ArrayList<XmlObject> placeholders = new ArrayList<>();
+        ArrayList<Integer> order = new ArrayList<>();
+
+        // Copy the missive document into the skeleton
+        XmlCursor source = this.document.newCursor();
+        XmlCursor target = skeleton.newCursor();
+        target.toNextToken();
+        this.copySkeleton(source, target, holders, placeholders, order);
+        target.dispose();
+        source.dispose();
+
+        // Validate the envelope of the missive document
+        ArrayList<XmlError> skeletonErrors = new ArrayList<>();
+        skeleton.validate(new XmlOptions().setErrorListener(skeletonErrors));
+
+        // Errors found in the envelope, grouped by the number of message segments preceding them
+        ArrayList<List<XmlError>> envelopeErrors = new ArrayList<>();
+        for (int i = 0; i <= placeholders.size(); i++) {
+            envelopeErrors.add(new ArrayList<XmlError>());
+        }
+
+        // Positions of the empty elements in the skeleton
+        IdentityHashMap<XmlObject, Integer> placeholderIndexes = new IdentityHashMap<>();
+        for (int i = 0; i < placeholders.size(); i++) {
+            placeholderIndexes.put(placeholders.get(i), i);
+        }
+
+        // Message segments whose content is not validated because they are not expected by the envelope
+        boolean[] skipped = new boolean[placeholders.size()];
+
+        // Sort out the errors found in the envelope
+        for (XmlError error : skeletonErrors) {
+
+            // Element on which the error has been found
+            XmlCursor location = error.getCursorLocation();
+            if (location == null) {
+                envelopeErrors.get(placeholders.size()).add(error);
+                continue;
+            }
+            boolean atStart = location.isStart();
+            XmlCursor element = location.newCursor();
+            if (!atStart) {
+                element.toParent();
+            }
+
+            // Check if the error concerns a message segment
+            Integer placeholder = placeholderIndexes.get(element.getObject());
+
+            // Number of message segments preceding the error
+            int preceding;
+            if (placeholder != null) {
+
+                // Errors in the content of the empty element do not concern the missive document, while errors on the
+                // message segment itself mean that its content is not validated
+                if (!atStart) {
+                    element.dispose();
+                    location.dispose();
+                    continue;
+                }
+                skipped[placeholder] = true;
+                preceding = placeholder;
+            } else {
+                preceding = this.countPreceding(placeholders, location);
+            }
+
+            // Locate the error in the missive document
+            envelopeErrors.get(preceding).add(new LocatedError(error, locate(location, this.document)));
+            element.dispose();
+            location.dispose();
+        }
+
+        // Merge the errors in document order
+        for (int i = 0; i < placeholders.size(); i++) {
+
+            // Errors found in the envelope before the message segment
+            if (!errors.merge(envelopeErrors.get(i))) {
+                return errors.getResult();
+            }
+
+            // Errors found in the message segment
+            if (!skipped[i]) {
+
+                // Message segment at this position
+                int index = order.get(i);
+                ValidationResult result = this.getResult(index, futures);
+
+                // Validate the message segment unless it has been validated earlier
+                boolean proceed = result != null ? errors.merge(result) : errors.validate(this.segments.get(index));
+                if (!proceed) {
+                    return errors.getResult();
+                }
+            }
+        }
+
+        // Errors found in the envelope after the last message segment
+        errors.merge(envelopeErrors.get(placeholders.size()));
+
+        return errors.getResult();
+    }
+
+    /**
+     * Copy the content of an element of the missive document into the skeleton
+     *
+     * @param source Cursor on the element of the missive document
+     * @param target Cursor at which the content is inserted into the skeleton
+     * @param holders Elements holding message segments
+     * @param placeholders Empty elements which replace the message segments in the skeleton, in document order
+     * @param order Positions at which the message segments have been added, in document order
+     */
+    private void copySkeleton(XmlCursor source, XmlCursor target, IdentityHashMap<XmlObject, Boolean> holders,
+            ArrayList<XmlObject> placeholders, ArrayList<Integer> order) {
+
+        // Cursor on the children of the element
+        XmlCursor child = source.newCursor();
+
+        // Copy each child element
+        if (child.toFirstChild()) {
+            do {
+
+                // Child element of the missive document
+                XmlObject childObject = child.getObject();
+                Integer index = this.segmentIndexes.get(childObject);
+
+                // Check how the child element is copied
+                if (index != null) {
+
+                    // Replace the message segment by an empty element
+                    target.beginElement(child.getName());
+                    XmlCursor placeholder = target.newCursor();
+                    placeholder.toParent();
+                    placeholders.add(placeholder.getObject());
+
+                    // Errors found in the empty element look for their line number from the closest line number
+                    // bookmark, so mark the empty element to avoid walking back through the preceding elements
+                    placeholder.setBookmark(new XmlLineNumber(-1));
+                    order.add(index);
+                    placeholder.dispose();
+
+                } else if (holders.containsKey(childObject)) {
+
+                    // Copy the element holding message segments with its attributes and namespaces only
+                    target.beginElement(child.getName());
+                    XmlCursor attribute = child.newCursor();
+                    attribute.toNextToken();
+                    while (attribute.isAnyAttr()) {
+                        if (attribute.isNamespace()) {
+                            target.insertNamespace(attribute.getName().getLocalPart(),
+                                    attribute.getName().getNamespaceURI());
+                        } else {
+                            target.insertAttributeWithValue(attribute.getName(), attribute.getTextValue());
+                        }
+                        attribute.toNextToken();
+                    }
+                    attribute.dispose();
+
+                    // Copy its content
+                    this.copySkeleton(child, target, holders, placeholders, order);
+
+                } else {
+
+                    // Copy the element
+                    child.copyXml(target);
+                    continue;
+                }
+
+                // Move after the element added to the skeleton
+                target.toNextToken();
+
+            } while (child.toNextSibling());
+        }
+
+        // Dispose the cursor
+        child.dispose();
+    }
+
+    /**
+     * Count the message segments which precede the given location of the skeleton
+     *
+     * @param placeholders Empty elements which replace the message segments in the skeleton, in document order
+     * @param location Location in the skeleton
+     * @return Number of message segments before the location
+     */
+    private int countPreceding(ArrayList<XmlObject> placeholders, XmlCursor location) {
+
+        // Binary search of the first message segment which does not precede the location
+        int low = 0;
+        int high = placeholders.size();
+        while (low < high) {
+
+            // Compare the location with the message segment in the middle
+            int middle = (low + high) >>> 1;
+            XmlCursor placeholder = placeholders.get(middle).newCursor();
+            boolean before = placeholder.comparePosition(location) < 0;
+            placeholder.dispose();
+
+            // Narrow the search
+            if (before) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Get the result of a message segment which is known without validating the message segment
+     *
+     * @param index Position at which the message segment has been added
+     * @return Result given for the message segment or kept in its cache, or null when the message segment has to be
+     * validated
+     */
+    private ValidationResult getKnownResult(int index) {
+
+        // Result given for the message segment
+        ValidationResult result = this.segmentResults.get(index);
+
+        // Result kept in the cache of the message segment
+        ValidationCache cache = this.segmentCaches.get(index);
+        if (result == null && cache != null) {
+            result = cache.getCachedResult(this.segments.get(index), this.segmentVersionTrackers.get(index));
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the result of a message segment, validating the message segment if it has a cache
+     *
+     * @param index Position at which the message segment has been added
+     * @param futures Results of the message segments being validated concurrently, or null when the message segments
+     * are validated by the calling thread
+     * @return Result of the message segment, or null when the message segment has to be validated with the errors of
+     * the missive document
+     * @throws InterruptedException
+     */
+    private ValidationResult getResult(int index, List<Future<ValidationResult>> futures) throws InterruptedException {
+
+        // Message segment and its cache
+        XmlObject segment = this.segments.get(index);
+        ValidationCache cache = this.segmentCaches.get(index);
+        VersionTracker versionTracker = this.segmentVersionTrackers.get(index);
+
+        // Check if the message segment is being validated concurrently
+        Future<ValidationResult> future = futures != null ? futures.get(index) : null;
+        if (future == null) {
+
+            // Use the known result or validate the message segment with its cache
+            ValidationResult result = this.getKnownResult(index);
+            return result == null && cache != null ? cache.getValidationResult(segment, versionTracker) : result;
+        }
+
+        // Wait for the result of the concurrent validation
+        ValidationResult result;
+        try {
+            result = future.get();
+        } catch (ExecutionException ex) {
+
+            // Report the failure of the validation in the calling thread
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+
+        // Keep the result in the cache of the message segment
+        if (cache != null) {
+            cache.setValidationResult(segment, versionTracker, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the location in a document which matches a location in a copy of that document
+     *
+     * The location is found from the positions of the elements among their sibling elements, so the copy must have the
+     * same elements as the document.
+     *
+     * @param location Location in the copy
+     * @param target Object of the document matching the root of the copy
+     * @return Cursor on the matching location of the document
+     */
+    static XmlCursor locate(XmlCursor location, XmlObject target) {
+
+        // Element containing the location
+        XmlCursor cursor = location.newCursor();
+        if (!cursor.isStart()) {
+            cursor.toParent();
+        }
+
+        // Positions of the element and its ancestors among their sibling elements
+        ArrayList<Integer> path = new ArrayList<>();
+        while (cursor.isStart()) {
+
+            // Count the preceding sibling elements
+            XmlCursor sibling = cursor.newCursor();
+            int position = 0;
+            while (sibling.toPrevSibling()) {
+                position++;
+            }
+            sibling.dispose();
+
+            // Move to the parent element
+            path.add(position);
+            cursor.toParent();
+        }
+        cursor.dispose();
+
+        // Follow the same path in the document
+        XmlCursor targetLocation = target.newCursor();
+        for (int i = path.size() - 1; i >= 0; i--) {
+            targetLocation.toChild(path.get(i));
+        }
+
+        // Move to the same token of the element
+        if (location.isEnd() || location.isEnddoc()) {
+            targetLocation.toEndToken();
+        } else if (location.isAttr()) {
+            boolean found = targetLocation.toFirstAttribute();
+            while (found && !location.getName().equals(targetLocation.getName())) {
+                found = targetLocation.toNextAttribute();
+            }
+        }
+
+        return targetLocation;
+    }
+
+    /**
+     * LocatedError is an error found in a copy of the missive document, located in the missive document.
+     */
+    static class LocatedError extends XmlError {
+
+        /**
+         * LocatedError constructor
+         *
+         * @param error Error found in the copy
+         * @param location Location of the error in the missive document
+         */
+        LocatedError(XmlError error, XmlCursor location) {
+
+            // Initialise the parent class
+            super(error.getMessage(), error.getErrorCode(), error.getSeverity(), location);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package smog.validation;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import org.apache.xmlbeans.XmlError;
+import org.w3c.dom.ls.DOMImplementationLS;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import smog.exception.SmogException;
+import smog.io.CDataEscapingInputStream;
+import smog.utils.Utils;
+
+/**
+ * StreamingSchemaValidator validates missive files against the SEPAmail schemas without loading them into XmlBeans.
+ *
+ * The file is read with StAX and validated by a javax.xml.validation validator as it is read, so that memory does not
+ * grow with the size of the file. CDATA sections, in which attachments are usually written, are read as escaped text
+ * since the StAX reader would otherwise keep each of them in memory. The schema is compiled once from the schema files
+ * bundled at the root of the schema library, starting from sepamail_missive.xsd, and is shared by all the validations,
+ * which may run concurrently.
+ *
+ * The errors are reported in the same form as the errors of DocumentBase.getValidationResult(), with their schema error
+ * code and their line and column in the file. The columns of the lines holding CDATA sections are shifted by the
+ * replacement of the CDATA sections. The messages are those of the JAXP validator, which differ from those of XmlBeans.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class StreamingSchemaValidator {
+
+    // Schema of the missive documents at the root of the schema library
+    private static final String SCHEMA_RESOURCE = "/sepamail_missive.xsd";
+
+    // Error code at the beginning of the messages of the JAXP validator
+    private static final Pattern ERROR_CODE = Pattern.compile("([a-zA-Z][\\w.-]*): (.*)", Pattern.DOTALL);
+
+    // Introduction of the message in the errors of the StAX reader, which is preceded by the location of the error
+    private static final String STREAM_MESSAGE = "Message: ";
+
+    // Compiled schema shared by all the validations
+    private static Schema schema;
+
+    /**
+     * Validate the missive file at the given path
+     *
+     * @param path Path of the missive file
+     * @param failFast Whether the validation stops at the first error
+     * @return Result of the validation of the missive file
+     * @throws SmogException
+     */
+    public ValidationResult validate(Path path, boolean failFast) throws SmogException {
+
+        // Read the missive file
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path))) {
+            return this.validate(inputStream, failFast);
+        } catch (IOException ex) {
+            throw new SmogException("The missive file " + path + " could not be read: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Validate the missive read from the given input stream
+     *
+     * The input stream is read up to the end of the missive but is not closed.
+     *
+     * @param inputStream Input stream holding the missive
+     * @param failFast Whether the validation stops at the first error
+     * @return Result of the validation of the missive
+     * @throws SmogException
+     */
+    public ValidationResult validate(InputStream inputStream, boolean failFast) throws SmogException {
+
+        // Collector for the validation errors
+        final ValidationErrorCollector errors = new ValidationErrorCollector(failFast);
+
+        // Validator of the shared schema, which is not thread safe and is used for this validation only
+        Validator validator = getSchema().newValidator();
+        validator.setErrorHandler(new ErrorHandler() {
+
+            @Override
+            public void warning(SAXParseException exception) throws SAXException {
+
+                // Record the warning
+                this.record(exception, XmlError.SEVERITY_WARNING);
+            }
+
+            @Override
+            public void error(SAXParseException exception) throws SAXException {
+
+                // Record the error
+                this.record(exception, XmlError.SEVERITY_ERROR);
+            }
+
+            @Override
+            public void fatalError(SAXParseException exception) throws SAXException {
+
+                // Record the error, after which the missive cannot be read any further
+                this.record(exception, XmlError.SEVERITY_ERROR);
+                throw exception;
+            }
+
+            /**
+             * Record an error reported by the validator
+             *
+             * @param exception Error reported by the validator
+             * @param severity Severity of the error
+             * @throws SAXException when the validation stops at the first error
+             */
+            private void record(SAXParseException exception, int severity) throws SAXException {
+
+                // Stop the validation at the first error in fail-fast mode
+                if (!errors.merge(Collections.<XmlError>singletonList(new StreamError(exception, severity)))) {
+                    throw exception;
+                }
+            }
+        });
+
+        try {
+
+            // Validate the missive as it is read, with its CDATA sections read as text so that large attachments are
+            // not kept in memory by the StAX reader
+            XMLStreamReader reader = Utils.getXmlInputFactory().createXMLStreamReader(
+                    new CDataEscapingInputStream(inputStream));
+            try {
+                validator.validate(new StAXSource(reader));
+            } finally {
+                reader.close();
+            }
+
+        } catch (SAXException ex) {
+
+            // The errors reported by the validator have already been recorded
+            if (ex instanceof SAXParseException) {
+                return errors.getResult();
+            }
+
+            // Errors of the StAX reader are wrapped by the validator
+            XMLStreamException streamException = getStreamException(ex);
+            if (streamException == null) {
+                throw new SmogException("The missive could not be validated: " + ex.getMessage());
+            }
+
+            // The missive is not well formed
+            errors.merge(Collections.<XmlError>singletonList(new StreamError(streamException)));
+
+        } catch (XMLStreamException ex) {
+
+            // The missive is not well formed
+            errors.merge(Collections.<XmlError>singletonList(new StreamError(ex)));
+
+        } catch (IOException ex) {
+            throw new SmogException("The missive could not be read: " + ex.getMessage());
+        }
+
+        return errors.getResult();
+    }
+
+    /**
+     * Get the error of the StAX reader which caused an exception
+     *
+     * @param exception Exception thrown by the validator
+     * @return Error of the StAX reader, or null when the exception was not caused by the StAX reader
+     */
+    private static XMLStreamException getStreamException(Throwable exception) {
+
+        // Go through the causes of the exception
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof XMLStreamException) {
+                return (XMLStreamException) cause;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the compiled schema of the missive documents
+     *
+     * The schema is compiled on first use and shared afterwards, as compiling it takes several hundred milliseconds.
+     *
+     * @return Compiled schema
+     * @throws SmogException
+     */
+    private static synchronized Schema getSchema() throws SmogException {
+
+        // Compile the schema on first use
+        if (schema == null) {
+
+            try {
+
+                // Factory resolving the schema files next to the missive schema
+                SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+                schemaFactory.setResourceResolver(new EmptyDtdResolver());
+
+                // Compile the schema
+                schema = schemaFactory.newSchema(StreamingSchemaValidator.class.getResource(SCHEMA_RESOURCE));
+
+            } catch (SAXException | ParserConfigurationException ex) {
+                throw new SmogException("The missive schema could not be compiled: " + ex.getMessage());
+            }
+        }
+
+        return schema;
+    }
+
+    /**
+     * EmptyDtdResolver replaces the DTDs referenced by the schema files with empty DTDs.
+     *
+     * xmldsig-core-schema.xsd refers to the DTD of XML Schema on the W3C web site. Its entities are declared in the
+     * internal subset of the schema file, so the DTD is not needed and is not downloaded.
+     */
+    private static class EmptyDtdResolver implements LSResourceResolver {
+
+        // Class attributes
+        private final DOMImplementationLS domImplementation;
+
+        /**
+         * EmptyDtdResolver constructor
+         *
+         * @throws ParserConfigurationException
+         */
+        EmptyDtdResolver() throws ParserConfigurationException {
+
+            // Initialise class attributes
+            this.domImplementation = (DOMImplementationLS) DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .getDOMImplementation();
+        }
+
+        /**
+         * Resolve a resource referenced by a schema file
+         *
+         * @param type Type of the resource
+         * @param namespaceURI Namespace of the resource
+         * @param publicId Public identifier of the resource
+         * @param systemId System identifier of the resource
+         * @param baseURI Base URI of the schema file referencing the resource
+         * @return Empty input for DTDs, or null to resolve schema files relative to the schema file referencing them
+         */
+        @Override
+        public LSInput resolveResource(String type, String namespaceURI, String publicId, String systemId,
+                String baseURI) {
+
+            // Resolve schema files as usual
+            if (XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(type)) {
+                return null;
+            }
+
+            // Replace other resources with empty content
+            LSInput input = this.domImplementation.createLSInput();
+            input.setCharacterStream(new StringReader(""));
+            input.setPublicId(publicId);
+            input.setSystemId(systemId);
+
+            return input;
+        }
+    }
+
+    /**
+     * StreamError is an error reported while validating a missive file, located by its line and column in the file.
+     */
+    private static class StreamError extends XmlError {
+
+        /**
+         * StreamError constructor
+         *
+         * @param exception Error reported by the validator
+         * @param severity Severity of the error
+         */
+        StreamError(SAXParseException exception, int severity) {
+
+            // Initialise the parent class
+            super(getMessage(exception.getMessage()), getErrorCode(exception.getMessage()), severity,
+                    new ErrorLocation(exception.getLineNumber(), exception.getColumnNumber(), exception.getPublicId(),
+                    exception.getSystemId()));
+        }
+
+        /**
+         * StreamError constructor
+         *
+         * @param exception Error reported by the StAX reader
+         */
+        StreamError(XMLStreamException exception) {
+
+            // Initialise the parent class
+            super(getMessage(exception), (String) null, XmlError.SEVERITY_ERROR, exception.getLocation());
+        }
+
+        /**
+         * Get the error code at the beginning of a message of the validator
+         *
+         * @param message Message of the validator
+         * @return Error code, or null when the message does not start with an error code
+         */
+        private static String getErrorCode(String message) {
+
+            // Look for the error code
+            Matcher matcher = ERROR_CODE.matcher(message != null ? message : "");
+            return matcher.matches() ? matcher.group(1) : null;
+        }
+
+        /**
+         * Get the message of an error of the StAX reader without the location which prefixes it
+         *
+         * @param exception Error reported by the StAX reader
+         * @return Message of the error
+         */
+        private static String getMessage(XMLStreamException exception) {
+
+            // Remove the location given before the message
+            String message = exception.getMessage();
+            int index = message != null ? message.indexOf(STREAM_MESSAGE) : -1;
+            return index > -1 ? message.substring(index + STREAM_MESSAGE.length()) : message;
+        }
+
+        /**
+         * Get a message of the validator without its error code
+         *
+         * @param message Message of the validator
+         * @return Message without error code
+         */
+        private static String getMessage(String message) {
+
+            // Remove the error code
+            Matcher matcher = ERROR_CODE.matcher(message != null ? message : "");
+            return matcher.matches() ? matcher.group(2) : message;
+        }
+    }
+
+    /**
+     * ErrorLocation is the location of an error in a missive file.
+     */
+    private static class ErrorLocation implements Location {
+
+        // Class attributes
+        private final int columnNumber;
+        private final int lineNumber;
+        private final String publicId;
+        private final String systemId;
+
+        /**
+         * ErrorLocation constructor
+         *
+         * @param lineNumber Line of the error
+         * @param columnNumber Column of the error
+         * @param publicId Public identifier of the missive file
+         * @param systemId System identifier of the missive file
+         */
+        ErrorLocation(int lineNumber, int columnNumber, String publicId, String systemId) {
+
+            // Initialise class attributes
+            this.columnNumber = columnNumber;
+            this.lineNumber = lineNumber;
+            this.publicId = publicId;
+            this.systemId = systemId;
+        }
+
+        @Override
+        public int getCharacterOffset() {
+
+            // The offset of the error is unknown
+            return -1;
+        }
+
+        @Override
+        public int getColumnNumber() {
+
+            // Get the column of the error
+            return this.columnNumber;
+        }
+
+        @Override
+        public int getLineNumber() {
+
+            // Get the line of the error
+            return this.lineNumber;
+        }
+
+        @Override
+        public String getPublicId() {
+
+            // Get the public identifier of the missive file
+            return this.publicId;
+        }
+
+        @Override
+        public String getSystemId() {
+
+            // Get the system identifier of the missive file
+            return this.systemId;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package smog.validation;
+
+import java.io.IOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import smog.utils.VersionTracker;
+
+/**
+ * ValidationCache keeps the result of the validation of a message segment for as long as the segment is unchanged.
+ *
+ * The result is tied to the message segment which has been validated and to its version, so that it is discarded when
+ * the segment is modified or when its structure object is bound to another message segment.
+ *
+ * As the message segment can also be modified directly through its XML Beans objects, which does not change its
+ * version, the result is also tied to the change stamp of the document holding the segment. When the document has
+ * changed, the result is only kept if a digest of the content of the segment is still the one taken when it was
+ * validated, so that modifications of other parts of the document do not cause the segment to be validated again.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class ValidationCache {
+
+    // Class attributes
+    private byte[] validatedDigest;
+    private XmlObject validatedSegment;
+    private XmlCursor.ChangeStamp validatedStamp;
+    private long validatedVersion;
+    private ValidationResult validationResult;
+
+    /**
+     * ValidationCache constructor
+     */
+    public ValidationCache() {
+
+        // Initialise class attributes
+        this.validatedDigest = null;
+        this.validatedSegment = null;
+        this.validatedStamp = null;
+        this.validatedVersion = 0;
+        this.validationResult = null;
+    }
+
+    /**
+     * Get the result kept for the given message segment
+     *
+     * @param segment Message segment
+     * @param versionTracker Version tracker of the message segment
+     * @return Result of the validation of the message segment in its current version, or null when the message segment
+     * has not been validated since it was last modified
+     */
+    public ValidationResult getCachedResult(XmlObject segment, VersionTracker versionTracker) {
+
+        // Check if the message segment has been validated in its current version
+        if (this.validatedSegment != segment || this.validatedVersion != versionTracker.getVersion()) {
+            return null;
+        }
+
+        // Check if the document holding the message segment is unchanged since the validation
+        if (!this.validatedStamp.hasChanged()) {
+            return this.validationResult;
+        }
+
+        // Check if the content of the message segment is unchanged, in which case the result is kept for the current
+        // state of the document
+        XmlCursor.ChangeStamp changeStamp = getChangeStamp(segment);
+        if (Arrays.equals(this.validatedDigest, getDigest(segment))) {
+            this.validatedStamp = changeStamp;
+            return this.validationResult;
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the result of the validation of the given message segment, validating it if it has changed
+     *
+     * @param segment Message segment to validate
+     * @param versionTracker Version tracker of the message segment
+     * @return Result of the validation of the message segment, reporting all its errors
+     */
+    public ValidationResult getValidationResult(XmlObject segment, VersionTracker versionTracker) {
+
+        // Check if the message segment has been validated in its current version
+        ValidationResult cachedResult = this.getCachedResult(segment, versionTracker);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+
+        // State of the message segment which is validated
+        XmlCursor.ChangeStamp changeStamp = getChangeStamp(segment);
+        byte[] digest = getDigest(segment);
+
+        // Validate the message segment
+        ValidationErrorCollector errors = new ValidationErrorCollector(false);
+        errors.validate(segment);
+
+        // Keep the result for the current version of the message segment
+        this.keepResult(segment, versionTracker, changeStamp, digest, errors.getResult());
+
+        return this.validationResult;
+    }
+
+    /**
+     * Keep the result of a validation of the given message segment made elsewhere
+     *
+     * @param segment Message segment which has been validated
+     * @param versionTracker Version tracker of the message segment
+     * @param validationResult Result of the validation of the message segment in its current version, reporting all its
+     * errors
+     */
+    public void setValidationResult(XmlObject segment, VersionTracker versionTracker,
+            ValidationResult validationResult) {
+
+        // Keep the result for the current version of the message segment
+        this.keepResult(segment, versionTracker, getChangeStamp(segment), getDigest(segment), validationResult);
+    }
+
+    /**
+     * Get the change stamp of the document holding a message segment
+     *
+     * @param segment Message segment
+     * @return Change stamp of the document in its current state
+     */
+    private static XmlCursor.ChangeStamp getChangeStamp(XmlObject segment) {
+
+        // Cursor on the message segment
+        XmlCursor cursor = segment.newCursor();
+
+        try {
+
+            // Change stamp of the document holding the message segment
+            return cursor.getDocChangeStamp();
+
+        } finally {
+
+            // Dispose cursor
+            cursor.dispose();
+        }
+    }
+
+    /**
+     * Get a digest of the content of a message segment
+     *
+     * @param segment Message segment
+     * @return SHA-256 digest of the XML content of the message segment
+     */
+    private static byte[] getDigest(XmlObject segment) {
+
+        // SHA-256 digest
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        // Digest the XML content of the message segment without keeping it in memory
+        try (DigestOutputStream os = new DigestOutputStream(new NullOutputStream(), digest)) {
+            segment.save(os);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Keep the result of a validation of the given message segment
+     *
+     * @param segment Message segment which has been validated
+     * @param versionTracker Version tracker of the message segment
+     * @param changeStamp Change stamp of the document holding the message segment when it was validated
+     * @param digest Digest of the content of the message segment when it was validated
+     * @param validationResult Result of the validation of the message segment
+     */
+    private void keepResult(XmlObject segment, VersionTracker versionTracker, XmlCursor.ChangeStamp changeStamp,
+            byte[] digest, ValidationResult validationResult) {
+
+        // Keep the result with the state of the message segment
+        this.validatedDigest = digest;
+        this.validatedSegment = segment;
+        this.validatedStamp = changeStamp;
+        this.validatedVersion = versionTracker.getVersion();
+        this.validationResult = validationResult;
+    }
+}
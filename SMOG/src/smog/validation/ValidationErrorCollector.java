@@ -0,0 +1,188 @@
+package smog.validation;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.xmlbeans.XmlError;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+
+/**
+ * ValidationErrorCollector collects the errors reported by XmlBeans while validating message segments.
+ *
+ * In fail-fast mode the validation is stopped as soon as the first error is reported. Subclasses may ignore some of the
+ * reported errors by overriding accept().
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class ValidationErrorCollector extends ArrayList<XmlError> {
+
+    // Class attributes
+    private final boolean failFast;
+    private boolean stopped;
+
+    /**
+     * ValidationErrorCollector constructor
+     *
+     * @param failFast Whether the validation stops at the first error
+     */
+    public ValidationErrorCollector(boolean failFast) {
+
+        // Initialise class attributes
+        this.failFast = failFast;
+        this.stopped = false;
+    }
+
+    /**
+     * Record an error reported by XmlBeans
+     *
+     * @param error Reported error
+     * @return Whether the error has been recorded
+     */
+    @Override
+    public boolean add(XmlError error) {
+
+        // Check if the error is relevant
+        if (!this.accept(error)) {
+            return false;
+        }
+
+        // Record the error
+        super.add(error);
+
+        // Stop the validation at the first error in fail-fast mode
+        if (this.failFast && error.getSeverity() == XmlError.SEVERITY_ERROR) {
+            this.stopped = true;
+            throw new ValidationStoppedException();
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the result of the validations made with the collector
+     *
+     * @return Validation result
+     */
+    public ValidationResult getResult() {
+
+        // Validation result with the recorded errors
+        return new ValidationResult(this, this.stopped);
+    }
+
+    /**
+     * Check if the validation has been stopped at the first error
+     *
+     * @return Whether the validation has been stopped
+     */
+    public boolean isStopped() {
+
+        // Get the stopped status
+        return this.stopped;
+    }
+
+    /**
+     * Record the errors of a validation made earlier
+     *
+     * In fail-fast mode only the errors up to the first error of severity XmlError.SEVERITY_ERROR are recorded.
+     *
+     * @param result Result of a validation reporting all its errors
+     * @return Whether the validation may go on with other message segments
+     */
+    public boolean merge(ValidationResult result) {
+
+        // Record the errors of the validation
+        return this.merge(result.getErrors());
+    }
+
+    /**
+     * Record errors found earlier
+     *
+     * In fail-fast mode only the errors up to the first error of severity XmlError.SEVERITY_ERROR are recorded.
+     *
+     * @param errors Errors in the order in which they were found
+     * @return Whether the validation may go on with other message segments
+     */
+    public boolean merge(List<XmlError> errors) {
+
+        // Check if the validation has already been stopped
+        if (this.stopped) {
+            return false;
+        }
+
+        // Record the errors in the order in which they were found
+        for (XmlError error : errors) {
+
+            // Check if the error is relevant
+            if (!this.accept(error)) {
+                continue;
+            }
+
+            // Record the error
+            super.add(error);
+
+            // Stop the validation at the first error in fail-fast mode
+            if (this.failFast && error.getSeverity() == XmlError.SEVERITY_ERROR) {
+                this.stopped = true;
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Validate the given message segment and record the errors reported for it
+     *
+     * Nothing is validated once the validation has been stopped at the first error.
+     *
+     * @param segment Message segment to validate
+     * @return Whether the validation may go on with other message segments
+     */
+    public boolean validate(XmlObject segment) {
+
+        // Check if the validation has already been stopped
+        if (this.stopped) {
+            return false;
+        }
+
+        try {
+
+            // Validate the message segment
+            segment.validate(new XmlOptions().setErrorListener(this));
+
+        } catch (ValidationStoppedException ex) {
+
+            // The first error has been recorded
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if a reported error should be recorded
+     *
+     * @param error Reported error
+     * @return Whether the error should be recorded
+     */
+    protected boolean accept(XmlError error) {
+
+        // Record every error by default
+        return true;
+    }
+
+    /**
+     * ValidationStoppedException interrupts an XmlBeans validation at the first error.
+     */
+    private static class ValidationStoppedException extends RuntimeException {
+
+        /**
+         * ValidationStoppedException constructor
+         */
+        ValidationStoppedException() {
+
+            // Initialise the parent class without stack trace
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package smog.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.xmlbeans.XmlError;
+
+/**
+ * ValidationResult holds the errors found while validating a missive document.
+ *
+ * Each error keeps its location, error code and severity, so that the failing field can be identified without parsing
+ * the error message.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class ValidationResult {
+
+    // Class attributes
+    private final List<XmlError> errors;
+    private final boolean stopped;
+
+    /**
+     * ValidationResult constructor
+     *
+     * @param errors Errors found while validating the missive document
+     * @param stopped Whether the validation stopped at the first error
+     */
+    public ValidationResult(List<XmlError> errors, boolean stopped) {
+
+        // Initialise class attributes
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+        this.stopped = stopped;
+    }
+
+    /**
+     * Get the errors found while validating the missive document
+     *
+     * @return Read-only list of errors in the order in which they were found
+     */
+    public List<XmlError> getErrors() {
+
+        // Get the errors
+        return this.errors;
+    }
+
+    /**
+     * Get the messages of the errors found while validating the missive document
+     *
+     * @param separator Separator placed between two error messages
+     * @return Error messages joined with the given separator, or an empty string when no error was found
+     */
+    public String getMessage(String separator) {
+
+        // Error messages
+        StringBuilder message = new StringBuilder();
+
+        // Join the error messages
+        for (XmlError error : this.errors) {
+
+            // Add the separator between two error messages
+            if (message.length() > 0) {
+                message.append(separator);
+            }
+
+            // Add the error message
+            message.append(error.getMessage());
+        }
+
+        return message.toString();
+    }
+
+    /**
+     * Check if the validation stopped at the first error
+     *
+     * @return Whether the validation stopped at the first error, in which case other errors may not have been reported
+     */
+    public boolean isStopped() {
+
+        // Get the stopped status
+        return this.stopped;
+    }
+
+    /**
+     * Check if the missive document is valid
+     *
+     * @return Whether no error of severity XmlError.SEVERITY_ERROR was found
+     */
+    public boolean isValid() {
+
+        // Look for an error
+        for (XmlError error : this.errors) {
+            if (error.getSeverity() == XmlError.SEVERITY_ERROR) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,145 @@
+package smog.benchmark;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.Calendar;
+import java.util.Random;
+import org.apache.commons.io.output.NullOutputStream;
+import smog.io.AttachmentReference;
+import smog.missive.SepamailPaymentActivationRequestDocument;
+import smog.missive.TestUtils;
+import smog.missive.structure.SemHURADocument;
+import smog.schema.sem.DocumentType;
+import smog.utils.Utils;
+
+/**
+ * AttachmentBenchmark measures the peak heap used to build and serialize a creditor payment activation request with a
+ * HURA attachment of increasing size, when the attachment is held in memory and when it is held as a reference to its
+ * file.
+ *
+ * Run with: java -Xmx2g -cp build/classes:build/test/classes:lib/* smog.benchmark.AttachmentBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class AttachmentBenchmark {
+
+    // Sizes of the attachment in megabytes
+    private static final int[] SIZES = {1, 20, 100};
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        File file = File.createTempFile("attachment-benchmark", ".pdf");
+        try {
+
+            // Warm up
+            Files.write(file.toPath(), new byte[1024 * 1024]);
+            for (int i = 0; i < 5; i++) {
+                run(file, false);
+                run(file, true);
+            }
+
+            System.out.println(String.format("%10s %16s %12s %14s", "Size MB", "Attachment", "Time ms", "Peak heap MB"));
+
+            for (int size : SIZES) {
+
+                // Attachment of the given size
+                byte[] content = new byte[size * 1024 * 1024];
+                new Random(42).nextBytes(content);
+                Files.write(file.toPath(), content);
+                content = null;
+
+                // Attachment held in memory, then as a reference to its file
+                for (boolean reference : new boolean[] {false, true}) {
+                    long[] result = run(file, reference);
+                    System.out.println(String.format("%10d %16s %12.1f %14.1f", size, reference ? "file reference" :
+                            "in memory", result[0] / 1e6, result[1] / 1048576.0));
+                }
+            }
+
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Build and serialize a document holding the given file as attachment
+     *
+     * @param file File holding the content of the attachment
+     * @param reference Whether the attachment is held as a reference to the file or in memory
+     * @return Elapsed time in nanoseconds and peak heap used above the heap used before the run in bytes
+     * @throws Exception
+     */
+    private static long[] run(File file, boolean reference) throws Exception {
+
+        // Heap used before the run
+        long before = usedHeap();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+
+        long start = System.nanoTime();
+
+        // Attachment held as a reference to the file or in memory
+        SemHURADocument attachment;
+        if (reference) {
+            attachment = new SemHURADocument(new AttachmentReference(file.toPath()), Calendar.getInstance(),
+                    file.getName(), "fr", "application/pdf", "REF-001", "Invoice", DocumentType.INVOICE);
+        } else {
+            attachment = new SemHURADocument(Utils.getFileContent(file), Calendar.getInstance(), file.getName(), "fr",
+                    "application/pdf", "REF-001", "Invoice", DocumentType.INVOICE);
+        }
+
+        // Build and serialize the document
+        SepamailPaymentActivationRequestDocument document = TestUtils.createPaymentActivationRequestDocument(1, 1,
+                null);
+        document.addHURADocument(attachment);
+        document.writeTo(new NullOutputStream());
+
+        long elapsed = System.nanoTime() - start;
+
+        // Peak heap of the run
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        return new long[] {elapsed, Math.max(0, peak - before)};
+    }
+
+    /**
+     * Get the heap used after garbage collection
+     *
+     * @return Number of bytes used on the heap
+     * @throws InterruptedException
+     */
+    private static long usedHeap() throws InterruptedException {
+
+        // Runtime of the benchmark
+        Runtime runtime = Runtime.getRuntime();
+
+        // Collect garbage until the used heap is stable
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(50);
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current == used) {
+                break;
+            }
+            used = current;
+        }
+
+        return used;
+    }
+}
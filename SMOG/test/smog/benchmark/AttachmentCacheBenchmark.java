@@ -0,0 +1,130 @@
+package smog.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.io.output.NullOutputStream;
+import smog.io.AttachmentCache;
+import smog.io.AttachmentReference;
+import smog.missive.SepamailPaymentActivationRequestDocument;
+import smog.missive.TestUtils;
+import smog.missive.structure.SemHURADocument;
+import smog.schema.sem.DocumentType;
+
+/**
+ * AttachmentCacheBenchmark measures the time taken to serialize creditor payment activation requests which all have
+ * the same terms and conditions document as HURA attachment, without cache and with the shared attachment cache.
+ *
+ * The attachment is either the same file for all the requests or one of several files with identical content.
+ *
+ * Run with: java -Xmx1g -cp build/classes:build/test/classes:lib/* smog.benchmark.AttachmentCacheBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class AttachmentCacheBenchmark {
+
+    // Number of serialized missives
+    private static final int MISSIVE_COUNT = 2000;
+
+    // Size of the attachment
+    private static final int ATTACHMENT_SIZE = 1024 * 1024;
+
+    // Number of files with identical content
+    private static final int COPY_COUNT = 20;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Files with identical content
+        byte[] content = new byte[ATTACHMENT_SIZE];
+        new Random(42).nextBytes(content);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < COPY_COUNT; i++) {
+            File file = File.createTempFile("attachment-cache-benchmark", ".pdf");
+            Files.write(file.toPath(), content);
+            files.add(file);
+        }
+
+        try {
+
+            // Missive of which the attachment is replaced for each serialization
+            SepamailPaymentActivationRequestDocument document = TestUtils.createPaymentActivationRequestDocument(1, 1,
+                    null);
+
+            // Warm up
+            run(document, files.subList(0, 1), 200, null);
+            run(document, files.subList(0, 1), 200, new AttachmentCache(64L * 1024 * 1024));
+
+            System.out.println(String.format("%-16s %-10s %10s %10s %8s %8s", "Attachment", "Cache", "Total ms",
+                    "ms/missive", "Hits", "Misses"));
+
+            // The same file attached to every missive, then a different copy for each missive
+            List<List<File>> attachmentSets = new ArrayList<>();
+            attachmentSets.add(files.subList(0, 1));
+            attachmentSets.add(files);
+
+            for (List<File> attachments : attachmentSets) {
+                for (boolean cached : new boolean[] {false, true}) {
+
+                    // Serialize the missives
+                    AttachmentCache cache = cached ? new AttachmentCache(64L * 1024 * 1024) : null;
+                    long elapsed = run(document, attachments, MISSIVE_COUNT, cache);
+
+                    System.out.println(String.format("%-16s %-10s %10.1f %10.3f %8s %8s", attachments.size() == 1 ?
+                            "same file" : attachments.size() + " copies", cached ? "shared" : "none", elapsed / 1e6,
+                            elapsed / 1e6 / MISSIVE_COUNT, cached ? cache.getHitCount() : "-", cached ?
+                            cache.getMissCount() : "-"));
+                }
+            }
+
+        } finally {
+            for (File file : files) {
+                file.delete();
+            }
+            AttachmentCache.setSharedCache(null);
+        }
+    }
+
+    /**
+     * Serialize a missive with each of the given files as attachment in turn
+     *
+     * @param document Missive that needs to be serialized
+     * @param files Files holding the attachment
+     * @param missiveCount Number of serializations
+     * @param cache Shared cache of the serializer, or null to serialize without cache
+     * @return Elapsed time in nanoseconds
+     * @throws Exception
+     */
+    private static long run(SepamailPaymentActivationRequestDocument document, List<File> files, int missiveCount,
+            AttachmentCache cache) throws Exception {
+
+        AttachmentCache.setSharedCache(cache);
+
+        long elapsed = 0;
+        for (int i = 0; i < missiveCount; i++) {
+
+            // Attach the terms and conditions, which modifies the missive so that it is rendered again
+            if (!document.getSemHURADocuments().isEmpty()) {
+                document.removeHURADocumentAtIndex(0);
+            }
+            document.addHURADocument(new SemHURADocument(new AttachmentReference(files.get(i % files.size()).toPath()),
+                    Calendar.getInstance(), "terms.pdf", "fr", "application/pdf", "TERMS", "Terms and conditions",
+                    DocumentType.INVOICE));
+
+            // Serialize the missive
+            long start = System.nanoTime();
+            document.writeTo(new NullOutputStream());
+            elapsed += System.nanoTime() - start;
+        }
+
+        return elapsed;
+    }
+}
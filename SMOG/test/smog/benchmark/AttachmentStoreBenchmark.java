@@ -0,0 +1,157 @@
+package smog.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import smog.io.AttachmentStore;
+import smog.io.MemoryAttachmentStore;
+import smog.io.SpoolingAttachmentStore;
+import smog.missive.SepamailPaymentActivationRequestDocument;
+import smog.missive.TestUtils;
+import smog.missive.structure.SemHURADocument;
+import smog.schema.sem.DocumentType;
+
+/**
+ * AttachmentStoreBenchmark measures the heap retained by pending creditor payment activation requests which each
+ * have a HURA attachment, when the attachment data is held in the XML Beans tree, in a memory attachment store and in
+ * a spooling attachment store, together with the time taken to serialize all the requests.
+ *
+ * Run with: java -Xmx2g -cp build/classes:build/test/classes:lib/* smog.benchmark.AttachmentStoreBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class AttachmentStoreBenchmark {
+
+    // Number of pending missives
+    private static final int MISSIVE_COUNT = 500;
+
+    // Size of the attachment of each missive
+    private static final int ATTACHMENT_SIZE = 256 * 1024;
+
+    // Size above which the spooling store writes the attachments to files
+    private static final int SPOOL_THRESHOLD = 64 * 1024;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        Path directory = Files.createTempDirectory("attachment-store-benchmark");
+        try {
+
+            // Warm up
+            run(null, 20);
+            try (AttachmentStore store = new MemoryAttachmentStore()) {
+                run(store, 20);
+            }
+
+            System.out.println(String.format("%10s %16s %14s %16s", "Missives", "Attachment", "Retained MB",
+                    "Serialize ms"));
+
+            // Attachments held in the tree, in memory and spooled to files
+            print("in tree", run(null, MISSIVE_COUNT));
+            try (AttachmentStore store = new MemoryAttachmentStore()) {
+                print("memory store", run(store, MISSIVE_COUNT));
+            }
+            try (AttachmentStore store = new SpoolingAttachmentStore(directory, SPOOL_THRESHOLD)) {
+                print("spooling store", run(store, MISSIVE_COUNT));
+            }
+
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    /**
+     * Create pending missives with an attachment each, then serialize them
+     *
+     * @param store Store holding the attachment data, or null to hold it in the XML Beans tree
+     * @param missiveCount Number of missives
+     * @return Heap retained by the missives in bytes and time taken to serialize them in nanoseconds
+     * @throws Exception
+     */
+    private static long[] run(AttachmentStore store, int missiveCount) throws Exception {
+
+        // Heap used before the missives are created
+        long before = usedHeap();
+
+        // Create the missives, each with its own attachment data
+        Random random = new Random(42);
+        List<SepamailPaymentActivationRequestDocument> documents = new ArrayList<>();
+        for (int i = 0; i < missiveCount; i++) {
+            byte[] content = new byte[ATTACHMENT_SIZE];
+            random.nextBytes(content);
+
+            SemHURADocument attachment;
+            if (store == null) {
+                attachment = new SemHURADocument(content, Calendar.getInstance(), "invoice.pdf", "fr",
+                        "application/pdf", "REF-001", "Invoice", DocumentType.INVOICE);
+            } else {
+                attachment = new SemHURADocument(store.put(content), Calendar.getInstance(), "invoice.pdf", "fr",
+                        "application/pdf", "REF-001", "Invoice", DocumentType.INVOICE);
+            }
+
+            SepamailPaymentActivationRequestDocument document = TestUtils.createPaymentActivationRequestDocument(1,
+                    1, null);
+            document.addHURADocument(attachment);
+            documents.add(document);
+        }
+
+        // Heap retained by the missives
+        long retained = usedHeap() - before;
+
+        // Serialize the missives
+        long start = System.nanoTime();
+        for (SepamailPaymentActivationRequestDocument document : documents) {
+            document.writeTo(new NullOutputStream());
+        }
+
+        return new long[] {retained, System.nanoTime() - start};
+    }
+
+    /**
+     * Print the result of a run
+     *
+     * @param name Name of the way attachments are held
+     * @param result Retained heap in bytes and serialization time in nanoseconds
+     */
+    private static void print(String name, long[] result) {
+
+        System.out.println(String.format("%10d %16s %14.1f %16.1f", MISSIVE_COUNT, name, result[0] / 1048576.0,
+                result[1] / 1e6));
+    }
+
+    /**
+     * Get the heap used after garbage collection
+     *
+     * @return Number of bytes used on the heap
+     * @throws InterruptedException
+     */
+    private static long usedHeap() throws InterruptedException {
+
+        // Runtime of the benchmark
+        Runtime runtime = Runtime.getRuntime();
+
+        // Collect garbage until the used heap is stable
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(50);
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current == used) {
+                break;
+            }
+            used = current;
+        }
+
+        return used;
+    }
+}
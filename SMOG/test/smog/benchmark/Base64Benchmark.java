@@ -0,0 +1,178 @@
+package smog.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.commons.codec.binary.Base64;
+import smog.io.Base64Encoder;
+import smog.io.ParallelBase64Encoder;
+
+/**
+ * Base64Benchmark measures the throughput of the Base64 encoding of a large attachment with the commons codec encoder
+ * used for content held in the XML Beans tree, the single-threaded chunked encoder used for attachment references and
+ * the parallel encoder, into a string, into a writer and between memory-mapped files.
+ *
+ * Run with: java -Xmx2g -cp build/classes:build/test/classes:lib/* smog.benchmark.Base64Benchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class Base64Benchmark {
+
+    // Size of the attachment
+    private static final int ATTACHMENT_SIZE = 100 * 1024 * 1024;
+
+    // Number of measured runs of each encoder, of which the fastest is reported
+    private static final int RUN_COUNT = 5;
+
+    // Writer discarding the encoded content
+    private static final Writer NULL_WRITER = new Writer() {
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Attachment content, in memory and in a file
+        final byte[] content = new byte[ATTACHMENT_SIZE];
+        new Random(42).nextBytes(content);
+        final File input = File.createTempFile("base64-benchmark", ".pdf");
+        final File output = File.createTempFile("base64-benchmark", ".b64");
+        Files.write(input.toPath(), content);
+
+        final ForkJoinPool pool = new ForkJoinPool();
+        final ParallelBase64Encoder encoder = new ParallelBase64Encoder(pool);
+
+        try {
+
+            System.out.println(String.format("Attachment of %d MB, pool parallelism %d", ATTACHMENT_SIZE >> 20,
+                    pool.getParallelism()));
+            System.out.println(String.format("%-28s %10s %10s", "Encoder", "Best ms", "MB/s"));
+
+            print("commons codec string", measure(new Encoding() {
+
+                @Override
+                public void run() {
+                    Base64.encodeBase64String(content);
+                }
+            }));
+            print("chunked stream", measure(new Encoding() {
+
+                @Override
+                public void run() throws Exception {
+                    try (InputStream is = Files.newInputStream(input.toPath())) {
+                        Base64Encoder.encode(is, NULL_WRITER);
+                    }
+                }
+            }));
+            print("chunked stream in memory", measure(new Encoding() {
+
+                @Override
+                public void run() throws Exception {
+                    Base64Encoder.encode(new ByteArrayInputStream(content), NULL_WRITER);
+                }
+            }));
+            print("parallel string", measure(new Encoding() {
+
+                @Override
+                public void run() {
+                    encoder.encodeToString(content);
+                }
+            }));
+            print("parallel stream", measure(new Encoding() {
+
+                @Override
+                public void run() throws Exception {
+                    try (InputStream is = Files.newInputStream(input.toPath())) {
+                        encoder.encode(is, NULL_WRITER);
+                    }
+                }
+            }));
+            print("parallel stream in memory", measure(new Encoding() {
+
+                @Override
+                public void run() throws Exception {
+                    encoder.encode(new ByteArrayInputStream(content), NULL_WRITER);
+                }
+            }));
+            print("parallel mapped files", measure(new Encoding() {
+
+                @Override
+                public void run() throws Exception {
+                    encoder.encode(input.toPath(), output.toPath());
+                }
+            }));
+
+        } finally {
+            pool.shutdown();
+            input.delete();
+            output.delete();
+        }
+    }
+
+    /**
+     * Measure the fastest of several runs of an encoding, after a warm up run
+     *
+     * @param encoding Encoding that needs to be measured
+     * @return Elapsed time of the fastest run in nanoseconds
+     * @throws Exception
+     */
+    private static long measure(Encoding encoding) throws Exception {
+
+        // Warm up
+        encoding.run();
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUN_COUNT; i++) {
+            long start = System.nanoTime();
+            encoding.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best;
+    }
+
+    /**
+     * Print the result of an encoder
+     *
+     * @param name Name of the encoder
+     * @param elapsed Elapsed time in nanoseconds
+     */
+    private static void print(String name, long elapsed) {
+
+        System.out.println(String.format("%-28s %10.1f %10.1f", name, elapsed / 1e6, ATTACHMENT_SIZE / 1048576.0 /
+                (elapsed / 1e9)));
+    }
+
+    /**
+     * Encoding encodes the attachment once
+     */
+    private interface Encoding {
+
+        /**
+         * Encode the attachment
+         *
+         * @throws Exception
+         */
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,148 @@
+package smog.benchmark;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Calendar;
+import smog.missive.SepamailPaymentActivationRequestDocument;
+import smog.missive.TestUtils;
+import smog.missive.structure.SemHURADocument;
+import smog.missive.structure.SemRequestAndComplements;
+import smog.schema.sem.BICorIBAN;
+import smog.schema.sem.MissiveType;
+import smog.schema.sem.PriorityCode;
+import smog.schema.sem.ReceiverIdentifier;
+
+/**
+ * ConstructionBenchmark compares the construction of creditor payment activation requests through individual setters
+ * with their construction inside a batch of modifications and through the bulk constructor.
+ *
+ * Run with: java -cp build/classes:build/test/classes:lib/* smog.benchmark.ConstructionBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class ConstructionBenchmark {
+
+    // Number of constructions used to warm up the JVM and to measure
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int MEASURED_ITERATIONS = 3;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+
+        System.out.println(String.format("%10s %14s %14s %14s", "Requests", "ms/setters", "ms/batch", "ms/bulk"));
+
+        // Measure increasing document sizes
+        for (int requestCount : new int[] {10, 100, 500, 1000}) {
+
+            // Requests added to the documents
+            ArrayList<SemRequestAndComplements> requests = new ArrayList<>();
+            for (int i = 0; i < requestCount; i++) {
+                requests.add(TestUtils.createRequestAndComplements("MSG" + i, 2));
+            }
+
+            // Warm up
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                construct(requests, false);
+                construct(requests, true);
+                constructBulk(requests);
+            }
+
+            // Measure the construction through individual setters
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                construct(requests, false);
+            }
+            double setterMillis = (System.nanoTime() - start) / 1000000.0 / MEASURED_ITERATIONS;
+
+            // Measure the construction inside a batch of modifications
+            start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                construct(requests, true);
+            }
+            double batchMillis = (System.nanoTime() - start) / 1000000.0 / MEASURED_ITERATIONS;
+
+            // Measure the construction through the bulk constructor
+            start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                constructBulk(requests);
+            }
+            double bulkMillis = (System.nanoTime() - start) / 1000000.0 / MEASURED_ITERATIONS;
+
+            System.out.println(String.format("%10d %14.2f %14.2f %14.2f", requestCount, setterMillis, batchMillis,
+                    bulkMillis));
+        }
+    }
+
+    /**
+     * Construct a creditor payment activation request field by field
+     *
+     * @param requests Requests and complements added to the document
+     * @param batch Whether the modifications are made inside a batch
+     * @return Creditor payment activation request
+     */
+    private static SepamailPaymentActivationRequestDocument construct(ArrayList<SemRequestAndComplements> requests,
+            boolean batch) {
+
+        // Initialise the missive recipient
+        ReceiverIdentifier recipient = ReceiverIdentifier.Factory.newInstance();
+        recipient.setIBAN("QX51TESTBLEUXIG52I8X2445SGSUWESM");
+
+        // Initialise the missive sender
+        BICorIBAN sender = BICorIBAN.Factory.newInstance();
+        sender.setIBAN("QX58TESTORANGEX8KH8P5TCYAGM22M38NQ");
+
+        // Creditor payment activation request document
+        SepamailPaymentActivationRequestDocument document = new SepamailPaymentActivationRequestDocument(recipient,
+                sender, Calendar.getInstance(), null, Calendar.getInstance());
+
+        // Start the batch of modifications
+        if (batch) {
+            document.beginEdit();
+        }
+
+        // Fill the document
+        document.setMessageId("MESSAGEID");
+        document.setMissiveId("MISSIVEID");
+        document.setMissiveOrder(BigInteger.TEN);
+        document.setMissivePriority(PriorityCode.HIGH);
+        document.setMessageExpiry(Calendar.getInstance());
+        document.setSendDateTime(Calendar.getInstance());
+        for (SemRequestAndComplements request : requests) {
+            document.addRequestAndComplements(request);
+        }
+
+        // Assemble the document
+        if (batch) {
+            document.commit();
+        }
+
+        return document;
+    }
+
+    /**
+     * Construct a creditor payment activation request from all its requests at once
+     *
+     * @param requests Requests and complements added to the document
+     * @return Creditor payment activation request
+     */
+    private static SepamailPaymentActivationRequestDocument constructBulk(
+            ArrayList<SemRequestAndComplements> requests) {
+
+        // Initialise the missive recipient
+        ReceiverIdentifier recipient = ReceiverIdentifier.Factory.newInstance();
+        recipient.setIBAN("QX51TESTBLEUXIG52I8X2445SGSUWESM");
+
+        // Initialise the missive sender
+        BICorIBAN sender = BICorIBAN.Factory.newInstance();
+        sender.setIBAN("QX58TESTORANGEX8KH8P5TCYAGM22M38NQ");
+
+        // Creditor payment activation request document holding the requests
+        return new SepamailPaymentActivationRequestDocument("MISSIVEID", BigInteger.TEN, PriorityCode.HIGH, MissiveType.NOMINAL,
+                recipient, sender, Calendar.getInstance(), "MESSAGEID", Calendar.getInstance(),
+                Calendar.getInstance(), requests, new ArrayList<SemHURADocument>());
+    }
+}
@@ -0,0 +1,73 @@
+package smog.benchmark;
+
+import java.io.ByteArrayInputStream;
+import smog.io.SerializationMode;
+import smog.missive.DocumentBase;
+import smog.missive.MissiveHeaderReader;
+import smog.missive.TestUtils;
+
+/**
+ * HeaderReaderBenchmark compares the reading of the routing fields of a missive by MissiveHeaderReader with the parsing
+ * of the whole missive, as the size of the message body grows.
+ *
+ * Run with: java -Xmx2g -cp build/classes:build/test/classes:lib/* smog.benchmark.HeaderReaderBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class HeaderReaderBenchmark {
+
+    // Minimum duration of each measure
+    private static final long MEASURE_NANOS = 2000000000L;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Reader of the routing fields
+        MissiveHeaderReader missiveHeaderReader = new MissiveHeaderReader();
+
+        System.out.println(String.format("%10s %14s %12s %12s %12s", "Requests", "Attachment KB", "KB", "us/header",
+                "us/parse"));
+
+        // Measure increasing message bodies
+        for (int[] size : new int[][] {{1, 1}, {100, 64}, {1000, 1024}, {1000, 16384}}) {
+
+            // Missive holding the requests and the attachment
+            byte[] content = TestUtils.createPaymentActivationRequestDocument(size[0], 5, new byte[size[1] * 1024])
+                    .toByteArray(SerializationMode.COMPACT);
+
+            // Warm up the reader
+            for (int i = 0; i < 1000; i++) {
+                missiveHeaderReader.read(new ByteArrayInputStream(content));
+            }
+
+            // Measure the reading of the routing fields
+            int count = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                missiveHeaderReader.read(new ByteArrayInputStream(content));
+                count++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < MEASURE_NANOS);
+            double headerMicros = elapsed / 1000.0 / count;
+
+            // Measure the parsing of the whole missive
+            count = 0;
+            start = System.nanoTime();
+            do {
+                DocumentBase.parse(new ByteArrayInputStream(content));
+                count++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < MEASURE_NANOS);
+            double parseMicros = elapsed / 1000.0 / count;
+
+            System.out.println(String.format("%10d %14d %12.1f %12.2f %12.2f", size[0], size[1],
+                    content.length / 1024.0, headerMicros, parseMicros));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package smog.benchmark;
+
+import java.util.Calendar;
+import smog.missive.SepamailPaymentActivationRequestDocument;
+import smog.missive.TestUtils;
+
+/**
+ * HeaderUpdateBenchmark measures the time needed to change the message expiry of a creditor payment activation request
+ * as the number of requests grows.
+ *
+ * Run with: java -Xmx2g -cp build/classes:build/test/classes:lib/* smog.benchmark.HeaderUpdateBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class HeaderUpdateBenchmark {
+
+    // Number of header changes measured for each document
+    private static final int UPDATE_COUNT = 1000;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Warm up
+        update(TestUtils.createPaymentActivationRequestDocument(100, 1, null));
+
+        System.out.println(String.format("%10s %14s", "Requests", "us/update"));
+
+        // Measure increasing document sizes
+        for (int requestCount : new int[] {10, 100, 1000, 10000}) {
+
+            // Document holding the requests
+            SepamailPaymentActivationRequestDocument document =
+                    TestUtils.createPaymentActivationRequestDocument(requestCount, 1, null);
+
+            // Measure the header changes
+            long start = System.nanoTime();
+            update(document);
+            long nanos = System.nanoTime() - start;
+
+            System.out.println(String.format("%10d %14.2f", requestCount, nanos / 1000.0 / UPDATE_COUNT));
+        }
+    }
+
+    /**
+     * Change the message expiry of the given document repeatedly
+     *
+     * @param document Creditor payment activation request
+     */
+    private static void update(SepamailPaymentActivationRequestDocument document) {
+
+        // Message expiry set on the document
+        Calendar messageExpiry = Calendar.getInstance();
+
+        // Change the message expiry
+        for (int i = 0; i < UPDATE_COUNT; i++) {
+            messageExpiry.add(Calendar.MINUTE, 1);
+            document.setMessageExpiry(messageExpiry);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package smog.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import smog.utils.MimeTypeDetector;
+
+/**
+ * MimeTypeBenchmark measures the time taken to determine the MIME type of attachment files with
+ * Files.probeContentType() and with MimeTypeDetector, the first time a file is seen and once it has been remembered.
+ *
+ * Run with: java -cp build/classes:build/test/classes:lib/* smog.benchmark.MimeTypeBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MimeTypeBenchmark {
+
+    // Number of files of each type
+    private static final int FILE_COUNT = 500;
+
+    // Number of times the MIME type of each file is determined
+    private static final int ROUNDS = 10;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Leading bytes of the attachment types
+        Random random = new Random(42);
+        byte[][] heads = {"%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII), {(byte) 0x89, 'P', 'N', 'G', '\r', '\n',
+            0x1a, '\n'}, {(byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xe0},
+            "<?xml version=\"1.0\"?>".getBytes(StandardCharsets.US_ASCII),
+            "Invoice 42\r\n".getBytes(StandardCharsets.US_ASCII)};
+        String[] extensions = {".pdf", ".png", ".jpg", ".xml", ".txt"};
+
+        // Attachment files of 64 KB
+        Path directory = Files.createTempDirectory("mime-type-benchmark");
+        List<Path> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < FILE_COUNT; i++) {
+                for (int type = 0; type < heads.length; type++) {
+                    byte[] content = new byte[64 * 1024];
+                    random.nextBytes(content);
+                    if (type >= 3) {
+                        for (int j = 0; j < content.length; j++) {
+                            content[j] = (byte) ('a' + (content[j] & 0x0f));
+                        }
+                    }
+                    System.arraycopy(heads[type], 0, content, 0, heads[type].length);
+                    Path file = directory.resolve("attachment" + i + extensions[type]);
+                    Files.write(file, content);
+                    files.add(file);
+                }
+            }
+
+            System.out.println(String.format("%-28s %12s %10s", "Detection", "us/file", "Unknown"));
+
+            // Platform detection
+            long start = System.nanoTime();
+            int unknown = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                for (Path file : files) {
+                    if (Files.probeContentType(file) == null) {
+                        unknown++;
+                    }
+                }
+            }
+            print("Files.probeContentType", System.nanoTime() - start, files.size() * ROUNDS, unknown);
+
+            // Magic bytes, each file being read the first time only
+            start = System.nanoTime();
+            for (Path file : files) {
+                MimeTypeDetector.detect(file);
+            }
+            print("MimeTypeDetector first", System.nanoTime() - start, files.size(), 0);
+            start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                for (Path file : files) {
+                    MimeTypeDetector.detect(file);
+                }
+            }
+            print("MimeTypeDetector remembered", System.nanoTime() - start, files.size() * ROUNDS, 0);
+
+        } finally {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Print the result of a detection
+     *
+     * @param name Name of the detection
+     * @param elapsed Elapsed time in nanoseconds
+     * @param count Number of detections
+     * @param unknown Number of files whose MIME type was not found
+     */
+    private static void print(String name, long elapsed, int count, int unknown) {
+
+        System.out.println(String.format("%-28s %12.2f %10d", name, elapsed / 1e3 / count, unknown));
+    }
+}
@@ -0,0 +1,133 @@
+package smog.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import smog.io.SerializationMode;
+import smog.missive.DocumentBase;
+import smog.missive.MissiveFileReader;
+import smog.missive.MissiveRoutingHeader;
+import smog.missive.TestUtils;
+
+/**
+ * MissiveFileBenchmark generates a missive file of several gigabytes and reads it with MissiveFileReader, once as
+ * routing headers and once as documents, showing the throughput of each mode and the heap used while reading.
+ *
+ * The size of the file in megabytes may be given as first argument and defaults to 2048. The file is written to the
+ * temporary directory and deleted at the end of the benchmark.
+ *
+ * Run with: java -Xmx256m -cp build/classes:build/test/classes:lib/* smog.benchmark.MissiveFileBenchmark [size MB]
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveFileBenchmark {
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Size of the generated file
+        long fileSize = (args.length > 0 ? Long.parseLong(args[0]) : 2048) * 1024 * 1024;
+
+        // Missive written repeatedly to the file, renamed after the missives of files
+        String missive = TestUtils.createPaymentActivationRequestDocument(100, 5, new byte[64 * 1024])
+                .toString(SerializationMode.COMPACT).replaceFirst("^<\\?xml[^>]*\\?>\\s*", "")
+                .replaceFirst("^<sem:Missive", "<sem:Msv").replaceFirst("</sem:Missive>\\s*$", "</sem:Msv>");
+        byte[] missiveBytes = missive.getBytes(StandardCharsets.UTF_8);
+        long missiveCount = fileSize / missiveBytes.length;
+
+        File file = File.createTempFile("missive-file-benchmark", ".xml");
+        try {
+
+            // Generate the file
+            long start = System.nanoTime();
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(file.toPath()), 65536)) {
+                os.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?><sem:Fichier xmlns:sem=\"http://xsd.sepamail.eu"
+                        + "/1206/\"><sem:DatTim>2013-05-23T10:34:00</sem:DatTim><sem:Partner><sem:Sender>TESTBICXXXX"
+                        + "</sem:Sender></sem:Partner><sem:NbMsv>" + missiveCount + "</sem:NbMsv>")
+                        .getBytes(StandardCharsets.UTF_8));
+                for (long i = 0; i < missiveCount; i++) {
+                    os.write(missiveBytes);
+                }
+                os.write("</sem:Fichier>".getBytes(StandardCharsets.UTF_8));
+            }
+            System.out.println(String.format("Generated %d missives of %.1f KB, %.1f MB in %.1f s", missiveCount,
+                    missiveBytes.length / 1024.0, file.length() / 1048576.0, (System.nanoTime() - start) / 1e9));
+
+            System.out.println(String.format("%-10s %12s %10s %12s %10s %14s", "Mode", "Missives", "s",
+                    "missives/s", "MB/s", "Max heap MB"));
+
+            // Read the routing headers, skipping the message bodies
+            long maxUsed = 0;
+            int count = 0;
+            start = System.nanoTime();
+            try (MissiveFileReader reader = new MissiveFileReader(FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ))) {
+                for (Iterator<MissiveRoutingHeader> headers = reader.headers(); headers.hasNext();) {
+                    headers.next();
+                    maxUsed = Math.max(maxUsed, usedHeap(++count));
+                }
+            }
+            print("headers", count, System.nanoTime() - start, file.length(), maxUsed);
+
+            // Read the documents
+            maxUsed = 0;
+            count = 0;
+            start = System.nanoTime();
+            try (MissiveFileReader reader = new MissiveFileReader(FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ))) {
+                for (Iterator<DocumentBase> documents = reader.documents(); documents.hasNext();) {
+                    documents.next();
+                    maxUsed = Math.max(maxUsed, usedHeap(++count));
+                }
+            }
+            print("documents", count, System.nanoTime() - start, file.length(), maxUsed);
+
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Sample the heap used after a garbage collection every 1000 missives
+     *
+     * @param count Number of missives read
+     * @return Used heap in bytes, or 0 when no sample is taken
+     */
+    private static long usedHeap(int count) {
+
+        // Collecting for each missive would dominate the measure
+        if (count % 1000 != 0) {
+            return 0;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Print the results of a mode
+     *
+     * @param mode Reading mode
+     * @param count Number of missives read
+     * @param elapsed Time taken in nanoseconds
+     * @param length Length of the file in bytes
+     * @param maxUsed Maximum used heap in bytes
+     */
+    private static void print(String mode, int count, long elapsed, long length, long maxUsed) {
+
+        // Results of the mode
+        double seconds = elapsed / 1e9;
+        System.out.println(String.format("%-10s %12d %10.1f %12.0f %10.1f %14.1f", mode, count, seconds,
+                count / seconds, length / 1048576.0 / seconds, maxUsed / 1048576.0));
+    }
+}
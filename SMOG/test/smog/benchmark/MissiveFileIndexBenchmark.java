@@ -0,0 +1,125 @@
+package smog.benchmark;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import smog.missive.MissiveFileIndex;
+import smog.missive.MissiveFileReader;
+import smog.missive.MissiveFileWriter;
+import smog.missive.MissiveIndexEntry;
+import smog.missive.SepamailPaymentActivationRequestDocument;
+import smog.missive.TestUtils;
+import smog.schema.sem.SenderOrReceiver;
+
+/**
+ * MissiveFileIndexBenchmark generates a missive file of several gigabytes, indexes it with MissiveFileIndex and looks
+ * up missives at random through the index, next to the look up of a missive by reading the file up to it.
+ *
+ * The size of the file in megabytes may be given as first argument and defaults to 2048. The files are written to the
+ * temporary directory and deleted at the end of the benchmark.
+ *
+ * Run with: java -Xmx256m -cp build/classes:build/test/classes:lib/* smog.benchmark.MissiveFileIndexBenchmark [size MB]
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveFileIndexBenchmark {
+
+    // Number of random look ups
+    private static final int LOOKUPS = 1000;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Size of the generated file
+        long fileSize = (args.length > 0 ? Long.parseLong(args[0]) : 2048) * 1024 * 1024;
+
+        // Missive written for each entry of the file
+        SepamailPaymentActivationRequestDocument document = TestUtils.createPaymentActivationRequestDocument(20, 5,
+                new byte[32 * 1024]);
+
+        // Partner of the file
+        SenderOrReceiver partner = SenderOrReceiver.Factory.newInstance();
+        partner.setSender("TESTBICXXXX");
+
+        File missiveFile = File.createTempFile("missive-file-index-benchmark", ".xml");
+        File indexFile = File.createTempFile("missive-file-index-benchmark", ".idx");
+        try {
+
+            // Generate the file, each missive and message having its own ID
+            long start = System.nanoTime();
+            int missiveCount = 0;
+            try (MissiveFileWriter writer = new MissiveFileWriter(FileChannel.open(missiveFile.toPath(),
+                    StandardOpenOption.WRITE), Calendar.getInstance(), partner)) {
+                while (missiveFile.length() < fileSize) {
+                    document.setMissiveId("MSV" + missiveCount);
+                    document.setMessageId("MSG" + missiveCount);
+                    writer.append(document);
+                    missiveCount++;
+                }
+            }
+            System.out.println(String.format("Generated %d missives, %.1f MB in %.1f s", missiveCount,
+                    missiveFile.length() / 1048576.0, (System.nanoTime() - start) / 1e9));
+
+            // Index the file
+            start = System.nanoTime();
+            MissiveFileIndex.create(missiveFile.toPath(), indexFile.toPath());
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("Indexed in %.1f s (%.1f MB/s), index of %.1f KB", seconds,
+                    missiveFile.length() / 1048576.0 / seconds, indexFile.length() / 1024.0));
+
+            // Open the index
+            start = System.nanoTime();
+            MissiveFileIndex index = MissiveFileIndex.open(missiveFile.toPath(), indexFile.toPath());
+            System.out.println(String.format("Opened in %.1f ms", (System.nanoTime() - start) / 1e6));
+
+            // Warm up the look ups
+            Random random = new Random(42);
+            List<MissiveIndexEntry> entries = index.getEntries();
+            for (int i = 0; i < LOOKUPS; i++) {
+                index.read(entries.get(random.nextInt(entries.size())));
+            }
+
+            System.out.println(String.format("%-24s %12s", "Look up", "ms/missive"));
+
+            // Read random missives through the index
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                index.read(index.findByMissiveId("MSV" + random.nextInt(missiveCount)));
+            }
+            System.out.println(String.format("%-24s %12.3f", "index read", (System.nanoTime() - start) / 1e6 /
+                    LOOKUPS));
+
+            // Read the routing headers of random missives through the index
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                index.readHeader(index.findByMessageId("MSG" + random.nextInt(missiveCount)));
+            }
+            System.out.println(String.format("%-24s %12.3f", "index readHeader", (System.nanoTime() - start) /
+                    1e6 / LOOKUPS));
+
+            // Find the missive in the middle of the file by reading the routing headers up to it
+            start = System.nanoTime();
+            String missiveId = "MSV" + (missiveCount / 2);
+            try (MissiveFileReader reader = new MissiveFileReader(FileChannel.open(missiveFile.toPath(),
+                    StandardOpenOption.READ))) {
+                while (!missiveId.equals(reader.nextHeader().getMissiveId())) {
+                    // Skip the missive
+                }
+                reader.next();
+            }
+            System.out.println(String.format("%-24s %12.3f", "sequential scan", (System.nanoTime() - start) / 1e6));
+
+        } finally {
+            missiveFile.delete();
+            indexFile.delete();
+        }
+    }
+}
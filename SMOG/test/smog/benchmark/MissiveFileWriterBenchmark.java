@@ -0,0 +1,125 @@
+package smog.benchmark;
+
+import java.io.File;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import smog.io.SerializationMode;
+import smog.missive.MissiveFileWriter;
+import smog.missive.SepamailPaymentActivationRequestDocument;
+import smog.missive.TestUtils;
+import smog.schema.sem.SenderOrReceiver;
+
+/**
+ * MissiveFileWriterBenchmark writes a batch of missives to a missive file with MissiveFileWriter, next to the writing
+ * of the same batch by concatenating the results of toString(), showing the throughput and the heap used by each.
+ *
+ * The number of missives may be given as first argument and defaults to 200000. Each missive is given its own missive
+ * ID before being written, so that its content is rendered again. The files are written to the temporary directory and
+ * deleted at the end of the benchmark.
+ *
+ * Run with: java -Xmx4g -cp build/classes:build/test/classes:lib/* smog.benchmark.MissiveFileWriterBenchmark [count]
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveFileWriterBenchmark {
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Number of missives of the batch
+        int missiveCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        // Missive written for each entry of the batch
+        SepamailPaymentActivationRequestDocument document = TestUtils.createPaymentActivationRequestDocument(1, 2,
+                new byte[256]);
+
+        // Partner of the file
+        SenderOrReceiver partner = SenderOrReceiver.Factory.newInstance();
+        partner.setSender("TESTBICXXXX");
+
+        System.out.println(String.format("%-14s %10s %10s %12s %10s %14s", "Writer", "Missives", "s", "missives/s",
+                "MB", "Max heap MB"));
+
+        File file = File.createTempFile("missive-file-writer-benchmark", ".xml");
+        try {
+
+            // Stream the missives to the file
+            long maxUsed = 0;
+            long start = System.nanoTime();
+            try (MissiveFileWriter writer = new MissiveFileWriter(FileChannel.open(file.toPath(),
+                    StandardOpenOption.WRITE), Calendar.getInstance(), partner)) {
+                for (int i = 0; i < missiveCount; i++) {
+                    document.setMissiveId("MSV" + i);
+                    writer.append(document);
+                    maxUsed = Math.max(maxUsed, usedHeap(i + 1));
+                }
+            }
+            print("streaming", missiveCount, System.nanoTime() - start, file.length(), maxUsed);
+
+            // Concatenate the missives before writing them to the file
+            maxUsed = 0;
+            start = System.nanoTime();
+            StringBuilder content = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><sem:Fichier "
+                    + "xmlns:sem=\"http://xsd.sepamail.eu/1206/\"><sem:DatTim>2013-05-23T10:34:00</sem:DatTim>"
+                    + "<sem:Partner><sem:Sender>TESTBICXXXX</sem:Sender></sem:Partner><sem:NbMsv>" + missiveCount
+                    + "</sem:NbMsv>");
+            for (int i = 0; i < missiveCount; i++) {
+                document.setMissiveId("MSV" + i);
+                content.append(document.toString(SerializationMode.COMPACT).replaceFirst("^<\\?xml[^>]*\\?>\\s*", "")
+                        .replaceFirst("^<sem:Missive", "<sem:Msv").replaceFirst("</sem:Missive>\\s*$", "</sem:Msv>"));
+                maxUsed = Math.max(maxUsed, usedHeap(i + 1));
+            }
+            content.append("</sem:Fichier>");
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                writer.append(content);
+            }
+            print("concatenation", missiveCount, System.nanoTime() - start, file.length(), maxUsed);
+
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Sample the heap used after a garbage collection every 20000 missives
+     *
+     * @param count Number of missives written
+     * @return Used heap in bytes, or 0 when no sample is taken
+     */
+    private static long usedHeap(int count) {
+
+        // Collecting for each missive would dominate the measure
+        if (count % 20000 != 0) {
+            return 0;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Print the results of a writer
+     *
+     * @param writer Name of the writer
+     * @param count Number of missives written
+     * @param elapsed Time taken in nanoseconds
+     * @param length Length of the file in bytes
+     * @param maxUsed Maximum used heap in bytes
+     */
+    private static void print(String writer, int count, long elapsed, long length, long maxUsed) {
+
+        // Results of the writer
+        double seconds = elapsed / 1e9;
+        System.out.println(String.format("%-14s %10d %10.1f %12.0f %10.1f %14.1f", writer, count, seconds,
+                count / seconds, length / 1048576.0, maxUsed / 1048576.0));
+    }
+}
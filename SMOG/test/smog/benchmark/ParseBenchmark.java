@@ -0,0 +1,107 @@
+package smog.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.Calendar;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import smog.io.SerializationMode;
+import smog.missive.DocumentBase;
+import smog.missive.SepamailGenericDocument;
+import smog.missive.SepamailTestRequestDocument;
+import smog.missive.TestUtils;
+import smog.schema.sem.BICorIBAN;
+import smog.schema.sem.MissiveDocument;
+import smog.schema.sem.ReceiverIdentifier;
+
+/**
+ * ParseBenchmark measures the throughput of DocumentBase.parse() for each message type, next to the parsing of the
+ * same missives by XML Beans alone, which shows the cost of binding the document classes and their structure objects
+ * to the parsed missive.
+ *
+ * Run with: java -Xmx2g -cp build/classes:build/test/classes:lib/* smog.benchmark.ParseBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class ParseBenchmark {
+
+    // Minimum duration of each measure
+    private static final long MEASURE_NANOS = 2000000000L;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Initialise the missive recipient
+        ReceiverIdentifier recipient = ReceiverIdentifier.Factory.newInstance();
+        recipient.setIBAN("QX51TESTBLEUXIG52I8X2445SGSUWESM");
+
+        // Initialise the missive sender
+        BICorIBAN sender = BICorIBAN.Factory.newInstance();
+        sender.setIBAN("QX58TESTORANGEX8KH8P5TCYAGM22M38NQ");
+
+        System.out.println(String.format("%-40s %10s %12s %12s %12s %12s", "Message type", "KB", "ms/xml", "ms/parse",
+                "parses/s", "MB/s"));
+
+        // simple.request@test missive
+        measure("simple.request@test", new SepamailTestRequestDocument(recipient, sender, Calendar.getInstance(),
+                "9B4895CC137", null, "simple.request@test benchmark", null).toByteArray(SerializationMode.COMPACT));
+
+        // Missive of a custom message type
+        XmlObject message = XmlObject.Factory.parse("<sem:SimpleTestRequest xmlns:sem=\"http://xsd.sepamail.eu/1206/\">"
+                + "<sem:TestId>9B4895CC137</sem:TestId><sem:Text>Test text</sem:Text></sem:SimpleTestRequest>");
+        measure("custom.message@benchmark", new SepamailGenericDocument(recipient, sender, Calendar.getInstance(),
+                "custom.message@benchmark", null, message).toByteArray(SerializationMode.COMPACT));
+
+        // activation.request@payment.activation missives of increasing sizes
+        for (int requestCount : new int[] {1, 10, 100, 1000}) {
+            measure("activation.request@payment.activation x" + requestCount,
+                    TestUtils.createPaymentActivationRequestDocument(requestCount, 5, new byte[1024])
+                    .toByteArray(SerializationMode.COMPACT));
+        }
+    }
+
+    /**
+     * Measure the parsing of a missive and print the results
+     *
+     * @param label Label of the missive
+     * @param content XML content of the missive
+     * @throws Exception
+     */
+    private static void measure(String label, byte[] content) throws Exception {
+
+        // Warm up both parsers
+        XmlOptions options = new XmlOptions().setUseCDataBookmarks();
+        for (int i = 0; i < 20; i++) {
+            MissiveDocument.Factory.parse(new ByteArrayInputStream(content), options);
+            DocumentBase.parse(new ByteArrayInputStream(content));
+        }
+
+        // Measure the parsing by XML Beans alone
+        int count = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            MissiveDocument.Factory.parse(new ByteArrayInputStream(content), options);
+            count++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+        double xmlMillis = elapsed / 1000000.0 / count;
+
+        // Measure the parsing into the document classes
+        count = 0;
+        start = System.nanoTime();
+        do {
+            DocumentBase.parse(new ByteArrayInputStream(content));
+            count++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+        double parseMillis = elapsed / 1000000.0 / count;
+
+        System.out.println(String.format("%-40s %10.1f %12.3f %12.3f %12.0f %12.2f", label, content.length / 1024.0,
+                xmlMillis, parseMillis, 1000.0 / parseMillis, content.length / 1048.576 / parseMillis));
+    }
+}
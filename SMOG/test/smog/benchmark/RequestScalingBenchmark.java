@@ -0,0 +1,86 @@
+package smog.benchmark;
+
+import java.math.BigInteger;
+import smog.missive.SepamailPaymentActivationRequestDocument;
+import smog.missive.TestUtils;
+import smog.missive.structure.SemRequestAndComplements;
+
+/**
+ * RequestScalingBenchmark measures the time needed to add and remove requests and complements to a creditor payment
+ * activation request as the number of requests grows.
+ *
+ * Run with: java -Xmx2g -cp build/classes:build/test/classes:lib/* smog.benchmark.RequestScalingBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class RequestScalingBenchmark {
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Request added to the documents
+        SemRequestAndComplements request = TestUtils.createRequestAndComplements("MSG", 1);
+
+        // Warm up
+        for (int i = 0; i < 5; i++) {
+            fill(request, 2000);
+        }
+
+        System.out.println(String.format("%10s %12s %14s %12s %14s", "Requests", "ms/add", "ns/request", "ms/remove",
+                "ns/request"));
+
+        // Measure increasing document sizes
+        for (int requestCount : new int[] {10, 100, 1000, 10000, 100000}) {
+
+            // Measure the additions
+            long start = System.nanoTime();
+            SepamailPaymentActivationRequestDocument document = fill(request, requestCount);
+            long addNanos = System.nanoTime() - start;
+
+            // Check the number of requests
+            BigInteger numberOfRequests = BigInteger.valueOf(requestCount);
+            if (!document.getSemRequestAndComplements().isEmpty() && !numberOfRequests.equals(
+                    BigInteger.valueOf(document.getSemRequestAndComplements().size()))) {
+                throw new IllegalStateException("Unexpected number of requests");
+            }
+
+            // Measure the removals from the end of the document
+            start = System.nanoTime();
+            for (int i = requestCount - 1; i > -1; i--) {
+                document.removeSemRequestAndComplements(i);
+            }
+            long removeNanos = System.nanoTime() - start;
+
+            System.out.println(String.format("%10d %12.2f %14d %12.2f %14d", requestCount, addNanos / 1000000.0,
+                    addNanos / requestCount, removeNanos / 1000000.0, removeNanos / requestCount));
+        }
+    }
+
+    /**
+     * Create a creditor payment activation request holding the given number of requests
+     *
+     * @param request Request and complements added to the document
+     * @param requestCount Number of requests to add
+     * @return Creditor payment activation request
+     * @throws Exception
+     */
+    private static SepamailPaymentActivationRequestDocument fill(SemRequestAndComplements request, int requestCount)
+            throws Exception {
+
+        // Empty creditor payment activation request document
+        SepamailPaymentActivationRequestDocument document = TestUtils.createPaymentActivationRequestDocument(0, 0,
+                null);
+
+        // Add the requests
+        for (int i = 0; i < requestCount; i++) {
+            document.addRequestAndComplements(request);
+        }
+
+        return document;
+    }
+}
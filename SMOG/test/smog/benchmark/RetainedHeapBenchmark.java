@@ -0,0 +1,81 @@
+package smog.benchmark;
+
+import smog.missive.SepamailPaymentActivationRequestDocument;
+import smog.missive.TestUtils;
+
+/**
+ * RetainedHeapBenchmark measures the heap retained by a creditor payment activation request holding 10000 credit
+ * transfer transactions, together with the structure objects from which it was built.
+ *
+ * Run with: java -Xmx2g -cp build/classes:build/test/classes:lib/* smog.benchmark.RetainedHeapBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class RetainedHeapBenchmark {
+
+    // Total number of credit transfer transactions held by each document
+    private static final int TRANSACTION_COUNT = 10000;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Warm up
+        TestUtils.createPaymentActivationRequestDocument(1, 1000, null).toString();
+
+        System.out.println(String.format("%10s %14s %14s %14s", "Requests", "Transactions", "KiB/document",
+                "B/transaction"));
+
+        // Measure the same number of transactions spread over an increasing number of requests
+        for (int requestCount : new int[] {1, 10, 100}) {
+
+            // Heap used before the document is created
+            long before = usedHeap();
+
+            // Create the document
+            SepamailPaymentActivationRequestDocument document = TestUtils.createPaymentActivationRequestDocument(
+                    requestCount, TRANSACTION_COUNT / requestCount, null);
+
+            // Heap retained by the document
+            long retained = usedHeap() - before;
+
+            // Keep the document reachable until the heap has been measured
+            if (document.getSemRequestAndComplements().size() != requestCount) {
+                throw new IllegalStateException("Unexpected number of requests");
+            }
+
+            System.out.println(String.format("%10d %14d %14d %14d", requestCount, TRANSACTION_COUNT, retained / 1024,
+                    retained / TRANSACTION_COUNT));
+        }
+    }
+
+    /**
+     * Get the heap used after garbage collection
+     *
+     * @return Number of bytes used on the heap
+     * @throws InterruptedException
+     */
+    private static long usedHeap() throws InterruptedException {
+
+        // Runtime of the benchmark
+        Runtime runtime = Runtime.getRuntime();
+
+        // Collect garbage until the used heap is stable
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(50);
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current == used) {
+                break;
+            }
+            used = current;
+        }
+
+        return used;
+    }
+}
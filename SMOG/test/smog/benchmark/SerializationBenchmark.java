@@ -0,0 +1,131 @@
+package smog.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import org.apache.xmlbeans.XmlObject;
+import smog.io.SerializationMode;
+import smog.missive.DocumentBase;
+import smog.missive.SepamailGenericDocument;
+import smog.missive.SepamailTestRequestDocument;
+import smog.missive.TestUtils;
+import smog.schema.sem.BICorIBAN;
+import smog.schema.sem.ReceiverIdentifier;
+
+/**
+ * SerializationBenchmark measures the size and the serialization time of missive documents in the pretty and compact
+ * layouts, with and without the rendered content kept by the document.
+ *
+ * Run with: java -cp build/classes:build/test/classes:lib/* smog.benchmark.SerializationBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class SerializationBenchmark {
+
+    // Number of serializations used to warm up the JVM and to measure
+    private static final int WARMUP_ITERATIONS = 2000;
+    private static final int MEASURED_ITERATIONS = 5000;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Initialise the missive recipient
+        ReceiverIdentifier recipient = ReceiverIdentifier.Factory.newInstance();
+        recipient.setIBAN("QX51TESTBLEUXIG52I8X2445SGSUWESM");
+
+        // Initialise the missive sender
+        BICorIBAN sender = BICorIBAN.Factory.newInstance();
+        sender.setIBAN("QX58TESTORANGEX8KH8P5TCYAGM22M38NQ");
+
+        // Data file of the simple.request@test message
+        File dataFile = File.createTempFile("smog-benchmark", ".bin");
+        dataFile.deleteOnExit();
+        TestUtils.createDataFileFromEncodedString(dataFile.getPath(), "iVBORw0KGgoAAAANSUhEUgAAAAoAAAAKCAYAAACNMs+9AA" +
+                "AAAXNSR0IArs4c6QAAAAZiS0dEAP8A/wD/oL2nkwAAAAlwSFlzAAALEwAACxMBAJqcGAAAAAd0SU1FB90FHQYiBduya34AAAAZ" +
+                "dEVYdENvbW1lbnQAQ3JlYXRlZCB3aXRoIEdJTVBXgQ4XAAAADklEQVQY02NgGAWDEwAAAZoAAQuinR8AAAAASUVORK5CYII=");
+
+        // Documents being measured
+        DocumentBase testRequest = new SepamailTestRequestDocument(recipient, sender, Calendar.getInstance(),
+                "9B4895CC137", Calendar.getInstance(), "simple.request@test test text.", dataFile);
+        DocumentBase generic = new SepamailGenericDocument(recipient, sender, Calendar.getInstance(),
+                "simple.request@test", Calendar.getInstance(), XmlObject.Factory.parse(
+                "<sem:SimpleTestRequest xmlns:sem=\"http://xsd.sepamail.eu/1206/\"><sem:TestId>9B4895CC137</sem:TestId>" +
+                "<sem:Text>Test text</sem:Text></sem:SimpleTestRequest>"));
+        DocumentBase paymentActivationRequest = TestUtils.createPaymentActivationRequestDocument(10, 10,
+                new byte[4096]);
+
+        System.out.println(String.format("%-40s %-8s %10s %12s %12s", "Document", "Mode", "Bytes", "us/missive",
+                "us/cached"));
+        measure("SepamailTestRequestDocument", testRequest);
+        measure("SepamailGenericDocument", generic);
+        measure("SepamailPaymentActivationRequestDocument", paymentActivationRequest);
+    }
+
+    /**
+     * Measure a document in both layouts
+     *
+     * @param name Name of the document
+     * @param document Document being measured
+     * @throws IOException
+     */
+    private static void measure(String name, DocumentBase document) throws IOException {
+
+        // Measure each layout
+        for (SerializationMode mode : SerializationMode.values()) {
+
+            // Warm up
+            int size = 0;
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                size = serialize(document, mode, false);
+                serialize(document, mode, true);
+            }
+
+            // Measure rendering
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                serialize(document, mode, false);
+            }
+            double micros = (System.nanoTime() - start) / 1000.0 / MEASURED_ITERATIONS;
+
+            // Measure writing the rendered content
+            start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                serialize(document, mode, true);
+            }
+            double cachedMicros = (System.nanoTime() - start) / 1000.0 / MEASURED_ITERATIONS;
+
+            System.out.println(String.format("%-40s %-8s %10d %12.1f %12.1f", name, mode, size, micros,
+                    cachedMicros));
+        }
+    }
+
+    /**
+     * Serialize a document
+     *
+     * @param document Document being serialized
+     * @param mode Layout of the serialized content
+     * @param cached Whether the content rendered by a previous call may be reused
+     * @return Number of bytes written
+     * @throws IOException
+     */
+    private static int serialize(DocumentBase document, SerializationMode mode, boolean cached)
+            throws IOException {
+
+        // Accessing the XML object discards the rendered content
+        if (!cached) {
+            document.getMissiveXmlObject();
+        }
+
+        // Write the document to memory
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        document.writeTo(output, mode);
+
+        return output.size();
+    }
+}
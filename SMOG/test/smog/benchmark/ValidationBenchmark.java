@@ -0,0 +1,93 @@
+package smog.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.xmlbeans.XmlObject;
+import smog.missive.SepamailPaymentActivationRequestDocument;
+import smog.missive.TestUtils;
+import smog.missive.structure.Pain013PaymentInformation;
+import smog.validation.ValidationErrorCollector;
+
+/**
+ * ValidationBenchmark compares the validation of a whole creditor payment activation request with its validation after
+ * a single request has been corrected, as the number of requests grows. The validation of all the requests one after
+ * the other is also compared with their validation on one thread per available processor.
+ *
+ * Run with: java -Xmx2g -cp build/classes:build/test/classes:lib/* smog.benchmark.ValidationBenchmark
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class ValidationBenchmark {
+
+    // Number of validations measured for each document
+    private static final int VALIDATION_COUNT = 20;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Command line arguments
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        // Executor validating the requests concurrently
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        System.out.println(threadCount + " thread(s)");
+        System.out.println(String.format("%10s %14s %14s %14s %14s", "Requests", "ms/whole", "ms/edit", "ms/sequential",
+                "ms/parallel"));
+
+        // Measure increasing document sizes
+        for (int requestCount : new int[] {10, 100, 1000, 5000}) {
+
+            // Document holding the requests
+            SepamailPaymentActivationRequestDocument document =
+                    TestUtils.createPaymentActivationRequestDocument(requestCount, 5, new byte[1024]);
+            XmlObject missive = document.getMissiveXmlObject();
+
+            // Measure the validation of the whole document
+            long start = System.nanoTime();
+            for (int i = 0; i < VALIDATION_COUNT; i++) {
+                new ValidationErrorCollector(false).validate(missive);
+            }
+            double wholeMillis = (System.nanoTime() - start) / 1000000.0 / VALIDATION_COUNT;
+
+            // Payment information corrected between two validations
+            Pain013PaymentInformation paymentInformation =
+                    document.getSemRequestAndComplementsAtIndex(requestCount / 2).getPaymentInformationAtIndex(0);
+            document.getValidationResult();
+
+            // Measure the validation after a correction
+            start = System.nanoTime();
+            for (int i = 0; i < VALIDATION_COUNT; i++) {
+                paymentInformation.setId("PI" + i);
+                document.getValidationResult();
+            }
+            double editMillis = (System.nanoTime() - start) / 1000000.0 / VALIDATION_COUNT;
+
+            // Measure the validation of all the requests one after the other, getting the missive document to discard
+            // the results kept by the requests
+            start = System.nanoTime();
+            for (int i = 0; i < VALIDATION_COUNT; i++) {
+                document.getMissiveXmlObject();
+                document.getValidationResult();
+            }
+            double sequentialMillis = (System.nanoTime() - start) / 1000000.0 / VALIDATION_COUNT;
+
+            // Measure the validation of all the requests on the executor
+            start = System.nanoTime();
+            for (int i = 0; i < VALIDATION_COUNT; i++) {
+                document.getMissiveXmlObject();
+                document.getValidationResult(false, executor);
+            }
+            double parallelMillis = (System.nanoTime() - start) / 1000000.0 / VALIDATION_COUNT;
+
+            System.out.println(String.format("%10d %14.2f %14.2f %14.2f %14.2f", requestCount, wholeMillis, editMillis,
+                    sequentialMillis, parallelMillis));
+        }
+
+        // Stop the executor
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,224 @@
+package smog.io;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.codec.binary.Base64;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * AttachmentCacheTest tests the cache of encoded attachments {@link AttachmentCache}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class AttachmentCacheTest {
+
+    private final List<File> files = new ArrayList<>();
+
+    /**
+     * Delete the files written by the test and unset the shared cache
+     */
+    @After
+    public void tearDown() {
+
+        for (File file : this.files) {
+            file.delete();
+        }
+        AttachmentCache.setSharedCache(null);
+    }
+
+    /**
+     * Test of writeEncoded method, of class AttachmentCache.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteEncoded() throws Exception {
+
+        AttachmentCache cache = new AttachmentCache(1024 * 1024);
+        byte[] content = this.randomContent(1000, 1);
+        AttachmentReference first = new AttachmentReference(this.createFile(content).toPath());
+        AttachmentReference copy = new AttachmentReference(this.createFile(content).toPath());
+
+        // The first reference is hashed and encoded
+        assertEquals(Base64.encodeBase64String(content), encode(cache, first));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // The same reference and a reference to identical content use the cached encoding
+        assertEquals(Base64.encodeBase64String(content), encode(cache, first));
+        assertEquals(Base64.encodeBase64String(content), encode(cache, copy));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(Base64.encodeBase64String(content).length(), cache.getSize());
+
+        // A modified file is hashed and encoded again
+        byte[] modified = this.randomContent(1000, 2);
+        Files.write(copy.getPath(), modified);
+        Files.setLastModifiedTime(copy.getPath(), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        assertEquals(Base64.encodeBase64String(modified), encode(cache, copy));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.getEntryCount());
+    }
+
+    /**
+     * Test of writeEncoded method for files rewritten with the same size and modification time, of class
+     * AttachmentCache.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteEncodedRewrittenFile() throws Exception {
+
+        AttachmentCache cache = new AttachmentCache(1024 * 1024);
+        byte[] content = this.randomContent(1000, 1);
+        AttachmentReference reference = new AttachmentReference(this.createFile(content).toPath());
+        FileTime lastModified = Files.getLastModifiedTime(reference.getPath());
+
+        // A file modified within the last seconds is hashed each time it is written
+        byte[] modified = this.randomContent(1000, 2);
+        assertEquals(Base64.encodeBase64String(content), encode(cache, reference));
+        Files.write(reference.getPath(), modified);
+        Files.setLastModifiedTime(reference.getPath(), lastModified);
+        assertEquals(Base64.encodeBase64String(modified), encode(cache, reference));
+
+        // An older file replaced by another file is hashed again
+        lastModified = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+        Files.setLastModifiedTime(reference.getPath(), lastModified);
+        assertEquals(Base64.encodeBase64String(modified), encode(cache, reference));
+        File replacement = this.createFile(content);
+        Files.setLastModifiedTime(replacement.toPath(), lastModified);
+        Files.move(replacement.toPath(), reference.getPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertEquals(Base64.encodeBase64String(content), encode(cache, reference));
+    }
+
+    /**
+     * Test of the eviction of the least recently used encodings, of class AttachmentCache.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEviction() throws Exception {
+
+        // Cache holding two encodings of 400 characters
+        AttachmentCache cache = new AttachmentCache(800);
+        AttachmentReference[] references = new AttachmentReference[3];
+        for (int i = 0; i < references.length; i++) {
+            references[i] = new AttachmentReference(this.createFile(this.randomContent(300, i)).toPath());
+            encode(cache, references[i]);
+        }
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(800, cache.getSize());
+
+        // The first encoding has been evicted and is encoded again, evicting the second one
+        encode(cache, references[2]);
+        encode(cache, references[0]);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(2, cache.getEvictionCount());
+        encode(cache, references[2]);
+        assertEquals(2, cache.getHitCount());
+
+        // Content larger than the cache is not cached
+        AttachmentReference large = new AttachmentReference(this.createFile(this.randomContent(3000, 9)).toPath());
+        assertEquals(Base64.encodeBase64String(Files.readAllBytes(large.getPath())), encode(cache, large));
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    /**
+     * Test of the shared cache used by attachment references from several threads, of class AttachmentCache.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSharedCache() throws Exception {
+
+        AttachmentCache cache = new AttachmentCache(1024 * 1024);
+        AttachmentCache.setSharedCache(cache);
+        final byte[] content = this.randomContent(10000, 3);
+        final AttachmentReference reference = new AttachmentReference(this.createFile(content).toPath());
+        encode(cache, reference);
+
+        // References are written through the shared cache
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(new Callable<String>() {
+
+                    @Override
+                    public String call() throws Exception {
+                        StringWriter writer = new StringWriter();
+                        reference.writeEncoded(writer);
+                        return writer.toString();
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals(Base64.encodeBase64String(content), result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(100, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * Write the encoded content of a reference through a cache
+     *
+     * @param cache Cache of encoded attachments
+     * @param reference Reference to the content of an attachment
+     * @return Encoded content
+     * @throws Exception
+     */
+    private static String encode(AttachmentCache cache, AttachmentReference reference) throws Exception {
+
+        StringWriter writer = new StringWriter();
+        cache.writeEncoded(reference, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Create a temporary file holding the given content
+     *
+     * @param content Content of the file
+     * @return Temporary file, deleted at the end of the test
+     * @throws Exception
+     */
+    private File createFile(byte[] content) throws Exception {
+
+        File file = File.createTempFile("attachment-cache", ".bin");
+        this.files.add(file);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    /**
+     * Create random content
+     *
+     * @param length Number of bytes
+     * @param seed Seed of the random content
+     * @return Random content
+     */
+    private byte[] randomContent(int length, long seed) {
+
+        byte[] content = new byte[length];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+}
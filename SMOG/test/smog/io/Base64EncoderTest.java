@@ -0,0 +1,63 @@
+package smog.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.util.Random;
+import org.apache.commons.codec.binary.Base64;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Base64EncoderTest checks that the chunked encoder {@link Base64Encoder} produces the same content as the commons
+ * codec encoder
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class Base64EncoderTest {
+
+    /**
+     * Test of encode method, of class Base64Encoder.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEncode() throws Exception {
+
+        // Lengths with and without padding, around the boundaries of chunks
+        Random random = new Random(42);
+        int chunk = Base64Encoder.CHUNK_SIZE;
+        for (int length : new int[] {0, 1, 2, 3, 4, 5, 100, chunk - 1, chunk, chunk + 1, chunk + 2, 3 * chunk + 7}) {
+            byte[] content = new byte[length];
+            random.nextBytes(content);
+
+            StringWriter writer = new StringWriter();
+            assertEquals(length, Base64Encoder.encode(new ByteArrayInputStream(content), writer));
+            assertEquals(Base64.encodeBase64String(content), writer.toString());
+        }
+    }
+
+    /**
+     * Test of encode method with an input stream returning few bytes at a time, of class Base64Encoder.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEncodeShortReads() throws Exception {
+
+        byte[] content = new byte[Base64Encoder.CHUNK_SIZE + 10];
+        new Random(7).nextBytes(content);
+
+        // Input stream returning at most five bytes per read
+        ByteArrayInputStream is = new ByteArrayInputStream(content) {
+
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 5));
+            }
+        };
+
+        StringWriter writer = new StringWriter();
+        Base64Encoder.encode(is, writer);
+        assertEquals(Base64.encodeBase64String(content), writer.toString());
+    }
+}
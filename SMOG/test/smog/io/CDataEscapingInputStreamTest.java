@@ -0,0 +1,61 @@
+package smog.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.IOUtils;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * CDataEscapingInputStreamTest checks that {@link CDataEscapingInputStream} replaces CDATA sections by the equivalent
+ * escaped text
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class CDataEscapingInputStreamTest {
+
+    /**
+     * Test of read method, of class CDataEscapingInputStream.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRead() throws Exception {
+
+        assertEquals("<a>x &lt;b&gt; &amp; y<!-- <![CDATA[z]]> --><?pi <![CDATA[z]]>?></a>",
+                this.read("<a>x <![CDATA[<b> & y]]><!-- <![CDATA[z]]> --><?pi <![CDATA[z]]>?></a>"));
+    }
+
+    /**
+     * Test of read method for adjacent CDATA sections holding the end of a CDATA section, of class
+     * CDataEscapingInputStream.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReadAdjacentCDataSections() throws Exception {
+
+        String escaped = this.read("<a><![CDATA[x]]]]><![CDATA[>y]]></a>");
+        assertEquals("<a>x]]&gt;y</a>", escaped);
+        XmlCursor cursor = XmlObject.Factory.parse(escaped).newCursor();
+        assertEquals("x]]>y", cursor.getTextValue());
+        cursor.dispose();
+    }
+
+    /**
+     * Read a document through a CDataEscapingInputStream
+     *
+     * @param document Content of the document
+     * @return Content read from the stream
+     * @throws Exception
+     */
+    private String read(String document) throws Exception {
+
+        InputStream is = new CDataEscapingInputStream(new ByteArrayInputStream(
+                document.getBytes(StandardCharsets.UTF_8)));
+        return new String(IOUtils.toByteArray(is), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,54 @@
+package smog.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * MemoryAttachmentStoreTest tests the attachment store {@link MemoryAttachmentStore}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MemoryAttachmentStoreTest {
+
+    /**
+     * Test of put, remove and close methods, of class MemoryAttachmentStore.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPut() throws Exception {
+
+        MemoryAttachmentStore store = new MemoryAttachmentStore();
+        AttachmentReference first = store.put(new byte[] {1, 2, 3});
+        AttachmentReference second = store.put(new ByteArrayInputStream(new byte[] {4, 5}));
+
+        // Each content has its own reference
+        assertFalse(first.getUri().equals(second.getUri()));
+        assertTrue(Arrays.equals(new byte[] {1, 2, 3}, first.getContent()));
+        assertTrue(Arrays.equals(new byte[] {4, 5}, second.getContent()));
+        assertEquals(5, store.getSize());
+
+        // Removed content is released
+        store.remove(first);
+        assertEquals(2, store.getSize());
+        try {
+            first.getContent();
+            fail("IOException expected");
+        } catch (IOException ex) {
+            assertNotNull(ex.getMessage());
+        }
+
+        // Closing the store releases the content
+        store.close();
+        assertEquals(0, store.getSize());
+        try {
+            second.getContent();
+            fail("IOException expected");
+        } catch (IOException ex) {
+            assertNotNull(ex.getMessage());
+        }
+    }
+}
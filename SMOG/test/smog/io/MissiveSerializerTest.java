@@ -0,0 +1,414 @@
+package smog.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.xmlbeans.CDataBookmark;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.jdom2.Document;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import smog.missive.DocumentBase;
+import smog.missive.SepamailGenericDocument;
+import smog.missive.SepamailTestRequestDocument;
+import smog.missive.TestUtils;
+import smog.schema.sem.BICorIBAN;
+import smog.schema.sem.MissiveDocument;
+import smog.schema.sem.ReceiverIdentifier;
+
+/**
+ * MissiveSerializerTest checks that the streaming serializer {@link MissiveSerializer} produces exactly the same
+ * content as the JDOM pretty printer previously used by {@link DocumentBase#toString()}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveSerializerTest {
+
+    private String dataFilename;
+    private ReceiverIdentifier recipient;
+    private BICorIBAN sender;
+    private HashMap<String, String> suggestedPrefixes;
+
+    /**
+     * MissiveSerializerTest default constructor
+     */
+    public MissiveSerializerTest() {
+
+        // Data file for simple.request@test messages
+        this.dataFilename = "test_serializer_data.png";
+
+        // Initialise the missive recipient
+        this.recipient = ReceiverIdentifier.Factory.newInstance();
+        this.recipient.setIBAN("QX51TESTBLEUXIG52I8X2445SGSUWESM");
+
+        // Initialise the missive sender
+        this.sender = BICorIBAN.Factory.newInstance();
+        this.sender.setIBAN("QX58TESTORANGEX8KH8P5TCYAGM22M38NQ");
+
+        // Prefixes used by the missive documents
+        this.suggestedPrefixes = new HashMap<>();
+        this.suggestedPrefixes.put("http://xsd.sepamail.eu/1206/", "sem");
+        this.suggestedPrefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.013.001.01", "pain013");
+    }
+
+    /**
+     * Create the data file used by simple.request@test messages
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+
+        // Create data file
+        TestUtils.createDataFileFromEncodedString(this.dataFilename, "iVBORw0KGgoAAAANSUhEUgAAAAoAAAAKCAYAAACNMs+9AA" +
+                "AAAXNSR0IArs4c6QAAAAZiS0dEAP8A/wD/oL2nkwAAAAlwSFlzAAALEwAACxMBAJqcGAAAAAd0SU1FB90FHQYiBduya34AAAAZ" +
+                "dEVYdENvbW1lbnQAQ3JlYXRlZCB3aXRoIEdJTVBXgQ4XAAAADklEQVQY02NgGAWDEwAAAZoAAQuinR8AAAAASUVORK5CYII=");
+    }
+
+    /**
+     * Clean up environment after test
+     */
+    @After
+    public void tearDown() {
+
+        // Test file
+        File testFile = new File(this.dataFilename);
+
+        // Remove test file if it exists
+        if (testFile.exists()) {
+            testFile.delete();
+        }
+    }
+
+    /**
+     * Test of writeTo method for simple.request@test messages, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteToTestRequestDocument() throws Exception {
+
+        SepamailTestRequestDocument document = new SepamailTestRequestDocument(this.recipient, this.sender,
+                Calendar.getInstance(), "9B4895CC137", Calendar.getInstance(),
+                "  Text with <markup> & \"quotes\"\r\nover two lines  ", new File(this.dataFilename));
+        this.assertSameAsLegacyOutput(document);
+    }
+
+    /**
+     * Test of writeTo method for generic messages, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteToGenericDocument() throws Exception {
+
+        XmlObject message = XmlObject.Factory.parse("<sem:SimpleTestRequest xmlns:sem=\"http://xsd.sepamail.eu/1206/\">" +
+                "\n  <sem:TestId>9B4895CC137</sem:TestId>\n  <sem:Text>Test   text\t</sem:Text><!-- note -->\n" +
+                "</sem:SimpleTestRequest>");
+        SepamailGenericDocument document = new SepamailGenericDocument(this.recipient, this.sender,
+                Calendar.getInstance(), "simple.request@test", null, message);
+        this.assertSameAsLegacyOutput(document);
+    }
+
+    /**
+     * Test of writeTo method for attributes holding whitespace characters, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteToAttributeWhitespace() throws Exception {
+
+        this.assertSameAsLegacyOutput(this.createGenericDocument(" a=\"x&#9;y&#10;z&#13;&#10;w &#13;\"",
+                "<t:Id>9B4895CC137</t:Id>"));
+    }
+
+    /**
+     * Test of writeTo method for comments and processing instructions inside text, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteToCommentInText() throws Exception {
+
+        this.assertSameAsLegacyOutput(this.createGenericDocument("", "<t:Text>  Test <!-- note --> text </t:Text>" +
+                "<t:Text>Test<!-- note --></t:Text><t:Text> <!-- note --> </t:Text>" +
+                "<t:Text>Test<?pi data?>text</t:Text>"));
+    }
+
+    /**
+     * Test of writeTo method for mixed content, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteToMixedContent() throws Exception {
+
+        this.assertSameAsLegacyOutput(this.createGenericDocument("",
+                " Test <t:Id>9B4895CC137</t:Id> text <!-- note --> <t:Text>Test &amp; text</t:Text> "));
+    }
+
+    /**
+     * Test of writeTo method for CDATA sections, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteToCData() throws Exception {
+
+        // CDATA sections are recorded when a document is parsed
+        String content = this.createGenericDocument("", "<t:Text>#</t:Text><t:Text>Test # <!-- note --> #</t:Text>" +
+                "mixed #<t:Id/>").toString().replace("#", "<![CDATA[ a < b ]]> and <![CDATA[c & d]]>");
+        DocumentBase document = DocumentBase.parse(new ByteArrayInputStream(
+                content.getBytes(StandardCharsets.UTF_8)));
+        assertTrue(document.toString().contains("<t:Text><![CDATA["));
+        this.assertSameAsLegacyOutput(document);
+    }
+
+    /**
+     * Test of writeTo method for creditor payment activation requests with an attachment, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteToPaymentActivationRequestDocument() throws Exception {
+
+        byte[] attachment = new byte[3000];
+        for (int i = 0; i < attachment.length; i++) {
+            attachment[i] = (byte) i;
+        }
+        DocumentBase document = TestUtils.createPaymentActivationRequestDocument(3, 4, attachment);
+        this.assertSameAsLegacyOutput(document);
+    }
+
+    /**
+     * Test of serialize method with a writer, of class MissiveSerializer.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSerializeToWriter() throws Exception {
+
+        XmlObject xmlObject = XmlObject.Factory.parse("<a><b>  x &amp; y </b><c/><d>   </d></a>");
+        StringWriter writer = new StringWriter();
+        new MissiveSerializer(this.suggestedPrefixes).serialize(xmlObject, writer);
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n<a>\r\n  <b>x &amp; y</b>\r\n  <c />\r\n  <d />\r\n" +
+                "</a>\r\n", writer.toString());
+    }
+
+    /**
+     * Test of serialize method with the compact layout, of class MissiveSerializer.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSerializeCompact() throws Exception {
+
+        XmlObject xmlObject = XmlObject.Factory.parse("<a><b>  x &amp; y </b><c/><d>   </d></a>");
+        StringWriter writer = new StringWriter();
+        new MissiveSerializer(this.suggestedPrefixes, SerializationMode.COMPACT).serialize(xmlObject, writer);
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><a><b>  x &amp; y </b><c/><d>   </d></a>",
+                writer.toString());
+    }
+
+    /**
+     * Test of writeTo method with the compact layout, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteToCompact() throws Exception {
+
+        DocumentBase document = TestUtils.createPaymentActivationRequestDocument(2, 3, new byte[] {1, 2, 3});
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        document.writeTo(output, SerializationMode.COMPACT);
+        String compact = new String(output.toByteArray(), StandardCharsets.UTF_8);
+        assertFalse(compact.contains("\n"));
+        assertTrue(compact.length() < document.toString().length());
+
+        XmlOptions options = new XmlOptions().setSaveSuggestedPrefixes(this.getDocumentPrefixes());
+        assertEquals(document.getMissiveXmlObject().xmlText(options),
+                MissiveDocument.Factory.parse(compact).xmlText(options));
+    }
+
+    /**
+     * Test of serialize method with attachment references, of class MissiveSerializer.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSerializeAttachmentReference() throws Exception {
+
+        // Content spanning several chunks of the encoder
+        byte[] content = new byte[Base64Encoder.CHUNK_SIZE * 2 + 1];
+        new Random(42).nextBytes(content);
+        File file = File.createTempFile("attachment", ".bin");
+        try {
+            Files.write(file.toPath(), content);
+
+            // Attachment elements holding a reference, of which the second one is written as a CDATA section, and
+            // another element holding a reference
+            XmlObject xmlObject = XmlObject.Factory.parse(
+                    "<a><Contents><data/></Contents><SimpleTestRequest><Data/></SimpleTestRequest><b/></a>");
+            List<AttachmentReference> references = Arrays.asList(new AttachmentReference(file.toPath()),
+                    new AttachmentReference(file.toPath()), new AttachmentReference(file.toPath()));
+            XmlCursor cursor = xmlObject.newCursor();
+            cursor.toFirstChild();
+            cursor.toFirstChild();
+            cursor.toFirstChild();
+            cursor.getObject().set(references.get(0).toXml());
+            cursor.toParent();
+            cursor.toNextSibling();
+            cursor.toFirstChild();
+            cursor.getObject().set(references.get(1).toXml());
+            cursor.toFirstContentToken();
+            cursor.setBookmark(CDataBookmark.CDATA_BOOKMARK);
+            cursor.toParent();
+            cursor.toParent();
+            cursor.toNextSibling();
+            cursor.getObject().set(references.get(2).toXml());
+            cursor.dispose();
+
+            // The content of the file is encoded in place of the references of the attachment elements only
+            String encoded = Base64.encodeBase64String(content);
+            for (SerializationMode mode : SerializationMode.values()) {
+                StringWriter writer = new StringWriter();
+                new MissiveSerializer(this.suggestedPrefixes, mode, references).serialize(xmlObject, writer);
+                assertTrue(writer.toString().contains("<data>" + encoded + "</data>"));
+                assertTrue(writer.toString().contains("<Data><![CDATA[" + encoded + "]]></Data>"));
+                assertEquals(writer.toString().indexOf(encoded), writer.toString().indexOf("<data>") + 6);
+                assertEquals(-1, writer.toString().indexOf(encoded, writer.toString().indexOf("</Data>")));
+                assertFalse(writer.toString().contains(AttachmentReference.TARGET));
+            }
+
+            // Processing instructions of references which have not been given to the serializer are not resolved,
+            // even when they hold the URI of the content
+            XmlObject unknownReference = XmlObject.Factory.parse("<Contents><data><?smog-attachment " +
+                    file.toURI() + "?></data></Contents>");
+            for (XmlObject unresolved : new XmlObject[] {unknownReference, xmlObject}) {
+                try {
+                    new MissiveSerializer(this.suggestedPrefixes).serialize(unresolved, new StringWriter());
+                    fail("IOException expected");
+                } catch (IOException ex) {
+                    assertNotNull(ex.getMessage());
+                }
+            }
+
+            // The file needs to exist when the reference is serialized
+            file.delete();
+            try {
+                new MissiveSerializer(this.suggestedPrefixes, SerializationMode.PRETTY, references).serialize(
+                        xmlObject, new StringWriter());
+                fail("IOException expected");
+            } catch (IOException ex) {
+                assertNotNull(ex.getMessage());
+            }
+
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Create a generic document holding a message of a test namespace
+     *
+     * @param attributes Attributes of the message element
+     * @param content Content of the message element
+     * @return Generic missive document
+     * @throws Exception
+     */
+    private SepamailGenericDocument createGenericDocument(String attributes, String content) throws Exception {
+
+        XmlObject message = XmlObject.Factory.parse("<t:Note xmlns:t=\"urn:test\"" + attributes + ">" + content +
+                "</t:Note>");
+        return new SepamailGenericDocument(this.recipient, this.sender, Calendar.getInstance(), "note@test", null,
+                message);
+    }
+
+    /**
+     * Check that the streamed content of a document is byte identical to the content produced by the JDOM pretty
+     * printer
+     *
+     * @param document Missive document that needs to be checked
+     * @throws Exception
+     */
+    private void assertSameAsLegacyOutput(DocumentBase document) throws Exception {
+
+        // Streamed content
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        document.writeTo(output);
+
+        // Content produced by the JDOM pretty printer
+        byte[] legacyOutput = this.getLegacyOutput(document);
+
+        assertArrayEquals(legacyOutput, output.toByteArray());
+        assertArrayEquals(legacyOutput, document.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Render a document using the XML text saver followed by the JDOM pretty printer
+     *
+     * @param document Missive document that needs to be rendered
+     * @return Content of the document
+     * @throws Exception
+     */
+    private byte[] getLegacyOutput(DocumentBase document) throws Exception {
+
+        // Add schema location attribute
+        document.addSchemaLocation("http://www.w3.org/2001/XMLSchema-instance", "schemaLocation", "xsi",
+                "http://xsd.sepamail.eu/1206/ xsd/sepamail_missive.xsd ");
+
+        // XML options instance
+        XmlOptions options = new XmlOptions();
+        options.setSavePrettyPrint();
+        options.setSaveSuggestedPrefixes(this.getDocumentPrefixes());
+        options.setUseCDataBookmarks();
+
+        // Build XML document using the constructed XML object
+        Document xmlDocument = new SAXBuilder().build(new InputStreamReader(new ByteArrayInputStream(
+                document.getMissiveXmlObject().xmlText(options).getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8));
+
+        // Pretty print the XML document
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new XMLOutputter(Format.getPrettyFormat()).output(xmlDocument, output);
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Get the namespace prefixes used by missive documents
+     *
+     * @return Map of namespace URIs to prefixes
+     */
+    private HashMap<String, String> getDocumentPrefixes() {
+
+        HashMap<String, String> prefixes = new HashMap<>();
+        prefixes.put("http://www.w3.org/2000/09/xmldsig#", "ds");
+        prefixes.put("urn:iso:std:iso:20022:tech:xsd:acmt.023.001.01", "acmt023");
+        prefixes.put("urn:iso:std:iso:20022:tech:xsd:acmt.024.001.01", "acmt024");
+        prefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.009.001.01", "pain009");
+        prefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.012.001.01", "pain012");
+        prefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.013.001.01", "pain013");
+        prefixes.put("urn:iso:std:iso:20022:tech:xsd:pain.014.001.01", "pain014");
+        prefixes.put("http://xsd.sepamail.eu/1206/", "sem");
+        return prefixes;
+    }
+}
@@ -0,0 +1,121 @@
+package smog.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.commons.codec.binary.Base64;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ParallelBase64EncoderTest checks that the parallel encoder {@link ParallelBase64Encoder} produces the same content as
+ * the commons codec encoder
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class ParallelBase64EncoderTest {
+
+    // Number of bytes encoded by each task, small enough for the test content to be split in many chunks
+    private static final int CHUNK_SIZE = 30;
+
+    // Pool of the encoder
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+
+        this.pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+
+        ParallelBase64Encoder.setSharedEncoder(null);
+        this.pool.shutdown();
+    }
+
+    /**
+     * Test of encode method, of class ParallelBase64Encoder.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEncode() throws Exception {
+
+        ParallelBase64Encoder encoder = new ParallelBase64Encoder(this.pool, CHUNK_SIZE);
+
+        // Lengths with and without padding, around the boundaries of chunks and of batches
+        Random random = new Random(42);
+        for (int length : new int[] {0, 1, 2, 3, 29, 30, 31, 119, 120, 121, 1000, 12345}) {
+            byte[] content = new byte[length];
+            random.nextBytes(content);
+
+            StringWriter writer = new StringWriter();
+            assertEquals(length, encoder.encode(new ByteArrayInputStream(content), writer));
+            assertEquals(Base64.encodeBase64String(content), writer.toString());
+            assertEquals(Base64.encodeBase64String(content), encoder.encodeToString(content));
+        }
+    }
+
+    /**
+     * Test of encode method between files, of class ParallelBase64Encoder.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEncodeFile() throws Exception {
+
+        ParallelBase64Encoder encoder = new ParallelBase64Encoder(this.pool, CHUNK_SIZE);
+
+        byte[] content = new byte[10001];
+        new Random(7).nextBytes(content);
+
+        File input = File.createTempFile("parallel-base64", ".bin");
+        File output = File.createTempFile("parallel-base64", ".b64");
+        try {
+            Files.write(input.toPath(), content);
+
+            assertEquals(content.length, encoder.encode(input.toPath(), output.toPath()));
+            assertEquals(Base64.encodeBase64String(content), new String(Files.readAllBytes(output.toPath()),
+                    StandardCharsets.US_ASCII));
+        } finally {
+            input.delete();
+            output.delete();
+        }
+    }
+
+    /**
+     * Test of setSharedEncoder method, of class ParallelBase64Encoder.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSharedEncoder() throws Exception {
+
+        byte[] content = new byte[5000];
+        new Random(11).nextBytes(content);
+
+        // Attachment references are encoded through the shared encoder
+        ParallelBase64Encoder.setSharedEncoder(new ParallelBase64Encoder(this.pool, CHUNK_SIZE));
+        try (MemoryAttachmentStore store = new MemoryAttachmentStore()) {
+            StringWriter writer = new StringWriter();
+            assertEquals(content.length, store.put(content).writeEncoded(writer));
+            assertEquals(Base64.encodeBase64String(content), writer.toString());
+        }
+    }
+
+    /**
+     * Test of ParallelBase64Encoder constructor with a chunk size which is not a multiple of three.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidChunkSize() {
+
+        new ParallelBase64Encoder(this.pool, 32);
+    }
+}
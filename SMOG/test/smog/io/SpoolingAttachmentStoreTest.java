@@ -0,0 +1,154 @@
+package smog.io;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * SpoolingAttachmentStoreTest tests the attachment store {@link SpoolingAttachmentStore}, which keeps small content in
+ * memory and spools larger content to files
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class SpoolingAttachmentStoreTest {
+
+    private Path directory;
+    private SpoolingAttachmentStore store;
+
+    /**
+     * Create a store spooling content larger than 1 KB to a temporary directory
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+
+        this.directory = Files.createTempDirectory("attachment-store");
+        this.store = new SpoolingAttachmentStore(this.directory, 1024);
+    }
+
+    /**
+     * Close the store and delete the temporary directory
+     *
+     * @throws Exception
+     */
+    @After
+    public void tearDown() throws Exception {
+
+        this.store.close();
+        FileUtils.deleteDirectory(this.directory.toFile());
+    }
+
+    /**
+     * Test of put method, of class SpoolingAttachmentStore.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPut() throws Exception {
+
+        // Content on both sides of the threshold
+        Random random = new Random(42);
+        byte[] small = new byte[1024];
+        byte[] large = new byte[1025];
+        random.nextBytes(small);
+        random.nextBytes(large);
+
+        AttachmentReference smallReference = this.store.put(small);
+        AttachmentReference largeReference = this.store.put(large);
+        assertNull(smallReference.getPath());
+        assertEquals(1024, this.store.getMemorySize());
+        assertEquals(1, this.store.getSpoolFileCount());
+        assertTrue(Arrays.equals(small, smallReference.getContent()));
+        assertTrue(Arrays.equals(large, largeReference.getContent()));
+
+        // References are held by the processing instruction of their XML object
+        assertTrue(largeReference.isHeldBy(largeReference.toXml()));
+        assertFalse(largeReference.isHeldBy(smallReference.toXml()));
+    }
+
+    /**
+     * Test of remove and close methods, of class SpoolingAttachmentStore.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRemoveAndClose() throws Exception {
+
+        AttachmentReference small = this.store.put(new byte[10]);
+        AttachmentReference large = this.store.put(new byte[2048]);
+        AttachmentReference removed = this.store.put(new byte[4096]);
+
+        // Removed content is released along with its spool file
+        this.store.remove(removed);
+        assertEquals(1, this.store.getSpoolFileCount());
+        this.assertUnavailable(removed);
+        try (MemoryAttachmentStore other = new MemoryAttachmentStore()) {
+            other.remove(small);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            assertNotNull(ex.getMessage());
+        }
+
+        // Closing the store releases the content and deletes the spool files
+        this.store.close();
+        this.assertUnavailable(small);
+        this.assertUnavailable(large);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            assertFalse(files.iterator().hasNext());
+        }
+        try {
+            this.store.put(new byte[1]);
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            assertNotNull(ex.getMessage());
+        }
+    }
+
+    /**
+     * Test of the deletion of the spool files of a store which has not been closed, of class SpoolingAttachmentStore.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUnclosedStore() throws Exception {
+
+        // Store and reference which are no longer used once their content has been spooled
+        this.store.put(new byte[2048]);
+        this.store = new SpoolingAttachmentStore(this.directory, 1024);
+
+        // The spool file is deleted once the store has been garbage collected
+        boolean deleted = false;
+        for (int i = 0; i < 100 && !deleted; i++) {
+            System.gc();
+            System.runFinalization();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+                deleted = !files.iterator().hasNext();
+            }
+        }
+        assertTrue(deleted);
+    }
+
+    /**
+     * Check that the content of a reference can no longer be read
+     *
+     * @param reference Reference to content of the store
+     */
+    private void assertUnavailable(AttachmentReference reference) {
+
+        try {
+            reference.getContent();
+            fail("IOException expected");
+        } catch (IOException ex) {
+            assertNotNull(ex.getMessage());
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package smog.missive;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
 import org.apache.xmlbeans.XmlObject;
 import org.junit.After;
@@ -12,6 +16,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import smog.exception.SmogException;
+import smog.io.SerializationMode;
 import smog.schema.sem.BICorIBAN;
 import smog.schema.sem.MessageType;
 import smog.schema.sem.MissiveDocument;
@@ -20,6 +25,7 @@ import smog.schema.sem.PriorityCode;
 import smog.schema.sem.ReceiverIdentifier;
 import smog.schema.sem.SimpleTestRequest;
 import smog.utils.Utils;
+import smog.validation.ValidationResult;
 
 /**
  * DocumentBaseTest tests the base class {@link DocumentBase} of all missive documents
@@ -124,6 +130,44 @@ public class DocumentBaseTest {
         assertEquals(value, this.documentBase.getSchemaLocation(namespaceUri, localPart));
     }
 
+    /**
+     * Test of beginEdit and commit methods, of class DocumentBase.
+     */
+    @Test
+    public void testBeginEditAndCommit() {
+
+        this.documentBase.toString();
+        long version = this.documentBase.getVersionTracker().getVersion();
+
+        this.documentBase.beginEdit();
+        assertTrue(this.documentBase.isEditing());
+        this.documentBase.setMessageId("EDITEDMESSAGEID");
+        this.documentBase.beginEdit();
+        this.documentBase.setMissiveId("EDITEDMISSIVEID");
+        this.documentBase.commit();
+
+        // Envelope values are written in place, but the document is only assembled by the outermost commit
+        assertEquals("EDITEDMESSAGEID", this.documentBase.getMessageId());
+        assertTrue(this.documentBase.toString().contains("EDITEDMESSAGEID"));
+        assertTrue(this.documentBase.toString().contains("EDITEDMISSIVEID"));
+        assertEquals(version, this.documentBase.getVersionTracker().getVersion());
+
+        this.documentBase.commit();
+        assertTrue(this.documentBase.getVersionTracker().getVersion() > version);
+        assertFalse(this.documentBase.isEditing());
+        assertTrue(this.documentBase.toString().contains("EDITEDMESSAGEID"));
+        assertTrue(this.documentBase.toString().contains("EDITEDMISSIVEID"));
+    }
+
+    /**
+     * Test of commit method without a batch of modifications, of class DocumentBase.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testCommitWithoutBeginEdit() {
+
+        this.documentBase.commit();
+    }
+
     /**
      * Test of getMessageExpiry method, of class DocumentBase.
      */
@@ -238,6 +282,64 @@ public class DocumentBaseTest {
         assertTrue(this.sender.toString().equals(this.documentBase.getSender().toString()));
     }
 
+    /**
+     * Test that getSender returns a copy of the sender, of class DocumentBase.
+     */
+    @Test
+    public void testGetSenderReturnsCopy() {
+
+        String content = this.documentBase.toString();
+        long version = this.documentBase.getVersionTracker().getVersion();
+
+        this.documentBase.getSender().setIBAN(this.recipientIBAN);
+        assertEquals(this.senderIBAN, this.documentBase.getSender().getIBAN());
+        assertEquals(version, this.documentBase.getVersionTracker().getVersion());
+        assertEquals(content, this.documentBase.toString());
+    }
+
+    /**
+     * Test of parse method, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParse() throws Exception {
+
+        String content = this.documentBase.toString();
+        DocumentBase document = DocumentBase.parse(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+
+        // A missive without message type gives a generic document bound to the parsed missive
+        assertTrue(document instanceof SepamailGenericDocument);
+        assertEquals(this.missiveId, document.getMissiveId());
+        assertEquals(this.messageId, document.getMessageId());
+        assertEquals(this.recipientIBAN, document.getRecipient().getIBAN());
+        assertEquals(content, document.toString());
+
+        // Modifications are made in the parsed missive
+        document.setMessageId("PARSED");
+        assertEquals("PARSED", ((MissiveDocument) document.getMissiveXmlObject()).getMissive().getSepamailMissive001()
+                .getMsvBdy().getSepamailMessage001().getMsgHdr().getMsgId());
+    }
+
+    /**
+     * Test of parse method, of class DocumentBase, with content which is not a SEPAmail missive.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParseFails() throws Exception {
+
+        for (String content : new String[] {"<sem:Missive xmlns:sem=\"http://xsd.sepamail.eu/1206/\"",
+                "<Missive/>", "<sem:Missive xmlns:sem=\"http://xsd.sepamail.eu/1206/\"/>"}) {
+            try {
+                DocumentBase.parse(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+                fail("SmogException expected for " + content);
+            } catch (SmogException ex) {
+                assertNotNull(ex.getMessage());
+            }
+        }
+    }
+
     /**
      * Test of removeMessageExpiry method, of class DocumentBase.
      */
@@ -249,6 +351,26 @@ public class DocumentBaseTest {
         assertNull(this.documentBase.getMessageExpiry());
     }
 
+    /**
+     * Test that the rendered content of the document follows the removal of the message expiry, of class
+     * DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRemoveMessageExpiryAfterRendering() throws Exception {
+
+        this.documentBase.setMessageExpiry(this.messageExpiry);
+        assertTrue(this.documentBase.toString().contains("MsgExpiry"));
+
+        this.documentBase.removeMessageExpiry();
+        assertFalse(this.documentBase.toString().contains("MsgExpiry"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        this.documentBase.writeTo(output);
+        assertFalse(new String(output.toByteArray(), StandardCharsets.UTF_8).contains("MsgExpiry"));
+    }
+
     /**
      * Test of save method, of class DocumentBase.
      *
@@ -370,6 +492,21 @@ public class DocumentBaseTest {
         assertTrue(newRecipient.toString().equals(this.documentBase.getRecipient().toString()));
     }
 
+    /**
+     * Test of setSerializationMode method, of class DocumentBase.
+     */
+    @Test
+    public void testSetSerializationMode() {
+
+        assertEquals(SerializationMode.PRETTY, this.documentBase.getSerializationMode());
+        String prettyContent = this.documentBase.toString();
+        this.documentBase.setSerializationMode(SerializationMode.COMPACT);
+        assertEquals(SerializationMode.COMPACT, this.documentBase.getSerializationMode());
+        assertEquals(this.documentBase.toString(SerializationMode.COMPACT), this.documentBase.toString());
+        assertEquals(prettyContent, this.documentBase.toString(SerializationMode.PRETTY));
+        assertFalse(this.documentBase.toString().contains("\r\n"));
+    }
+
     /**
      * Test of setSendDateTime method, of class DocumentBase.
      */
@@ -394,6 +531,90 @@ public class DocumentBaseTest {
         assertTrue(newSender.toString().equals(this.documentBase.getSender().toString()));
     }
 
+    /**
+     * Test of toByteArray method, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testToByteArray() throws Exception {
+
+        byte[] content = this.documentBase.toByteArray(SerializationMode.PRETTY);
+        assertArrayEquals(this.documentBase.toString().getBytes(StandardCharsets.UTF_8), content);
+
+        // Modifying the returned array does not affect the rendered content
+        content[0] = 0;
+        assertEquals('<', this.documentBase.toByteArray(SerializationMode.PRETTY)[0]);
+    }
+
+    /**
+     * Test of toByteBuffer method, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testToByteBuffer() throws Exception {
+
+        ByteBuffer content = this.documentBase.toByteBuffer(SerializationMode.COMPACT);
+        assertTrue(content.isReadOnly());
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        assertArrayEquals(this.documentBase.toByteArray(SerializationMode.COMPACT), bytes);
+    }
+
+    /**
+     * Test that the rendered content of the document follows its modifications, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRenderedContentFollowsModifications() throws Exception {
+
+        String content = this.documentBase.toString();
+        assertEquals(content, this.documentBase.toString());
+
+        this.documentBase.setMessageId("NEWMESSAGEID");
+        assertTrue(this.documentBase.toString().contains("NEWMESSAGEID"));
+
+        ((MissiveDocument) this.documentBase.getMissiveXmlObject()).getMissive().getSepamailMissive001().getMsvBdy().getSepamailMessage001().getMsgHdr().setMsgTyp(MessageType.SIMPLE_REQUEST_TEST);
+        assertTrue(this.documentBase.toString().contains("simple.request@test"));
+    }
+
+    /**
+     * Test that the rendered content of the document follows the modifications made through its XML object after it
+     * has been rendered, of class DocumentBase.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRenderedContentFollowsXmlObjectModifications() throws Exception {
+
+        MissiveDocument missiveDocument = (MissiveDocument) this.documentBase.getMissiveXmlObject();
+        String content = this.documentBase.toString();
+        assertEquals(content, this.documentBase.toString());
+
+        missiveDocument.getMissive().getSepamailMissive001().getMsvBdy().getSepamailMessage001().getMsgHdr()
+                .setMsgId("HANDLEMESSAGEID");
+        assertTrue(this.documentBase.toString().contains("HANDLEMESSAGEID"));
+        assertTrue(new String(this.documentBase.toByteArray(SerializationMode.COMPACT), StandardCharsets.UTF_8)
+                .contains("HANDLEMESSAGEID"));
+    }
+
+    /**
+     * Test of getVersionTracker method, of class DocumentBase.
+     */
+    @Test
+    public void testGetVersionTracker() {
+
+        this.documentBase.toString();
+        long version = this.documentBase.getVersionTracker().getVersion();
+        this.documentBase.toString(SerializationMode.COMPACT);
+        assertEquals(version, this.documentBase.getVersionTracker().getVersion());
+
+        this.documentBase.setMissiveOrder(BigInteger.TEN);
+        assertTrue(this.documentBase.getVersionTracker().getVersion() > version);
+    }
+
     /**
      * Test of toString method, of class DocumentBase.
      */
@@ -476,4 +697,42 @@ public class DocumentBaseTest {
 
         assertTrue(expResult); // Missive contains a message type and a valid message
     }
+
+    /**
+     * Test of getValidationResult method, of class DocumentBase.
+     */
+    @Test
+    public void testGetValidationResult() {
+
+        // Missive does not contain a message type nor a message
+        ValidationResult result = this.documentBase.getValidationResult();
+
+        assertFalse(result.isValid());
+        assertFalse(result.isStopped());
+        assertTrue(result.getErrors().size() > 1);
+        assertNotNull(result.getErrors().get(0).getErrorCode());
+
+        // The throwing validation reports the same errors
+        try {
+            this.documentBase.validate();
+            fail("SmogException expected");
+        } catch (SmogException ex) {
+            assertEquals(result.getMessage("\n"), ex.getMessage());
+        }
+    }
+
+    /**
+     * Test of getValidationResult method, of class DocumentBase, in fail-fast mode.
+     */
+    @Test
+    public void testGetValidationResultFailFast() {
+
+        ValidationResult result = this.documentBase.getValidationResult(true);
+
+        assertFalse(result.isValid());
+        assertTrue(result.isStopped());
+        assertEquals(1, result.getErrors().size());
+        assertEquals(this.documentBase.getValidationResult().getErrors().get(0).getMessage(),
+                result.getErrors().get(0).getMessage());
+    }
 }
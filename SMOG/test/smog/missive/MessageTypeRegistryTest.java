@@ -0,0 +1,95 @@
+package smog.missive;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import smog.exception.SmogException;
+import smog.schema.sem.MessageType;
+
+/**
+ * MessageTypeRegistryTest tests the registry of message types {@link MessageTypeRegistry}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MessageTypeRegistryTest {
+
+    /**
+     * Test of getRegisteredMessageTypes method, of class MessageTypeRegistry.
+     */
+    @Test
+    public void testGetRegisteredMessageTypes() {
+
+        int predefinedCount = 0;
+        for (MessageTypeDefinition definition : MessageTypeRegistry.getRegisteredMessageTypes()) {
+            assertTrue(definition.isRegistered());
+            if (definition.getSchemaMessageType() != null) {
+                predefinedCount++;
+            }
+        }
+
+        assertEquals(MessageType.type.getEnumerationValues().length, predefinedCount);
+    }
+
+    /**
+     * Test of register method, of class MessageTypeRegistry.
+     *
+     * @throws SmogException
+     */
+    @Test
+    public void testRegister() throws SmogException {
+
+        assertFalse(MessageTypeRegistry.isRegistered("registered.message@test"));
+
+        MessageTypeDefinition definition = MessageTypeRegistry.register("registered.message@test");
+
+        assertTrue(MessageTypeRegistry.isRegistered("registered.message@test"));
+        assertTrue(definition.isCustom());
+        assertTrue(definition.isRegistered());
+        assertSame(definition, MessageTypeRegistry.register("registered.message@test"));
+        assertSame(definition, MessageTypeRegistry.resolve(new String("registered.message@test")));
+
+        // Registering a predefined message type keeps its definition
+        assertEquals(MessageType.SIMPLE_REPORT_TEST, MessageTypeRegistry.register("simple.report@test")
+                .getSchemaMessageType());
+    }
+
+    /**
+     * Test of register method, of class MessageTypeRegistry, with message types which are not well formed.
+     */
+    @Test
+    public void testRegisterFails() {
+
+        for (String messageType : new String[] {null, "", "a message@type"}) {
+            try {
+                MessageTypeRegistry.register(messageType);
+                fail("The message type '" + messageType + "' should not be registered");
+            } catch (SmogException ex) {
+                assertFalse(MessageTypeRegistry.isRegistered(messageType));
+            }
+        }
+    }
+
+    /**
+     * Test of resolve method, of class MessageTypeRegistry.
+     */
+    @Test
+    public void testResolve() {
+
+        // Predefined message types
+        MessageTypeDefinition definition = MessageTypeRegistry.resolve("simple.request@test");
+        assertSame(definition, MessageTypeRegistry.resolve(new String("simple.request@test")));
+        assertEquals(MessageType.SIMPLE_REQUEST_TEST, definition.getSchemaMessageType());
+        assertFalse(definition.isCustom());
+
+        // Message types which have not been registered
+        definition = MessageTypeRegistry.resolve("unregistered.message@test");
+        assertEquals("unregistered.message@test", definition.getName());
+        assertTrue(definition.isCustom());
+        assertFalse(definition.isRegistered());
+        assertFalse(MessageTypeRegistry.isRegistered("unregistered.message@test"));
+
+        // Message types which are not well formed
+        assertFalse(MessageTypeRegistry.resolve("").isWellFormed());
+        assertFalse(MessageTypeRegistry.resolve("a message@type").isCustom());
+        assertEquals("", MessageTypeRegistry.resolve(null).getName());
+    }
+}
@@ -0,0 +1,209 @@
+package smog.missive;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import smog.exception.SmogException;
+import smog.schema.sem.BICorIBAN;
+import smog.schema.sem.ReceiverIdentifier;
+
+/**
+ * MissiveFileIndexTest tests the index of missive files {@link MissiveFileIndex}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveFileIndexTest {
+
+    private SepamailPaymentActivationRequestDocument activationDocument;
+    private File indexFile;
+    private File missiveFile;
+    private SepamailTestRequestDocument testRequestDocument;
+
+    /**
+     * Set up a missive file holding an activation.request@payment.activation missive between two simple.request@test
+     * missives, of which the missives use the namespace declared by the root element of the file
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+
+        // Initialise the missive recipient
+        ReceiverIdentifier recipient = ReceiverIdentifier.Factory.newInstance();
+        recipient.setBIC("TESTBICXXXX");
+
+        // Initialise the missive sender
+        BICorIBAN sender = BICorIBAN.Factory.newInstance();
+        sender.setIBAN("QX58TESTORANGEX8KH8P5TCYAGM22M38NQ");
+
+        // Missives of the file
+        this.testRequestDocument = new SepamailTestRequestDocument(recipient, sender, Calendar.getInstance(),
+                "9B4895CC137", null, "simple.request@test <index> text", null);
+        this.testRequestDocument.setMessageId("TEST&ID");
+        this.activationDocument = TestUtils.createPaymentActivationRequestDocument(2, 2, new byte[] {1, 2, 3});
+        String content = MissiveFileReaderTest.createMissiveFile(this.testRequestDocument, this.activationDocument,
+                this.testRequestDocument).replace("<sem:Msv xmlns:sem=\"http://xsd.sepamail.eu/1206/\" ",
+                "<!-- <sem:Msv> --><sem:Msv ");
+        assertFalse(content.contains("<sem:Msv xmlns:sem"));
+
+        this.missiveFile = File.createTempFile("missive-file", ".xml");
+        this.indexFile = File.createTempFile("missive-file", ".idx");
+        Files.write(this.missiveFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Delete the files written by the test
+     */
+    @After
+    public void tearDown() {
+
+        this.missiveFile.delete();
+        this.indexFile.delete();
+    }
+
+    /**
+     * Test of create method, of class MissiveFileIndex.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCreate() throws Exception {
+
+        MissiveFileIndex index = MissiveFileIndex.create(this.missiveFile.toPath(), this.indexFile.toPath());
+
+        // The entries locate the missives of the file
+        byte[] content = Files.readAllBytes(this.missiveFile.toPath());
+        assertEquals(3, index.getEntries().size());
+        for (MissiveIndexEntry entry : index.getEntries()) {
+            String missive = new String(Arrays.copyOfRange(content, (int) entry.getOffset(),
+                    (int) entry.getOffset() + entry.getLength()), StandardCharsets.UTF_8);
+            assertTrue(missive.startsWith("<sem:Msv "));
+            assertTrue(missive.endsWith("</sem:Msv>"));
+            assertTrue(missive.contains("<sem:MsvId>" + entry.getMissiveId() + "</sem:MsvId>"));
+        }
+
+        // Fields of the entries, of which references are resolved
+        MissiveIndexEntry entry = index.getEntries().get(0);
+        assertEquals(this.testRequestDocument.getMissiveId(), entry.getMissiveId());
+        assertEquals("TEST&ID", entry.getMessageId());
+        assertEquals("TESTBICXXXX", entry.getRecipient());
+        entry = index.getEntries().get(1);
+        assertEquals(this.activationDocument.getMessageId(), entry.getMessageId());
+        assertEquals(this.activationDocument.getRecipient().getIBAN(), entry.getRecipient());
+
+        // Look ups
+        assertSame(entry, index.findByMissiveId(this.activationDocument.getMissiveId()));
+        assertSame(entry, index.findByMessageId(this.activationDocument.getMessageId()));
+        assertSame(index.getEntries().get(0), index.findByMessageId("TEST&ID"));
+        List<MissiveIndexEntry> recipientEntries = index.findByRecipient("TESTBICXXXX");
+        assertEquals(Arrays.asList(index.getEntries().get(0), index.getEntries().get(2)), recipientEntries);
+        assertNull(index.findByMissiveId("UNKNOWN"));
+        assertNull(index.findByMessageId("UNKNOWN"));
+        assertTrue(index.findByRecipient("UNKNOWN").isEmpty());
+    }
+
+    /**
+     * Test of read and readHeader methods, of class MissiveFileIndex.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRead() throws Exception {
+
+        MissiveFileIndex index = MissiveFileIndex.create(this.missiveFile.toPath(), this.indexFile.toPath());
+
+        // Missives read from their bytes alone
+        DocumentBase document = index.read(index.findByMessageId(this.activationDocument.getMessageId()));
+        assertTrue(document instanceof SepamailPaymentActivationRequestDocument);
+        assertEquals(this.activationDocument.toString().replace("<![CDATA[", "").replace("]]>", ""),
+                document.toString().replace("<![CDATA[", "").replace("]]>", ""));
+        assertTrue(document.getValidationResult().isValid());
+        document = index.read(index.getEntries().get(2));
+        assertTrue(document instanceof SepamailTestRequestDocument);
+        assertEquals(this.testRequestDocument.toString(), document.toString());
+
+        // Routing headers
+        MissiveRoutingHeader header = index.readHeader(index.getEntries().get(0));
+        assertEquals("TEST&ID", header.getMessageId());
+        assertEquals("BIC", header.getRecipientScheme());
+    }
+
+    /**
+     * Test of open method, of class MissiveFileIndex.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testOpen() throws Exception {
+
+        // The opened index holds the entries of the created index
+        MissiveFileIndex created = MissiveFileIndex.create(this.missiveFile.toPath(), this.indexFile.toPath());
+        MissiveFileIndex opened = MissiveFileIndex.open(this.missiveFile.toPath(), this.indexFile.toPath());
+        assertEquals(created.getEntries().size(), opened.getEntries().size());
+        for (int i = 0; i < created.getEntries().size(); i++) {
+            assertEquals(created.getEntries().get(i).toString(), opened.getEntries().get(i).toString());
+        }
+        assertEquals(this.activationDocument.getMissiveId(),
+                opened.read(opened.findByMissiveId(this.activationDocument.getMissiveId())).getMissiveId());
+
+        // Index of a missive file which has been rewritten with the same length
+        FileTime lastModified = Files.getLastModifiedTime(this.missiveFile.toPath());
+        Files.setLastModifiedTime(this.missiveFile.toPath(), FileTime.fromMillis(lastModified.toMillis() + 1000));
+        try {
+            MissiveFileIndex.open(this.missiveFile.toPath(), this.indexFile.toPath());
+            fail("SmogException expected");
+        } catch (SmogException ex) {
+            assertNotNull(ex.getMessage());
+        }
+        Files.setLastModifiedTime(this.missiveFile.toPath(), lastModified);
+        MissiveFileIndex.open(this.missiveFile.toPath(), this.indexFile.toPath());
+
+        // Index which no longer matches its missive file
+        Files.write(this.missiveFile.toPath(), " ".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(this.missiveFile.toPath(), lastModified);
+        try {
+            MissiveFileIndex.open(this.missiveFile.toPath(), this.indexFile.toPath());
+            fail("SmogException expected");
+        } catch (SmogException ex) {
+            assertNotNull(ex.getMessage());
+        }
+
+        // File which is not an index
+        try {
+            MissiveFileIndex.open(this.missiveFile.toPath(), this.missiveFile.toPath());
+            fail("SmogException expected");
+        } catch (SmogException ex) {
+            assertNotNull(ex.getMessage());
+        }
+    }
+
+    /**
+     * Test of create method, of class MissiveFileIndex, with invalid missive files.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCreateFails() throws Exception {
+
+        String content = new String(Files.readAllBytes(this.missiveFile.toPath()), StandardCharsets.UTF_8);
+        for (String invalid : new String[] {"<Missive/>", content.substring(0, content.length() - 10),
+                content.replaceFirst("<sem:MsvId>[^<]*</sem:MsvId>", "")}) {
+            Files.write(this.missiveFile.toPath(), invalid.getBytes(StandardCharsets.UTF_8));
+            try {
+                MissiveFileIndex.create(this.missiveFile.toPath(), this.indexFile.toPath());
+                fail("SmogException expected");
+            } catch (SmogException ex) {
+                assertNotNull(ex.getMessage());
+            }
+        }
+    }
+}
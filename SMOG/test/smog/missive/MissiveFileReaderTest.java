@@ -0,0 +1,251 @@
+package smog.missive;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.apache.xmlbeans.XmlObject;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import smog.exception.SmogException;
+import smog.io.SerializationMode;
+import smog.schema.sem.BICorIBAN;
+import smog.schema.sem.MessageType;
+import smog.schema.sem.ReceiverIdentifier;
+
+/**
+ * MissiveFileReaderTest tests the reader of missive files {@link MissiveFileReader}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveFileReaderTest {
+
+    private SepamailPaymentActivationRequestDocument activationDocument;
+    private String content;
+    private SepamailGenericDocument genericDocument;
+    private SepamailTestRequestDocument testRequestDocument;
+
+    /**
+     * Set up a missive file holding a simple.request@test missive, an activation.request@payment.activation missive
+     * and a missive of a custom message type
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+
+        // Initialise the missive recipient
+        ReceiverIdentifier recipient = ReceiverIdentifier.Factory.newInstance();
+        recipient.setIBAN("QX51TESTBLEUXIG52I8X2445SGSUWESM");
+
+        // Initialise the missive sender
+        BICorIBAN sender = BICorIBAN.Factory.newInstance();
+        sender.setIBAN("QX58TESTORANGEX8KH8P5TCYAGM22M38NQ");
+
+        // Missives of the file
+        this.testRequestDocument = new SepamailTestRequestDocument(recipient, sender, Calendar.getInstance(),
+                "9B4895CC137", null, "simple.request@test file text", null);
+        this.activationDocument = TestUtils.createPaymentActivationRequestDocument(2, 2, new byte[] {1, 2, 3});
+        this.genericDocument = new SepamailGenericDocument(recipient, sender, Calendar.getInstance(),
+                "a.filed.message@type", null, XmlObject.Factory.parse("<sem:SimpleTestRequest "
+                + "xmlns:sem=\"http://xsd.sepamail.eu/1206/\"><sem:TestId>9B4895CC137</sem:TestId>"
+                + "<sem:Text>Test text</sem:Text></sem:SimpleTestRequest>"));
+
+        this.content = createMissiveFile(this.testRequestDocument, this.activationDocument, this.genericDocument);
+    }
+
+    /**
+     * Test of next method, of class MissiveFileReader.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNext() throws Exception {
+
+        try (MissiveFileReader reader = this.open(this.content)) {
+
+            // File header
+            assertEquals(3, reader.getMissiveCount().intValue());
+            assertEquals("TESTBICXXXX", reader.getPartner().getSender());
+            assertEquals(2013, reader.getFileDateTime().get(Calendar.YEAR));
+
+            // simple.request@test missive
+            assertTrue(reader.hasNext());
+            DocumentBase document = reader.next();
+            assertTrue(document instanceof SepamailTestRequestDocument);
+            assertEquals(this.testRequestDocument.getMissiveId(), document.getMissiveId());
+            assertTrue(document.getValidationResult().isValid());
+
+            // activation.request@payment.activation missive, of which the attachment is no longer written as CDATA
+            assertTrue(reader.hasNext());
+            document = reader.next();
+            assertTrue(document instanceof SepamailPaymentActivationRequestDocument);
+            SepamailPaymentActivationRequestDocument activation = (SepamailPaymentActivationRequestDocument) document;
+            assertEquals(2, activation.getSemRequestAndComplements().size());
+            assertEquals("MSG0", activation.getSemRequestAndComplementsAtIndex(0).getMessageId());
+            assertEquals(1, activation.getSemHURADocuments().size());
+            assertEquals(this.activationDocument.toString().replace("<![CDATA[", "").replace("]]>", ""),
+                    activation.toString());
+            assertTrue(document.getValidationResult().isValid());
+
+            // Missive of a custom message type
+            assertTrue(reader.hasNext());
+            document = reader.next();
+            assertTrue(document instanceof SepamailGenericDocument);
+            assertEquals(this.genericDocument.toString(), document.toString());
+
+            // End of the file
+            assertFalse(reader.hasNext());
+            assertFalse(reader.hasNext());
+            try {
+                reader.next();
+                fail("NoSuchElementException expected");
+            } catch (NoSuchElementException ex) {
+                assertNotNull(ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Test of nextHeader method, of class MissiveFileReader.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNextHeader() throws Exception {
+
+        try (MissiveFileReader reader = this.open(this.content)) {
+
+            // Routing headers and documents may be mixed
+            MissiveRoutingHeader header = reader.nextHeader();
+            assertEquals(this.testRequestDocument.getMissiveId(), header.getMissiveId());
+            assertEquals(MessageType.SIMPLE_REQUEST_TEST.toString(), header.getMessageType());
+            header = reader.nextHeader();
+            assertEquals(this.activationDocument.getMissiveId(), header.getMissiveId());
+            assertEquals(this.activationDocument.getMessageId(), header.getMessageId());
+            DocumentBase document = reader.next();
+            assertEquals(this.genericDocument.getMissiveId(), document.getMissiveId());
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    /**
+     * Test of documents and headers methods, of class MissiveFileReader, with a missive file read from a file
+     * channel.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIterators() throws Exception {
+
+        File file = File.createTempFile("missive-file", ".xml");
+        try {
+            Files.write(file.toPath(), this.content.getBytes(StandardCharsets.UTF_8));
+
+            // Documents of the file
+            try (MissiveFileReader reader = new MissiveFileReader(FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ))) {
+                int count = 0;
+                for (Iterator<DocumentBase> documents = reader.documents(); documents.hasNext();) {
+                    assertNotNull(documents.next().getMissiveId());
+                    count++;
+                }
+                assertEquals(3, count);
+            }
+
+            // Routing headers of the file
+            try (MissiveFileReader reader = new MissiveFileReader(FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ))) {
+                Iterator<MissiveRoutingHeader> headers = reader.headers();
+                assertEquals(this.testRequestDocument.getMissiveId(), headers.next().getMissiveId());
+                assertEquals(this.activationDocument.getMissiveId(), headers.next().getMissiveId());
+                assertEquals("a.filed.message@type", headers.next().getMessageType());
+                assertFalse(headers.hasNext());
+            }
+
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test of MissiveFileReader constructor and next method, with invalid missive files.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReadFails() throws Exception {
+
+        // Invalid file headers
+        for (String invalid : new String[] {"<Fichier/>", this.content.replaceFirst("<sem:NbMsv>3", "<sem:NbMsv>x"),
+                this.content.replaceFirst("<sem:Partner>.*</sem:Partner>", "")}) {
+            try {
+                this.open(invalid);
+                fail("SmogException expected");
+            } catch (SmogException ex) {
+                assertNotNull(ex.getMessage());
+            }
+        }
+
+        // Invalid missive
+        try (MissiveFileReader reader = this.open(this.content.replaceFirst("<sem:MsvHdr>", "<sem:Unknown>")
+                .replaceFirst("</sem:MsvHdr>", "</sem:Unknown>"))) {
+            reader.next();
+            fail("SmogException expected");
+        } catch (SmogException ex) {
+            assertNotNull(ex.getMessage());
+        }
+
+        // Invalid missive read through an iterator
+        try (MissiveFileReader reader = this.open(this.content.replaceFirst("<sem:Msv ", "<sem:Other "))) {
+            reader.headers().hasNext();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getCause() instanceof SmogException);
+        }
+    }
+
+    /**
+     * Create the content of a missive file holding the given missives
+     *
+     * @param documents Missives of the file
+     * @return Content of the missive file
+     * @throws IOException
+     */
+    static String createMissiveFile(DocumentBase... documents) throws IOException {
+
+        // File header
+        StringBuilder file = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        file.append("<sem:Fichier xmlns:sem=\"http://xsd.sepamail.eu/1206/\">");
+        file.append("<sem:DatTim>2013-05-23T10:34:00</sem:DatTim>");
+        file.append("<sem:Partner><sem:Sender>TESTBICXXXX</sem:Sender></sem:Partner>");
+        file.append("<sem:NbMsv>").append(documents.length).append("</sem:NbMsv>");
+
+        // Missives of the file, without their XML declaration and renamed after the missives of files
+        for (DocumentBase document : documents) {
+            file.append(document.toString(SerializationMode.COMPACT).replaceFirst("^<\\?xml[^>]*\\?>\\s*", "")
+                    .replaceFirst("^<sem:Missive", "<sem:Msv").replaceFirst("</sem:Missive>\\s*$", "</sem:Msv>"));
+        }
+
+        return file.append("</sem:Fichier>").toString();
+    }
+
+    /**
+     * Open a reader over the given missive file
+     *
+     * @param file Content of the missive file
+     * @return Reader of the missive file
+     * @throws SmogException
+     */
+    private MissiveFileReader open(String file) throws SmogException {
+
+        return new MissiveFileReader(new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,172 @@
+package smog.missive;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import smog.io.SerializationMode;
+import smog.schema.sem.BICorIBAN;
+import smog.schema.sem.ReceiverIdentifier;
+import smog.schema.sem.SenderOrReceiver;
+
+/**
+ * MissiveFileWriterTest tests the writer of missive files {@link MissiveFileWriter}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveFileWriterTest {
+
+    private SepamailPaymentActivationRequestDocument activationDocument;
+    private File file;
+    private Calendar fileDateTime;
+    private SenderOrReceiver partner;
+    private SepamailTestRequestDocument testRequestDocument;
+
+    /**
+     * Set up the missives of the file and the file to which they are written
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+
+        // Initialise the missive recipient
+        ReceiverIdentifier recipient = ReceiverIdentifier.Factory.newInstance();
+        recipient.setIBAN("QX51TESTBLEUXIG52I8X2445SGSUWESM");
+
+        // Initialise the missive sender
+        BICorIBAN sender = BICorIBAN.Factory.newInstance();
+        sender.setIBAN("QX58TESTORANGEX8KH8P5TCYAGM22M38NQ");
+
+        // Missives of the file
+        this.testRequestDocument = new SepamailTestRequestDocument(recipient, sender, Calendar.getInstance(),
+                "9B4895CC137", null, "simple.request@test file text", null);
+        this.activationDocument = TestUtils.createPaymentActivationRequestDocument(2, 2, new byte[] {1, 2, 3});
+
+        // File header
+        this.fileDateTime = Calendar.getInstance();
+        this.partner = SenderOrReceiver.Factory.newInstance();
+        this.partner.setReceiver("TESTBICXXXX");
+
+        this.file = File.createTempFile("missive-file", ".xml");
+    }
+
+    /**
+     * Delete the file written by the test
+     */
+    @After
+    public void tearDown() {
+
+        this.file.delete();
+    }
+
+    /**
+     * Test of append method, of class MissiveFileWriter.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAppend() throws Exception {
+
+        // Write the missives
+        try (MissiveFileWriter writer = this.open(SerializationMode.COMPACT)) {
+            writer.append(this.testRequestDocument);
+            writer.append(this.activationDocument);
+            writer.append(this.testRequestDocument);
+            assertEquals(3, writer.getMissiveCount());
+        }
+
+        // The missives are written as by toString()
+        String content = new String(Files.readAllBytes(this.file.toPath()), StandardCharsets.UTF_8);
+        assertTrue(content.contains("<sem:NbMsv>0000000000000000003</sem:NbMsv><sem:Msv "));
+        assertEquals(MissiveFileReaderTest.createMissiveFile(this.testRequestDocument, this.activationDocument,
+                this.testRequestDocument), content.replaceFirst("<sem:DatTim>.*</sem:NbMsv>",
+                "<sem:DatTim>2013-05-23T10:34:00</sem:DatTim><sem:Partner><sem:Sender>TESTBICXXXX</sem:Sender>"
+                + "</sem:Partner><sem:NbMsv>3</sem:NbMsv>"));
+
+        // Read the file back
+        try (MissiveFileReader reader = new MissiveFileReader(FileChannel.open(this.file.toPath(),
+                StandardOpenOption.READ))) {
+            assertEquals(3, reader.getMissiveCount().intValue());
+            assertEquals("TESTBICXXXX", reader.getPartner().getReceiver());
+            assertEquals(this.fileDateTime.getTimeInMillis(), reader.getFileDateTime().getTimeInMillis());
+            assertEquals(this.testRequestDocument.toString(), reader.next().toString());
+            assertEquals(this.activationDocument.toString().replace("<![CDATA[", "").replace("]]>", ""),
+                    reader.next().toString());
+            assertEquals(this.testRequestDocument.getMissiveId(), reader.nextHeader().getMissiveId());
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    /**
+     * Test of append method, of class MissiveFileWriter, with the pretty layout and without missives.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAppendPretty() throws Exception {
+
+        // File without missives
+        try (MissiveFileWriter writer = this.open(SerializationMode.PRETTY)) {
+            assertEquals(0, writer.getMissiveCount());
+        }
+        try (MissiveFileReader reader = new MissiveFileReader(FileChannel.open(this.file.toPath(),
+                StandardOpenOption.READ))) {
+            assertEquals(0, reader.getMissiveCount().intValue());
+            assertFalse(reader.hasNext());
+        }
+
+        // File with missives in the pretty layout
+        try (MissiveFileWriter writer = this.open(SerializationMode.PRETTY)) {
+            writer.append(this.activationDocument);
+        }
+        try (MissiveFileReader reader = new MissiveFileReader(FileChannel.open(this.file.toPath(),
+                StandardOpenOption.READ))) {
+            assertEquals(1, reader.getMissiveCount().intValue());
+            assertEquals(this.activationDocument.toString().replace("<![CDATA[", "").replace("]]>", ""),
+                    reader.next().toString());
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    /**
+     * Test of close method, of class MissiveFileWriter.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testClose() throws Exception {
+
+        // Missives cannot be appended once the writer is closed
+        MissiveFileWriter writer = this.open(SerializationMode.COMPACT);
+        writer.append(this.testRequestDocument);
+        writer.close();
+        writer.close();
+        try {
+            writer.append(this.testRequestDocument);
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            assertNotNull(ex.getMessage());
+        }
+        assertEquals(1, writer.getMissiveCount());
+    }
+
+    /**
+     * Open a writer over the file of the test
+     *
+     * @param mode Layout of the missives of the file
+     * @return Writer of the missive file
+     * @throws Exception
+     */
+    private MissiveFileWriter open(SerializationMode mode) throws Exception {
+
+        return new MissiveFileWriter(FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), this.fileDateTime, this.partner, mode);
+    }
+}
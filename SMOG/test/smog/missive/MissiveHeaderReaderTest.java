@@ -0,0 +1,114 @@
+package smog.missive;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import smog.exception.SmogException;
+import smog.schema.sem.MessageType;
+import smog.schema.sem.MissiveType;
+import smog.schema.sem.PriorityCode;
+
+/**
+ * MissiveHeaderReaderTest tests the reader of the routing fields of missives {@link MissiveHeaderReader}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MissiveHeaderReaderTest {
+
+    private SepamailPaymentActivationRequestDocument document;
+    private MissiveHeaderReader missiveHeaderReader;
+
+    /**
+     * Set up a clean instance of the activation.request@payment.activation missive and of the reader
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+
+        this.document = TestUtils.createPaymentActivationRequestDocument(2, 2, new byte[] {1, 2, 3});
+        this.missiveHeaderReader = new MissiveHeaderReader();
+    }
+
+    /**
+     * Test of read method, of class MissiveHeaderReader.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRead() throws Exception {
+
+        this.document.setMissivePriority(PriorityCode.HIGH);
+        MissiveRoutingHeader header = this.read(this.document.toString());
+
+        assertEquals(this.document.getMissiveId(), header.getMissiveId());
+        assertEquals(MissiveType.NOMINAL, header.getMissiveType());
+        assertEquals(this.document.getMissiveOrder(), header.getMissiveOrder());
+        assertEquals(PriorityCode.HIGH, header.getMissivePriority());
+        assertEquals("IBAN", header.getSenderScheme());
+        assertEquals(this.document.getSender().getIBAN(), header.getSender());
+        assertEquals(this.document.getSendDateTime().getTimeInMillis(), header.getSendDateTime().getTimeInMillis());
+        assertEquals("IBAN", header.getRecipientScheme());
+        assertEquals(this.document.getRecipient().getIBAN(), header.getRecipient());
+        assertEquals(this.document.getMessageId(), header.getMessageId());
+        assertEquals(MessageType.ACTIVATION_REQUEST_PAYMENT_ACTIVATION.toString(), header.getMessageType());
+        assertEquals(MessageType.ACTIVATION_REQUEST_PAYMENT_ACTIVATION,
+                header.getMessageTypeDefinition().getSchemaMessageType());
+
+        // The calendars given by the header are not shared
+        header.getSendDateTime().add(Calendar.YEAR, 1);
+        assertEquals(this.document.getSendDateTime().getTimeInMillis(), header.getSendDateTime().getTimeInMillis());
+    }
+
+    /**
+     * Test of read method, of class MissiveHeaderReader, with a message body which is not read.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReadStopsAtMessageBody() throws Exception {
+
+        // Truncate the missive inside the message body
+        String content = this.document.toString();
+        content = content.substring(0, content.indexOf("MsgBdy>") + "MsgBdy>".length()) + "<unclosed";
+
+        MissiveRoutingHeader header = this.read(content);
+        assertEquals(this.document.getMissiveId(), header.getMissiveId());
+        assertEquals(this.document.getMessageId(), header.getMessageId());
+    }
+
+    /**
+     * Test of read method, of class MissiveHeaderReader, with missives which do not hold the routing fields.
+     */
+    @Test
+    public void testReadFails() {
+
+        String content = this.document.toString();
+        for (String invalid : new String[] {"<Missive/>", content.substring(0, content.indexOf("<sem:Rcv>")),
+                content.replaceFirst("<sem:MsvId>[^<]*</sem:MsvId>", ""),
+                content.replaceFirst("<sem:MsvOrd>[^<]*</sem:MsvOrd>", "<sem:MsvOrd>first</sem:MsvOrd>"),
+                content.replaceFirst("<sem:MsvTyp>[^<]*</sem:MsvTyp>", "<sem:MsvTyp>unknown</sem:MsvTyp>")}) {
+            try {
+                this.read(invalid);
+                fail("SmogException expected");
+            } catch (SmogException ex) {
+                assertNotNull(ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Read the routing fields of the given missive
+     *
+     * @param content XML content of the missive
+     * @return Routing fields of the missive
+     * @throws SmogException
+     */
+    private MissiveRoutingHeader read(String content) throws SmogException {
+
+        return this.missiveHeaderReader.read(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
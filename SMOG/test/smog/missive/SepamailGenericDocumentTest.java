@@ -1,6 +1,9 @@
 package smog.missive;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
 import static org.junit.Assert.*;
@@ -8,8 +11,10 @@ import org.junit.Before;
 import org.junit.Test;
 import smog.exception.SmogException;
 import smog.schema.sem.BICorIBAN;
+import smog.schema.sem.MessageType;
 import smog.schema.sem.MissiveDocument;
 import smog.schema.sem.ReceiverIdentifier;
+import smog.validation.ValidationResult;
 
 /**
  * SepamailGenericDocumentTest tests the generic missive document class {@link SepamailGenericDocument}
@@ -108,6 +113,54 @@ public class SepamailGenericDocumentTest {
         assertEquals(this.messageType, this.sepamailGenericDocument.getMessageType());
     }
 
+    /**
+     * Test of getMessageTypeDefinition method, of class SepamailGenericDocument.
+     */
+    @Test
+    public void testGetMessageTypeDefinition() {
+
+        // Predefined message types are resolved to their shared definition
+        MessageTypeDefinition definition = this.sepamailGenericDocument.getMessageTypeDefinition();
+        assertSame(MessageTypeRegistry.resolve(this.messageType), definition);
+        assertEquals(MessageType.SIMPLE_REQUEST_TEST, definition.getSchemaMessageType());
+        assertFalse(definition.isCustom());
+
+        // Custom message types are kept as they are in the message header
+        this.sepamailGenericDocument.setMessageType("a.new.message@type");
+        assertTrue(this.sepamailGenericDocument.getMessageTypeDefinition().isCustom());
+        assertTrue(this.sepamailGenericDocument.toString().contains(">a.new.message@type<"));
+    }
+
+    /**
+     * Test of parse method, of class DocumentBase, with a missive of a custom message type.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParse() throws Exception {
+
+        this.sepamailGenericDocument.setMessageType("a.parsed.message@type");
+        String content = this.sepamailGenericDocument.toString();
+
+        DocumentBase parsed = DocumentBase.parse(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        assertTrue(parsed instanceof SepamailGenericDocument);
+        SepamailGenericDocument document = (SepamailGenericDocument) parsed;
+        assertEquals("a.parsed.message@type", document.getMessageType());
+        assertTrue(document.getMessageTypeDefinition().isCustom());
+        assertTrue(document.getValidationResult().isValid());
+
+        // The generic message is the element held by the message body of the parsed missive
+        XmlCursor messageCursor = ((MissiveDocument) document.getMissiveXmlObject()).getMissive()
+                .getSepamailMissive001().getMsvBdy().getSepamailMessage001().getMsgBdy().newCursor();
+        messageCursor.toFirstChild();
+        assertSame(messageCursor.getObject(), document.getGenericSepamailMessage());
+        messageCursor.dispose();
+
+        // Building the document keeps the parsed message
+        document.build();
+        assertEquals(content, document.toString());
+    }
+
     /**
      * Test of setGenericSepamailMessage method, of class SepamailGenericDocument.
      */
@@ -195,4 +248,35 @@ public class SepamailGenericDocumentTest {
         }
         assertFalse(result);
     }
+
+    /**
+     * Test of getValidationResult method, of class SepamailGenericDocument.
+     */
+    @Test
+    public void testGetValidationResult() {
+
+        // An unknown message type is not reported
+        this.sepamailGenericDocument.setMessageType("a.new.message@type");
+        assertTrue(this.sepamailGenericDocument.getValidationResult(true).isValid());
+        assertTrue(this.sepamailGenericDocument.getValidationResult(false).getErrors().isEmpty());
+
+        // Other errors of a message header holding an unknown message type are reported as for a predefined message
+        // type and located in the message header
+        this.sepamailGenericDocument.setMessageId(new String(new char[201]).replace('\0', 'X'));
+        ValidationResult customResult = this.sepamailGenericDocument.getValidationResult(false);
+        this.sepamailGenericDocument.setMessageType(this.messageType);
+        ValidationResult predefinedResult = this.sepamailGenericDocument.getValidationResult(false);
+        assertEquals(predefinedResult.getMessage(";"), customResult.getMessage(";"));
+        XmlCursor customLocation = customResult.getErrors().get(0).getCursorLocation();
+        XmlCursor predefinedLocation = predefinedResult.getErrors().get(0).getCursorLocation();
+        assertTrue(customLocation.isAtSamePositionAs(predefinedLocation));
+        customLocation.dispose();
+        predefinedLocation.dispose();
+
+        // A blank message type is reported
+        this.sepamailGenericDocument.setMessageType("");
+        ValidationResult result = this.sepamailGenericDocument.getValidationResult(false);
+        assertFalse(result.isValid());
+        assertFalse(result.getErrors().isEmpty());
+    }
 }
@@ -0,0 +1,592 @@
+package smog.missive;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.xmlbeans.XmlCursor;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import smog.io.AttachmentReference;
+import smog.io.MemoryAttachmentStore;
+import smog.missive.structure.Pain013CreditTransferTransactionInformation;
+import smog.missive.structure.Pain013InstructionForCreditorAgent;
+import smog.missive.structure.Pain013PaymentInformation;
+import smog.missive.structure.SemHURADocument;
+import smog.missive.structure.SemRequestAndComplements;
+import smog.schema.p13.Instruction3Code;
+import smog.schema.sem.DocumentType;
+import smog.schema.sem.MissiveDocument;
+import smog.schema.sem.RequestAndComplements;
+import smog.schema.sem.SepamailMessagePaymentActivationRequest001;
+import smog.validation.BusinessRule;
+import smog.validation.BusinessRuleViolation;
+import smog.validation.ValidationErrorCollector;
+import smog.validation.ValidationResult;
+
+/**
+ * SepamailPaymentActivationRequestDocumentTest tests the missive document class
+ * {@link SepamailPaymentActivationRequestDocument} for activation.request@payment.activation messages.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class SepamailPaymentActivationRequestDocumentTest {
+
+    private SepamailPaymentActivationRequestDocument sepamailPaymentActivationRequestDocument;
+
+    /**
+     * Set up a clean instance of the activation.request@payment.activation missive object
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+
+        this.sepamailPaymentActivationRequestDocument = TestUtils.createPaymentActivationRequestDocument(3, 2,
+                new byte[] {1, 2, 3});
+    }
+
+    /**
+     * Test of addRequestAndComplements method, of class SepamailPaymentActivationRequestDocument.
+     */
+    @Test
+    public void testAddRequestAndComplements() {
+
+        this.sepamailPaymentActivationRequestDocument.addRequestAndComplements(
+                TestUtils.createRequestAndComplements("ADDED", 1));
+
+        SepamailMessagePaymentActivationRequest001 message = this.getMessage();
+        assertEquals(4, message.sizeOfReqComplArray());
+        assertEquals(BigInteger.valueOf(4), message.getHeader().getNbOfRequests());
+        assertEquals("ADDED", message.getReqComplArray(3).getRequest().getGrpHdr().getMsgId());
+        this.assertSameAsRebuiltDocument();
+    }
+
+    /**
+     * Test of addHURADocument method, of class SepamailPaymentActivationRequestDocument.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAddHURADocument() throws Exception {
+
+        this.sepamailPaymentActivationRequestDocument.addHURADocument(
+                TestUtils.createPaymentActivationRequestDocument(0, 0, new byte[] {4, 5}).getSemHURADocumentsAtIndex(0));
+
+        assertEquals(2, this.getMessage().getHeader().sizeOfDocumentsArray());
+        this.assertSameAsRebuiltDocument();
+    }
+
+    /**
+     * Test of addHURADocument method with attachment data held by an attachment store, of class
+     * SepamailPaymentActivationRequestDocument.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAddHURADocumentFromStore() throws Exception {
+
+        try (MemoryAttachmentStore store = new MemoryAttachmentStore()) {
+
+            // HURA document holding a reference to the attachment data
+            AttachmentReference reference = store.put(new byte[] {4, 5, 6});
+            SemHURADocument huraDocument = new SemHURADocument(reference, Calendar.getInstance(), "terms.pdf", "fr",
+                    "application/pdf", "REF-002", "Terms", DocumentType.INVOICE);
+            this.sepamailPaymentActivationRequestDocument.addHURADocument(huraDocument);
+            assertEquals(reference.getUri(), huraDocument.getAttachmentReference().getUri());
+            assertNull(this.sepamailPaymentActivationRequestDocument.getSemHURADocumentsAtIndex(0)
+                    .getAttachmentReference());
+
+            // The attachment data is inlined when the missive is serialized
+            String content = this.sepamailPaymentActivationRequestDocument.toString();
+            assertTrue(content.contains("<sem:data><![CDATA[BAUG]]></sem:data>"));
+            assertTrue(this.sepamailPaymentActivationRequestDocument.getValidationResult().isValid());
+            SepamailPaymentActivationRequestDocument parsed = (SepamailPaymentActivationRequestDocument)
+                    DocumentBase.parse(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+            assertEquals(content, parsed.toString());
+        }
+    }
+
+    /**
+     * Test of addAllRequestAndComplements method, of class SepamailPaymentActivationRequestDocument.
+     */
+    @Test
+    public void testAddAllRequestAndComplements() {
+
+        this.sepamailPaymentActivationRequestDocument.addAllRequestAndComplements(Arrays.asList(
+                TestUtils.createRequestAndComplements("FIRST", 1), TestUtils.createRequestAndComplements("SECOND", 2)));
+
+        SepamailMessagePaymentActivationRequest001 message = this.getMessage();
+        assertEquals(5, message.sizeOfReqComplArray());
+        assertEquals(BigInteger.valueOf(5), message.getHeader().getNbOfRequests());
+        assertEquals("FIRST", message.getReqComplArray(3).getRequest().getGrpHdr().getMsgId());
+        assertEquals("SECOND", message.getReqComplArray(4).getRequest().getGrpHdr().getMsgId());
+        assertSame(this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(4)
+                .getRequestAndComplements(), message.getReqComplArray(4));
+        this.assertSameAsRebuiltDocument();
+    }
+
+    /**
+     * Test of addAllHURADocuments method, of class SepamailPaymentActivationRequestDocument.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAddAllHURADocuments() throws Exception {
+
+        this.sepamailPaymentActivationRequestDocument.addAllHURADocuments(
+                TestUtils.createPaymentActivationRequestDocument(0, 0, new byte[] {4, 5}).getSemHURADocuments());
+
+        assertEquals(2, this.getMessage().getHeader().sizeOfDocumentsArray());
+        this.assertSameAsRebuiltDocument();
+    }
+
+    /**
+     * Test of the bulk constructor, of class SepamailPaymentActivationRequestDocument.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBulkConstructor() throws Exception {
+
+        ArrayList<SemRequestAndComplements> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            requests.add(TestUtils.createRequestAndComplements("MSG" + i, 2));
+        }
+
+        SepamailPaymentActivationRequestDocument document = new SepamailPaymentActivationRequestDocument(
+                this.sepamailPaymentActivationRequestDocument.getRecipient(),
+                this.sepamailPaymentActivationRequestDocument.getSender(), Calendar.getInstance(), null,
+                Calendar.getInstance(), requests,
+                TestUtils.createPaymentActivationRequestDocument(0, 0, new byte[] {4, 5}).getSemHURADocuments());
+        this.sepamailPaymentActivationRequestDocument = document;
+
+        SepamailMessagePaymentActivationRequest001 message = this.getMessage();
+        assertEquals(3, message.sizeOfReqComplArray());
+        assertEquals(BigInteger.valueOf(3), message.getHeader().getNbOfRequests());
+        assertEquals(1, message.getHeader().sizeOfDocumentsArray());
+        assertEquals("MSG2", message.getReqComplArray(2).getRequest().getGrpHdr().getMsgId());
+        this.assertSameAsRebuiltDocument();
+    }
+
+    /**
+     * Test of removeSemRequestAndComplements method, of class SepamailPaymentActivationRequestDocument.
+     */
+    @Test
+    public void testRemoveSemRequestAndComplements() {
+
+        assertTrue(this.sepamailPaymentActivationRequestDocument.removeSemRequestAndComplements(1));
+        assertFalse(this.sepamailPaymentActivationRequestDocument.removeSemRequestAndComplements(5));
+
+        SepamailMessagePaymentActivationRequest001 message = this.getMessage();
+        assertEquals(2, message.sizeOfReqComplArray());
+        assertEquals(BigInteger.valueOf(2), message.getHeader().getNbOfRequests());
+        assertEquals("MSG0", message.getReqComplArray(0).getRequest().getGrpHdr().getMsgId());
+        assertEquals("MSG2", message.getReqComplArray(1).getRequest().getGrpHdr().getMsgId());
+        this.assertSameAsRebuiltDocument();
+
+        // The segment of the removed element is removed when the list has been modified directly
+        this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplements().add(0,
+                TestUtils.createRequestAndComplements("DIRECT", 1));
+        assertTrue(this.sepamailPaymentActivationRequestDocument.removeSemRequestAndComplements(1));
+
+        message = this.getMessage();
+        assertEquals(1, message.sizeOfReqComplArray());
+        assertEquals("MSG2", message.getReqComplArray(0).getRequest().getGrpHdr().getMsgId());
+        this.sepamailPaymentActivationRequestDocument.build();
+        assertEquals("DIRECT", this.getMessage().getReqComplArray(0).getRequest().getGrpHdr().getMsgId());
+        this.assertSameAsRebuiltDocument();
+    }
+
+    /**
+     * Test of removeHURADocumentAtIndex method, of class SepamailPaymentActivationRequestDocument.
+     */
+    @Test
+    public void testRemoveHURADocumentAtIndex() {
+
+        assertTrue(this.sepamailPaymentActivationRequestDocument.removeHURADocumentAtIndex(0));
+        assertEquals(0, this.getMessage().getHeader().sizeOfDocumentsArray());
+        this.assertSameAsRebuiltDocument();
+    }
+
+    /**
+     * Test of clearRequestAndComplements method, of class SepamailPaymentActivationRequestDocument.
+     */
+    @Test
+    public void testClearRequestAndComplements() {
+
+        this.sepamailPaymentActivationRequestDocument.clearRequestAndComplements();
+
+        SepamailMessagePaymentActivationRequest001 message = this.getMessage();
+        assertEquals(0, message.sizeOfReqComplArray());
+        assertEquals(BigInteger.ZERO, message.getHeader().getNbOfRequests());
+    }
+
+    /**
+     * Test of modifications made through a request and complements element bound to the document.
+     */
+    @Test
+    public void testModifyBoundRequestAndComplements() {
+
+        this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(1).setMessageId("EDITED");
+
+        assertEquals("EDITED", this.getMessage().getReqComplArray(1).getRequest().getGrpHdr().getMsgId());
+        this.sepamailPaymentActivationRequestDocument.build();
+        assertTrue(this.sepamailPaymentActivationRequestDocument.toString().contains(">EDITED<"));
+        this.assertSameAsRebuiltDocument();
+    }
+
+    /**
+     * Test of modifications made through a request and complements element removed from the document.
+     */
+    @Test
+    public void testModifyRemovedRequestAndComplements() {
+
+        SemRequestAndComplements removed =
+                this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(2);
+        assertTrue(this.sepamailPaymentActivationRequestDocument.removeSemRequestAndComplements(2));
+        removed.setMessageId("REMOVED");
+
+        assertEquals("REMOVED", removed.getRequestAndComplements().getRequest().getGrpHdr().getMsgId());
+        assertEquals("MSG1", this.getMessage().getReqComplArray(1).getRequest().getGrpHdr().getMsgId());
+        assertFalse(this.sepamailPaymentActivationRequestDocument.toString().contains("REMOVED"));
+    }
+
+    /**
+     * Test of the rendered content of the document after a modification made through a bound structure object.
+     */
+    @Test
+    public void testRenderedContentFollowsBoundModifications() {
+
+        long version = this.sepamailPaymentActivationRequestDocument.getVersionTracker().getVersion();
+        assertFalse(this.sepamailPaymentActivationRequestDocument.toString().contains("EDITED"));
+
+        this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(0)
+                .getPaymentInformationAtIndex(0).setId("EDITED");
+
+        assertTrue(this.sepamailPaymentActivationRequestDocument.getVersionTracker().getVersion() > version);
+        assertTrue(this.sepamailPaymentActivationRequestDocument.toString().contains(">EDITED<"));
+    }
+
+    /**
+     * Test of setMessageExpiry method, of class SepamailPaymentActivationRequestDocument.
+     */
+    @Test
+    public void testSetMessageExpiryKeepsRequests() {
+
+        SemRequestAndComplements request =
+                this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(1);
+        this.sepamailPaymentActivationRequestDocument.setMessageExpiry(Calendar.getInstance());
+
+        assertSame(request.getRequestAndComplements(), this.getMessage().getReqComplArray(1));
+        this.assertSameAsRebuiltDocument();
+    }
+
+    /**
+     * Test of build method, of class SepamailPaymentActivationRequestDocument, after the list of requests has been
+     * modified directly.
+     */
+    @Test
+    public void testBuildAfterListModification() {
+
+        RequestAndComplements[] reqCompls = this.getMessage().getReqComplArray();
+        this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplements().add(
+                TestUtils.createRequestAndComplements("DIRECT", 1));
+        this.sepamailPaymentActivationRequestDocument.build();
+
+        assertEquals(4, this.getMessage().sizeOfReqComplArray());
+        assertEquals("DIRECT", this.getMessage().getReqComplArray(3).getRequest().getGrpHdr().getMsgId());
+        for (int i = 0; i < reqCompls.length; i++) {
+            assertSame(reqCompls[i], this.getMessage().getReqComplArray(i));
+        }
+
+        // Only the segments following a request removed from or moved in the list are replaced
+        ArrayList<SemRequestAndComplements> requests =
+                this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplements();
+        requests.remove(1);
+        requests.add(requests.remove(1));
+        this.sepamailPaymentActivationRequestDocument.build();
+
+        assertEquals(3, this.getMessage().sizeOfReqComplArray());
+        assertSame(reqCompls[0], this.getMessage().getReqComplArray(0));
+        assertEquals("DIRECT", this.getMessage().getReqComplArray(1).getRequest().getGrpHdr().getMsgId());
+        assertEquals("MSG2", this.getMessage().getReqComplArray(2).getRequest().getGrpHdr().getMsgId());
+        this.assertSameAsRebuiltDocument();
+    }
+
+    /**
+     * Test of getBusinessRuleResult method, of class SepamailPaymentActivationRequestDocument.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGetBusinessRuleResult() throws Exception {
+
+        SepamailPaymentActivationRequestDocument document =
+                TestUtils.createPaymentActivationRequestDocument(3, 1, null);
+        assertTrue(document.getBusinessRuleResult(false).isValid());
+
+        document.getSemRequestAndComplementsAtIndex(1).setControlSum(new BigDecimal("20.00"));
+        document.getSemRequestAndComplementsAtIndex(2).setControlSum(new BigDecimal("5"));
+        ValidationResult result = document.getBusinessRuleResult(false);
+
+        assertEquals(2, result.getErrors().size());
+        assertEquals(BusinessRule.CONTROL_SUM, ((BusinessRuleViolation) result.getErrors().get(0)).getRule());
+        assertEquals(this.getMessage(document).getReqComplArray(1).getRequest().getGrpHdr().xgetCtrlSum(),
+                result.getErrors().get(0).getObjectLocation());
+        assertEquals(1, document.getBusinessRuleResult(true).getErrors().size());
+    }
+
+    /**
+     * Test of getBusinessRuleResult method, of class SepamailPaymentActivationRequestDocument, for requests holding
+     * several transactions.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGetBusinessRuleResultWithSeveralTransactions() throws Exception {
+
+        SepamailPaymentActivationRequestDocument document =
+                TestUtils.createPaymentActivationRequestDocument(1, 3, null);
+        assertTrue(document.getBusinessRuleResult(false).isValid());
+        assertEquals("3", this.getMessage(document).getReqComplArray(0).getRequest().getGrpHdr().getNbOfTxs());
+
+        // Transactions added to a payment information which is already part of the document are counted as well
+        SemRequestAndComplements requestAndComplements = document.getSemRequestAndComplementsAtIndex(0);
+        requestAndComplements.getPaymentInformationAtIndex(0).addCreditTransferTransactionInformation(
+                TestUtils.createCreditTransferTransactionInformation("ADDED", new BigDecimal("2.50")));
+        ValidationResult result = document.getBusinessRuleResult(false);
+        assertEquals("4", requestAndComplements.getRequestAndComplements().getRequest().getGrpHdr().getNbOfTxs());
+
+        // The declared control sum is kept, the difference being reported
+        assertEquals(1, result.getErrors().size());
+        assertEquals(BusinessRule.CONTROL_SUM, ((BusinessRuleViolation) result.getErrors().get(0)).getRule());
+        requestAndComplements.setControlSum(new BigDecimal("32.50"));
+        assertTrue(document.getBusinessRuleResult(false).isValid());
+        assertTrue(document.toString().contains("<pain013:CtrlSum>32.50</pain013:CtrlSum>"));
+
+        // The totals of a parsed request are left as they were received
+        requestAndComplements.getRequestAndComplements().getRequest().getGrpHdr().setNbOfTxs("5");
+        SepamailPaymentActivationRequestDocument parsed = (SepamailPaymentActivationRequestDocument)
+                DocumentBase.parse(new ByteArrayInputStream(document.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(BusinessRule.NUMBER_OF_TRANSACTIONS,
+                ((BusinessRuleViolation) parsed.getBusinessRuleResult(false).getErrors().get(0)).getRule());
+    }
+
+    /**
+     * Test of getValidationResult method, of class SepamailPaymentActivationRequestDocument.
+     */
+    @Test
+    public void testGetValidationResult() {
+
+        assertTrue(this.sepamailPaymentActivationRequestDocument.getValidationResult().isValid());
+
+        this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(2)
+                .getPaymentInformationAtIndex(0).setId("");
+        this.sepamailPaymentActivationRequestDocument.setMissivePriority(null);
+        ValidationResult result = this.sepamailPaymentActivationRequestDocument.getValidationResult();
+        ValidationResult failFastResult = this.sepamailPaymentActivationRequestDocument.getValidationResult(true);
+
+        ValidationErrorCollector errors = new ValidationErrorCollector(false);
+        errors.validate(this.sepamailPaymentActivationRequestDocument.getMissiveXmlObject());
+        ValidationResult expResult = errors.getResult();
+
+        assertEquals(2, result.getErrors().size());
+        assertEquals(expResult.getMessage("\n"), result.getMessage("\n"));
+        for (int i = 0; i < expResult.getErrors().size(); i++) {
+            assertEquals(expResult.getErrors().get(i).getErrorCode(), result.getErrors().get(i).getErrorCode());
+            assertEquals(expResult.getErrors().get(i).getObjectLocation(),
+                    result.getErrors().get(i).getObjectLocation());
+        }
+        assertEquals(1, failFastResult.getErrors().size());
+        assertEquals(expResult.getErrors().get(0).getMessage(), failFastResult.getErrors().get(0).getMessage());
+    }
+
+    /**
+     * Test of getValidationResult method, of class SepamailPaymentActivationRequestDocument, after a request has
+     * been modified.
+     */
+    @Test
+    public void testGetValidationResultAfterModification() {
+
+        SemRequestAndComplements unchanged =
+                this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(0);
+        SemRequestAndComplements modified =
+                this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(1);
+        this.sepamailPaymentActivationRequestDocument.getValidationResult();
+        ValidationResult unchangedResult = unchanged.getValidationResult();
+        ValidationResult modifiedResult = modified.getValidationResult();
+
+        modified.getPaymentInformationAtIndex(0).setId("");
+        assertFalse(this.sepamailPaymentActivationRequestDocument.getValidationResult().isValid());
+        assertSame(unchangedResult, unchanged.getValidationResult());
+        assertNotSame(modifiedResult, modified.getValidationResult());
+
+        modified.getPaymentInformationAtIndex(0).setId("PI");
+        assertTrue(this.sepamailPaymentActivationRequestDocument.getValidationResult().isValid());
+    }
+
+    /**
+     * Test of getValidationResult method, of class SepamailPaymentActivationRequestDocument, after a request has
+     * been modified directly through its message segment.
+     */
+    @Test
+    public void testGetValidationResultAfterDirectModification() {
+
+        SemRequestAndComplements unchanged =
+                this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(0);
+        SemRequestAndComplements modified =
+                this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(1);
+        assertTrue(this.sepamailPaymentActivationRequestDocument.getValidationResult().isValid());
+        ValidationResult unchangedResult = unchanged.getValidationResult();
+        assertTrue(modified.getValidationResult().isValid());
+
+        // The modification does not go through the request, so its version is unchanged
+        modified.getRequestAndComplements().getRequest().getGrpHdr().getInitgPty().setNm("");
+        assertFalse(modified.getRequestAndComplements().validate());
+        assertFalse(modified.getValidationResult().isValid());
+        assertFalse(this.sepamailPaymentActivationRequestDocument.getValidationResult().isValid());
+        assertSame(unchangedResult, unchanged.getValidationResult());
+    }
+
+    /**
+     * Test of getValidationResult method with an executor, of class SepamailPaymentActivationRequestDocument.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testGetValidationResultWithExecutor() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertTrue(this.sepamailPaymentActivationRequestDocument.getValidationResult(false, executor).isValid());
+            assertTrue(this.sepamailPaymentActivationRequestDocument.validate(executor));
+
+            SemRequestAndComplements modified =
+                    this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(2);
+            modified.getPaymentInformationAtIndex(0).setId("");
+            XmlCursor cursor = modified.getRequestAndComplements().newCursor();
+            cursor.toNextToken();
+            cursor.insertAttributeWithValue("Unexpected", "value");
+            cursor.dispose();
+            this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(0).setMessageId("");
+            this.sepamailPaymentActivationRequestDocument.setMissivePriority(null);
+            ValidationResult result = this.sepamailPaymentActivationRequestDocument.getValidationResult(false, executor);
+            ValidationResult failFastResult =
+                    this.sepamailPaymentActivationRequestDocument.getValidationResult(true, executor);
+
+            ValidationErrorCollector errors = new ValidationErrorCollector(false);
+            errors.validate(this.sepamailPaymentActivationRequestDocument.getMissiveXmlObject());
+            ValidationResult expResult = errors.getResult();
+
+            assertEquals(4, result.getErrors().size());
+            assertEquals(expResult.getMessage("\n"), result.getMessage("\n"));
+            for (int i = 0; i < expResult.getErrors().size(); i++) {
+                assertEquals(expResult.getErrors().get(i).getErrorCode(), result.getErrors().get(i).getErrorCode());
+                assertEquals(expResult.getErrors().get(i).getObjectLocation(),
+                        result.getErrors().get(i).getObjectLocation());
+            }
+            assertEquals(1, failFastResult.getErrors().size());
+            assertEquals(expResult.getErrors().get(0).getMessage(), failFastResult.getErrors().get(0).getMessage());
+
+            this.sepamailPaymentActivationRequestDocument.getValidationResult(false, executor);
+            assertEquals(2, modified.getValidationResult().getErrors().size());
+            assertSame(modified.getValidationResult(),
+                    modified.getValidationCache().getCachedResult(modified.getRequestAndComplements(),
+                    modified.getVersionTracker()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test of parse method, of class DocumentBase, with an activation.request@payment.activation missive.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParse() throws Exception {
+
+        this.sepamailPaymentActivationRequestDocument.getSemRequestAndComplementsAtIndex(0)
+                .getPaymentInformationAtIndex(0).getCreditTransferTransactionInformationAtIndex(0)
+                .addInstructionForCreditorAgent(new Pain013InstructionForCreditorAgent(Instruction3Code.PHOB, "Call"));
+        String content = this.sepamailPaymentActivationRequestDocument.toString();
+
+        DocumentBase parsed = DocumentBase.parse(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        assertTrue(parsed instanceof SepamailPaymentActivationRequestDocument);
+        SepamailPaymentActivationRequestDocument document = (SepamailPaymentActivationRequestDocument) parsed;
+        SepamailMessagePaymentActivationRequest001 message = this.getMessage(document);
+
+        // The structure objects are bound to the segments of the parsed missive
+        assertEquals(1, document.getSemHURADocuments().size());
+        assertSame(message.getHeader().getDocumentsArray(0), document.getSemHURADocumentsAtIndex(0).getDocument());
+        assertEquals(3, document.getSemRequestAndComplements().size());
+        SemRequestAndComplements requestAndComplements = document.getSemRequestAndComplementsAtIndex(0);
+        assertSame(message.getReqComplArray(0), requestAndComplements.getRequestAndComplements());
+        assertEquals("MSG0", requestAndComplements.getMessageId());
+        assertEquals("Request MSG0", requestAndComplements.getTitle());
+        Pain013PaymentInformation paymentInformation = requestAndComplements.getPaymentInformationAtIndex(0);
+        assertSame(message.getReqComplArray(0).getRequest().getPmtInfArray(0),
+                paymentInformation.getPaymentInstruction());
+        assertEquals("MSG0-PI", paymentInformation.getId());
+        assertEquals(2, paymentInformation.getCreditTransferTransactionInformation().size());
+        Pain013CreditTransferTransactionInformation ctti =
+                paymentInformation.getCreditTransferTransactionInformationAtIndex(0);
+        assertSame(message.getReqComplArray(0).getRequest().getPmtInfArray(0).getCdtTrfTxArray(0),
+                ctti.getCreditTransferTransactionInformation());
+        assertEquals(1, ctti.getInstructionsForCreditorAgent().size());
+        assertEquals(content, document.toString());
+        assertTrue(document.getValidationResult().isValid());
+
+        // Modifications of the structure objects are made in the parsed missive
+        long version = document.getVersionTracker().getVersion();
+        requestAndComplements.setMessageId("PARSED");
+        ctti.addInstructionForCreditorAgent(new Pain013InstructionForCreditorAgent(Instruction3Code.HOLD, "Hold"));
+        assertEquals("PARSED", message.getReqComplArray(0).getRequest().getGrpHdr().getMsgId());
+        assertEquals(2, message.getReqComplArray(0).getRequest().getPmtInfArray(0).getCdtTrfTxArray(0)
+                .sizeOfInstrForCdtrAgtArray());
+        assertTrue(document.getVersionTracker().getVersion() > version);
+        content = document.toString();
+        document.build();
+        assertEquals(content, document.toString());
+    }
+
+    /**
+     * Check that the document is unchanged by a complete rebuild
+     */
+    private void assertSameAsRebuiltDocument() {
+
+        String content = this.sepamailPaymentActivationRequestDocument.toString();
+        this.sepamailPaymentActivationRequestDocument.build();
+        assertEquals(this.sepamailPaymentActivationRequestDocument.toString(), content);
+    }
+
+    /**
+     * Get the payment activation request message of the missive document
+     *
+     * @return Payment activation request message
+     */
+    private SepamailMessagePaymentActivationRequest001 getMessage() {
+
+        return this.getMessage(this.sepamailPaymentActivationRequestDocument);
+    }
+
+    /**
+     * Get the payment activation request message of the given missive document
+     *
+     * @param document Payment activation request missive document
+     * @return Payment activation request message
+     */
+    private SepamailMessagePaymentActivationRequest001 getMessage(SepamailPaymentActivationRequestDocument document) {
+
+        return ((MissiveDocument) document.getMissiveXmlObject()).getMissive()
+                .getSepamailMissive001().getMsvBdy().getSepamailMessage001().getMsgBdy().getPaymentActivationRequest()
+                .getSepamailMessagePaymentActivationRequest001();
+    }
+}
@@ -1,16 +1,20 @@
 package smog.missive;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Calendar;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
+import org.apache.xmlbeans.XmlCursor;
 import org.junit.After;
 import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
+import smog.io.AttachmentReference;
 import smog.schema.sem.BICorIBAN;
 import smog.schema.sem.MissiveDocument;
 import smog.schema.sem.ReceiverIdentifier;
@@ -161,6 +165,60 @@ public class SepamailTestRequestDocumentTest {
         assertEquals(this.messageText, this.sepamailTestRequestDocument.getText());
     }
 
+    /**
+     * Test of parse method, of class DocumentBase, with a simple.request@test missive.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParse() throws Exception {
+
+        String content = this.sepamailTestRequestDocument.toString();
+        DocumentBase document = DocumentBase.parse(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(document instanceof SepamailTestRequestDocument);
+        SepamailTestRequestDocument testRequestDocument = (SepamailTestRequestDocument) document;
+        assertEquals(this.messageTestId, testRequestDocument.getTestId());
+        assertEquals(this.messageText, testRequestDocument.getText());
+        assertArrayEquals(this.sepamailTestRequestDocument.getData(), testRequestDocument.getData());
+        assertEquals(content, testRequestDocument.toString());
+
+        // The message is modified in the parsed missive
+        testRequestDocument.setText("Parsed text");
+        assertEquals("Parsed text", ((MissiveDocument) testRequestDocument.getMissiveXmlObject()).getMissive()
+                .getSepamailMissive001().getMsvBdy().getSepamailMessage001().getMsgBdy().getSimpleTestRequest()
+                .getText());
+    }
+
+    /**
+     * Test of parse method, of class DocumentBase, with a simple.request@test missive holding attachment references.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParseRemovesAttachmentReferences() throws Exception {
+
+        // Processing instructions standing for the data file, by URI and by the ID of a registered reference
+        File dataFile = new File(this.messageDataFilename);
+        XmlCursor cursor = new AttachmentReference(dataFile.toPath()).toXml().newCursor();
+        cursor.toFirstContentToken();
+        String references = "<?smog-attachment " + dataFile.toURI() + "?><?smog-attachment " + cursor.getTextValue() +
+                "?>";
+        cursor.dispose();
+
+        // Data of the parsed missive replaced by the processing instructions
+        String content = this.sepamailTestRequestDocument.toString();
+        assertTrue(content.contains(">" + this.messageEncodedData + "<"));
+        content = content.replace(">" + this.messageEncodedData + "<", ">" + references + "<");
+        SepamailTestRequestDocument testRequestDocument = (SepamailTestRequestDocument) DocumentBase.parse(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+
+        // The content of the file is neither read nor written
+        assertEquals(0, testRequestDocument.getData().length);
+        assertFalse(testRequestDocument.toString().contains(this.messageEncodedData));
+        assertFalse(testRequestDocument.toString().contains(AttachmentReference.TARGET));
+    }
+
     /**
      * Test of removeData method, of class SepamailTestRequestDocument.
      */
@@ -211,6 +269,41 @@ public class SepamailTestRequestDocumentTest {
         assertTrue(Arrays.equals(Base64.decodeBase64(newDataFileContent), this.sepamailTestRequestDocument.getData()));
     }
 
+    /**
+     * Test of setDataReference method, of class SepamailTestRequestDocument.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSetDataReference() throws Exception {
+
+        // The data file is only read when it is needed
+        this.sepamailTestRequestDocument.setDataReference(new AttachmentReference(new File(this.messageDataFilename)
+                .toPath()));
+        assertArrayEquals(Base64.decodeBase64(this.messageEncodedData), this.sepamailTestRequestDocument.getData());
+        assertTrue(this.sepamailTestRequestDocument.toString().contains(this.messageEncodedData));
+
+        // Replace the content of the data file without modifying the document
+        String newDataFileContent = Base64.encodeBase64String("New data file content".getBytes(StandardCharsets.UTF_8));
+        TestUtils.createDataFileFromEncodedString(this.messageDataFilename, newDataFileContent);
+
+        String content = this.sepamailTestRequestDocument.toString();
+        assertTrue(content.contains(newDataFileContent));
+        assertFalse(content.contains(this.messageEncodedData));
+    }
+
+    /**
+     * Test of toString method when the data file cannot be read, of class SepamailTestRequestDocument.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testToStringWithoutDataFile() {
+
+        this.sepamailTestRequestDocument.setDataReference(new AttachmentReference(new File(this.messageDataFilename)
+                .toPath()));
+        new File(this.messageDataFilename).delete();
+        this.sepamailTestRequestDocument.toString();
+    }
+
     /**
      * Test of setTestId method, of class SepamailTestRequestDocument.
      */
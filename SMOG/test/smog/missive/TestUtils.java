@@ -4,8 +4,26 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Calendar;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
+import smog.missive.structure.Pain013CreditTransferTransactionInformation;
+import smog.missive.structure.Pain013PaymentInformation;
+import smog.missive.structure.SemHURADocument;
+import smog.missive.structure.SemRequestAndComplements;
+import smog.schema.p13.ActiveOrHistoricCurrencyAndAmount;
+import smog.schema.p13.AmountType3Choice;
+import smog.schema.p13.BranchAndFinancialInstitutionIdentification5;
+import smog.schema.p13.ChargeBearerType1Code;
+import smog.schema.p13.PartyIdentification43;
+import smog.schema.p13.PaymentIdentification1;
+import smog.schema.p13.PaymentMethod7Code;
+import smog.schema.sem.BICorIBAN;
+import smog.schema.sem.DocumentType;
+import smog.schema.sem.PaymentConditions;
+import smog.schema.sem.ReceiverIdentifier;
+import smog.schema.sem.RelationType;
 
 /**
  * TestUtils groups static utility methods used throughout the test classes of SMOG.
@@ -34,4 +52,122 @@ public class TestUtils {
         // Write data to file
         IOUtils.write(decodedData, fos);
     }
+
+    /**
+     * Create a creditor payment activation request missive document
+     *
+     * Each request contains a single payment information block with the given number of credit transfer transactions
+     * of 10.00 EUR each.
+     *
+     * @param requestCount Number of requests and complements to add to the document
+     * @param transactionCount Number of credit transfer transactions in each request
+     * @param attachment Content of a HURA document to attach or null
+     * @return Creditor payment activation request missive document
+     * @throws IOException
+     */
+    public static SepamailPaymentActivationRequestDocument createPaymentActivationRequestDocument(int requestCount,
+            int transactionCount, byte[] attachment) throws IOException {
+
+        // Initialise the missive recipient
+        ReceiverIdentifier recipient = ReceiverIdentifier.Factory.newInstance();
+        recipient.setIBAN("QX51TESTBLEUXIG52I8X2445SGSUWESM");
+
+        // Initialise the missive sender
+        BICorIBAN sender = BICorIBAN.Factory.newInstance();
+        sender.setIBAN("QX58TESTORANGEX8KH8P5TCYAGM22M38NQ");
+
+        // Creditor payment activation request document
+        SepamailPaymentActivationRequestDocument document = new SepamailPaymentActivationRequestDocument(recipient,
+                sender, Calendar.getInstance(), null, Calendar.getInstance());
+
+        // Attach the HURA document
+        if (attachment != null) {
+            document.addHURADocument(new SemHURADocument(attachment, Calendar.getInstance(), "invoice.txt", "fr",
+                    "text/plain", "REF-001", "Invoice", DocumentType.INVOICE));
+        }
+
+        // Add the requests and complements
+        for (int i = 0; i < requestCount; i++) {
+            document.addRequestAndComplements(createRequestAndComplements("MSG" + i, transactionCount));
+        }
+
+        return document;
+    }
+
+    /**
+     * Create a request and complements with a single payment information block
+     *
+     * @param messageId ID of the request message
+     * @param transactionCount Number of credit transfer transactions of 10.00 EUR in the payment information block
+     * @return Request and complements
+     */
+    public static SemRequestAndComplements createRequestAndComplements(String messageId, int transactionCount) {
+
+        // Creditor party
+        PartyIdentification43 creditor = PartyIdentification43.Factory.newInstance();
+        creditor.setNm("Creditor & Sons <Ltd>");
+
+        // Creditor agent
+        BranchAndFinancialInstitutionIdentification5 creditorAgent =
+                BranchAndFinancialInstitutionIdentification5.Factory.newInstance();
+        creditorAgent.addNewFinInstnId().setBICFI("BNPAFRPP");
+
+        // Payment conditions
+        PaymentConditions paymentConditions = PaymentConditions.Factory.newInstance();
+        paymentConditions.setPmtModifAccepted(true);
+        paymentConditions.setImmPmtAccepted(false);
+
+        // Request and complements
+        SemRequestAndComplements requestAndComplements = new SemRequestAndComplements(messageId,
+                Calendar.getInstance(), new BigDecimal("10.00").multiply(new BigDecimal(transactionCount)), creditor,
+                null, paymentConditions, null, RelationType.Enum.forInt(1), "Request " + messageId, null);
+
+        // Payment information block
+        Pain013PaymentInformation paymentInformation = new Pain013PaymentInformation(messageId + "-PI",
+                PaymentMethod7Code.TRF, null, Calendar.getInstance(), creditor, null, creditorAgent, null, null);
+
+        // Add the credit transfer transactions
+        for (int i = 0; i < transactionCount; i++) {
+            paymentInformation.addCreditTransferTransactionInformation(
+                    createCreditTransferTransactionInformation(messageId + "-" + i, new BigDecimal("10.00")));
+        }
+
+        requestAndComplements.addPaymentInformation(paymentInformation);
+
+        return requestAndComplements;
+    }
+
+    /**
+     * Create a credit transfer transaction of the given amount in EUR
+     *
+     * @param endToEndId End to end identification of the transaction
+     * @param value Instructed amount of the transaction
+     * @return Credit transfer transaction information
+     */
+    public static Pain013CreditTransferTransactionInformation createCreditTransferTransactionInformation(
+            String endToEndId, BigDecimal value) {
+
+        // Creditor party
+        PartyIdentification43 creditor = PartyIdentification43.Factory.newInstance();
+        creditor.setNm("Creditor & Sons <Ltd>");
+
+        // Creditor agent
+        BranchAndFinancialInstitutionIdentification5 creditorAgent =
+                BranchAndFinancialInstitutionIdentification5.Factory.newInstance();
+        creditorAgent.addNewFinInstnId().setBICFI("BNPAFRPP");
+
+        // Payment identification
+        PaymentIdentification1 paymentIdentification = PaymentIdentification1.Factory.newInstance();
+        paymentIdentification.setEndToEndId(endToEndId);
+
+        // Instructed amount
+        AmountType3Choice amount = AmountType3Choice.Factory.newInstance();
+        ActiveOrHistoricCurrencyAndAmount instructedAmount = amount.addNewInstdAmt();
+        instructedAmount.setCcy("EUR");
+        instructedAmount.setBigDecimalValue(value);
+
+        return new Pain013CreditTransferTransactionInformation(paymentIdentification, null, amount,
+                ChargeBearerType1Code.SLEV, null, null, null, null, null, creditorAgent, creditor, null, null, null,
+                null, null);
+    }
 }
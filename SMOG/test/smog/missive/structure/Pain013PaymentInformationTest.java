@@ -0,0 +1,217 @@
+package smog.missive.structure;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import smog.missive.TestUtils;
+import smog.schema.p13.PartyIdentification43;
+import smog.schema.p13.PaymentIdentification1;
+import smog.schema.p13.PaymentInstruction5;
+import smog.schema.p13.PaymentMethod7Code;
+import smog.validation.ValidationResult;
+
+/**
+ * Pain013PaymentInformationTest tests the payment information class {@link Pain013PaymentInformation}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class Pain013PaymentInformationTest {
+
+    private Pain013PaymentInformation paymentInformation;
+
+    /**
+     * Set up a payment information block with five transactions
+     */
+    @Before
+    public void setUp() {
+
+        this.paymentInformation = new Pain013PaymentInformation("PI", PaymentMethod7Code.TRF, null,
+                Calendar.getInstance(), null, null, null, null, null);
+        for (int i = 0; i < 5; i++) {
+            this.paymentInformation.addCreditTransferTransactionInformation(
+                    TestUtils.createCreditTransferTransactionInformation("TX" + i, BigDecimal.TEN));
+        }
+    }
+
+    /**
+     * Test of addCreditTransferTransactionInformation method, of class Pain013PaymentInformation.
+     */
+    @Test
+    public void testAddCreditTransferTransactionInformation() {
+
+        this.paymentInformation.addCreditTransferTransactionInformation(
+                TestUtils.createCreditTransferTransactionInformation("TX5", BigDecimal.ONE));
+        this.assertEndToEndIds("TX0", "TX1", "TX2", "TX3", "TX4", "TX5");
+    }
+
+    /**
+     * Test of addAllCreditTransferTransactionInformation method, of class Pain013PaymentInformation.
+     */
+    @Test
+    public void testAddAllCreditTransferTransactionInformation() {
+
+        ArrayList<Pain013CreditTransferTransactionInformation> transactions = new ArrayList<>();
+        transactions.add(TestUtils.createCreditTransferTransactionInformation("TX5", BigDecimal.ONE));
+        transactions.add(TestUtils.createCreditTransferTransactionInformation("TX6", BigDecimal.ONE));
+        this.paymentInformation.addAllCreditTransferTransactionInformation(transactions);
+        this.assertEndToEndIds("TX0", "TX1", "TX2", "TX3", "TX4", "TX5", "TX6");
+    }
+
+    /**
+     * Test of removeCreditTransferTransactionInformationAtIndex method, of class Pain013PaymentInformation.
+     */
+    @Test
+    public void testRemoveCreditTransferTransactionInformationAtIndex() {
+
+        assertTrue(this.paymentInformation.removeCreditTransferTransactionInformationAtIndex(1));
+        assertTrue(this.paymentInformation.removeCreditTransferTransactionInformationAtIndex(3));
+        assertFalse(this.paymentInformation.removeCreditTransferTransactionInformationAtIndex(3));
+        this.assertEndToEndIds("TX0", "TX2", "TX3");
+    }
+
+    /**
+     * Test of replaceCreditTransferTransactionInformationAtIndex method, of class Pain013PaymentInformation.
+     */
+    @Test
+    public void testReplaceCreditTransferTransactionInformationAtIndex() {
+
+        assertTrue(this.paymentInformation.replaceCreditTransferTransactionInformationAtIndex(0,
+                TestUtils.createCreditTransferTransactionInformation("NEW0", BigDecimal.ONE)));
+        assertTrue(this.paymentInformation.replaceCreditTransferTransactionInformationAtIndex(4,
+                TestUtils.createCreditTransferTransactionInformation("NEW4", BigDecimal.ONE)));
+        assertFalse(this.paymentInformation.replaceCreditTransferTransactionInformationAtIndex(5,
+                TestUtils.createCreditTransferTransactionInformation("NEW5", BigDecimal.ONE)));
+        this.assertEndToEndIds("NEW0", "TX1", "TX2", "TX3", "NEW4");
+    }
+
+    /**
+     * Test of clearCreditTransferTransactionInformation method, of class Pain013PaymentInformation.
+     */
+    @Test
+    public void testClearCreditTransferTransactionInformation() {
+
+        this.paymentInformation.clearCreditTransferTransactionInformation();
+        this.assertEndToEndIds();
+        assertEquals("PI", this.paymentInformation.getPaymentInstruction().getPmtInfId());
+    }
+
+    /**
+     * Test of bind method, of class Pain013CreditTransferTransactionInformation.
+     */
+    @Test
+    public void testModifyBoundCreditTransferTransactionInformation() {
+
+        Pain013CreditTransferTransactionInformation transaction =
+                this.paymentInformation.getCreditTransferTransactionInformationAtIndex(2);
+        transaction.setPaymentIdentification(this.createPaymentIdentification("EDITED"));
+        this.assertEndToEndIds("TX0", "TX1", "EDITED", "TX3", "TX4");
+        assertSame(this.paymentInformation.getPaymentInstruction().getCdtTrfTxArray(2),
+                transaction.getCreditTransferTransactionInformation());
+    }
+
+    /**
+     * Test of unbind method, of class Pain013CreditTransferTransactionInformation.
+     */
+    @Test
+    public void testModifyRemovedCreditTransferTransactionInformation() {
+
+        Pain013CreditTransferTransactionInformation transaction =
+                this.paymentInformation.getCreditTransferTransactionInformationAtIndex(4);
+        assertTrue(this.paymentInformation.removeCreditTransferTransactionInformationAtIndex(4));
+        transaction.setPaymentIdentification(this.createPaymentIdentification("REMOVED"));
+        assertEquals("REMOVED", transaction.getCreditTransferTransactionInformation().getPmtId().getEndToEndId());
+        this.assertEndToEndIds("TX0", "TX1", "TX2", "TX3");
+    }
+
+    /**
+     * Test of getDebtor method, of class Pain013PaymentInformation.
+     */
+    @Test
+    public void testGetDebtor() {
+
+        PartyIdentification43 debtor = PartyIdentification43.Factory.newInstance();
+        debtor.setNm("DEBTOR");
+        this.paymentInformation.setDebtor(debtor);
+        long version = this.paymentInformation.getVersionTracker().getVersion();
+
+        // The debtor returned is a copy which does not modify the payment information
+        this.paymentInformation.getDebtor().setNm("EDITED");
+        assertEquals("DEBTOR", this.paymentInformation.getDebtor().getNm());
+        assertEquals("DEBTOR", this.paymentInformation.getPaymentInstruction().getDbtr().getNm());
+        assertEquals(version, this.paymentInformation.getVersionTracker().getVersion());
+    }
+
+    /**
+     * Test of getVersionTracker method, of class Pain013PaymentInformation.
+     */
+    @Test
+    public void testGetVersionTracker() {
+
+        long version = this.paymentInformation.getVersionTracker().getVersion();
+        Pain013CreditTransferTransactionInformation transaction =
+                this.paymentInformation.getCreditTransferTransactionInformationAtIndex(0);
+
+        transaction.setPaymentIdentification(this.createPaymentIdentification("EDITED"));
+        assertEquals(version + 1, this.paymentInformation.getVersionTracker().getVersion());
+
+        assertTrue(this.paymentInformation.removeCreditTransferTransactionInformationAtIndex(0));
+        version = this.paymentInformation.getVersionTracker().getVersion();
+        transaction.setPaymentIdentification(this.createPaymentIdentification("REMOVED"));
+        assertEquals(version, this.paymentInformation.getVersionTracker().getVersion());
+    }
+
+    /**
+     * Test of getValidationResult method, of class Pain013PaymentInformation.
+     */
+    @Test
+    public void testGetValidationResult() {
+
+        ValidationResult result = this.paymentInformation.getValidationResult();
+        assertSame(result, this.paymentInformation.getValidationResult());
+
+        Pain013CreditTransferTransactionInformation transaction =
+                this.paymentInformation.getCreditTransferTransactionInformationAtIndex(1);
+        ValidationResult transactionResult = transaction.getValidationResult();
+        assertTrue(transactionResult.isValid());
+
+        transaction.setPaymentIdentification(this.createPaymentIdentification(""));
+        assertNotSame(result, this.paymentInformation.getValidationResult());
+        assertFalse(this.paymentInformation.getValidationResult().isValid());
+        assertFalse(transaction.getValidationResult().isValid());
+        assertSame(this.paymentInformation.getCreditTransferTransactionInformationAtIndex(0).getValidationResult(),
+                this.paymentInformation.getCreditTransferTransactionInformationAtIndex(0).getValidationResult());
+    }
+
+    /**
+     * Create a payment identification
+     *
+     * @param endToEndId End to end identification
+     * @return Payment identification
+     */
+    private PaymentIdentification1 createPaymentIdentification(String endToEndId) {
+
+        PaymentIdentification1 paymentIdentification = PaymentIdentification1.Factory.newInstance();
+        paymentIdentification.setEndToEndId(endToEndId);
+        return paymentIdentification;
+    }
+
+    /**
+     * Check the transactions of the payment information block, in the list and in the message segment
+     *
+     * @param endToEndIds Expected end to end identifications of the transactions
+     */
+    private void assertEndToEndIds(String... endToEndIds) {
+
+        PaymentInstruction5 paymentInstruction = this.paymentInformation.getPaymentInstruction();
+        assertEquals(endToEndIds.length, this.paymentInformation.getCreditTransferTransactionInformation().size());
+        assertEquals(endToEndIds.length, paymentInstruction.sizeOfCdtTrfTxArray());
+        for (int i = 0; i < endToEndIds.length; i++) {
+            assertEquals(endToEndIds[i], paymentInstruction.getCdtTrfTxArray(i).getPmtId().getEndToEndId());
+            assertEquals(endToEndIds[i], this.paymentInformation.getCreditTransferTransactionInformationAtIndex(i)
+                    .getCreditTransferTransactionInformation().getPmtId().getEndToEndId());
+        }
+    }
+}
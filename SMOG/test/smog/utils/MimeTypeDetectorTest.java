@@ -0,0 +1,96 @@
+package smog.utils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import org.apache.commons.codec.binary.Base64;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * MimeTypeDetectorTest tests the detection of the MIME type of attachments {@link MimeTypeDetector}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class MimeTypeDetectorTest {
+
+    /**
+     * Test of detect method with content, of class MimeTypeDetector.
+     */
+    @Test
+    public void testDetectContent() {
+
+        // Binary formats
+        assertEquals(MimeTypeDetector.APPLICATION_PDF, MimeTypeDetector.detect(bytes("%PDF-1.4\n%âã")));
+        assertEquals(MimeTypeDetector.IMAGE_PNG, MimeTypeDetector.detect(Base64.decodeBase64(
+                "iVBORw0KGgoAAAANSUhEUgAAAAoAAAAKCAYAAACNMs+9AA")));
+        assertEquals(MimeTypeDetector.IMAGE_JPEG, MimeTypeDetector.detect(new byte[] {(byte) 0xff, (byte) 0xd8,
+            (byte) 0xff, (byte) 0xe0, 0, 0x10}));
+        assertEquals(MimeTypeDetector.IMAGE_GIF, MimeTypeDetector.detect(bytes("GIF89a\u0001\u0000")));
+        assertEquals(MimeTypeDetector.IMAGE_TIFF, MimeTypeDetector.detect(new byte[] {'I', 'I', '*', 0, 8, 0}));
+        assertEquals(MimeTypeDetector.APPLICATION_OCTET_STREAM, MimeTypeDetector.detect(new byte[] {1, 2, 3}));
+        assertEquals(MimeTypeDetector.APPLICATION_OCTET_STREAM, MimeTypeDetector.detect(new byte[] {(byte) 0x89, 'P',
+            'N'}));
+
+        // Text formats
+        assertEquals(MimeTypeDetector.APPLICATION_XML, MimeTypeDetector.detect(bytes(
+                "\ufeff\r\n<?xml version=\"1.0\"?><a/>")));
+        assertEquals(MimeTypeDetector.TEXT_HTML, MimeTypeDetector.detect(bytes("  <!DOCTYPE HTML><html></html>")));
+        assertEquals(MimeTypeDetector.TEXT_PLAIN, MimeTypeDetector.detect(bytes("Facture n° 42\r\n\tTotal")));
+        assertEquals(MimeTypeDetector.TEXT_PLAIN, MimeTypeDetector.detect(new byte[0]));
+
+        // 8-bit text without control characters
+        assertEquals(MimeTypeDetector.TEXT_PLAIN, MimeTypeDetector.detect("Facture n° 42, échéance\r\n".getBytes(
+                StandardCharsets.ISO_8859_1)));
+        assertEquals(MimeTypeDetector.TEXT_HTML, MimeTypeDetector.detect("<html>Réglé</html>".getBytes(
+                StandardCharsets.ISO_8859_1)));
+        assertEquals(MimeTypeDetector.APPLICATION_OCTET_STREAM, MimeTypeDetector.detect(new byte[] {'a', (byte) 0xe9,
+            0}));
+        assertEquals(MimeTypeDetector.APPLICATION_OCTET_STREAM, MimeTypeDetector.detect(new byte[] {'a', (byte) 0xe9,
+            (byte) 0x85, 'b'}));
+
+        // Multi-byte character cut by the end of the leading bytes
+        byte[] text = new byte[MimeTypeDetector.HEAD_SIZE + 1];
+        Arrays.fill(text, (byte) 'a');
+        text[MimeTypeDetector.HEAD_SIZE - 1] = (byte) 0xc3;
+        text[MimeTypeDetector.HEAD_SIZE] = (byte) 0xa9;
+        assertEquals(MimeTypeDetector.TEXT_PLAIN, MimeTypeDetector.detect(text));
+    }
+
+    /**
+     * Test of detect method with files, of class MimeTypeDetector.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDetectFile() throws Exception {
+
+        File file = File.createTempFile("mime-type", ".bin");
+        try {
+
+            // Files are detected from their content whatever their extension
+            Files.write(file.toPath(), bytes("%PDF-1.7"));
+            assertEquals(MimeTypeDetector.APPLICATION_PDF, MimeTypeDetector.detect(file.toPath()));
+
+            // A modified file is detected again
+            Files.write(file.toPath(), bytes("<?xml version=\"1.0\"?>"));
+            Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            assertEquals(MimeTypeDetector.APPLICATION_XML, MimeTypeDetector.detect(file.toPath()));
+
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Get the UTF-8 bytes of a string
+     *
+     * @param s String
+     * @return UTF-8 encoded string
+     */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
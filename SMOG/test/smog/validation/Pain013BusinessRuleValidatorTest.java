@@ -0,0 +1,126 @@
+package smog.validation;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import smog.missive.TestUtils;
+import smog.missive.structure.SemRequestAndComplements;
+import smog.schema.p13.CreditorPaymentActivationRequestV01;
+
+/**
+ * Pain013BusinessRuleValidatorTest tests the business rule validator {@link Pain013BusinessRuleValidator}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class Pain013BusinessRuleValidatorTest {
+
+    private CreditorPaymentActivationRequestV01 request;
+    private Pain013BusinessRuleValidator validator;
+
+    /**
+     * Set up a request with a single transaction of 10.00 EUR
+     */
+    @Before
+    public void setUp() {
+
+        SemRequestAndComplements requestAndComplements = TestUtils.createRequestAndComplements("REQ", 1);
+        this.request = requestAndComplements.getRequestAndComplements().getRequest();
+        this.validator = new Pain013BusinessRuleValidator();
+    }
+
+    /**
+     * Test of validate method, of class Pain013BusinessRuleValidator, with a request following the rules.
+     */
+    @Test
+    public void testValidate() {
+
+        ValidationResult result = this.validator.validate(this.request);
+
+        assertTrue(result.isValid());
+        assertTrue(result.getErrors().isEmpty());
+    }
+
+    /**
+     * Test of validate method, of class Pain013BusinessRuleValidator, with a wrong control sum.
+     */
+    @Test
+    public void testValidateControlSum() {
+
+        this.request.getPmtInfArray(0).getCdtTrfTxArray(0).getAmt().getInstdAmt().setBigDecimalValue(
+                new BigDecimal("0.1"));
+        this.request.getPmtInfArray(0).addNewCdtTrfTx().set(this.request.getPmtInfArray(0).getCdtTrfTxArray(0));
+        this.request.getPmtInfArray(0).getCdtTrfTxArray(1).getAmt().getInstdAmt().setBigDecimalValue(
+                new BigDecimal("0.2"));
+        this.request.getGrpHdr().setNbOfTxs("2");
+
+        this.request.getGrpHdr().setCtrlSum(new BigDecimal("0.30"));
+        assertTrue(this.validator.validate(this.request).isValid());
+
+        this.request.getGrpHdr().setCtrlSum(new BigDecimal("0.31"));
+        ValidationResult result = this.validator.validate(this.request);
+
+        assertEquals(1, result.getErrors().size());
+        assertEquals(BusinessRule.CONTROL_SUM, ((BusinessRuleViolation) result.getErrors().get(0)).getRule());
+        assertEquals(BusinessRule.CONTROL_SUM.getErrorCode(), result.getErrors().get(0).getErrorCode());
+        assertEquals(this.request.getGrpHdr().xgetCtrlSum(), result.getErrors().get(0).getObjectLocation());
+    }
+
+    /**
+     * Test of validate method, of class Pain013BusinessRuleValidator, with a wrong number of transactions.
+     */
+    @Test
+    public void testValidateNumberOfTransactions() {
+
+        this.request.getGrpHdr().setNbOfTxs("3");
+        this.request.getGrpHdr().unsetCtrlSum();
+        ValidationResult result = this.validator.validate(this.request);
+
+        assertEquals(1, result.getErrors().size());
+        assertEquals(BusinessRule.NUMBER_OF_TRANSACTIONS,
+                ((BusinessRuleViolation) result.getErrors().get(0)).getRule());
+        assertEquals(this.request.getGrpHdr().xgetNbOfTxs(), result.getErrors().get(0).getObjectLocation());
+    }
+
+    /**
+     * Test of validate method, of class Pain013BusinessRuleValidator, with an execution date before the creation date.
+     */
+    @Test
+    public void testValidateRequestedExecutionDate() {
+
+        Calendar creationDateTime = Calendar.getInstance();
+        creationDateTime.set(2014, Calendar.MARCH, 10, 23, 30, 0);
+        this.request.getGrpHdr().setCreDtTm(creationDateTime);
+        Calendar executionDate = (Calendar) creationDateTime.clone();
+        this.request.getPmtInfArray(0).setReqdExctnDt(executionDate);
+        assertTrue(this.validator.validate(this.request).isValid());
+
+        executionDate.add(Calendar.DAY_OF_MONTH, -1);
+        this.request.getPmtInfArray(0).setReqdExctnDt(executionDate);
+        ValidationResult result = this.validator.validate(this.request);
+
+        assertEquals(1, result.getErrors().size());
+        assertEquals(BusinessRule.REQUESTED_EXECUTION_DATE,
+                ((BusinessRuleViolation) result.getErrors().get(0)).getRule());
+        assertEquals(this.request.getPmtInfArray(0).xgetReqdExctnDt(), result.getErrors().get(0).getObjectLocation());
+    }
+
+    /**
+     * Test of validate method, of class Pain013BusinessRuleValidator, in fail-fast mode.
+     */
+    @Test
+    public void testValidateFailFast() {
+
+        this.request.getGrpHdr().setNbOfTxs("3");
+        this.request.getGrpHdr().setCtrlSum(BigDecimal.ONE);
+
+        assertEquals(2, this.validator.validate(this.request).getErrors().size());
+
+        ValidationErrorCollector errors = new ValidationErrorCollector(true);
+        assertFalse(this.validator.validate(this.request, errors));
+        assertEquals(1, errors.getResult().getErrors().size());
+        assertEquals(BusinessRule.NUMBER_OF_TRANSACTIONS,
+                ((BusinessRuleViolation) errors.getResult().getErrors().get(0)).getRule());
+    }
+}
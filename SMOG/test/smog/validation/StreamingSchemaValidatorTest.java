@@ -0,0 +1,152 @@
+package smog.validation;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.xmlbeans.XmlError;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import smog.exception.SmogException;
+import smog.missive.SepamailPaymentActivationRequestDocument;
+import smog.missive.TestUtils;
+
+/**
+ * StreamingSchemaValidatorTest tests the streaming validator of missive files {@link StreamingSchemaValidator}
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ */
+public class StreamingSchemaValidatorTest {
+
+    private SepamailPaymentActivationRequestDocument document;
+    private StreamingSchemaValidator validator;
+
+    /**
+     * Set up a payment activation request document with an attachment
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+
+        this.document = TestUtils.createPaymentActivationRequestDocument(3, 2, new byte[] {1, 2, 3});
+        this.validator = new StreamingSchemaValidator();
+    }
+
+    /**
+     * Test of validate method, of class StreamingSchemaValidator, with a valid missive.
+     *
+     * @throws SmogException
+     */
+    @Test
+    public void testValidate() throws SmogException {
+
+        String missive = this.document.toString();
+        assertTrue(missive.contains("<![CDATA["));
+
+        ValidationResult result = this.validator.validate(getInputStream(missive), false);
+
+        assertTrue(result.isValid());
+        assertTrue(result.getErrors().isEmpty());
+    }
+
+    /**
+     * Test of validate method, of class StreamingSchemaValidator, with an invalid missive.
+     *
+     * @throws SmogException
+     */
+    @Test
+    public void testValidateInvalid() throws SmogException {
+
+        this.document.getSemRequestAndComplementsAtIndex(2).getPaymentInformationAtIndex(0).setId("");
+        String missive = this.document.toString();
+
+        ValidationResult result = this.validator.validate(getInputStream(missive), false);
+
+        assertFalse(result.isValid());
+        assertFalse(result.isStopped());
+        assertEquals(2, result.getErrors().size());
+
+        XmlError error = result.getErrors().get(0);
+        assertEquals("cvc-minLength-valid", error.getErrorCode());
+        assertEquals(XmlError.SEVERITY_ERROR, error.getSeverity());
+        assertTrue(error.getMessage().contains("Max35Text"));
+        assertTrue(missive.split("\n")[error.getLine() - 1].contains("PmtInfId"));
+        assertEquals("cvc-type.3.1.3", result.getErrors().get(1).getErrorCode());
+    }
+
+    /**
+     * Test of validate method, of class StreamingSchemaValidator, stopping at the first error.
+     *
+     * @throws SmogException
+     */
+    @Test
+    public void testValidateFailFast() throws SmogException {
+
+        this.document.getSemRequestAndComplementsAtIndex(2).getPaymentInformationAtIndex(0).setId("");
+        this.document.setMissivePriority(null);
+
+        ValidationResult result = this.validator.validate(getInputStream(this.document.toString()), true);
+
+        assertFalse(result.isValid());
+        assertTrue(result.isStopped());
+        assertEquals(1, result.getErrors().size());
+        assertEquals(7, result.getErrors().get(0).getLine());
+    }
+
+    /**
+     * Test of validate method, of class StreamingSchemaValidator, with a missive which is not well formed.
+     *
+     * @throws SmogException
+     */
+    @Test
+    public void testValidateMalformed() throws SmogException {
+
+        String missive = this.document.toString();
+
+        ValidationResult result = this.validator.validate(getInputStream(missive.substring(0, missive.length() / 2)),
+                false);
+
+        assertFalse(result.isValid());
+        assertEquals(1, result.getErrors().size());
+        assertNull(result.getErrors().get(0).getErrorCode());
+        assertTrue(result.getErrors().get(0).getLine() > 0);
+    }
+
+    /**
+     * Test of validate method, of class StreamingSchemaValidator, with a missive file.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testValidatePath() throws Exception {
+
+        Path path = Files.createTempFile("missive", ".xml");
+
+        try {
+
+            Files.write(path, this.document.toString().getBytes(StandardCharsets.UTF_8));
+            assertTrue(this.validator.validate(path, false).isValid());
+
+            Files.write(path, "<sem:Missive xmlns:sem=\"http://xsd.sepamail.eu/1206/\"/>".getBytes(
+                    StandardCharsets.UTF_8));
+            assertFalse(this.validator.validate(path, false).isValid());
+
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Get an input stream holding the given missive
+     *
+     * @param missive Missive
+     * @return Input stream holding the missive in UTF-8
+     */
+    private static InputStream getInputStream(String missive) {
+
+        return new ByteArrayInputStream(missive.getBytes(StandardCharsets.UTF_8));
+    }
+}